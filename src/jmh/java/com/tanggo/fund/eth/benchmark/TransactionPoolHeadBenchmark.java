@@ -0,0 +1,111 @@
+package com.tanggo.fund.eth.benchmark;
+
+import com.tanggo.fund.eth.lib.domain.Account;
+import com.tanggo.fund.eth.lib.domain.BlockBody;
+import com.tanggo.fund.eth.lib.domain.repo.IAccountRepo;
+import com.tanggo.fund.eth.lib.domain.transaction.Eip1559Transaction;
+import com.tanggo.fund.eth.lib.outbound.TransactionPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 交易池链头变化基准测试
+ * 交易池中每个发送者各有一笔交易，一个区块恰好包含全部这些交易；
+ * 每次操作交替接入和回滚该区块：接入时交易随 nonce 前移被丢弃，回滚时 nonce 后退、交易回注
+ * 区块体带有已恢复的发送者，不做 ecrecover；目标是 1000 笔交易的链头变化在 1ms 以内
+ *
+ * 运行: mvn -P jmh test-compile exec:exec -Djmh.args="TransactionPoolHeadBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionPoolHeadBenchmark {
+
+    // 区块中的交易数（每笔来自不同的发送者）
+    @Param({"100", "1000"})
+    int transactions;
+
+    // 接入区块后和回滚区块后的账户状态，每次链头变化切换一次
+    private final Map<String, Account> applied = new HashMap<>();
+    private final Map<String, Account> reverted = new HashMap<>();
+    private volatile Map<String, Account> state = reverted;
+
+    private TransactionPool pool;
+    private List<BlockBody> block;
+    private boolean included;
+
+    private static byte[] address(int id) {
+        byte[] address = new byte[20];
+        address[0] = 1;
+        address[18] = (byte) (id >>> 8);
+        address[19] = (byte) id;
+        return address;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        applied.clear();
+        reverted.clear();
+        state = reverted;
+        included = false;
+        pool = new TransactionPool(new IAccountRepo() {
+            @Override
+            public Account query(String address) {
+                return state.get(address);
+            }
+
+            @Override
+            public void update(Account account) {
+                state.put(account.getAddressHex(), account);
+            }
+        });
+
+        BlockBody body = new BlockBody();
+        for (int i = 0; i < transactions; i++) {
+            byte[] sender = address(i);
+            Eip1559Transaction tx = Eip1559Transaction.builder()
+                    .chainId(BigInteger.ONE)
+                    .nonce(BigInteger.ZERO)
+                    .maxFeePerGas(BigInteger.valueOf(100 + i))
+                    .maxPriorityFeePerGas(BigInteger.TEN)
+                    .gasLimit(BigInteger.valueOf(21_000))
+                    .to(address(0xffff))
+                    .value(BigInteger.ZERO)
+                    .data(new byte[0])
+                    .v(BigInteger.ZERO)
+                    .r(BigInteger.ONE)
+                    .s(BigInteger.ONE)
+                    .cachedSender(sender)
+                    .build();
+            if (!pool.addTransaction(tx)) {
+                throw new IllegalStateException("Transaction rejected by pool: " + i);
+            }
+            String hex = "0x" + HexFormat.of().formatHex(sender);
+            body.addTransaction(tx, hex);
+            applied.put(hex, Account.builder().address(sender).nonce(BigInteger.ONE).balance(BigInteger.ZERO).build());
+        }
+        block = List.of(body);
+    }
+
+    @Benchmark
+    public int headChange() {
+        if (included) {
+            state = reverted;
+            pool.onNewHead(block, List.of());
+        } else {
+            state = applied;
+            pool.onNewHead(List.of(), block);
+        }
+        included = !included;
+        return pool.size();
+    }
+}
@@ -0,0 +1,150 @@
+package com.tanggo.fund.raft.benchmark;
+
+import com.tanggo.fund.raft.outbound.LogEntryRepo;
+import com.tanggo.fund.raft.outbound.MappedLogEntryRepo;
+import com.tanggo.fund.raft.outbound.MemoryLogEntryRepo;
+import com.tanggo.fund.raft.service.ILogEntryService;
+import com.tanggo.fund.raft.service.command.impl.LogEntryService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Raft 提交路径基准测试
+ * 按 RaftClusterDemo 的方式在进程内组建 1/3/5 节点集群（共享一个 ILogEntryService 映射），
+ * 每次操作向领导者提交 batchSize 条命令并等待全部提交
+ *
+ * Throughput 模式给出每秒提交的批数，entries 计数器给出每秒提交的日志条数；
+ * SampleTime 模式给出一批命令的提交延迟分布（p50/p99），batchSize=1 即单条命令的提交延迟
+ *
+ * 运行: mvn -P jmh test-compile exec:exec -Djmh.args="RaftCommitBenchmark -p nodes=3"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RaftCommitBenchmark {
+
+    @Param({"1", "3", "5"})
+    int nodes;
+
+    // 每条命令的字节数
+    @Param({"16", "256", "4096"})
+    int entrySize;
+
+    // 每次操作并发提交的命令数，由组提交合并成批
+    @Param({"1", "32", "256"})
+    int batchSize;
+
+    @Param({"memory", "mapped"})
+    String repo;
+
+    private final List<LogEntryService> services = new ArrayList<>();
+    private final List<LogEntryRepo> repos = new ArrayList<>();
+    private Path dataDir;
+    private ILogEntryService leader;
+    private String command;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if ("mapped".equals(repo)) {
+            dataDir = Files.createTempDirectory("raft-bench");
+        }
+        Map<String, ILogEntryService> cluster = new ConcurrentHashMap<>();
+        for (int i = 1; i <= nodes; i++) {
+            String nodeId = "node" + i;
+            LogEntryRepo logEntryRepo = dataDir != null
+                    ? new MappedLogEntryRepo(dataDir.resolve(nodeId))
+                    : new MemoryLogEntryRepo();
+            LogEntryService service = new LogEntryService(nodeId, cluster, logEntryRepo);
+            repos.add(logEntryRepo);
+            services.add(service);
+            cluster.put(nodeId, service);
+        }
+        command = "SET bench " + "x".repeat(Math.max(1, entrySize - "SET bench ".length()));
+        leader = awaitLeader();
+    }
+
+    // 等待选举完成，以第一条成功提交的命令确认领导者
+    private ILogEntryService awaitLeader() throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            for (LogEntryService service : services) {
+                if (service.submitCommand(command).get(5, TimeUnit.SECONDS)) {
+                    return service;
+                }
+            }
+            Thread.sleep(20);
+        }
+        throw new IllegalStateException("No leader elected within 10s");
+    }
+
+    @Benchmark
+    public int commit(CommitCounters counters) throws Exception {
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            futures.add(leader.submitCommand(command));
+        }
+        int committed = 0;
+        for (CompletableFuture<Boolean> future : futures) {
+            if (future.get(10, TimeUnit.SECONDS)) {
+                committed++;
+            }
+        }
+        if (committed != batchSize) {
+            throw new IllegalStateException("Leadership lost during benchmark: " + committed + "/" + batchSize + " committed");
+        }
+        counters.entries += committed;
+        return committed;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        // 先停领导者，不再产生新的复制请求
+        if (leader instanceof LogEntryService service) {
+            service.close();
+        }
+        for (LogEntryService service : services) {
+            service.close();
+        }
+        for (LogEntryRepo logEntryRepo : repos) {
+            if (logEntryRepo instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+        services.clear();
+        repos.clear();
+        if (dataDir != null) {
+            try (Stream<Path> files = Files.walk(dataDir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    // 已提交的日志条数，JMH 按次数/时间汇报
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class CommitCounters {
+        public long entries;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            entries = 0;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.tanggo.fund.eth.lib.config;
+
+import lombok.Data;
+
+/**
+ * 账户缓存参数
+ */
+@Data
+public class AccountCacheOptions {
+    // 缓存的账户数上限（不含尚未写回的区块修改）
+    private int maximumSize = 100_000;
+    // 窗口 LRU 占总容量的百分比
+    private int windowPercent = 1;
+    // 保护段占主区的百分比
+    private int protectedPercent = 80;
+    // 内存中保留的区块差异层数上限（可回滚的深度），超出时最旧的层合并写回仓储
+    private int maxUnflushedBlocks = 64;
+    // 超出的差异层在后台线程合并写回；false 时由提交区块的线程同步写回
+    private boolean backgroundFlush = true;
+}
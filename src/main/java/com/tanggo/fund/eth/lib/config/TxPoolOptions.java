@@ -0,0 +1,36 @@
+package com.tanggo.fund.eth.lib.config;
+
+import lombok.Data;
+
+/**
+ * 交易池参数
+ */
+@Data
+public class TxPoolOptions {
+    // 发送者锁的分段数（2 的幂），同一分段内的发送者串行入池
+    private int lockStripes = 64;
+    // 交易 nonce 最多领先账户 nonce 的数量，更远的交易直接拒绝
+    private int maxNonceGap = 64;
+    // 替换同 nonce 交易时 maxFeePerGas 和 maxPriorityFeePerGas 至少上涨的百分比
+    private int priceBumpPercent = 10;
+    // getPendingTransactions 使用的区块 Gas 上限
+    private long blockGasLimit = 30_000_000L;
+    // 交易池最多容纳的交易数
+    private int globalSlots = 8192;
+    // 交易池内交易编码字节数之和的上限
+    private long maxPoolBytes = 64L * 1024 * 1024;
+    // 单个发送者最多容纳的交易数
+    private int senderSlots = 64;
+    // 单笔交易编码后的字节上限
+    private int maxTxBytes = 128 * 1024;
+    // 等待中（nonce 不连续）的交易超过该时间未能执行则丢弃
+    private long queuedLifetimeMillis = 3 * 60 * 60 * 1000L;
+    // 检查过期等待交易的间隔
+    private long expiryCheckIntervalMillis = 60 * 1000L;
+    // 交易日志文件路径，为 null 时不持久化；启动时从日志恢复交易池
+    private String journalPath;
+    // 日志 force 到磁盘的间隔；记录每次都写入操作系统，进程崩溃不丢失，掉电最多丢失该间隔内的交易
+    private long journalSyncIntervalMillis = 1000L;
+    // 按交易池当前内容重写日志的间隔；日志超过 maxPoolBytes 的两倍时提前重写
+    private long journalRotateMillis = 60 * 60 * 1000L;
+}
@@ -25,7 +25,7 @@ import java.util.Arrays;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class Account {
+public class Account implements AccountState {
 
     /**
      * 账户地址 (20 bytes)
@@ -74,10 +74,10 @@ public class Account {
 
     /**
      * 空存储根常量
-     * 空MPT树的根哈希
+     * 空MPT树的根哈希 keccak256(rlp(""))
      */
     public static final byte[] EMPTY_STORAGE_ROOT = hexToBytes(
-        "56e81f171bcc55a6ff8345e692c0f86e5b1e1b19c5d0b2c0ccb39e6e3f34e4ca"
+        "56e81f171bcc55a6ff8345e692c0f86e5b48e01b996cadc001622fb5e363b421"
     );
 
     /**
@@ -118,6 +118,7 @@ public class Account {
      * EOA的codeHash为空字符串的哈希
      * @return 是否为EOA
      */
+    @Override
     public boolean isExternallyOwnedAccount() {
         if (codeHash == null) {
             return true; // 默认为EOA
@@ -199,11 +200,22 @@ public class Account {
         return nonce;
     }
 
+    /**
+     * nonce 是否等于给定值
+     * @param nonce 比较的nonce
+     * @return 是否相等
+     */
+    @Override
+    public boolean nonceEquals(BigInteger nonce) {
+        return nonce != null && nonce.equals(this.nonce);
+    }
+
     /**
      * 检查是否有足够的余额
      * @param amount 需要的金额
      * @return 是否有足够余额
      */
+    @Override
     public boolean hasSufficientBalance(BigInteger amount) {
         if (amount == null || balance == null) {
             return false;
@@ -0,0 +1,24 @@
+package com.tanggo.fund.eth.lib.domain;
+
+import java.math.BigInteger;
+
+/**
+ * 账户状态的只读访问
+ * Account 和仓储的只读视图都实现它，只读路径（如交易的有状态验证）不必为此解码完整的 Account
+ */
+public interface AccountState {
+
+    /**
+     * nonce 是否等于给定值
+     */
+    boolean nonceEquals(BigInteger nonce);
+
+    BigInteger getBalance();
+
+    /**
+     * 余额是否不小于 amount
+     */
+    boolean hasSufficientBalance(BigInteger amount);
+
+    boolean isExternallyOwnedAccount();
+}
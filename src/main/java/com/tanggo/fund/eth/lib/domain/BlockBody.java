@@ -26,6 +26,14 @@ public class BlockBody {
     @Builder.Default
     private List<Eip1559Transaction> transactions = new ArrayList<>();
 
+    /**
+     * 交易发送者列表（0x 开头的地址），与 transactions 一一对应
+     * 区块执行时已从签名恢复，随区块体交给交易池，链头变化时不再逐笔 ecrecover
+     * 不属于区块编码内容
+     */
+    @Builder.Default
+    private List<String> senders = new ArrayList<>();
+
     /**
      * 叔块（Ommers/Uncles）列表
      * 最多包含2个叔块头
@@ -80,6 +88,24 @@ public class BlockBody {
         return true;
     }
 
+    /**
+     * 追加一笔已恢复发送者的交易
+     * @param transaction 交易
+     * @param sender 0x开头的发送者地址
+     */
+    public void addTransaction(Eip1559Transaction transaction, String sender) {
+        transactions.add(transaction);
+        senders.add(sender);
+    }
+
+    /**
+     * 判断每笔交易的发送者是否都已恢复
+     * @return 发送者列表与交易列表是否一一对应
+     */
+    public boolean hasSenders() {
+        return senders != null && transactions != null && senders.size() == transactions.size();
+    }
+
     /**
      * 获取交易数量
      * @return 交易数量
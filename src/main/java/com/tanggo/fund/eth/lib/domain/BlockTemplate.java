@@ -0,0 +1,37 @@
+package com.tanggo.fund.eth.lib.domain;
+
+import com.tanggo.fund.eth.lib.domain.transaction.Eip1559Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * 区块模板
+ * 交易池为出块选出的交易，同一发送者的交易按 nonce 顺序排列，总 Gas 不超过区块 Gas 上限
+ */
+@Data
+@AllArgsConstructor
+public class BlockTemplate {
+
+    /**
+     * 构建模板时的基础费用
+     */
+    private BigInteger baseFeePerGas;
+
+    /**
+     * 区块Gas上限
+     */
+    private long gasLimit;
+
+    /**
+     * 已选交易的Gas上限之和
+     */
+    private long gasUsed;
+
+    /**
+     * 已选交易
+     */
+    private List<Eip1559Transaction> transactions;
+}
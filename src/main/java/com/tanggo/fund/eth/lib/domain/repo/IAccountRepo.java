@@ -1,9 +1,32 @@
 package com.tanggo.fund.eth.lib.domain.repo;
 
 import com.tanggo.fund.eth.lib.domain.Account;
+import com.tanggo.fund.eth.lib.domain.AccountState;
+
+import java.util.HexFormat;
+import java.util.function.Function;
 
 public interface IAccountRepo {
     Account query(String address);
 
     void update(Account account);
+
+    default Account query(byte[] address) {
+        return query("0x" + HexFormat.of().formatHex(address));
+    }
+
+    /**
+     * 只读访问账户，reader 不得修改或保留传入的对象；账户不存在时传入 null
+     * 默认实现查询一份副本，带缓存的实现直接传入缓存中的对象，LMDB 实现传入按需解码的只读视图
+     */
+    default <R> R read(byte[] address, Function<AccountState, R> reader) {
+        return reader.apply(query(address));
+    }
+
+    /**
+     * 开始一个状态批次，默认实现提交时逐个 update
+     */
+    default StateBatch beginBatch() {
+        return new StateBatch(this, accounts -> accounts.forEach(this::update));
+    }
 }
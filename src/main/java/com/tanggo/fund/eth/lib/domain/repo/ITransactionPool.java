@@ -1,16 +1,22 @@
 package com.tanggo.fund.eth.lib.domain.repo;
 
-import com.tanggo.fund.bitcoin.lib.domain.Transaction;
+import com.tanggo.fund.eth.lib.domain.BlockBody;
+import com.tanggo.fund.eth.lib.domain.transaction.Eip1559Transaction;
 
 import java.util.List;
 
 public interface ITransactionPool {
-    boolean addTransaction(Transaction tx);
+    boolean addTransaction(Eip1559Transaction tx);
 
-    default void removeTransactionFromGlobalIndices(Transaction existingTx) {
-    }
-
-    List<Transaction> getPendingTransactions(int limit);
+    List<Eip1559Transaction> getPendingTransactions(int limit);
 
     void removeTransaction(String txHash);
+
+    /**
+     * 链头变化：reverted 为被回滚的区块（链重组时），applied 为新接入的区块
+     * 区块体须带有已恢复的发送者（BlockBody.senders），否则抛出 IllegalArgumentException
+     */
+    void onNewHead(List<BlockBody> reverted, List<BlockBody> applied);
+
+    int size();
 }
@@ -0,0 +1,101 @@
+package com.tanggo.fund.eth.lib.domain.repo;
+
+import com.tanggo.fund.eth.lib.domain.Account;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * 账户状态的工作单元
+ *
+ * 在一个区块（或一批交易）内读取和修改账户，修改只保存在批内，commit 时按地址排序一次写出；
+ * 批内读取优先返回已修改或已读过的账户，同一账户只从仓储读一次
+ * 非线程安全，一个批次由一个线程使用
+ */
+public class StateBatch implements AutoCloseable {
+    private final IAccountRepo repo;
+    private final Consumer<List<Account>> writer; // 提交：按地址无符号字节序排列的脏账户
+    private final TreeMap<byte[], Account> loaded = new TreeMap<>(Arrays::compareUnsigned);
+    private final TreeMap<byte[], Account> dirty = new TreeMap<>(Arrays::compareUnsigned);
+    private boolean closed;
+
+    public StateBatch(IAccountRepo repo, Consumer<List<Account>> writer) {
+        this.repo = repo;
+        this.writer = writer;
+    }
+
+    /**
+     * 读取账户，返回批内的工作副本，修改后需调用 put；不存在时返回 null
+     */
+    public Account get(byte[] address) {
+        ensureOpen();
+        Account account = dirty.get(address);
+        if (account != null) {
+            return account;
+        }
+        if (loaded.containsKey(address)) {
+            return loaded.get(address);
+        }
+        account = repo.query(address);
+        loaded.put(address.clone(), account);
+        return account;
+    }
+
+    /**
+     * 读取账户，不存在时返回新的外部账户
+     */
+    public Account getOrCreate(byte[] address) {
+        Account account = get(address);
+        return account != null ? account : Account.createEOA(address.clone());
+    }
+
+    /**
+     * 记录修改后的账户，提交时写出
+     */
+    public void put(Account account) {
+        ensureOpen();
+        if (account == null || account.getAddress() == null) {
+            throw new IllegalArgumentException("Account must have a valid address");
+        }
+        byte[] address = account.getAddress().clone();
+        dirty.put(address, account);
+        loaded.remove(address);
+    }
+
+    // 待写出的账户数
+    public int size() {
+        return dirty.size();
+    }
+
+    /**
+     * 一次写出全部修改；提交后批次可以继续使用，之前的修改视为已读入
+     */
+    public void commit() {
+        ensureOpen();
+        if (dirty.isEmpty()) {
+            return;
+        }
+        writer.accept(new ArrayList<>(dirty.values()));
+        loaded.putAll(dirty);
+        dirty.clear();
+    }
+
+    /**
+     * 丢弃未提交的修改
+     */
+    @Override
+    public void close() {
+        closed = true;
+        dirty.clear();
+        loaded.clear();
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("State batch already closed");
+        }
+    }
+}
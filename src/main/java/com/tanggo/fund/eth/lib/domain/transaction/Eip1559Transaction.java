@@ -216,44 +216,119 @@ public class Eip1559Transaction implements Transaction {
         return true;
     }
 
+    /**
+     * 从签名恢复发送者地址，v 为 R 点 y 坐标的奇偶性
+     * 签名无效时返回 null（不缓存）
+     */
     @Override
     public byte[] recoverSender() {
         if (cachedSender != null) {
             return cachedSender;
         }
-
-        // TODO: 实现ECDSA签名恢复
-        // 1. 构造签名消息哈希
-        // 2. 使用v, r, s恢复公钥
-        // 3. 从公钥计算地址
-
-        // 占位实现，实际需要使用ECDSA库
-        return new byte[20];
+        if (v == null || v.signum() < 0 || v.compareTo(BigInteger.ONE) > 0) {
+            return null;
+        }
+        cachedSender = Secp256k1.recoverAddress(getSigningHash(), v.intValue(), r, s);
+        return cachedSender;
     }
 
+    /**
+     * hash = keccak256(encode())
+     */
     @Override
     public byte[] getTransactionHash() {
-        if (cachedHash != null) {
-            return cachedHash;
+        if (cachedHash == null) {
+            cachedHash = Keccak.keccak256(encode());
         }
-
-        // TODO: 实现Keccak256哈希计算
-        // hash = keccak256(0x02 || rlp([chainId, nonce, maxPriorityFeePerGas,
-        //                              maxFeePerGas, gasLimit, to, value, data,
-        //                              accessList, v, r, s]))
-
-        // 占位实现
-        cachedHash = new byte[32];
         return cachedHash;
     }
 
+    /**
+     * 签名的消息哈希 keccak256(0x02 || rlp([chainId, nonce, maxPriorityFeePerGas,
+     *                                     maxFeePerGas, gasLimit, to, value, data, accessList]))
+     */
+    public byte[] getSigningHash() {
+        List<byte[]> fields = unsignedFields();
+        return Keccak.keccak256(Rlp.typed((byte) TransactionType.EIP1559.getTypeId(), Rlp.encodeList(fields)));
+    }
+
+    /**
+     * 编码为 0x02 || rlp([chainId, nonce, maxPriorityFeePerGas,
+     *                    maxFeePerGas, gasLimit, to, value, data,
+     *                    accessList, v, r, s])
+     */
     @Override
     public byte[] encode() {
-        // TODO: 实现RLP编码
-        // 格式：0x02 || rlp([chainId, nonce, maxPriorityFeePerGas,
-        //                    maxFeePerGas, gasLimit, to, value, data,
-        //                    accessList, v, r, s])
-        return new byte[0];
+        List<byte[]> fields = unsignedFields();
+        fields.add(Rlp.encodeInteger(v));
+        fields.add(Rlp.encodeInteger(r));
+        fields.add(Rlp.encodeInteger(s));
+        return Rlp.typed((byte) TransactionType.EIP1559.getTypeId(), Rlp.encodeList(fields));
+    }
+
+    // 签名之前的 9 个字段（各自已 RLP 编码）
+    private List<byte[]> unsignedFields() {
+        List<byte[]> entries = new ArrayList<>(accessList == null ? 0 : accessList.size());
+        if (accessList != null) {
+            for (AccessListEntry entry : accessList) {
+                List<byte[]> keys = new ArrayList<>(entry.getStorageKeys().size());
+                for (byte[] key : entry.getStorageKeys()) {
+                    keys.add(Rlp.encodeString(key));
+                }
+                entries.add(Rlp.encodeList(Rlp.encodeString(entry.getAddress()), Rlp.encodeList(keys)));
+            }
+        }
+        List<byte[]> fields = new ArrayList<>(12);
+        fields.add(Rlp.encodeInteger(chainId));
+        fields.add(Rlp.encodeInteger(nonce));
+        fields.add(Rlp.encodeInteger(maxPriorityFeePerGas));
+        fields.add(Rlp.encodeInteger(maxFeePerGas));
+        fields.add(Rlp.encodeInteger(gasLimit));
+        fields.add(Rlp.encodeString(to));
+        fields.add(Rlp.encodeInteger(value));
+        fields.add(Rlp.encodeString(data));
+        fields.add(Rlp.encodeList(entries));
+        return fields;
+    }
+
+    /**
+     * 从 encode() 的结果解码，不恢复发送者也不计算哈希
+     */
+    public static Eip1559Transaction decode(byte[] encoded) {
+        if (encoded == null || encoded.length < 2 || encoded[0] != TransactionType.EIP1559.getTypeId()) {
+            throw new IllegalArgumentException("Not an EIP-1559 transaction");
+        }
+        List<Object> fields = Rlp.asList(Rlp.decode(encoded, 1, encoded.length - 1));
+        if (fields.size() != 12) {
+            throw new IllegalArgumentException("EIP-1559 transaction must have 12 fields but got " + fields.size());
+        }
+        List<AccessListEntry> accessList = new ArrayList<>();
+        for (Object item : Rlp.asList(fields.get(8))) {
+            List<Object> entry = Rlp.asList(item);
+            if (entry.size() != 2) {
+                throw new IllegalArgumentException("Invalid access list entry");
+            }
+            List<byte[]> keys = new ArrayList<>();
+            for (Object key : Rlp.asList(entry.get(1))) {
+                keys.add(Rlp.asBytes(key));
+            }
+            accessList.add(new AccessListEntry(Rlp.asBytes(entry.get(0)), keys));
+        }
+        byte[] to = Rlp.asBytes(fields.get(5));
+        return Eip1559Transaction.builder()
+                .chainId(Rlp.asInteger(fields.get(0)))
+                .nonce(Rlp.asInteger(fields.get(1)))
+                .maxPriorityFeePerGas(Rlp.asInteger(fields.get(2)))
+                .maxFeePerGas(Rlp.asInteger(fields.get(3)))
+                .gasLimit(Rlp.asInteger(fields.get(4)))
+                .to(to.length == 0 ? null : to)
+                .value(Rlp.asInteger(fields.get(6)))
+                .data(Rlp.asBytes(fields.get(7)))
+                .accessList(accessList)
+                .v(Rlp.asInteger(fields.get(9)))
+                .r(Rlp.asInteger(fields.get(10)))
+                .s(Rlp.asInteger(fields.get(11)))
+                .build();
     }
 
     /**
@@ -0,0 +1,171 @@
+package com.tanggo.fund.eth.lib.domain.transaction;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Keccak-256 哈希（以太坊使用的原始 Keccak，填充为 0x01，不同于 JDK 的 SHA3-256）
+ *
+ * 海绵结构：速率 136 字节，容量 512 位，Keccak-f[1600] 置换 24 轮
+ */
+public final class Keccak {
+    public static final int HASH_LENGTH = 32;
+    private static final int RATE = 136;
+
+    private static final long[] ROUND_CONSTANTS = {
+            0x0000000000000001L, 0x0000000000008082L, 0x800000000000808aL, 0x8000000080008000L,
+            0x000000000000808bL, 0x0000000080000001L, 0x8000000080008081L, 0x8000000000008009L,
+            0x000000000000008aL, 0x0000000000000088L, 0x0000000080008009L, 0x000000008000000aL,
+            0x000000008000808bL, 0x800000000000008bL, 0x8000000000008089L, 0x8000000000008003L,
+            0x8000000000008002L, 0x8000000000000080L, 0x000000000000800aL, 0x800000008000000aL,
+            0x8000000080008081L, 0x8000000000008080L, 0x0000000080000001L, 0x8000000080008008L
+    };
+
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private Keccak() {
+    }
+
+    public static byte[] keccak256(byte[] input) {
+        return keccak256(input, 0, input.length);
+    }
+
+    public static byte[] keccak256(byte[] input, int offset, int length) {
+        long[] state = new long[25];
+        int end = offset + length;
+        // 完整的块直接吸收
+        while (end - offset >= RATE) {
+            absorb(state, input, offset, RATE);
+            permute(state);
+            offset += RATE;
+        }
+        // 最后一块填充：0x01 ... 0x80
+        byte[] last = new byte[RATE];
+        System.arraycopy(input, offset, last, 0, end - offset);
+        last[end - offset] ^= 0x01;
+        last[RATE - 1] ^= (byte) 0x80;
+        absorb(state, last, 0, RATE);
+        permute(state);
+
+        byte[] out = new byte[HASH_LENGTH];
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            out[i] = (byte) (state[i >>> 3] >>> ((i & 7) << 3));
+        }
+        return out;
+    }
+
+    // 小端读入 64 位通道并异或到状态
+    private static void absorb(long[] state, byte[] block, int offset, int length) {
+        for (int lane = 0; lane < length >>> 3; lane++) {
+            state[lane] ^= (long) LONG_LE.get(block, offset + (lane << 3));
+        }
+    }
+
+    // 25 个通道放在局部变量中展开计算，避免数组访问和取模
+    private static void permute(long[] state) {
+        long a00 = state[0], a01 = state[1], a02 = state[2], a03 = state[3], a04 = state[4];
+        long a05 = state[5], a06 = state[6], a07 = state[7], a08 = state[8], a09 = state[9];
+        long a10 = state[10], a11 = state[11], a12 = state[12], a13 = state[13], a14 = state[14];
+        long a15 = state[15], a16 = state[16], a17 = state[17], a18 = state[18], a19 = state[19];
+        long a20 = state[20], a21 = state[21], a22 = state[22], a23 = state[23], a24 = state[24];
+
+        for (int round = 0; round < 24; round++) {
+            // theta
+            long c0 = a00 ^ a05 ^ a10 ^ a15 ^ a20;
+            long c1 = a01 ^ a06 ^ a11 ^ a16 ^ a21;
+            long c2 = a02 ^ a07 ^ a12 ^ a17 ^ a22;
+            long c3 = a03 ^ a08 ^ a13 ^ a18 ^ a23;
+            long c4 = a04 ^ a09 ^ a14 ^ a19 ^ a24;
+
+            long d0 = Long.rotateLeft(c1, 1) ^ c4;
+            long d1 = Long.rotateLeft(c2, 1) ^ c0;
+            long d2 = Long.rotateLeft(c3, 1) ^ c1;
+            long d3 = Long.rotateLeft(c4, 1) ^ c2;
+            long d4 = Long.rotateLeft(c0, 1) ^ c3;
+
+            a00 ^= d0; a05 ^= d0; a10 ^= d0; a15 ^= d0; a20 ^= d0;
+            a01 ^= d1; a06 ^= d1; a11 ^= d1; a16 ^= d1; a21 ^= d1;
+            a02 ^= d2; a07 ^= d2; a12 ^= d2; a17 ^= d2; a22 ^= d2;
+            a03 ^= d3; a08 ^= d3; a13 ^= d3; a18 ^= d3; a23 ^= d3;
+            a04 ^= d4; a09 ^= d4; a14 ^= d4; a19 ^= d4; a24 ^= d4;
+
+            // rho + pi
+            c1 = Long.rotateLeft(a01, 1);
+            a01 = Long.rotateLeft(a06, 44);
+            a06 = Long.rotateLeft(a09, 20);
+            a09 = Long.rotateLeft(a22, 61);
+            a22 = Long.rotateLeft(a14, 39);
+            a14 = Long.rotateLeft(a20, 18);
+            a20 = Long.rotateLeft(a02, 62);
+            a02 = Long.rotateLeft(a12, 43);
+            a12 = Long.rotateLeft(a13, 25);
+            a13 = Long.rotateLeft(a19, 8);
+            a19 = Long.rotateLeft(a23, 56);
+            a23 = Long.rotateLeft(a15, 41);
+            a15 = Long.rotateLeft(a04, 27);
+            a04 = Long.rotateLeft(a24, 14);
+            a24 = Long.rotateLeft(a21, 2);
+            a21 = Long.rotateLeft(a08, 55);
+            a08 = Long.rotateLeft(a16, 45);
+            a16 = Long.rotateLeft(a05, 36);
+            a05 = Long.rotateLeft(a03, 28);
+            a03 = Long.rotateLeft(a18, 21);
+            a18 = Long.rotateLeft(a17, 15);
+            a17 = Long.rotateLeft(a11, 10);
+            a11 = Long.rotateLeft(a07, 6);
+            a07 = Long.rotateLeft(a10, 3);
+            a10 = c1;
+
+            // chi
+            c0 = a00 ^ (~a01 & a02);
+            c1 = a01 ^ (~a02 & a03);
+            a02 ^= ~a03 & a04;
+            a03 ^= ~a04 & a00;
+            a04 ^= ~a00 & a01;
+            a00 = c0;
+            a01 = c1;
+
+            c0 = a05 ^ (~a06 & a07);
+            c1 = a06 ^ (~a07 & a08);
+            a07 ^= ~a08 & a09;
+            a08 ^= ~a09 & a05;
+            a09 ^= ~a05 & a06;
+            a05 = c0;
+            a06 = c1;
+
+            c0 = a10 ^ (~a11 & a12);
+            c1 = a11 ^ (~a12 & a13);
+            a12 ^= ~a13 & a14;
+            a13 ^= ~a14 & a10;
+            a14 ^= ~a10 & a11;
+            a10 = c0;
+            a11 = c1;
+
+            c0 = a15 ^ (~a16 & a17);
+            c1 = a16 ^ (~a17 & a18);
+            a17 ^= ~a18 & a19;
+            a18 ^= ~a19 & a15;
+            a19 ^= ~a15 & a16;
+            a15 = c0;
+            a16 = c1;
+
+            c0 = a20 ^ (~a21 & a22);
+            c1 = a21 ^ (~a22 & a23);
+            a22 ^= ~a23 & a24;
+            a23 ^= ~a24 & a20;
+            a24 ^= ~a20 & a21;
+            a20 = c0;
+            a21 = c1;
+
+            // iota
+            a00 ^= ROUND_CONSTANTS[round];
+        }
+
+        state[0] = a00; state[1] = a01; state[2] = a02; state[3] = a03; state[4] = a04;
+        state[5] = a05; state[6] = a06; state[7] = a07; state[8] = a08; state[9] = a09;
+        state[10] = a10; state[11] = a11; state[12] = a12; state[13] = a13; state[14] = a14;
+        state[15] = a15; state[16] = a16; state[17] = a17; state[18] = a18; state[19] = a19;
+        state[20] = a20; state[21] = a21; state[22] = a22; state[23] = a23; state[24] = a24;
+    }
+}
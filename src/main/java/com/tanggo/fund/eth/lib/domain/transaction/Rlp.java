@@ -0,0 +1,196 @@
+package com.tanggo.fund.eth.lib.domain.transaction;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * RLP（Recursive Length Prefix）编解码
+ *
+ * 字符串编码为字节串，整数编码为去掉前导零的大端字节串（0 编码为空串），
+ * 列表的元素先各自编码再拼接；解码结果为 byte[]（字符串）或 List&lt;Object&gt;（列表）
+ */
+public final class Rlp {
+    private static final int STRING_OFFSET = 0x80;
+    private static final int LIST_OFFSET = 0xc0;
+    private static final int SHORT_LIMIT = 55;
+
+    public static final byte[] EMPTY_STRING = {(byte) STRING_OFFSET};
+    public static final byte[] EMPTY_LIST = {(byte) LIST_OFFSET};
+
+    private Rlp() {
+    }
+
+    // ==================== 编码 ====================
+
+    public static byte[] encodeString(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return EMPTY_STRING;
+        }
+        if (bytes.length == 1 && (bytes[0] & 0xff) < STRING_OFFSET) {
+            return bytes.clone();
+        }
+        byte[] out = new byte[prefixLength(bytes.length) + bytes.length];
+        int offset = writePrefix(out, STRING_OFFSET, bytes.length);
+        System.arraycopy(bytes, 0, out, offset, bytes.length);
+        return out;
+    }
+
+    public static byte[] encodeInteger(BigInteger value) {
+        if (value == null || value.signum() == 0) {
+            return EMPTY_STRING;
+        }
+        if (value.signum() < 0) {
+            throw new IllegalArgumentException("RLP cannot encode negative integer: " + value);
+        }
+        return encodeString(toMinimalBytes(value));
+    }
+
+    public static byte[] encodeLong(long value) {
+        return encodeInteger(BigInteger.valueOf(value));
+    }
+
+    /**
+     * 编码列表，元素为已编码的 RLP 项
+     */
+    public static byte[] encodeList(List<byte[]> encodedItems) {
+        int payload = 0;
+        for (byte[] item : encodedItems) {
+            payload += item.length;
+        }
+        byte[] out = new byte[prefixLength(payload) + payload];
+        int offset = writePrefix(out, LIST_OFFSET, payload);
+        for (byte[] item : encodedItems) {
+            System.arraycopy(item, 0, out, offset, item.length);
+            offset += item.length;
+        }
+        return out;
+    }
+
+    public static byte[] encodeList(byte[]... encodedItems) {
+        return encodeList(Arrays.asList(encodedItems));
+    }
+
+    private static int prefixLength(int length) {
+        return length <= SHORT_LIMIT ? 1 : 1 + lengthOfLength(length);
+    }
+
+    private static int lengthOfLength(int length) {
+        return (Integer.SIZE - Integer.numberOfLeadingZeros(length) + 7) / 8;
+    }
+
+    // 写入前缀，返回载荷起始位置
+    private static int writePrefix(byte[] out, int offset, int length) {
+        if (length <= SHORT_LIMIT) {
+            out[0] = (byte) (offset + length);
+            return 1;
+        }
+        int lengthBytes = lengthOfLength(length);
+        out[0] = (byte) (offset + SHORT_LIMIT + lengthBytes);
+        for (int i = lengthBytes; i > 0; i--) {
+            out[i] = (byte) length;
+            length >>>= 8;
+        }
+        return 1 + lengthBytes;
+    }
+
+    private static byte[] toMinimalBytes(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            return Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return bytes;
+    }
+
+    // ==================== 解码 ====================
+
+    /**
+     * 解码一个完整的 RLP 项，输入中不允许有多余字节
+     * @return byte[]（字符串）或 List&lt;Object&gt;（列表）
+     */
+    public static Object decode(byte[] input) {
+        return decode(input, 0, input.length);
+    }
+
+    public static Object decode(byte[] input, int offset, int length) {
+        int[] cursor = {offset};
+        Object item = decodeItem(input, cursor, offset + length);
+        if (cursor[0] != offset + length) {
+            throw new IllegalArgumentException("Trailing bytes after RLP item at offset " + cursor[0]);
+        }
+        return item;
+    }
+
+    private static Object decodeItem(byte[] input, int[] cursor, int end) {
+        if (cursor[0] >= end) {
+            throw new IllegalArgumentException("Unexpected end of RLP input");
+        }
+        int prefix = input[cursor[0]++] & 0xff;
+        if (prefix < STRING_OFFSET) {
+            return new byte[]{(byte) prefix};
+        }
+        boolean list = prefix >= LIST_OFFSET;
+        int base = list ? LIST_OFFSET : STRING_OFFSET;
+        int length;
+        if (prefix - base <= SHORT_LIMIT) {
+            length = prefix - base;
+        } else {
+            int lengthBytes = prefix - base - SHORT_LIMIT;
+            if (lengthBytes > 4 || cursor[0] + lengthBytes > end) {
+                throw new IllegalArgumentException("Invalid RLP length prefix: " + prefix);
+            }
+            length = 0;
+            for (int i = 0; i < lengthBytes; i++) {
+                length = (length << 8) | (input[cursor[0]++] & 0xff);
+            }
+            if (length < 0) {
+                throw new IllegalArgumentException("RLP length overflow");
+            }
+        }
+        int start = cursor[0];
+        if (length > end - start) {
+            throw new IllegalArgumentException("RLP item exceeds input: " + length);
+        }
+        cursor[0] = start + length;
+        if (!list) {
+            return Arrays.copyOfRange(input, start, start + length);
+        }
+        List<Object> items = new ArrayList<>();
+        int[] inner = {start};
+        while (inner[0] < start + length) {
+            items.add(decodeItem(input, inner, start + length));
+        }
+        return items;
+    }
+
+    // ==================== 解码结果访问 ====================
+
+    public static byte[] asBytes(Object item) {
+        if (item instanceof byte[] bytes) {
+            return bytes;
+        }
+        throw new IllegalArgumentException("Expected RLP string but got list");
+    }
+
+    public static BigInteger asInteger(Object item) {
+        byte[] bytes = asBytes(item);
+        return bytes.length == 0 ? BigInteger.ZERO : new BigInteger(1, bytes);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static List<Object> asList(Object item) {
+        if (item instanceof List<?> list) {
+            return (List<Object>) list;
+        }
+        throw new IllegalArgumentException("Expected RLP list but got string");
+    }
+
+    // 类型化交易编码: type || payload
+    static byte[] typed(byte type, byte[] payload) {
+        byte[] out = new byte[payload.length + 1];
+        out[0] = type;
+        System.arraycopy(payload, 0, out, 1, payload.length);
+        return out;
+    }
+}
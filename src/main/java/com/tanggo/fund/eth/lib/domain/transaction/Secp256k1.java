@@ -0,0 +1,163 @@
+package com.tanggo.fund.eth.lib.domain.transaction;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * secp256k1 签名的公钥恢复（ecrecover），用于从交易签名得到发送者地址
+ *
+ * 曲线 y^2 = x^3 + 7 (mod p)；点运算使用雅可比坐标，只在最后求一次逆，
+ * Q = r^-1 (s·R - e·G) 中的两个标量乘法用 Shamir 技巧合并为一次倍加
+ */
+public final class Secp256k1 {
+    static final BigInteger P = new BigInteger("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEFFFFFC2F", 16);
+    static final BigInteger N = new BigInteger("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEBAAEDCE6AF48A03BBFD25E8CD0364141", 16);
+    private static final BigInteger SQRT_EXPONENT = P.add(BigInteger.ONE).shiftRight(2); // p ≡ 3 (mod 4)
+    private static final BigInteger SEVEN = BigInteger.valueOf(7);
+    private static final Point G = new Point(
+            new BigInteger("79BE667EF9DCBBAC55A06295CE870B07029BFCDB2DCE28D959F2815B16F81798", 16),
+            new BigInteger("483ADA7726A3C4655DA4FBFC0E1108A8FD17B448A68554199C47D08FFB10D4B8", 16),
+            BigInteger.ONE);
+
+    private Secp256k1() {
+    }
+
+    /**
+     * 从消息哈希和签名恢复签名者地址：keccak256(公钥 x || y) 的后 20 字节
+     *
+     * @param hash  32 字节消息哈希
+     * @param recId R 点 y 坐标的奇偶性（0 或 1）
+     * @return 20 字节地址，签名无效时返回 null
+     */
+    public static byte[] recoverAddress(byte[] hash, int recId, BigInteger r, BigInteger s) {
+        BigInteger[] publicKey = recoverPublicKey(hash, recId, r, s);
+        if (publicKey == null) {
+            return null;
+        }
+        byte[] encoded = new byte[64];
+        toFixed(publicKey[0], encoded, 0);
+        toFixed(publicKey[1], encoded, 32);
+        return Arrays.copyOfRange(Keccak.keccak256(encoded), 12, 32);
+    }
+
+    // 公钥的仿射坐标 {x, y}，签名无效时返回 null
+    static BigInteger[] recoverPublicKey(byte[] hash, int recId, BigInteger r, BigInteger s) {
+        if (hash == null || hash.length != Keccak.HASH_LENGTH || (recId != 0 && recId != 1)
+                || r == null || s == null || r.signum() <= 0 || r.compareTo(N) >= 0 || s.signum() <= 0 || s.compareTo(N) >= 0) {
+            return null;
+        }
+        // R 的 x 坐标即 r（r + n 超过 p 的概率可忽略，以太坊签名也只用 0/1 两种 recId）
+        BigInteger alpha = r.pow(3).add(SEVEN).mod(P);
+        BigInteger beta = alpha.modPow(SQRT_EXPONENT, P);
+        if (!beta.multiply(beta).mod(P).equals(alpha)) {
+            return null;
+        }
+        BigInteger y = beta.testBit(0) == (recId == 1) ? beta : P.subtract(beta);
+        Point point = new Point(r, y, BigInteger.ONE);
+
+        BigInteger e = new BigInteger(1, hash).mod(N);
+        BigInteger rInverse = r.modInverse(N);
+        BigInteger u1 = e.negate().multiply(rInverse).mod(N);
+        BigInteger u2 = s.multiply(rInverse).mod(N);
+        return toAffine(multiplyAdd(u1, G, u2, point));
+    }
+
+    // k·G 的仿射坐标（测试中用于构造签名）
+    static BigInteger[] multiplyBase(BigInteger k) {
+        return toAffine(multiplyAdd(k, G, BigInteger.ZERO, G));
+    }
+
+    // a·A + b·B，按位从高到低同时处理两个标量
+    private static Point multiplyAdd(BigInteger a, Point pa, BigInteger b, Point pb) {
+        Point both = add(pa, pb);
+        Point result = null;
+        for (int i = Math.max(a.bitLength(), b.bitLength()) - 1; i >= 0; i--) {
+            result = doubled(result);
+            boolean bitA = a.testBit(i);
+            boolean bitB = b.testBit(i);
+            if (bitA && bitB) {
+                result = add(result, both);
+            } else if (bitA) {
+                result = add(result, pa);
+            } else if (bitB) {
+                result = add(result, pb);
+            }
+        }
+        return result;
+    }
+
+    private static BigInteger[] toAffine(Point point) {
+        if (point == null) {
+            return null;
+        }
+        BigInteger zInverse = point.z.modInverse(P);
+        BigInteger zInverse2 = zInverse.multiply(zInverse).mod(P);
+        return new BigInteger[]{
+                point.x.multiply(zInverse2).mod(P),
+                point.y.multiply(zInverse2).multiply(zInverse).mod(P)};
+    }
+
+    // 雅可比坐标倍点（a = 0），null 表示无穷远点
+    private static Point doubled(Point point) {
+        if (point == null || point.y.signum() == 0) {
+            return null;
+        }
+        BigInteger a = point.x.multiply(point.x).mod(P);
+        BigInteger b = point.y.multiply(point.y).mod(P);
+        BigInteger c = b.multiply(b).mod(P);
+        BigInteger d = point.x.add(b).pow(2).subtract(a).subtract(c).shiftLeft(1).mod(P);
+        BigInteger e = a.multiply(BigInteger.valueOf(3)).mod(P);
+        BigInteger x = e.multiply(e).subtract(d.shiftLeft(1)).mod(P);
+        BigInteger y = e.multiply(d.subtract(x)).subtract(c.shiftLeft(3)).mod(P);
+        BigInteger z = point.y.multiply(point.z).shiftLeft(1).mod(P);
+        return new Point(x, y, z);
+    }
+
+    // 雅可比坐标点加
+    private static Point add(Point p1, Point p2) {
+        if (p1 == null) {
+            return p2;
+        }
+        if (p2 == null) {
+            return p1;
+        }
+        BigInteger z1z1 = p1.z.multiply(p1.z).mod(P);
+        BigInteger z2z2 = p2.z.multiply(p2.z).mod(P);
+        BigInteger u1 = p1.x.multiply(z2z2).mod(P);
+        BigInteger u2 = p2.x.multiply(z1z1).mod(P);
+        BigInteger s1 = p1.y.multiply(p2.z).multiply(z2z2).mod(P);
+        BigInteger s2 = p2.y.multiply(p1.z).multiply(z1z1).mod(P);
+        BigInteger h = u2.subtract(u1).mod(P);
+        BigInteger r = s2.subtract(s1).mod(P);
+        if (h.signum() == 0) {
+            return r.signum() == 0 ? doubled(p1) : null;
+        }
+        BigInteger hh = h.multiply(h).mod(P);
+        BigInteger hhh = h.multiply(hh).mod(P);
+        BigInteger v = u1.multiply(hh).mod(P);
+        BigInteger x = r.multiply(r).subtract(hhh).subtract(v.shiftLeft(1)).mod(P);
+        BigInteger y = r.multiply(v.subtract(x)).subtract(s1.multiply(hhh)).mod(P);
+        BigInteger z = p1.z.multiply(p2.z).multiply(h).mod(P);
+        return new Point(x, y, z);
+    }
+
+    // 大端无符号定长写入 32 字节
+    private static void toFixed(BigInteger value, byte[] out, int offset) {
+        byte[] bytes = value.toByteArray();
+        int start = bytes.length > 32 ? bytes.length - 32 : 0;
+        int length = bytes.length - start;
+        System.arraycopy(bytes, start, out, offset + 32 - length, length);
+    }
+
+    private static final class Point {
+        final BigInteger x;
+        final BigInteger y;
+        final BigInteger z;
+
+        Point(BigInteger x, BigInteger y, BigInteger z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+    }
+}
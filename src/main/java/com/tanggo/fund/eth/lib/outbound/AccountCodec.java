@@ -0,0 +1,186 @@
+package com.tanggo.fund.eth.lib.outbound;
+
+import com.tanggo.fund.eth.lib.domain.Account;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * 账户的定长二进制编码
+ *
+ * 键: 20 字节地址
+ * 值: [nonce(u64)][balance(32字节大端)][storageRoot(32字节)][codeHash(32字节)]，共 104 字节，全零的哈希表示未设置
+ *
+ * 编码使用线程本地的直接缓冲区，每次调用覆盖上一次的内容，调用方须在下一次编码前用完（LMDB put 会复制数据）
+ */
+final class AccountCodec {
+    static final int KEY_SIZE = 20;
+    static final int NONCE_OFFSET = 0;
+    static final int BALANCE_OFFSET = 8;
+    static final int STORAGE_ROOT_OFFSET = 40;
+    static final int CODE_HASH_OFFSET = 72;
+    static final int VALUE_SIZE = 104;
+    private static final int HASH_SIZE = 32;
+
+    private static final ThreadLocal<ByteBuffer> KEY = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(KEY_SIZE));
+    private static final ThreadLocal<ByteBuffer> VALUE = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(VALUE_SIZE));
+
+    private AccountCodec() {
+    }
+
+    // ==================== 键 ====================
+
+    static ByteBuffer key(byte[] address) {
+        if (address == null || address.length != KEY_SIZE) {
+            throw new IllegalArgumentException("Account address must be 20 bytes");
+        }
+        ByteBuffer key = KEY.get();
+        key.clear();
+        key.put(address).flip();
+        return key;
+    }
+
+    /**
+     * 把 40 位十六进制地址（可带 0x 前缀）直接解析到键缓冲区，格式不对时返回 null
+     */
+    static ByteBuffer key(String addressHex) {
+        if (addressHex == null) {
+            return null;
+        }
+        int start = addressHex.startsWith("0x") || addressHex.startsWith("0X") ? 2 : 0;
+        if (addressHex.length() - start != KEY_SIZE * 2) {
+            return null;
+        }
+        ByteBuffer key = KEY.get();
+        key.clear();
+        for (int i = start; i < addressHex.length(); i += 2) {
+            int hi = Character.digit(addressHex.charAt(i), 16);
+            int lo = Character.digit(addressHex.charAt(i + 1), 16);
+            if (hi < 0 || lo < 0) {
+                return null;
+            }
+            key.put((byte) ((hi << 4) | lo));
+        }
+        return key.flip();
+    }
+
+    // ==================== 值 ====================
+
+    static ByteBuffer value(Account account) {
+        ByteBuffer value = VALUE.get();
+        value.clear();
+        value.putLong(NONCE_OFFSET, nonceOf(account.getNonce()));
+        putBalance(value, account.getBalance());
+        putHash(value, STORAGE_ROOT_OFFSET, account.getStorageRoot());
+        putHash(value, CODE_HASH_OFFSET, account.getCodeHash());
+        return value.limit(VALUE_SIZE);
+    }
+
+    private static long nonceOf(BigInteger nonce) {
+        if (nonce == null) {
+            return 0;
+        }
+        if (nonce.signum() < 0 || nonce.bitLength() > Long.SIZE) {
+            throw new IllegalArgumentException("Account nonce out of u64 range: " + nonce);
+        }
+        return nonce.longValue();
+    }
+
+    // 余额能用 long 表示时（绝大多数账户）直接写入低 8 字节，不做 toByteArray
+    private static void putBalance(ByteBuffer value, BigInteger balance) {
+        if (balance == null || balance.bitLength() < Long.SIZE) {
+            if (balance != null && balance.signum() < 0) {
+                throw new IllegalArgumentException("Account balance must be non-negative: " + balance);
+            }
+            value.putLong(BALANCE_OFFSET, 0).putLong(BALANCE_OFFSET + 8, 0).putLong(BALANCE_OFFSET + 16, 0);
+            value.putLong(BALANCE_OFFSET + 24, balance == null ? 0 : balance.longValue());
+            return;
+        }
+        if (balance.signum() < 0 || balance.bitLength() > HASH_SIZE * 8) {
+            throw new IllegalArgumentException("Account balance out of u256 range: " + balance);
+        }
+        byte[] bytes = balance.toByteArray();
+        int length = Math.min(bytes.length, HASH_SIZE); // 去掉符号位带来的前导零
+        int pad = HASH_SIZE - length;
+        for (int i = 0; i < pad; i++) {
+            value.put(BALANCE_OFFSET + i, (byte) 0);
+        }
+        value.put(BALANCE_OFFSET + pad, bytes, bytes.length - length, length);
+    }
+
+    private static void putHash(ByteBuffer value, int offset, byte[] hash) {
+        if (hash == null) {
+            for (int i = 0; i < HASH_SIZE; i += 8) {
+                value.putLong(offset + i, 0);
+            }
+            return;
+        }
+        if (hash.length != HASH_SIZE) {
+            throw new IllegalArgumentException("Account hash must be 32 bytes");
+        }
+        value.put(offset, hash);
+    }
+
+    // ==================== 解码 ====================
+
+    static long nonce(ByteBuffer value) {
+        return value.getLong(value.position() + NONCE_OFFSET);
+    }
+
+    /**
+     * 余额小于 2^63 时返回其值，否则返回 -1
+     */
+    static long balanceIfLong(ByteBuffer value) {
+        int base = value.position() + BALANCE_OFFSET;
+        if ((value.getLong(base) | value.getLong(base + 8) | value.getLong(base + 16)) != 0) {
+            return -1;
+        }
+        long low = value.getLong(base + 24);
+        return low >= 0 ? low : -1;
+    }
+
+    static BigInteger balance(ByteBuffer value) {
+        long small = balanceIfLong(value);
+        if (small >= 0) {
+            return BigInteger.valueOf(small);
+        }
+        byte[] bytes = new byte[HASH_SIZE];
+        value.get(value.position() + BALANCE_OFFSET, bytes);
+        return new BigInteger(1, bytes);
+    }
+
+    // 全零表示未设置，返回 null
+    static byte[] hash(ByteBuffer value, int offset) {
+        int base = value.position() + offset;
+        if ((value.getLong(base) | value.getLong(base + 8) | value.getLong(base + 16) | value.getLong(base + 24)) == 0) {
+            return null;
+        }
+        byte[] hash = new byte[HASH_SIZE];
+        value.get(base, hash);
+        return hash;
+    }
+
+    // 代码哈希未设置或为空代码的哈希（外部账户），逐字节比较不复制
+    static boolean isEmptyCode(ByteBuffer value) {
+        int base = value.position() + CODE_HASH_OFFSET;
+        boolean zero = true;
+        boolean empty = true;
+        for (int i = 0; i < HASH_SIZE; i++) {
+            byte b = value.get(base + i);
+            zero &= b == 0;
+            empty &= b == Account.EMPTY_CODE_HASH[i];
+        }
+        return zero || empty;
+    }
+
+    static Account decode(byte[] address, ByteBuffer value) {
+        long nonce = nonce(value);
+        return Account.builder()
+                .address(address)
+                .nonce(nonce >= 0 ? BigInteger.valueOf(nonce) : new BigInteger(Long.toUnsignedString(nonce)))
+                .balance(balance(value))
+                .storageRoot(hash(value, STORAGE_ROOT_OFFSET))
+                .codeHash(hash(value, CODE_HASH_OFFSET))
+                .build();
+    }
+}
@@ -1,13 +1,18 @@
 package com.tanggo.fund.eth.lib.outbound;
 
 import com.tanggo.fund.eth.lib.domain.Account;
+import com.tanggo.fund.eth.lib.domain.AccountState;
 import com.tanggo.fund.eth.lib.domain.repo.IAccountRepo;
+import com.tanggo.fund.eth.lib.domain.repo.StateBatch;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.lmdbjava.CursorIterable;
 import org.lmdbjava.Dbi;
 import org.lmdbjava.DbiFlags;
 import org.lmdbjava.Env;
+import org.lmdbjava.EnvFlags;
+import org.lmdbjava.KeyRange;
 import org.lmdbjava.Txn;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
@@ -15,19 +20,65 @@ import org.springframework.stereotype.Repository;
 import java.io.File;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.lmdbjava.EnvFlags.MDB_NOSYNC;
 import static org.lmdbjava.EnvFlags.MDB_NOTLS;
 
 /**
  * Account仓储实现 - 使用MDBX（LMDB）作为持久化存储
  * MDBX是一个高性能、轻量级的嵌入式键值存储库
+ *
+ * 键为 20 字节地址，值为定长 104 字节（格式见 AccountCodec）；
+ * 键值使用线程本地的直接缓冲区，读取时用 AccountView 直接解码映射内存中的字段
+ * 区块执行通过 beginBatch 收集修改，一个写事务按地址顺序写出；可选 MDB_NOSYNC，由后台线程定期 env.sync
+ *
+ * 同一个环境中还保存账户状态树（StateTrie）的节点和当前 stateRoot：
+ * 每次写入在同一个写事务内更新状态树，只重新哈希修改过的路径，新节点与账户一起提交
+ *
+ * 状态树节点按引用计数回收（trie_refs 库）：计数为父节点的哈希引用数加上当前根的一次引用，
+ * 根切换时旧根减一，计数归零的节点连同其子节点的引用一起在同一个写事务内删除，
+ * 节点库只保留当前根可达的节点，大小随账户数而不是提交次数增长；不保留历史状态根
+ * 没有计数的旧节点（引入回收之前写入的）视为常驻，不会被删除
  */
 @Slf4j
 //@Repository
-public class AccountRepo implements IAccountRepo {
+public class AccountRepo implements IAccountRepo, TrieNodeStore {
+
+    // 旧格式（十六进制字符串键、变长值）的数据不兼容，使用新的库名
+    private static final String DB_NAME = "accounts_v2";
+    private static final String TRIE_DB_NAME = "trie_nodes";
+    private static final String META_DB_NAME = "state_meta";
+    private static final String REFS_DB_NAME = "trie_refs";
+    private static final byte[] STATE_ROOT_KEY = "stateRoot".getBytes(StandardCharsets.US_ASCII);
+    private static final int REBUILD_CHUNK = 100_000; // 重建状态树时每处理这么多账户提交一次节点
+    private static final ThreadLocal<AccountView> VIEW = ThreadLocal.withInitial(AccountView::new);
+    private static final ThreadLocal<ByteBuffer> NODE_KEY = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(32));
 
     private Env<ByteBuffer> env;
     private Dbi<ByteBuffer> db;
+    private Dbi<ByteBuffer> trieDb;
+    private Dbi<ByteBuffer> metaDb;
+    private Dbi<ByteBuffer> refsDb;
+
+    // 状态树及写入用的缓冲区，持有 stateLock 访问
+    private final Object stateLock = new Object();
+    private StateTrie stateTrie;
+    private final ByteBuffer stateRootKey = ByteBuffer.allocateDirect(STATE_ROOT_KEY.length).put(STATE_ROOT_KEY).flip();
+    private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(1024);
+    private final ByteBuffer refKey = ByteBuffer.allocateDirect(32);
+    private final ByteBuffer refCount = ByteBuffer.allocateDirect(Integer.BYTES);
+    private volatile byte[] stateRoot = MerklePatriciaTrie.EMPTY_ROOT;
 
     @Value("${mdbx.path:./data/accounts}")
     private String dbPath;
@@ -35,6 +86,20 @@ public class AccountRepo implements IAccountRepo {
     @Value("${mdbx.size:100MB}")
     private long dbSize = 100 * 1024 * 1024; // 100MB
 
+    // 提交时不刷盘（MDB_NOSYNC），由后台线程按 syncIntervalMillis 调用 env.sync；
+    // 掉电时可能丢失最近的提交甚至损坏数据库，适用于状态可以从区块重放恢复的节点
+    @Value("${mdbx.no-sync:false}")
+    private boolean noSync;
+
+    @Value("${mdbx.sync-interval-ms:1000}")
+    private long syncIntervalMillis = 1000;
+
+    // 状态树节点缓存的容量（节点数）
+    @Value("${mdbx.trie-cache-size:200000}")
+    private int trieCacheSize = 200_000;
+
+    private ScheduledExecutorService syncer;
+
     /**
      * 初始化MDBX环境和数据库
      */
@@ -52,12 +117,25 @@ public class AccountRepo implements IAccountRepo {
             // 创建LMDB环境
             env = Env.create()
                     .setMapSize(dbSize)
-                    .setMaxDbs(1)
+                    .setMaxDbs(4)
                     .setMaxReaders(126)
-                    .open(dbFile, MDB_NOTLS);
+                    .open(dbFile, noSync ? new EnvFlags[]{MDB_NOTLS, MDB_NOSYNC} : new EnvFlags[]{MDB_NOTLS});
 
             // 打开数据库
-            db = env.openDbi("accounts", DbiFlags.MDB_CREATE);
+            db = env.openDbi(DB_NAME, DbiFlags.MDB_CREATE);
+            trieDb = env.openDbi(TRIE_DB_NAME, DbiFlags.MDB_CREATE);
+            metaDb = env.openDbi(META_DB_NAME, DbiFlags.MDB_CREATE);
+            refsDb = env.openDbi(REFS_DB_NAME, DbiFlags.MDB_CREATE);
+            loadStateTrie();
+
+            if (noSync) {
+                syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "mdbx-sync");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                syncer.scheduleWithFixedDelay(this::sync, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+            }
 
             log.info("MDBX initialized successfully at: {}", dbPath);
         } catch (Exception e) {
@@ -71,9 +149,24 @@ public class AccountRepo implements IAccountRepo {
      */
     @PreDestroy
     public void close() {
+        if (syncer != null) {
+            syncer.shutdownNow();
+        }
+        if (env != null && noSync) {
+            env.sync(true);
+        }
         if (db != null) {
             db.close();
         }
+        if (trieDb != null) {
+            trieDb.close();
+        }
+        if (metaDb != null) {
+            metaDb.close();
+        }
+        if (refsDb != null) {
+            refsDb.close();
+        }
         if (env != null) {
             env.close();
         }
@@ -82,31 +175,74 @@ public class AccountRepo implements IAccountRepo {
 
     /**
      * 查询账户
-     * @param address 账户地址
+     * @param address 账户地址（40 位十六进制，可带 0x 前缀）
      * @return Account对象，如果不存在则返回null
      */
     @Override
     public Account query(String address) {
-        if (address == null || address.isEmpty()) {
+        ByteBuffer key = AccountCodec.key(address);
+        if (key == null) {
             return null;
         }
+        return get(key);
+    }
 
-        try (Txn<ByteBuffer> txn = env.txnRead()) {
-            ByteBuffer key = ByteBuffer.allocateDirect(address.getBytes(StandardCharsets.UTF_8).length);
-            key.put(address.getBytes(StandardCharsets.UTF_8)).flip();
+    /**
+     * 把已提交但尚未落盘的事务刷到磁盘（MDB_NOSYNC 时由后台线程定期调用）
+     */
+    public void sync() {
+        try {
+            env.sync(true);
+        } catch (Exception e) {
+            log.error("Failed to sync MDBX", e);
+        }
+    }
+
+    /**
+     * 查询账户
+     * @param address 20 字节地址
+     * @return Account对象，如果不存在则返回null
+     */
+    @Override
+    public Account query(byte[] address) {
+        if (address == null || address.length != AccountCodec.KEY_SIZE) {
+            return null;
+        }
+        return get(AccountCodec.key(address));
+    }
 
+    private Account get(ByteBuffer key) {
+        try (Txn<ByteBuffer> txn = env.txnRead()) {
             ByteBuffer value = db.get(txn, key);
             if (value == null) {
-                log.debug("Account not found: {}", address);
                 return null;
             }
-
-            Account account = deserialize(value);
-            log.debug("Account queried: {} -> nonce={}, balance={}", address, account.getNonce(), account.getBalance());
-            return account;
+            return VIEW.get().wrap(key, value).toAccount();
         } catch (Exception e) {
-            log.error("Failed to query account: {}", address, e);
+            log.error("Failed to query account", e);
             return null;
+        } finally {
+            VIEW.get().clear();
+        }
+    }
+
+    /**
+     * 在读事务内用只读视图读取账户，字段直接从 LMDB 映射内存按需解码，不创建 Account 对象
+     * 视图只在回调内有效，回调内不要再读取其它账户（会覆盖线程本地的键和视图）；账户不存在时回调收到 null
+     * @param address 20 字节地址
+     */
+    @Override
+    public <R> R read(byte[] address, Function<AccountState, R> reader) {
+        if (address == null || address.length != AccountCodec.KEY_SIZE) {
+            return reader.apply(null);
+        }
+        ByteBuffer key = AccountCodec.key(address);
+        AccountView view = VIEW.get();
+        try (Txn<ByteBuffer> txn = env.txnRead()) {
+            ByteBuffer value = db.get(txn, key);
+            return reader.apply(value == null ? null : view.wrap(key, value));
+        } finally {
+            view.clear();
         }
     }
 
@@ -123,113 +259,236 @@ public class AccountRepo implements IAccountRepo {
         }
 
         byte[] address = account.getAddress();
-        if (address == null || address.length == 0) {
-            log.error("Account address is null or empty, cannot save to MDBX");
+        if (address == null || address.length != AccountCodec.KEY_SIZE) {
+            log.error("Account address is null or not 20 bytes, cannot save to MDBX");
             throw new IllegalArgumentException("Account must have a valid address");
         }
-
-        String addressHex = account.getAddressHex();
-        update(addressHex, account);
+        writeAll(List.of(account));
     }
 
     /**
      * 更新（保存）账户到MDBX
-     * @param address 账户地址
+     * @param address 账户地址（40 位十六进制，可带 0x 前缀）
      * @param account Account对象
      */
     public void update(String address, Account account) {
-        if (address == null || address.isEmpty() || account == null) {
+        ByteBuffer key = AccountCodec.key(address);
+        if (key == null || account == null) {
             log.warn("Invalid parameters for update: address={}, account={}", address, account);
             return;
         }
+        // 以参数中的地址为准
+        byte[] bytes = new byte[AccountCodec.KEY_SIZE];
+        key.get(key.position(), bytes);
+        Account keyed = account.copy();
+        keyed.setAddress(bytes);
+        writeAll(List.of(keyed));
+    }
 
-        try (Txn<ByteBuffer> txn = env.txnWrite()) {
-            ByteBuffer key = ByteBuffer.allocateDirect(address.getBytes(StandardCharsets.UTF_8).length);
-            key.put(address.getBytes(StandardCharsets.UTF_8)).flip();
-
-            ByteBuffer value = serialize(account);
-            db.put(txn, key, value);
+    /**
+     * 开始一个状态批次，提交时在一个写事务内按地址顺序写出全部修改
+     */
+    @Override
+    public StateBatch beginBatch() {
+        return new StateBatch(this, this::writeAll);
+    }
 
-            txn.commit();
-            log.debug("Account saved to MDBX: {} -> nonce={}, balance={}", address, account.getNonce(), account.getBalance());
-        } catch (Exception e) {
-            log.error("Failed to update account: {}", address, e);
-            throw new RuntimeException("Failed to save account to MDBX", e);
+    // 调用方保证按地址排序，相邻的键落在同一批 B+ 树页上；状态树的新节点和 stateRoot 在同一个写事务内提交
+    private void writeAll(List<Account> accounts) {
+        synchronized (stateLock) {
+            try (Txn<ByteBuffer> txn = env.txnWrite()) {
+                for (Account account : accounts) {
+                    db.put(txn, AccountCodec.key(account.getAddress()), AccountCodec.value(account));
+                    stateTrie.update(account);
+                }
+                byte[] root = stateTrie.commit(nodes -> writeNodes(txn, nodes));
+                switchRoot(txn, root);
+                txn.commit();
+                stateRoot = root;
+                if (log.isDebugEnabled()) {
+                    log.debug("Account batch committed to MDBX: {} accounts, stateRoot={}", accounts.size(), HexFormat.of().formatHex(root));
+                }
+            } catch (Exception e) {
+                // 状态树回到最近一次落盘的根
+                stateTrie = new StateTrie(this, stateRoot, trieCacheSize);
+                log.error("Failed to commit account batch of {} accounts", accounts.size(), e);
+                throw new RuntimeException("Failed to commit account batch to MDBX", e);
+            }
         }
     }
 
+    // ==================== 状态树 ====================
+
     /**
-     * 序列化Account对象为ByteBuffer
-     * 格式: [address(20字节)][nonce长度(4字节)][nonce][balance长度(4字节)][balance]
-     *       [storageRoot(32字节)][codeHash(32字节)]
+     * 最近一次提交后的状态根（区块头的 stateRoot）
      */
-    private ByteBuffer serialize(Account account) {
-        byte[] addressBytes = account.getAddress() != null ? account.getAddress() : new byte[20];
-        byte[] nonceBytes = account.getNonce() != null ? account.getNonce().toByteArray() : new byte[0];
-        byte[] balanceBytes = account.getBalance() != null ? account.getBalance().toByteArray() : new byte[0];
-        byte[] storageRoot = account.getStorageRoot() != null ? account.getStorageRoot() : new byte[32];
-        byte[] codeHash = account.getCodeHash() != null ? account.getCodeHash() : new byte[32];
+    public byte[] stateRoot() {
+        return stateRoot.clone();
+    }
+
+    @Override
+    public byte[] get(byte[] hash) {
+        ByteBuffer key = NODE_KEY.get();
+        key.clear();
+        key.put(hash).flip();
+        try (Txn<ByteBuffer> txn = env.txnRead()) {
+            ByteBuffer value = trieDb.get(txn, key);
+            if (value == null) {
+                return null;
+            }
+            byte[] encoded = new byte[value.remaining()];
+            value.get(encoded);
+            return encoded;
+        }
+    }
+
+    @Override
+    public void putAll(SortedMap<byte[], byte[]> nodes) {
+        synchronized (stateLock) {
+            try (Txn<ByteBuffer> txn = env.txnWrite()) {
+                writeNodes(txn, nodes);
+                txn.commit();
+            } catch (Exception e) {
+                log.error("Failed to write {} trie nodes", nodes.size(), e);
+                throw new RuntimeException("Failed to write trie nodes to MDBX", e);
+            }
+        }
+    }
+
+    // 持有 stateLock；已存在的节点（内容相同即哈希相同）不重复写入，新节点计数从 0 开始并为其子节点各加一次引用
+    private void writeNodes(Txn<ByteBuffer> txn, SortedMap<byte[], byte[]> nodes) {
+        ByteBuffer key = NODE_KEY.get();
+        List<byte[]> added = new ArrayList<>();
+        for (Map.Entry<byte[], byte[]> node : nodes.entrySet()) {
+            key.clear();
+            key.put(node.getKey()).flip();
+            if (trieDb.get(txn, key) != null) {
+                continue;
+            }
+            trieDb.put(txn, key, buffer(node.getValue()));
+            putRefCount(txn, node.getKey(), 0);
+            added.add(node.getValue());
+        }
+        for (byte[] encoded : added) {
+            for (byte[] child : MerklePatriciaTrie.childHashes(encoded)) {
+                retain(txn, child);
+            }
+        }
+    }
+
+    // 持有 stateLock；新根加一次引用后再释放旧根，两者相同时计数不变
+    private void switchRoot(Txn<ByteBuffer> txn, byte[] root) {
+        if (!Arrays.equals(root, MerklePatriciaTrie.EMPTY_ROOT)) {
+            retain(txn, root);
+        }
+        if (!Arrays.equals(stateRoot, MerklePatriciaTrie.EMPTY_ROOT)) {
+            release(txn, stateRoot);
+        }
+        metaDb.put(txn, stateRootKey, buffer(root));
+    }
 
-        int bufferSize = 20 + 4 + nonceBytes.length + 4 + balanceBytes.length + 32 + 32;
-        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+    private void retain(Txn<ByteBuffer> txn, byte[] hash) {
+        int count = refCount(txn, hash);
+        if (count >= 0) {
+            putRefCount(txn, hash, count + 1);
+        }
+    }
 
-        // 写入address (固定20字节)
-        buffer.put(addressBytes);
+    // 计数归零的节点删除后继续释放它引用的子节点（用栈代替递归）
+    private void release(Txn<ByteBuffer> txn, byte[] hash) {
+        ByteBuffer key = NODE_KEY.get();
+        ArrayDeque<byte[]> pending = new ArrayDeque<>();
+        pending.push(hash);
+        while (!pending.isEmpty()) {
+            byte[] node = pending.pop();
+            int count = refCount(txn, node);
+            if (count < 0) {
+                continue;
+            }
+            if (count > 1) {
+                putRefCount(txn, node, count - 1);
+                continue;
+            }
+            key.clear();
+            key.put(node).flip();
+            ByteBuffer value = trieDb.get(txn, key);
+            if (value != null) {
+                byte[] encoded = new byte[value.remaining()];
+                value.get(encoded);
+                trieDb.delete(txn, key);
+                MerklePatriciaTrie.childHashes(encoded).forEach(pending::push);
+            }
+            refsDb.delete(txn, refKey(node));
+        }
+    }
 
-        // 写入nonce
-        buffer.putInt(nonceBytes.length);
-        buffer.put(nonceBytes);
+    // 节点的引用计数，没有计数（常驻的旧节点）时返回 -1
+    private int refCount(Txn<ByteBuffer> txn, byte[] hash) {
+        ByteBuffer value = refsDb.get(txn, refKey(hash));
+        return value == null ? -1 : value.getInt(value.position());
+    }
 
-        // 写入balance
-        buffer.putInt(balanceBytes.length);
-        buffer.put(balanceBytes);
+    private void putRefCount(Txn<ByteBuffer> txn, byte[] hash, int count) {
+        refCount.clear();
+        refCount.putInt(count).flip();
+        refsDb.put(txn, refKey(hash), refCount);
+    }
 
-        // 写入storageRoot (固定32字节)
-        buffer.put(storageRoot);
+    private ByteBuffer refKey(byte[] hash) {
+        refKey.clear();
+        return refKey.put(hash).flip();
+    }
 
-        // 写入codeHash (固定32字节)
-        buffer.put(codeHash);
+    // 把数据复制到复用的直接缓冲区（持有 stateLock，LMDB put 会复制数据）
+    private ByteBuffer buffer(byte[] bytes) {
+        if (writeBuffer.capacity() < bytes.length) {
+            writeBuffer = ByteBuffer.allocateDirect(Math.max(bytes.length, writeBuffer.capacity() * 2));
+        }
+        writeBuffer.clear();
+        return writeBuffer.put(bytes).flip();
+    }
 
-        buffer.flip();
-        return buffer;
+    // 读取保存的 stateRoot；旧数据库还没有状态树时从全部账户重建一次
+    private void loadStateTrie() {
+        synchronized (stateLock) {
+            byte[] root = null;
+            try (Txn<ByteBuffer> txn = env.txnRead()) {
+                ByteBuffer value = metaDb.get(txn, stateRootKey);
+                if (value != null) {
+                    root = new byte[value.remaining()];
+                    value.get(root);
+                }
+            }
+            if (root != null) {
+                stateTrie = new StateTrie(this, root, trieCacheSize);
+                stateRoot = root;
+                return;
+            }
+            stateTrie = new StateTrie(this, null, trieCacheSize);
+            int count = 0;
+            try (Txn<ByteBuffer> read = env.txnRead();
+                 CursorIterable<ByteBuffer> accounts = db.iterate(read, KeyRange.all())) {
+                for (CursorIterable.KeyVal<ByteBuffer> entry : accounts) {
+                    byte[] address = new byte[AccountCodec.KEY_SIZE];
+                    entry.key().duplicate().get(address);
+                    stateTrie.update(AccountCodec.decode(address, entry.val()));
+                    if (++count % REBUILD_CHUNK == 0) {
+                        persistStateTrie();
+                    }
+                }
+            }
+            persistStateTrie();
+            log.info("State trie built from {} accounts, stateRoot={}", count, HexFormat.of().formatHex(stateRoot));
+        }
     }
 
-    /**
-     * 反序列化ByteBuffer为Account对象
-     */
-    private Account deserialize(ByteBuffer buffer) {
-        // 读取address (20字节)
-        byte[] addressBytes = new byte[20];
-        buffer.get(addressBytes);
-
-        // 读取nonce
-        int nonceLen = buffer.getInt();
-        byte[] nonceBytes = new byte[nonceLen];
-        if (nonceLen > 0) {
-            buffer.get(nonceBytes);
-        }
-
-        // 读取balance
-        int balanceLen = buffer.getInt();
-        byte[] balanceBytes = new byte[balanceLen];
-        if (balanceLen > 0) {
-            buffer.get(balanceBytes);
-        }
-
-        // 读取storageRoot (32字节)
-        byte[] storageRoot = new byte[32];
-        buffer.get(storageRoot);
-
-        // 读取codeHash (32字节)
-        byte[] codeHash = new byte[32];
-        buffer.get(codeHash);
-
-        return Account.builder()
-                .address(addressBytes)
-                .nonce(nonceLen > 0 ? new java.math.BigInteger(nonceBytes) : java.math.BigInteger.ZERO)
-                .balance(balanceLen > 0 ? new java.math.BigInteger(balanceBytes) : java.math.BigInteger.ZERO)
-                .storageRoot(storageRoot)
-                .codeHash(codeHash)
-                .build();
+    // 持有 stateLock
+    private void persistStateTrie() {
+        try (Txn<ByteBuffer> txn = env.txnWrite()) {
+            byte[] root = stateTrie.commit(nodes -> writeNodes(txn, nodes));
+            switchRoot(txn, root);
+            txn.commit();
+            stateRoot = root;
+        }
     }
 }
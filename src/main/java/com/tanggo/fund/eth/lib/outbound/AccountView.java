@@ -0,0 +1,75 @@
+package com.tanggo.fund.eth.lib.outbound;
+
+import com.tanggo.fund.eth.lib.domain.Account;
+import com.tanggo.fund.eth.lib.domain.AccountState;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 账户的只读视图（flyweight）
+ * 直接指向 LMDB 映射内存中的账户值（格式见 AccountCodec），字段在读取时才解码；
+ * 只在 AccountRepo.read 的回调内有效，需要保留时调用 toAccount 复制出来
+ */
+public final class AccountView implements AccountState {
+    private ByteBuffer key;
+    private ByteBuffer value;
+
+    AccountView wrap(ByteBuffer key, ByteBuffer value) {
+        if (value.remaining() != AccountCodec.VALUE_SIZE) {
+            throw new IllegalStateException("Unexpected account record size: " + value.remaining());
+        }
+        this.key = key;
+        this.value = value.order(ByteOrder.BIG_ENDIAN);
+        return this;
+    }
+
+    void clear() {
+        this.key = null;
+        this.value = null;
+    }
+
+    public long getNonce() {
+        return AccountCodec.nonce(value);
+    }
+
+    @Override
+    public boolean nonceEquals(BigInteger nonce) {
+        return nonce != null && nonce.signum() >= 0 && nonce.bitLength() <= Long.SIZE && nonce.longValue() == getNonce();
+    }
+
+    @Override
+    public BigInteger getBalance() {
+        return AccountCodec.balance(value);
+    }
+
+    /**
+     * 余额是否不小于 amount；余额和金额都小于 2^63 时直接比较 long，不创建 BigInteger
+     */
+    @Override
+    public boolean hasSufficientBalance(BigInteger amount) {
+        if (amount == null) {
+            return false;
+        }
+        long balance = AccountCodec.balanceIfLong(value);
+        if (balance >= 0 && amount.bitLength() < Long.SIZE) {
+            return balance >= amount.longValue();
+        }
+        return getBalance().compareTo(amount) >= 0;
+    }
+
+    @Override
+    public boolean isExternallyOwnedAccount() {
+        return AccountCodec.isEmptyCode(value);
+    }
+
+    /**
+     * 复制为独立的 Account 对象
+     */
+    public Account toAccount() {
+        byte[] address = new byte[AccountCodec.KEY_SIZE];
+        key.get(key.position(), address);
+        return AccountCodec.decode(address, value);
+    }
+}
@@ -0,0 +1,329 @@
+package com.tanggo.fund.eth.lib.outbound;
+
+import com.tanggo.fund.eth.lib.domain.BlockTemplate;
+import com.tanggo.fund.eth.lib.domain.transaction.Eip1559Transaction;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 区块模板构建器
+ * 全量构建：各发送者的可执行交易链按链头的有效小费（Eip1559Transaction.getEffectivePriorityFee）做 k 路归并，
+ * 依次装入直到 Gas 预算用完；链头付不起基础费用或装不下时，该发送者后续的交易也跳过（nonce 必须连续）
+ *
+ * 增量更新：交易池只把新增、删除的交易放入无锁队列，取模板时再处理
+ * - 新交易正好是模板中该发送者的下一个 nonce 时，连同其后已连续的交易一起追加
+ * - 模板已满时，新交易小费高于模板中最便宜的发送者末尾交易则替换之（只能移除末尾，保持 nonce 连续）
+ * - 模板中的交易被删除或替换、基础费用或 Gas 上限变化时全量重建
+ *
+ * 加锁顺序：模板锁 -> 发送者分段锁；交易池线程不获取模板锁
+ */
+class BlockTemplateBuilder {
+    private static final long MIN_TX_GAS = 21_000;
+    private static final int MAX_BACKLOG = 64 * 1024; // 未处理的事件超过该数量时不再记录，下次直接全量重建
+
+    // 末尾交易小费最低的发送者在堆顶，同价时后入池的先出
+    private static final Comparator<Included> CHEAPEST_TAIL = (a, b) -> {
+        int byTip = Long.compare(a.tailTip(), b.tailTip());
+        return byTip != 0 ? byTip : Long.compare(b.tail().sequence, a.tail().sequence);
+    };
+
+    private final TransactionPool pool;
+    private final ConcurrentLinkedQueue<PooledTransaction> events = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger backlog = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile boolean dirty = true;
+
+    // 以下字段由 lock 保护
+    private final List<PooledTransaction> slots = new ArrayList<>(); // 按装入顺序，被替换的位置为 null
+    private final Map<String, Included> senders = new HashMap<>();
+    private final IndexedHeap<Included> tails = new IndexedHeap<>(CHEAPEST_TAIL);
+    private BigInteger baseFeePerGas = BigInteger.ZERO;
+    private long baseFee;
+    private long gasLimit = -1;
+    private long gasUsed;
+    private int live;
+
+    BlockTemplateBuilder(TransactionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 交易入池或被删除、替换后调用（PooledTransaction.removed 区分两者），只入队不加锁
+     */
+    void onChanged(PooledTransaction tx) {
+        if (dirty) {
+            return; // 下次取模板时全量重建，无需记录
+        }
+        if (backlog.incrementAndGet() > MAX_BACKLOG) {
+            dirty = true;
+            return;
+        }
+        events.add(tx);
+    }
+
+    // 账户 nonce 等外部状态变化后要求全量重建
+    void invalidate() {
+        dirty = true;
+    }
+
+    BlockTemplate template(BigInteger baseFeePerGas, long gasLimit) {
+        lock.lock();
+        try {
+            if (dirty || PooledTransaction.saturate(baseFeePerGas) != baseFee || gasLimit != this.gasLimit) {
+                rebuild(baseFeePerGas, gasLimit);
+            } else {
+                drain();
+                if (dirty) {
+                    rebuild(baseFeePerGas, gasLimit);
+                }
+            }
+            return snapshot();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ==================== 全量构建 ====================
+
+    private void rebuild(BigInteger baseFeePerGas, long gasLimit) {
+        // 先清除标记和事件再读取交易链：此后的变化都会重新入队
+        dirty = false;
+        events.clear();
+        backlog.set(0);
+
+        this.baseFeePerGas = baseFeePerGas;
+        this.baseFee = PooledTransaction.saturate(baseFeePerGas);
+        this.gasLimit = gasLimit;
+        gasUsed = 0;
+        live = 0;
+        slots.clear();
+        senders.clear();
+        tails.clear();
+
+        PriorityQueue<Cursor> heads = new PriorityQueue<>();
+        for (PooledTransaction[] chain : pool.executableChains()) {
+            if (chain[0].maxFeePerGas >= baseFee) {
+                heads.add(new Cursor(chain));
+            }
+        }
+        while (!heads.isEmpty() && gasLimit - gasUsed >= MIN_TX_GAS) {
+            Cursor cursor = heads.poll();
+            PooledTransaction head = cursor.head();
+            if (gasUsed + head.gasLimit > gasLimit) {
+                continue; // 装不下，该发送者后续交易一并跳过
+            }
+            add(head, cursor.tip);
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+    }
+
+    // ==================== 增量更新 ====================
+
+    private void drain() {
+        PooledTransaction tx;
+        while (!dirty && (tx = events.poll()) != null) {
+            backlog.decrementAndGet();
+            if (tx.removed) {
+                if (contains(tx)) {
+                    dirty = true;
+                }
+            } else {
+                append(tx);
+            }
+        }
+    }
+
+    private void append(PooledTransaction tx) {
+        Included included = senders.get(tx.sender);
+        long next = included == null ? -1 : included.tail().nonce + 1;
+        if (included != null && tx.nonce != next) {
+            return; // 已在模板中、是替换（由删除事件处理）或前面还缺交易
+        }
+        PooledTransaction[] run = pool.executableRun(tx.sender, next);
+        if (run.length == 0 || run[0] != tx) {
+            return;
+        }
+        for (PooledTransaction candidate : run) {
+            if (!include(candidate)) {
+                break;
+            }
+        }
+    }
+
+    private boolean include(PooledTransaction tx) {
+        if (tx.maxFeePerGas < baseFee) {
+            return false;
+        }
+        long tip = tipOf(tx);
+        if (gasUsed + tx.gasLimit <= gasLimit) {
+            add(tx, tip);
+            return true;
+        }
+        // 模板已满：替换小费更低的发送者末尾交易，不能是自己的前一笔
+        Included cheapest = tails.peek();
+        if (cheapest == null || cheapest.tailTip() >= tip || cheapest.sender.equals(tx.sender)
+                || gasUsed - cheapest.tail().gasLimit + tx.gasLimit > gasLimit) {
+            return false;
+        }
+        evictTail(cheapest);
+        add(tx, tip);
+        return true;
+    }
+
+    // ==================== 模板状态 ====================
+
+    private void add(PooledTransaction tx, long tip) {
+        Included included = senders.computeIfAbsent(tx.sender, Included::new);
+        included.push(tx, slots.size(), tip);
+        slots.add(tx);
+        live++;
+        gasUsed += tx.gasLimit;
+        if (tails.contains(included)) {
+            tails.update(included);
+        } else {
+            tails.offer(included);
+        }
+    }
+
+    private void evictTail(Included included) {
+        slots.set(included.tailSlot(), null);
+        live--;
+        gasUsed -= included.tail().gasLimit;
+        included.pop();
+        if (included.count == 0) {
+            tails.remove(included);
+            senders.remove(included.sender);
+        } else {
+            tails.update(included);
+        }
+    }
+
+    private boolean contains(PooledTransaction tx) {
+        Included included = senders.get(tx.sender);
+        return included != null && included.get(tx.nonce) == tx;
+    }
+
+    private long tipOf(PooledTransaction tx) {
+        return PooledTransaction.saturate(tx.tx.getEffectivePriorityFee(baseFeePerGas));
+    }
+
+    private BlockTemplate snapshot() {
+        List<Eip1559Transaction> transactions = new ArrayList<>(live);
+        for (PooledTransaction tx : slots) {
+            if (tx != null) {
+                transactions.add(tx.tx);
+            }
+        }
+        if (slots.size() > 2 * live + 64) {
+            compact();
+        }
+        return new BlockTemplate(baseFeePerGas, gasLimit, gasUsed, transactions);
+    }
+
+    // 去掉被替换留下的空位并更新各发送者记录的位置
+    private void compact() {
+        int position = 0;
+        for (int i = 0; i < slots.size(); i++) {
+            PooledTransaction tx = slots.get(i);
+            if (tx != null) {
+                slots.set(position, tx);
+                senders.get(tx.sender).moveSlot(tx.nonce, position);
+                position++;
+            }
+        }
+        slots.subList(position, slots.size()).clear();
+    }
+
+    // 模板中某个发送者按 nonce 连续的交易
+    private static final class Included extends IndexedHeap.Node {
+        final String sender;
+        PooledTransaction[] txs = new PooledTransaction[4];
+        int[] slotIndexes = new int[4];
+        long[] tips = new long[4];
+        int count;
+
+        Included(String sender) {
+            this.sender = sender;
+        }
+
+        void push(PooledTransaction tx, int slot, long tip) {
+            if (count == txs.length) {
+                txs = Arrays.copyOf(txs, count * 2);
+                slotIndexes = Arrays.copyOf(slotIndexes, count * 2);
+                tips = Arrays.copyOf(tips, count * 2);
+            }
+            txs[count] = tx;
+            slotIndexes[count] = slot;
+            tips[count] = tip;
+            count++;
+        }
+
+        void pop() {
+            txs[--count] = null;
+        }
+
+        PooledTransaction get(long nonce) {
+            long offset = nonce - txs[0].nonce;
+            return offset >= 0 && offset < count ? txs[(int) offset] : null;
+        }
+
+        void moveSlot(long nonce, int slot) {
+            slotIndexes[(int) (nonce - txs[0].nonce)] = slot;
+        }
+
+        PooledTransaction tail() {
+            return txs[count - 1];
+        }
+
+        long tailTip() {
+            return tips[count - 1];
+        }
+
+        int tailSlot() {
+            return slotIndexes[count - 1];
+        }
+    }
+
+    // 全量构建时某个发送者可执行交易链上的读取位置，小费高的在前
+    private final class Cursor implements Comparable<Cursor> {
+        private final PooledTransaction[] txs;
+        private int position;
+        private long tip;
+
+        Cursor(PooledTransaction[] txs) {
+            this.txs = txs;
+            this.tip = tipOf(txs[0]);
+        }
+
+        PooledTransaction head() {
+            return txs[position];
+        }
+
+        // 移到下一笔，付不起基础费用时该发送者结束
+        boolean advance() {
+            if (++position >= txs.length || txs[position].maxFeePerGas < baseFee) {
+                return false;
+            }
+            tip = tipOf(txs[position]);
+            return true;
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            int byTip = Long.compare(other.tip, tip);
+            return byTip != 0 ? byTip : Long.compare(head().sequence, other.head().sequence);
+        }
+    }
+}
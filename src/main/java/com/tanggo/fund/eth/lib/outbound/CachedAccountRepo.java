@@ -0,0 +1,493 @@
+package com.tanggo.fund.eth.lib.outbound;
+
+import com.tanggo.fund.eth.lib.config.AccountCacheOptions;
+import com.tanggo.fund.eth.lib.domain.Account;
+import com.tanggo.fund.eth.lib.domain.AccountState;
+import com.tanggo.fund.eth.lib.domain.repo.IAccountRepo;
+import com.tanggo.fund.eth.lib.domain.repo.StateBatch;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 带缓存的账户仓储，放在 IAccountRepo（通常是 LMDB 的 AccountRepo，地址到账户的扁平快照）前面
+ *
+ * - 读穿透：缓存已解码的账户（包括不存在的账户），容量有界，W-TinyLFU 准入（见 WTinyLfuCache），热点账户常驻
+ * - update / beginBatch 写穿透：先写仓储，再覆盖缓存；已有未写回的差异层时，修改作为最新的层提交并与之前的层一起写回，
+ *   之前的层因此不能再回滚
+ * - beginBlock 写回：每个区块的修改作为一个差异层保存在内存中，所有层合并成一个按地址索引的未写回层，
+ *   读取只查一次；revertBlock / revertTo 丢弃最近的层，深度以内的链重组不必回写仓储
+ * - 层数超过 maxUnflushedBlocks 时，最旧的层在后台线程合并成一个按地址排序的批次写回仓储（可配置为同步）
+ * - 读取顺序：未写回层 -> 缓存 -> 仓储
+ *
+ * query 返回副本，调用方可以修改；read 把缓存中的对象直接交给回调，不复制也不解码，回调不得修改或保留
+ * 差异层的提交和回滚由出块线程串行调用
+ */
+@Slf4j
+public class CachedAccountRepo implements IAccountRepo, MeterBinder, AutoCloseable {
+    // 缓存中表示账户不存在
+    private static final Account ABSENT = new Account();
+
+    private final IAccountRepo delegate;
+    private final AccountCacheOptions options;
+    private final WTinyLfuCache<Address, Account> cache;
+    private final Map<Address, Entry> unflushed = new ConcurrentHashMap<>(); // 各差异层合并后的最新值
+    private final Deque<DiffLayer> layers = new ArrayDeque<>();             // 可回滚的差异层，最新的在末尾
+    private final ReentrantLock blockLock = new ReentrantLock(); // 保护 layers 和 unflushed 的修改
+    private final ReentrantLock flushLock = new ReentrantLock(); // 写回串行执行
+    private final ExecutorService flusher;
+    private final AtomicLong writes = new AtomicLong(); // 仓储写入次数，加载期间有写入时不缓存加载结果
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CachedAccountRepo(IAccountRepo delegate) {
+        this(delegate, new AccountCacheOptions());
+    }
+
+    public CachedAccountRepo(IAccountRepo delegate, AccountCacheOptions options) {
+        this.delegate = delegate;
+        this.options = options;
+        this.cache = new WTinyLfuCache<>(options.getMaximumSize(), options.getWindowPercent(), options.getProtectedPercent());
+        this.flusher = options.isBackgroundFlush() ? Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "account-layer-flush");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    // ==================== 读取 ====================
+
+    @Override
+    public Account query(String address) {
+        Address key = Address.ofHex(address);
+        return key == null ? null : copyOf(lookup(key));
+    }
+
+    @Override
+    public Account query(byte[] address) {
+        return copyOf(lookup(Address.of(address)));
+    }
+
+    /**
+     * 只读访问：直接把缓存中的账户交给 reader，账户不存在时传入 null
+     */
+    @Override
+    public <R> R read(byte[] address, Function<AccountState, R> reader) {
+        return reader.apply(lookup(Address.of(address)));
+    }
+
+    private Account lookup(Address key) {
+        Entry entry = unflushed.get(key);
+        Account value = entry != null ? entry.account : cache.getIfPresent(key);
+        if (value != null) {
+            hits.increment();
+            return value == ABSENT ? null : value;
+        }
+        misses.increment();
+        long stamp = writes.get();
+        Account loaded = delegate.query(key.bytes);
+        // 加载期间仓储被写过时，读到的可能是旧值，不放入缓存
+        if (writes.get() == stamp) {
+            cache.putIfAbsent(key, loaded == null ? ABSENT : loaded.copy());
+        }
+        return loaded;
+    }
+
+    private static Account copyOf(Account account) {
+        return account == null ? null : account.copy();
+    }
+
+    // ==================== 写穿透 ====================
+
+    /**
+     * 写入仓储并覆盖缓存
+     */
+    @Override
+    public void update(Account account) {
+        if (hasUnflushed()) {
+            writeThroughLayers(List.of(account));
+            return;
+        }
+        delegate.update(account);
+        writes.incrementAndGet();
+        cache.put(Address.of(account.getAddress()), account.copy());
+    }
+
+    /**
+     * 写穿透的状态批次：提交时按地址顺序一次写入仓储，再覆盖缓存
+     */
+    @Override
+    public StateBatch beginBatch() {
+        return new StateBatch(this, accounts -> {
+            if (hasUnflushed()) {
+                writeThroughLayers(accounts);
+                return;
+            }
+            StateBatch batch = delegate.beginBatch();
+            for (Account account : accounts) {
+                batch.put(account.copy());
+            }
+            batch.commit();
+            writes.incrementAndGet();
+            for (Account account : accounts) {
+                cache.put(Address.of(account.getAddress()), account.copy());
+            }
+        });
+    }
+
+    // 有尚未写回（或正在写回）的差异层
+    private boolean hasUnflushed() {
+        return !unflushed.isEmpty() || unflushedBlocks() > 0;
+    }
+
+    // 直接写仓储会被未写回层遮住，之后写回旧层还会覆盖这次写入：改为作为最新的层提交，再把全部层按顺序写回
+    private void writeThroughLayers(List<Account> accounts) {
+        commitLayer(new DiffLayer(null), accounts);
+        flush();
+    }
+
+    // ==================== 差异层（写回） ====================
+
+    /**
+     * 写回的状态批次，提交时作为一个匿名差异层（只能用 revertBlock 回滚）
+     */
+    public StateBatch beginBlock() {
+        return beginBlock(null);
+    }
+
+    /**
+     * 写回的状态批次：提交时作为区块 blockHash 的差异层，修改只进入未写回层
+     */
+    public StateBatch beginBlock(byte[] blockHash) {
+        byte[] hash = blockHash == null ? null : blockHash.clone();
+        return new StateBatch(this, accounts -> commitLayer(new DiffLayer(hash), accounts));
+    }
+
+    private void commitLayer(DiffLayer layer, List<Account> accounts) {
+        boolean due;
+        blockLock.lock();
+        try {
+            for (Account account : accounts) {
+                Address key = Address.of(account.getAddress());
+                Entry entry = new Entry(account.copy(), layer);
+                layer.undo.put(key, unflushed.get(key));
+                layer.redo.put(key, entry.account);
+                unflushed.put(key, entry);
+            }
+            layers.addLast(layer);
+            due = layers.size() > options.getMaxUnflushedBlocks();
+        } finally {
+            blockLock.unlock();
+        }
+        if (due) {
+            if (flusher != null) {
+                flusher.execute(this::flushInBackground);
+            } else {
+                flush(options.getMaxUnflushedBlocks());
+            }
+        }
+    }
+
+    private void flushInBackground() {
+        try {
+            flush(options.getMaxUnflushedBlocks());
+        } catch (RuntimeException e) {
+            // 差异层已放回，下一个区块提交时重试
+            log.error("Failed to flush account diff layers", e);
+        }
+    }
+
+    /**
+     * 回滚最近一个差异层，恢复各账户在该区块之前的值
+     * @return 没有可回滚的层时返回 false
+     */
+    public boolean revertBlock() {
+        blockLock.lock();
+        try {
+            DiffLayer layer = layers.pollLast();
+            if (layer == null) {
+                return false;
+            }
+            revertLocked(layer);
+            return true;
+        } finally {
+            blockLock.unlock();
+        }
+    }
+
+    /**
+     * 链重组：回滚到区块 blockHash，丢弃它之后的全部差异层
+     * @return blockHash 不在差异层中（超出可回滚的深度）时不做修改并返回 false
+     */
+    public boolean revertTo(byte[] blockHash) {
+        blockLock.lock();
+        try {
+            boolean found = false;
+            if (blockHash == null) {
+                return false;
+            }
+            for (Iterator<DiffLayer> it = layers.descendingIterator(); it.hasNext() && !found; ) {
+                found = Arrays.equals(it.next().blockHash, blockHash);
+            }
+            if (!found) {
+                return false;
+            }
+            while (!Arrays.equals(layers.peekLast().blockHash, blockHash)) {
+                revertLocked(layers.pollLast());
+            }
+            return true;
+        } finally {
+            blockLock.unlock();
+        }
+    }
+
+    // 持有 blockLock；之前的值所在的层已写回时直接移出未写回层，由缓存和仓储提供
+    private void revertLocked(DiffLayer layer) {
+        for (Map.Entry<Address, Entry> undo : layer.undo.entrySet()) {
+            Entry previous = undo.getValue();
+            if (previous == null || previous.layer.flushed) {
+                unflushed.remove(undo.getKey());
+            } else {
+                unflushed.put(undo.getKey(), previous);
+            }
+        }
+    }
+
+    /**
+     * 把全部差异层写回仓储
+     */
+    public void flush() {
+        flush(0);
+    }
+
+    /**
+     * 写回最旧的差异层，只保留最近 keep 层在内存中（仍可回滚）
+     * 写回期间仍可提交和回滚新的层；正在写回的层不能再回滚，其修改在写完之前仍由未写回层提供
+     */
+    public void flush(int keep) {
+        flushLock.lock();
+        try {
+            List<DiffLayer> oldest = new ArrayList<>();
+            blockLock.lock();
+            try {
+                while (layers.size() > keep) {
+                    oldest.add(layers.pollFirst());
+                }
+            } finally {
+                blockLock.unlock();
+            }
+            if (oldest.isEmpty()) {
+                return;
+            }
+            // 多个层合并成按地址排序的差异，一个仓储批次写出
+            TreeMap<Address, Account> merged = new TreeMap<>();
+            for (DiffLayer layer : oldest) {
+                merged.putAll(layer.redo);
+            }
+            try {
+                StateBatch batch = delegate.beginBatch();
+                for (Account account : merged.values()) {
+                    batch.put(account);
+                }
+                batch.commit();
+            } catch (RuntimeException e) {
+                blockLock.lock();
+                try {
+                    for (int i = oldest.size() - 1; i >= 0; i--) {
+                        layers.addFirst(oldest.get(i));
+                    }
+                } finally {
+                    blockLock.unlock();
+                }
+                throw e;
+            }
+            writes.incrementAndGet();
+            for (Map.Entry<Address, Account> entry : merged.entrySet()) {
+                cache.put(entry.getKey(), entry.getValue());
+            }
+            // 之后的层没有再修改的账户移出未写回层，由缓存提供
+            blockLock.lock();
+            try {
+                // 已写回的层不再回滚，释放 undo / redo；否则较新层的 undo 经 Entry.layer 逐层引用，从启动起的层都无法回收
+                for (DiffLayer layer : oldest) {
+                    layer.flushed = true;
+                    layer.undo.clear();
+                    layer.redo.clear();
+                }
+                for (Address key : merged.keySet()) {
+                    Entry entry = unflushed.get(key);
+                    if (entry != null && entry.layer.flushed) {
+                        unflushed.remove(key);
+                    }
+                }
+            } finally {
+                blockLock.unlock();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public int unflushedBlocks() {
+        blockLock.lock();
+        try {
+            return layers.size();
+        } finally {
+            blockLock.unlock();
+        }
+    }
+
+    /**
+     * 停止后台写回并把全部差异层写回仓储
+     */
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    // ==================== 指标 ====================
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Tags tags = Tags.of("cache", "accounts");
+        FunctionCounter.builder("eth.account.cache.requests", hits, LongAdder::doubleValue)
+                .tags(tags).tag("result", "hit").register(registry);
+        FunctionCounter.builder("eth.account.cache.requests", misses, LongAdder::doubleValue)
+                .tags(tags).tag("result", "miss").register(registry);
+        FunctionCounter.builder("eth.account.cache.evictions", cache, WTinyLfuCache::evictions).tags(tags).register(registry);
+        Gauge.builder("eth.account.cache.size", cache, WTinyLfuCache::size).tags(tags).register(registry);
+        Gauge.builder("eth.account.cache.unflushed", unflushed, Map::size).tags(tags).baseUnit("accounts").register(registry);
+    }
+
+    /**
+     * 当前缓存统计
+     */
+    public Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hits", hitCount);
+        result.put("misses", missCount);
+        result.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        result.put("evictions", cache.evictions());
+        result.put("size", cache.size());
+        result.put("unflushedAccounts", unflushed.size());
+        result.put("unflushedBlocks", unflushedBlocks());
+        return result;
+    }
+
+    // 一个区块的差异层：redo 为写入的值，undo 为写入前未写回层中的条目（null 表示不在未写回层）
+    private static final class DiffLayer {
+        final byte[] blockHash; // 匿名层为 null
+        final Map<Address, Account> redo = new HashMap<>();
+        final Map<Address, Entry> undo = new HashMap<>();
+        volatile boolean flushed; // 已写回仓储
+
+        DiffLayer(byte[] blockHash) {
+            this.blockHash = blockHash;
+        }
+    }
+
+    // 未写回层中的账户及写入它的差异层
+    private static final class Entry {
+        final Account account;
+        final DiffLayer layer;
+
+        Entry(Account account, DiffLayer layer) {
+            this.account = account;
+            this.layer = layer;
+        }
+    }
+
+    // 20 字节地址作为缓存键，按无符号字节序比较（与 LMDB 键顺序一致）
+    private static final class Address implements Comparable<Address> {
+        final byte[] bytes;
+        private final int hash;
+
+        private Address(byte[] bytes) {
+            this.bytes = bytes;
+            this.hash = Arrays.hashCode(bytes);
+        }
+
+        static Address of(byte[] address) {
+            if (address == null || address.length != 20) {
+                throw new IllegalArgumentException("Account address must be 20 bytes");
+            }
+            return new Address(address.clone());
+        }
+
+        // 40 位十六进制地址（可带 0x 前缀），格式不对时返回 null
+        static Address ofHex(String hex) {
+            if (hex == null) {
+                return null;
+            }
+            int start = hex.startsWith("0x") || hex.startsWith("0X") ? 2 : 0;
+            if (hex.length() - start != 40) {
+                return null;
+            }
+            byte[] bytes = new byte[20];
+            for (int i = 0; i < 20; i++) {
+                int hi = Character.digit(hex.charAt(start + 2 * i), 16);
+                int lo = Character.digit(hex.charAt(start + 2 * i + 1), 16);
+                if (hi < 0 || lo < 0) {
+                    return null;
+                }
+                bytes[i] = (byte) ((hi << 4) | lo);
+            }
+            return new Address(bytes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Address other && hash == other.hash && Arrays.equals(bytes, other.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public int compareTo(Address other) {
+            return Arrays.compareUnsigned(bytes, other.bytes);
+        }
+    }
+}
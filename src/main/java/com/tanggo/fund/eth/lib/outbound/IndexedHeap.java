@@ -0,0 +1,158 @@
+package com.tanggo.fund.eth.lib.outbound;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Consumer;
+
+/**
+ * 带位置索引的二叉堆
+ * 元素记录自己在堆数组中的下标，删除或更新任意元素为 O(log n)（PriorityQueue.remove 为 O(n)）
+ * 比较器决定是最小堆还是最大堆；一个元素同一时刻只能在一个堆中
+ *
+ * 非线程安全，由调用方加锁
+ */
+class IndexedHeap<T extends IndexedHeap.Node> {
+
+    // 堆元素，heapIndex 为 -1 表示不在堆中
+    static class Node {
+        int heapIndex = -1;
+    }
+
+    private final Comparator<? super T> order;
+    private Node[] items = new Node[16];
+    private int size;
+
+    IndexedHeap(Comparator<? super T> order) {
+        this.order = order;
+    }
+
+    void offer(T item) {
+        if (item.heapIndex >= 0) {
+            throw new IllegalStateException("Item is already in a heap");
+        }
+        if (size == items.length) {
+            items = Arrays.copyOf(items, size * 2);
+        }
+        items[size] = item;
+        item.heapIndex = size;
+        siftUp(size++);
+    }
+
+    T peek() {
+        return size == 0 ? null : item(0);
+    }
+
+    T poll() {
+        T head = peek();
+        if (head != null) {
+            removeAt(0);
+        }
+        return head;
+    }
+
+    boolean remove(T item) {
+        if (!contains(item)) {
+            return false;
+        }
+        removeAt(item.heapIndex);
+        return true;
+    }
+
+    // 元素的排序键变化后恢复堆序
+    void update(T item) {
+        if (contains(item)) {
+            siftDown(siftUp(item.heapIndex));
+        }
+    }
+
+    // 所有元素的排序键都变化后整体重建，O(n)
+    void reheap() {
+        for (int i = (size >>> 1) - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            items[i].heapIndex = -1;
+            items[i] = null;
+        }
+        size = 0;
+    }
+
+    boolean contains(T item) {
+        int index = item.heapIndex;
+        return index >= 0 && index < size && items[index] == item;
+    }
+
+    void forEach(Consumer<? super T> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(item(i));
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void removeAt(int index) {
+        Node removed = items[index];
+        int last = --size;
+        if (index != last) {
+            items[index] = items[last];
+            items[index].heapIndex = index;
+            items[last] = null;
+            siftDown(siftUp(index));
+        } else {
+            items[last] = null;
+        }
+        removed.heapIndex = -1;
+    }
+
+    private int siftUp(int index) {
+        Node node = items[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (compare(node, items[parent]) >= 0) {
+                break;
+            }
+            place(items[parent], index);
+            index = parent;
+        }
+        place(node, index);
+        return index;
+    }
+
+    private void siftDown(int index) {
+        Node node = items[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && compare(items[right], items[child]) < 0) {
+                child = right;
+            }
+            if (compare(node, items[child]) <= 0) {
+                break;
+            }
+            place(items[child], index);
+            index = child;
+        }
+        place(node, index);
+    }
+
+    private void place(Node node, int index) {
+        items[index] = node;
+        node.heapIndex = index;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(Node a, Node b) {
+        return order.compare((T) a, (T) b);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T item(int index) {
+        return (T) items[index];
+    }
+}
@@ -0,0 +1,604 @@
+package com.tanggo.fund.eth.lib.outbound;
+
+import com.tanggo.fund.eth.lib.domain.Account;
+import com.tanggo.fund.eth.lib.domain.transaction.Keccak;
+import com.tanggo.fund.eth.lib.domain.transaction.Rlp;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * 默克尔帕特里夏树（以太坊 MPT），节点保存在 TrieNodeStore 中
+ *
+ * - 节点不可变，修改时沿路径复制；未修改的子树保留已计算的编码和哈希，计算根哈希时只重新编码修改过的路径
+ * - 编码不短于 32 字节的节点按 keccak256(编码) 引用并单独存储，更短的节点内嵌在父节点中
+ * - 从存储读出的节点放入有界节点缓存（W-TinyLFU），提交后树只保留根的哈希引用，之后的访问由缓存或存储解析
+ * - 一次提交的修改较多时，根附近分支节点的各子树在 ForkJoinPool 中并行编码和哈希
+ * - 提交时新节点按哈希排序后一批写出
+ *
+ * 非线程安全，由调用方串行访问
+ */
+public class MerklePatriciaTrie {
+    /** 空树的根哈希 keccak256(rlp("")) */
+    public static final byte[] EMPTY_ROOT = Account.EMPTY_STORAGE_ROOT;
+
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 256; // 未提交的修改达到该数量时并行哈希
+    private static final int PARALLEL_DEPTH = 2;               // 只在前两层分支节点拆分任务（最多 256 个子树）
+
+    private final TrieNodeStore store;
+    private final WTinyLfuCache<ByteBuffer, Node> nodeCache;
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+    private Node root;      // null 表示空树
+    private Node committed; // 最近一次提交的根
+    private int pendingUpdates;
+
+    public MerklePatriciaTrie(TrieNodeStore store, byte[] rootHash, int cacheSize) {
+        this(store, rootHash, cacheSize, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    MerklePatriciaTrie(TrieNodeStore store, byte[] rootHash, int cacheSize, int parallelThreshold) {
+        this.store = store;
+        this.nodeCache = new WTinyLfuCache<>(cacheSize, 1, 80);
+        this.pool = ForkJoinPool.commonPool();
+        this.parallelThreshold = parallelThreshold;
+        this.root = rootHash == null || Arrays.equals(rootHash, EMPTY_ROOT) ? null : new HashRef(rootHash.clone());
+        this.committed = root;
+    }
+
+    // ==================== 读取 ====================
+
+    /**
+     * @return 键对应的值，不存在时返回 null
+     */
+    public byte[] get(byte[] key) {
+        byte[] path = nibbles(key);
+        int pos = 0;
+        Node node = root;
+        while (node != null) {
+            node = resolve(node);
+            if (node instanceof Leaf leaf) {
+                return matchesRest(leaf.path, path, pos) ? leaf.value : null;
+            } else if (node instanceof Extension extension) {
+                if (commonPrefix(extension.path, path, pos) != extension.path.length) {
+                    return null;
+                }
+                pos += extension.path.length;
+                node = extension.child;
+            } else {
+                Branch branch = (Branch) node;
+                if (pos == path.length) {
+                    return branch.value;
+                }
+                node = branch.children[path[pos++]];
+            }
+        }
+        return null;
+    }
+
+    // ==================== 修改 ====================
+
+    /**
+     * 写入键值，值为空时删除
+     */
+    public void put(byte[] key, byte[] value) {
+        if (value == null || value.length == 0) {
+            delete(key);
+            return;
+        }
+        root = insert(root, nibbles(key), 0, value);
+        pendingUpdates++;
+    }
+
+    public void delete(byte[] key) {
+        root = remove(root, nibbles(key), 0);
+        pendingUpdates++;
+    }
+
+    /**
+     * 丢弃上次提交之后的全部修改
+     */
+    public void rollback() {
+        root = committed;
+        pendingUpdates = 0;
+    }
+
+    public int pendingUpdates() {
+        return pendingUpdates;
+    }
+
+    private Node insert(Node node, byte[] path, int pos, byte[] value) {
+        if (node == null) {
+            return new Leaf(Arrays.copyOfRange(path, pos, path.length), value);
+        }
+        node = resolve(node);
+        if (node instanceof Leaf leaf) {
+            int common = commonPrefix(leaf.path, path, pos);
+            if (common == leaf.path.length && pos + common == path.length) {
+                return new Leaf(leaf.path, value);
+            }
+            // 在分叉处插入分支节点，两个叶子各自挂到分支下（或成为分支的值）
+            Node[] children = new Node[16];
+            byte[] branchValue = null;
+            if (common == leaf.path.length) {
+                branchValue = leaf.value;
+            } else {
+                children[leaf.path[common]] = new Leaf(Arrays.copyOfRange(leaf.path, common + 1, leaf.path.length), leaf.value);
+            }
+            if (pos + common == path.length) {
+                branchValue = value;
+            } else {
+                children[path[pos + common]] = new Leaf(Arrays.copyOfRange(path, pos + common + 1, path.length), value);
+            }
+            return withPrefix(Arrays.copyOf(leaf.path, common), new Branch(children, branchValue));
+        }
+        if (node instanceof Extension extension) {
+            int common = commonPrefix(extension.path, path, pos);
+            if (common == extension.path.length) {
+                return new Extension(extension.path, insert(extension.child, path, pos + common, value));
+            }
+            Node[] children = new Node[16];
+            byte[] branchValue = null;
+            children[extension.path[common]] = common + 1 == extension.path.length
+                    ? extension.child
+                    : new Extension(Arrays.copyOfRange(extension.path, common + 1, extension.path.length), extension.child);
+            if (pos + common == path.length) {
+                branchValue = value;
+            } else {
+                children[path[pos + common]] = new Leaf(Arrays.copyOfRange(path, pos + common + 1, path.length), value);
+            }
+            return withPrefix(Arrays.copyOf(extension.path, common), new Branch(children, branchValue));
+        }
+        Branch branch = (Branch) node;
+        if (pos == path.length) {
+            return new Branch(branch.children.clone(), value);
+        }
+        Node[] children = branch.children.clone();
+        children[path[pos]] = insert(children[path[pos]], path, pos + 1, value);
+        return new Branch(children, branch.value);
+    }
+
+    // 键不存在时返回原节点（同一个对象），调用方据此判断是否需要复制路径
+    private Node remove(Node original, byte[] path, int pos) {
+        if (original == null) {
+            return null;
+        }
+        Node node = resolve(original);
+        if (node instanceof Leaf leaf) {
+            return matchesRest(leaf.path, path, pos) ? null : original;
+        }
+        if (node instanceof Extension extension) {
+            if (commonPrefix(extension.path, path, pos) != extension.path.length) {
+                return original;
+            }
+            Node child = remove(extension.child, path, pos + extension.path.length);
+            return child == extension.child ? original : prepend(extension.path, child);
+        }
+        Branch branch = (Branch) node;
+        Node[] children;
+        byte[] value = branch.value;
+        if (pos == path.length) {
+            if (value == null) {
+                return original;
+            }
+            children = branch.children;
+            value = null;
+        } else {
+            Node child = remove(branch.children[path[pos]], path, pos + 1);
+            if (child == branch.children[path[pos]]) {
+                return original;
+            }
+            children = branch.children.clone();
+            children[path[pos]] = child;
+        }
+        // 分支只剩一个子节点或只剩值时合并
+        int only = -1;
+        int count = 0;
+        for (int i = 0; i < 16; i++) {
+            if (children[i] != null) {
+                only = i;
+                count++;
+            }
+        }
+        if (count + (value != null ? 1 : 0) >= 2) {
+            return new Branch(children == branch.children ? children.clone() : children, value);
+        }
+        if (count == 0) {
+            return value == null ? null : new Leaf(new byte[0], value);
+        }
+        return prepend(new byte[]{(byte) only}, children[only]);
+    }
+
+    // 在子节点的路径前加上前缀：叶子和扩展节点合并路径，分支节点包一层扩展节点
+    private Node prepend(byte[] prefix, Node child) {
+        if (child == null) {
+            return null;
+        }
+        Node node = resolve(child);
+        if (node instanceof Leaf leaf) {
+            return new Leaf(concat(prefix, leaf.path), leaf.value);
+        }
+        if (node instanceof Extension extension) {
+            return new Extension(concat(prefix, extension.path), extension.child);
+        }
+        return new Extension(prefix, child);
+    }
+
+    private static Node withPrefix(byte[] prefix, Node child) {
+        return prefix.length == 0 ? child : new Extension(prefix, child);
+    }
+
+    // ==================== 哈希和提交 ====================
+
+    /**
+     * 计算当前根哈希，不写入存储
+     */
+    public byte[] rootHash() {
+        return hashRoot(null);
+    }
+
+    /**
+     * 计算根哈希并把新节点一批写入存储
+     */
+    public byte[] commit() {
+        return commit(store::putAll);
+    }
+
+    /**
+     * 计算根哈希，新节点交给 writer 写出（例如与账户写在同一个事务中）
+     * writer 失败时丢弃未提交的修改并抛出异常
+     */
+    public byte[] commit(Consumer<SortedMap<byte[], byte[]>> writer) {
+        List<Node> written = new ArrayList<>();
+        byte[] rootHash;
+        try {
+            rootHash = hashRoot(written);
+            // 按哈希排序后顺序插入，与 LMDB 的键顺序一致
+            written.sort((a, b) -> Arrays.compareUnsigned(a.hash, b.hash));
+            SortedMap<byte[], byte[]> writes = new TreeMap<>(Arrays::compareUnsigned);
+            for (Node node : written) {
+                writes.put(node.hash, node.encoded);
+            }
+            if (root != null && root.hash == null) {
+                writes.put(rootHash, root.encoded); // 编码短于 32 字节的根也按哈希存储
+            }
+            if (!writes.isEmpty()) {
+                writer.accept(writes);
+            }
+        } catch (RuntimeException e) {
+            rollback();
+            throw e;
+        }
+        // 写出成功后才放入节点缓存，树只保留根的哈希引用
+        for (Node node : written) {
+            nodeCache.put(ByteBuffer.wrap(node.hash), node);
+        }
+        if (root != null && root.hash == null) {
+            nodeCache.put(ByteBuffer.wrap(rootHash), root);
+        }
+        root = root == null ? null : new HashRef(rootHash);
+        committed = root;
+        pendingUpdates = 0;
+        return rootHash.clone();
+    }
+
+    // written 为 null 时只计算哈希；否则收集需要写出的节点（编码不短于 32 字节的新节点）
+    private byte[] hashRoot(List<Node> written) {
+        if (root == null) {
+            return EMPTY_ROOT.clone();
+        }
+        if (root instanceof HashRef) {
+            return root.hash.clone();
+        }
+        Node node = root;
+        if (pendingUpdates >= parallelThreshold) {
+            pool.invoke(ForkJoinTask.adapt(() -> hash(node, 0, true, written)));
+        } else {
+            hash(node, 0, false, written);
+        }
+        // 根节点总是按哈希引用，即使编码短于 32 字节
+        return node.hash != null ? node.hash.clone() : Keccak.keccak256(node.encoded);
+    }
+
+    private static boolean isClean(Node node, boolean committing) {
+        return node == null || node instanceof HashRef || node.encoded != null && (!committing || node.stored);
+    }
+
+    // 后序遍历：先编码子节点，再编码自身；提交时记录需要写出的节点，并把已写出的子节点换成哈希引用
+    private void hash(Node node, int depth, boolean parallel, List<Node> written) {
+        boolean committing = written != null;
+        if (isClean(node, committing)) {
+            return;
+        }
+        if (node instanceof Extension extension) {
+            hash(extension.child, depth + 1, parallel, written);
+        } else if (node instanceof Branch branch) {
+            if (parallel && depth < PARALLEL_DEPTH) {
+                // 每个子树任务各自收集要写出的节点，完成后合并
+                List<ForkJoinTask<?>> tasks = new ArrayList<>();
+                List<List<Node>> outputs = new ArrayList<>();
+                for (Node child : branch.children) {
+                    if (!isClean(child, committing)) {
+                        List<Node> output = committing ? new ArrayList<>() : null;
+                        outputs.add(output);
+                        tasks.add(ForkJoinTask.adapt(() -> hash(child, depth + 1, true, output)));
+                    }
+                }
+                ForkJoinTask.invokeAll(tasks);
+                if (committing) {
+                    outputs.forEach(written::addAll);
+                }
+            } else {
+                for (Node child : branch.children) {
+                    hash(child, depth + 1, parallel, written);
+                }
+            }
+        }
+        if (node.encoded == null) {
+            node.encoded = node.encode();
+            if (node.encoded.length >= Keccak.HASH_LENGTH) {
+                node.hash = Keccak.keccak256(node.encoded);
+            }
+        }
+        if (committing) {
+            if (node.hash != null) {
+                written.add(node);
+            }
+            node.stored = true;
+            node.detachChildren();
+        }
+    }
+
+    // ==================== 节点解析 ====================
+
+    private Node resolve(Node node) {
+        if (!(node instanceof HashRef)) {
+            return node;
+        }
+        ByteBuffer key = ByteBuffer.wrap(node.hash);
+        Node cached = nodeCache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        byte[] encoded = store.get(node.hash);
+        if (encoded == null) {
+            throw new IllegalStateException("Missing trie node: " + HexFormat.of().formatHex(node.hash));
+        }
+        Node loaded = decodeNode(Rlp.decode(encoded));
+        loaded.encoded = encoded;
+        loaded.hash = encoded.length >= Keccak.HASH_LENGTH ? node.hash : null;
+        loaded.stored = true;
+        nodeCache.putIfAbsent(key, loaded);
+        return loaded;
+    }
+
+    private static Node decodeNode(Object item) {
+        List<Object> items = Rlp.asList(item);
+        if (items.size() == 17) {
+            Node[] children = new Node[16];
+            for (int i = 0; i < 16; i++) {
+                children[i] = decodeChild(items.get(i));
+            }
+            byte[] value = Rlp.asBytes(items.get(16));
+            return new Branch(children, value.length == 0 ? null : value);
+        }
+        if (items.size() == 2) {
+            byte[] encodedPath = Rlp.asBytes(items.get(0));
+            if (encodedPath.length == 0) {
+                throw new IllegalArgumentException("Invalid trie node path");
+            }
+            boolean leaf = (encodedPath[0] & 0xff) >>> 4 >= 2;
+            byte[] path = decodeHexPrefix(encodedPath);
+            return leaf ? new Leaf(path, Rlp.asBytes(items.get(1))) : new Extension(path, decodeChild(items.get(1)));
+        }
+        throw new IllegalArgumentException("Invalid trie node with " + items.size() + " items");
+    }
+
+    /**
+     * 节点编码中按哈希引用的子节点，用于存储端回收节点
+     * 内嵌子节点的编码短于 32 字节，不可能再包含哈希引用，不需要展开
+     */
+    static List<byte[]> childHashes(byte[] encoded) {
+        List<Object> items = Rlp.asList(Rlp.decode(encoded));
+        List<byte[]> hashes = new ArrayList<>();
+        if (items.size() == 17) {
+            for (int i = 0; i < 16; i++) {
+                if (items.get(i) instanceof byte[] child && child.length == Keccak.HASH_LENGTH) {
+                    hashes.add(child);
+                }
+            }
+        } else if (items.size() == 2) {
+            byte[] encodedPath = Rlp.asBytes(items.get(0));
+            boolean leaf = encodedPath.length > 0 && (encodedPath[0] & 0xff) >>> 4 >= 2;
+            if (!leaf && items.get(1) instanceof byte[] child && child.length == Keccak.HASH_LENGTH) {
+                hashes.add(child);
+            }
+        }
+        return hashes;
+    }
+
+    // 子节点引用：空串为空，32 字节为哈希，列表为内嵌节点
+    private static Node decodeChild(Object item) {
+        if (item instanceof byte[] bytes) {
+            if (bytes.length == 0) {
+                return null;
+            }
+            if (bytes.length == Keccak.HASH_LENGTH) {
+                return new HashRef(bytes);
+            }
+            throw new IllegalArgumentException("Invalid trie node reference of " + bytes.length + " bytes");
+        }
+        Node embedded = decodeNode(item);
+        embedded.encoded = embedded.encode();
+        embedded.stored = true;
+        return embedded;
+    }
+
+    // ==================== 路径 ====================
+
+    private static byte[] nibbles(byte[] key) {
+        byte[] path = new byte[key.length * 2];
+        for (int i = 0; i < key.length; i++) {
+            path[2 * i] = (byte) ((key[i] >>> 4) & 0x0f);
+            path[2 * i + 1] = (byte) (key[i] & 0x0f);
+        }
+        return path;
+    }
+
+    private static int commonPrefix(byte[] nodePath, byte[] path, int pos) {
+        int limit = Math.min(nodePath.length, path.length - pos);
+        int i = 0;
+        while (i < limit && nodePath[i] == path[pos + i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean matchesRest(byte[] nodePath, byte[] path, int pos) {
+        return Arrays.equals(nodePath, 0, nodePath.length, path, pos, path.length);
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] out = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
+
+    // 十六进制前缀编码：首个半字节为标志（叶子 +2，奇数长度 +1），偶数长度时补一个 0 半字节
+    private static byte[] hexPrefix(byte[] path, boolean leaf) {
+        int flag = leaf ? 2 : 0;
+        byte[] out = new byte[path.length / 2 + 1];
+        int i = 0;
+        if ((path.length & 1) == 1) {
+            out[0] = (byte) (((flag | 1) << 4) | path[0]);
+            i = 1;
+        } else {
+            out[0] = (byte) (flag << 4);
+        }
+        for (int o = 1; i < path.length; i += 2, o++) {
+            out[o] = (byte) ((path[i] << 4) | path[i + 1]);
+        }
+        return out;
+    }
+
+    private static byte[] decodeHexPrefix(byte[] encoded) {
+        boolean odd = ((encoded[0] >>> 4) & 1) == 1;
+        byte[] path = new byte[(encoded.length - 1) * 2 + (odd ? 1 : 0)];
+        int p = 0;
+        if (odd) {
+            path[p++] = (byte) (encoded[0] & 0x0f);
+        }
+        for (int i = 1; i < encoded.length; i++) {
+            path[p++] = (byte) ((encoded[i] >>> 4) & 0x0f);
+            path[p++] = (byte) (encoded[i] & 0x0f);
+        }
+        return path;
+    }
+
+    // ==================== 节点 ====================
+
+    private abstract static class Node {
+        byte[] encoded;  // RLP 编码，null 表示尚未计算
+        byte[] hash;     // 编码不短于 32 字节时为其哈希，父节点按哈希引用
+        boolean stored;  // 已写入存储（或内嵌在已写入的父节点中）
+
+        abstract byte[] encode();
+
+        // 已写出的子节点换成哈希引用，树不再持有整棵子树，由节点缓存决定保留哪些
+        void detachChildren() {
+        }
+
+        static byte[] reference(Node child) {
+            if (child == null) {
+                return Rlp.EMPTY_STRING;
+            }
+            return child.hash != null ? Rlp.encodeString(child.hash) : child.encoded;
+        }
+
+        static Node detach(Node child) {
+            return child != null && !(child instanceof HashRef) && child.hash != null ? new HashRef(child.hash) : child;
+        }
+    }
+
+    private static final class HashRef extends Node {
+        HashRef(byte[] hash) {
+            this.hash = hash;
+            this.stored = true;
+        }
+
+        @Override
+        byte[] encode() {
+            throw new IllegalStateException("Unresolved trie node cannot be encoded");
+        }
+    }
+
+    private static final class Leaf extends Node {
+        final byte[] path;
+        final byte[] value;
+
+        Leaf(byte[] path, byte[] value) {
+            this.path = path;
+            this.value = value;
+        }
+
+        @Override
+        byte[] encode() {
+            return Rlp.encodeList(Rlp.encodeString(hexPrefix(path, true)), Rlp.encodeString(value));
+        }
+    }
+
+    private static final class Extension extends Node {
+        final byte[] path;
+        Node child;
+
+        Extension(byte[] path, Node child) {
+            this.path = path;
+            this.child = child;
+        }
+
+        @Override
+        byte[] encode() {
+            return Rlp.encodeList(Rlp.encodeString(hexPrefix(path, false)), reference(child));
+        }
+
+        @Override
+        void detachChildren() {
+            child = detach(child);
+        }
+    }
+
+    private static final class Branch extends Node {
+        final Node[] children;
+        final byte[] value;
+
+        Branch(Node[] children, byte[] value) {
+            this.children = children;
+            this.value = value;
+        }
+
+        @Override
+        byte[] encode() {
+            byte[][] items = new byte[17][];
+            for (int i = 0; i < 16; i++) {
+                items[i] = reference(children[i]);
+            }
+            items[16] = Rlp.encodeString(value);
+            return Rlp.encodeList(items);
+        }
+
+        @Override
+        void detachChildren() {
+            for (int i = 0; i < 16; i++) {
+                children[i] = detach(children[i]);
+            }
+        }
+    }
+}
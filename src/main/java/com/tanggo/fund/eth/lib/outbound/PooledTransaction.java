@@ -0,0 +1,71 @@
+package com.tanggo.fund.eth.lib.outbound;
+
+import com.tanggo.fund.eth.lib.domain.transaction.Eip1559Transaction;
+
+import java.math.BigInteger;
+import java.util.HexFormat;
+
+/**
+ * 交易池中的交易
+ * 入池时一次性算出哈希、发送者和 long 形式的 nonce、费用，池内排序和比较不再做 BigInteger 运算
+ */
+class PooledTransaction extends IndexedHeap.Node {
+    private static final HexFormat HEX = HexFormat.of();
+
+    final Eip1559Transaction tx;
+    final String hash;         // 0x 开头的交易哈希
+    final String sender;       // 0x 开头的发送者地址，与 Account.getAddressHex 格式一致
+    final long nonce;
+    final long maxFeePerGas;
+    final long maxPriorityFeePerGas;
+    final long gasLimit;
+    final long sequence;       // 入池顺序，同价时的次序
+    final int size;            // 编码后的字节数，用于内存预算
+    final long arrivalMillis;  // 入池时间，用于等待交易过期
+    long tip;                  // 当前基础费用下的有效小费，由价格堆的锁保护
+    volatile boolean removed;  // 已被删除或替换
+
+    PooledTransaction(Eip1559Transaction tx, long sequence, long arrivalMillis) {
+        this(tx, measure(tx), sequence, arrivalMillis);
+    }
+
+    PooledTransaction(Eip1559Transaction tx, int size, long sequence, long arrivalMillis) {
+        this(tx, senderOf(tx), size, sequence, arrivalMillis);
+    }
+
+    // 发送者已由区块执行恢复时直接传入，不再 ecrecover
+    PooledTransaction(Eip1559Transaction tx, String sender, int size, long sequence, long arrivalMillis) {
+        this.tx = tx;
+        this.hash = "0x" + HEX.formatHex(tx.getTransactionHash());
+        this.sender = sender;
+        this.nonce = tx.getNonce().longValue();
+        this.maxFeePerGas = saturate(tx.getMaxFeePerGas());
+        this.maxPriorityFeePerGas = saturate(tx.getMaxPriorityFeePerGas());
+        this.gasLimit = saturate(tx.getGasLimit());
+        this.sequence = sequence;
+        this.size = size;
+        this.arrivalMillis = arrivalMillis;
+    }
+
+    static String senderOf(Eip1559Transaction tx) {
+        return "0x" + HEX.formatHex(tx.recoverSender());
+    }
+
+    // 交易编码后的字节数
+    static int measure(Eip1559Transaction tx) {
+        return tx.encode().length;
+    }
+
+    /**
+     * 给定基础费用下的有效小费：min(maxPriorityFeePerGas, maxFeePerGas - baseFee)
+     * 付不起基础费用的交易为负数，排在最便宜的一端
+     */
+    long effectiveTip(long baseFee) {
+        return Math.min(maxPriorityFeePerGas, maxFeePerGas - baseFee);
+    }
+
+    // 超过 long 范围的费用按 Long.MAX_VALUE 处理，不影响排序
+    static long saturate(BigInteger value) {
+        return value.bitLength() < Long.SIZE ? value.longValue() : Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,158 @@
+package com.tanggo.fund.eth.lib.outbound;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 单个发送者的交易链
+ * 按 nonce 连续存放在数组中：txs[i] 的 nonce 为 nonce + i，空位表示缺失的 nonce
+ * 从头开始连续的 executable 笔交易可以执行（pending），空位之后的交易等待补齐（queued）
+ *
+ * 非线程安全，由发送者所在分段的锁保护
+ */
+class SenderChain {
+    static final PooledTransaction[] EMPTY = new PooledTransaction[0];
+
+    private PooledTransaction[] txs = new PooledTransaction[4];
+    private long nonce;     // 账户状态中的下一个 nonce
+    private int length;     // 最后一笔交易的位置 + 1
+    private int size;       // 交易数
+    private int executable; // 从 nonce 开始连续的交易数
+
+    SenderChain(long nonce) {
+        this.nonce = nonce;
+    }
+
+    PooledTransaction get(long txNonce) {
+        long offset = txNonce - nonce;
+        return offset >= 0 && offset < length ? txs[(int) offset] : null;
+    }
+
+    /**
+     * 放入交易，返回被替换的同 nonce 交易
+     * 调用方保证 nonce 不小于账户 nonce 且不超过允许的间隔
+     */
+    PooledTransaction put(PooledTransaction tx) {
+        int offset = (int) (tx.nonce - nonce);
+        if (offset >= txs.length) {
+            txs = Arrays.copyOf(txs, Math.max(txs.length * 2, offset + 1));
+        }
+        PooledTransaction replaced = txs[offset];
+        txs[offset] = tx;
+        if (replaced == null) {
+            size++;
+        }
+        length = Math.max(length, offset + 1);
+        if (offset == executable) {
+            advanceExecutable();
+        }
+        return replaced;
+    }
+
+    /**
+     * 移除交易（必须是链中的同一对象），其后的交易因缺少前序 nonce 降为等待
+     */
+    boolean remove(PooledTransaction tx) {
+        long offset = tx.nonce - nonce;
+        if (offset < 0 || offset >= length || txs[(int) offset] != tx) {
+            return false;
+        }
+        txs[(int) offset] = null;
+        size--;
+        executable = Math.min(executable, (int) offset);
+        while (length > 0 && txs[length - 1] == null) {
+            length--;
+        }
+        return true;
+    }
+
+    /**
+     * 账户 nonce 变为 newNonce（新区块或链重组）
+     * 前进时丢弃 nonce 更小的交易并返回；后退时整体右移，空出的位置等待回注
+     */
+    List<PooledTransaction> rebase(long newNonce) {
+        List<PooledTransaction> dropped = List.of();
+        if (newNonce > nonce) {
+            long shift = newNonce - nonce;
+            int cut = (int) Math.min(shift, length);
+            dropped = new ArrayList<>(cut);
+            for (int i = 0; i < cut; i++) {
+                if (txs[i] != null) {
+                    dropped.add(txs[i]);
+                }
+            }
+            System.arraycopy(txs, cut, txs, 0, length - cut);
+            Arrays.fill(txs, length - cut, length, null);
+            length -= cut;
+            size -= dropped.size();
+            executable = (int) Math.max(0, executable - shift);
+        } else if (newNonce < nonce && length > 0) {
+            int shift = (int) Math.min(nonce - newNonce, Integer.MAX_VALUE - length);
+            if (length + shift > txs.length) {
+                txs = Arrays.copyOf(txs, length + shift);
+            }
+            System.arraycopy(txs, 0, txs, shift, length);
+            Arrays.fill(txs, 0, shift, null);
+            length += shift;
+            executable = 0;
+        }
+        nonce = newNonce;
+        advanceExecutable();
+        return dropped;
+    }
+
+    private void advanceExecutable() {
+        while (executable < length && txs[executable] != null) {
+            executable++;
+        }
+    }
+
+
+    // 从第 from 笔开始的可执行交易的副本
+    PooledTransaction[] executables(int from) {
+        return from >= executable ? EMPTY : Arrays.copyOfRange(txs, from, executable);
+    }
+
+    // nonce 不小于 txNonce 的交易，nonce 从大到小
+    List<PooledTransaction> from(long txNonce) {
+        List<PooledTransaction> result = new ArrayList<>();
+        for (long i = length - 1; i >= Math.max(0, txNonce - nonce); i--) {
+            if (txs[(int) i] != null) {
+                result.add(txs[(int) i]);
+            }
+        }
+        return result;
+    }
+
+    // 在 deadline 之前入池、仍在等待的交易
+    List<PooledTransaction> queuedBefore(long deadline) {
+        List<PooledTransaction> result = null;
+        for (int i = executable + 1; i < length; i++) {
+            PooledTransaction tx = txs[i];
+            if (tx != null && tx.arrivalMillis < deadline) {
+                if (result == null) {
+                    result = new ArrayList<>();
+                }
+                result.add(tx);
+            }
+        }
+        return result == null ? List.of() : result;
+    }
+
+    long nonce() {
+        return nonce;
+    }
+
+    int executableCount() {
+        return executable;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return length == 0;
+    }
+}
@@ -0,0 +1,62 @@
+package com.tanggo.fund.eth.lib.outbound;
+
+import com.tanggo.fund.eth.lib.domain.Account;
+import com.tanggo.fund.eth.lib.domain.transaction.Keccak;
+import com.tanggo.fund.eth.lib.domain.transaction.Rlp;
+
+import java.util.SortedMap;
+import java.util.function.Consumer;
+
+/**
+ * 账户状态树，根哈希即区块头的 stateRoot
+ *
+ * 键为 keccak256(地址)，值为 rlp([nonce, balance, storageRoot, codeHash])，未设置的哈希按空树根和空代码哈希编码；
+ * 空账户（EIP-161：nonce 和余额为 0、没有代码）不进入状态树
+ */
+public class StateTrie {
+    private final MerklePatriciaTrie trie;
+
+    public StateTrie(TrieNodeStore store, byte[] stateRoot, int cacheSize) {
+        this.trie = new MerklePatriciaTrie(store, stateRoot, cacheSize);
+    }
+
+    public void update(Account account) {
+        byte[] key = Keccak.keccak256(account.getAddress());
+        if (account.isEmpty()) {
+            trie.delete(key);
+        } else {
+            trie.put(key, encode(account));
+        }
+    }
+
+    public void delete(byte[] address) {
+        trie.delete(Keccak.keccak256(address));
+    }
+
+    /**
+     * @return 账户在状态树中的编码，不存在时返回 null
+     */
+    public byte[] get(byte[] address) {
+        return trie.get(Keccak.keccak256(address));
+    }
+
+    public byte[] rootHash() {
+        return trie.rootHash();
+    }
+
+    public byte[] commit(Consumer<SortedMap<byte[], byte[]>> writer) {
+        return trie.commit(writer);
+    }
+
+    public void rollback() {
+        trie.rollback();
+    }
+
+    static byte[] encode(Account account) {
+        return Rlp.encodeList(
+                Rlp.encodeInteger(account.getNonce()),
+                Rlp.encodeInteger(account.getBalance()),
+                Rlp.encodeString(account.getStorageRoot() != null ? account.getStorageRoot() : Account.EMPTY_STORAGE_ROOT),
+                Rlp.encodeString(account.getCodeHash() != null ? account.getCodeHash() : Account.EMPTY_CODE_HASH));
+    }
+}
@@ -1,163 +1,638 @@
 package com.tanggo.fund.eth.lib.outbound;
 
-import com.tanggo.fund.bitcoin.lib.domain.Transaction;
+import com.tanggo.fund.eth.lib.config.TxPoolOptions;
+import com.tanggo.fund.eth.lib.domain.Account;
+import com.tanggo.fund.eth.lib.domain.BlockBody;
+import com.tanggo.fund.eth.lib.domain.BlockTemplate;
+import com.tanggo.fund.eth.lib.domain.repo.IAccountRepo;
 import com.tanggo.fund.eth.lib.domain.repo.ITransactionPool;
+import com.tanggo.fund.eth.lib.domain.transaction.Eip1559Transaction;
+import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
 import java.math.BigInteger;
-import java.util.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
 
-// 简化的交易池类定义
-public class TransactionPool implements ITransactionPool {
-    private final Map<String, TreeMap<BigInteger, Transaction>> pending = new ConcurrentHashMap<>();
-    private final Map<String, TreeMap<BigInteger, Transaction>> queue = new ConcurrentHashMap<>();
-    private final Map<String, Transaction> allTransactions = new ConcurrentHashMap<>();
+/**
+ * 交易池
+ * - 每个发送者一条按 nonce 连续存放的交易链（SenderChain），nonce 用 long
+ * - 全部交易按有效小费进入带位置索引的最小堆，替换和删除为 O(log n)，堆顶即最便宜的交易
+ * - 发送者按地址哈希分段加锁，不同分段的发送者并行入池；价格堆只在入堆、出堆时短暂加锁
+ * - 出块交易由 BlockTemplateBuilder 选出，交易池只通知变化，模板随交易到达增量更新
+ * - 容量：全局交易数、编码字节数和单个发送者的交易数都有上限；池满时新交易必须比最便宜的交易出价高，
+ *   入池后从价格堆顶逐出最便宜的交易（连同该发送者 nonce 更大的交易）；等待过久的交易定期过期
+ * - 链头变化时只处理新旧区块涉及的发送者：按账户 nonce 重定交易链的基准，回注被回滚区块中的交易
+ * - 配置了 journalPath 时入池的交易追加到日志（TxPoolJournal），启动时批量装回，校验和匹配的记录不再重新验证；
+ *   日志重写在后台线程进行，不占用入池线程
+ *
+ * 加锁顺序：（模板锁 ->）发送者分段锁 -> 价格堆锁
+ */
+@Slf4j
+public class TransactionPool implements ITransactionPool, AutoCloseable {
+    // 最便宜的在堆顶，同价时后入池的先出
+    private static final Comparator<PooledTransaction> CHEAPEST_FIRST = (a, b) -> {
+        int byTip = Long.compare(a.tip, b.tip);
+        return byTip != 0 ? byTip : Long.compare(b.sequence, a.sequence);
+    };
 
-    private final PriorityQueue<Transaction> pricedTransactions=null;
-//    private final PriorityQueue<Transaction> pricedTransactions = new PriorityQueue<>(Comparator.comparing(Transaction::getEffectiveGasPrice));
+    private final TxPoolOptions options;
+    private final IAccountRepo accountRepo;
+    private final Map<String, PooledTransaction> allTransactions = new ConcurrentHashMap<>();
+    private final Map<String, SenderChain> senders = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes;
+    private final IndexedHeap<PooledTransaction> pricedTransactions = new IndexedHeap<>(CHEAPEST_FIRST);
+    private final ReentrantLock pricedLock = new ReentrantLock();
+    private final AtomicLong sequence = new AtomicLong();
+    private final BlockTemplateBuilder templateBuilder = new BlockTemplateBuilder(this);
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+    private final ReentrantLock expiryLock = new ReentrantLock();
+    private final LongSupplier clock; // 毫秒
+    private final TxPoolJournal journal; // 未配置 journalPath 时为 null
+    private final ReentrantLock rotateLock = new ReentrantLock();
+    private final ExecutorService journalRotator; // 未配置 journalPath 时为 null
+    private final AtomicBoolean rotationQueued = new AtomicBoolean();
+    private volatile long nextExpiryCheck;
+    private volatile long baseFee; // 当前区块的基础费用，写入时持有价格堆锁
+    private volatile BigInteger baseFeePerGas = BigInteger.ZERO;
+
+    public TransactionPool(IAccountRepo accountRepo) {
+        this(accountRepo, new TxPoolOptions());
+    }
+
+    public TransactionPool(IAccountRepo accountRepo, TxPoolOptions options) {
+        this(accountRepo, options, System::currentTimeMillis);
+    }
+
+    TransactionPool(IAccountRepo accountRepo, TxPoolOptions options, LongSupplier clock) {
+        if (Integer.bitCount(options.getLockStripes()) != 1) {
+            throw new IllegalArgumentException("Lock stripes must be a power of two: " + options.getLockStripes());
+        }
+        this.accountRepo = accountRepo;
+        this.options = options;
+        this.clock = clock;
+        this.nextExpiryCheck = clock.getAsLong() + options.getExpiryCheckIntervalMillis();
+        this.stripes = new ReentrantLock[options.getLockStripes()];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        if (options.getJournalPath() == null) {
+            this.journal = null;
+            this.journalRotator = null;
+            return;
+        }
+        this.journal = new TxPoolJournal(Path.of(options.getJournalPath()), options, clock);
+        this.journalRotator = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "txpool-journal-rotate");
+            thread.setDaemon(true);
+            return thread;
+        });
+        TxPoolJournal.Replay replay = journal.replay();
+        bulkLoad(replay.verified);
+        for (Eip1559Transaction tx : replay.unverified) {
+            addTransaction(tx);
+        }
+        // 重放后立即按池内交易重写，去掉已失效的记录和损坏的尾部
+        rotateJournal();
+    }
 
     @Override
-    public boolean addTransaction(Transaction tx) {
-        // 1. 基本验证 (签名、大小、Gas等)
+    public boolean addTransaction(Eip1559Transaction tx) {
+        // 1. 基本验证在锁外完成
         if (!validateTransaction(tx)) {
             return false;
         }
+        byte[] encoded = tx.encode();
+        PooledTransaction pooled = new PooledTransaction(tx, encoded.length, sequence.incrementAndGet(), clock.getAsLong());
+        if (pooled.size > options.getMaxTxBytes()) {
+            return false;
+        }
 
-        String from = tx.getFrom();
-        BigInteger nonce = tx.getNonce();
-        BigInteger expectedNonce = getCurrentNonceFromState(from); // 从状态数据库获取账户当前Nonce
+        ReentrantLock lock = stripe(pooled.sender);
+        lock.lock();
+        try {
+            // 2. 检查是否已存在
+            if (allTransactions.containsKey(pooled.hash)) {
+                return false;
+            }
+            SenderChain chain = senders.get(pooled.sender);
+            if (chain == null) {
+                chain = new SenderChain(getCurrentNonceFromState(pooled.sender));
+            }
+
+            // 3. nonce 已执行或领先太多的交易直接拒绝
+            long gap = pooled.nonce - chain.nonce();
+            if (gap < 0 || gap >= options.getMaxNonceGap()) {
+                return false;
+            }
+
+            // 4. 同 nonce 的交易需要足够的加价才能替换（PriceBump 机制）
+            PooledTransaction existing = chain.get(pooled.nonce);
+            if (existing != null && !isReplacement(existing.tx, tx)) {
+                return false;
+            }
+
+            // 5. 容量：发送者的交易数上限；池满时必须比最便宜的交易出价高
+            if (existing == null && chain.size() >= options.getSenderSlots()) {
+                return false;
+            }
+            if (isFull(pooled.size - (existing == null ? 0 : existing.size), existing == null ? 1 : 0) && !outbids(pooled)) {
+                return false;
+            }
 
-        // 2. 检查是否已存在
-        if (allTransactions.containsKey(tx.getHash())) {
-            return false; // 交易已存在
+            chain.put(pooled);
+            senders.putIfAbsent(pooled.sender, chain);
+            allTransactions.put(pooled.hash, pooled);
+            count.incrementAndGet();
+            bytes.addAndGet(pooled.size);
+            if (existing != null) {
+                allTransactions.remove(existing.hash);
+                count.decrementAndGet();
+                bytes.addAndGet(-existing.size);
+                existing.removed = true;
+                templateBuilder.onChanged(existing);
+            }
+            reprice(existing, pooled);
+            templateBuilder.onChanged(pooled);
+        } finally {
+            lock.unlock();
         }
 
-        // 3. 判断交易应放入pending还是queue
-        if (nonce.compareTo(expectedNonce) <= 0) {
-            // Nonce小于或等于预期值，可能是无效或重复交易，需要更复杂的处理（如替换）
-            // 此处简化处理
-            return handleReplacementOrInvalid(tx, expectedNonce);
-        } else if (nonce.compareTo(expectedNonce) == 1) {
-            // Nonce不连续，放入queue
-            return addToQueue(tx);
-        } else {
-            // Nonce连续，放入pending
-            return addToPending(tx);
+        // 逐出时要获取其它发送者的锁，在释放自己的分段锁之后进行
+        evictOverflow();
+        if (clock.getAsLong() >= nextExpiryCheck) {
+            evictExpired();
         }
+        if (journal != null) {
+            journal.append(tx, encoded);
+            if (journal.rotateDue() && rotationQueued.compareAndSet(false, true)) {
+                journalRotator.execute(this::rotateJournalInBackground);
+            }
+        }
+        return true;
     }
 
-    private boolean handleReplacementOrInvalid(Transaction tx, BigInteger expectedNonce) {
-        return false;
+    /**
+     * 批量装入日志中校验和匹配的交易：发送者和哈希取自日志，不再重新验证
+     * 按发送者归集、按 nonce 排序，每个发送者只加一次锁、查一次账户 nonce；
+     * 同 nonce 的交易后出现的是替换后的版本；全部装入后统一做容量逐出并让模板重建
+     * @return 装入的交易数
+     */
+    int bulkLoad(List<Eip1559Transaction> transactions) {
+        long now = clock.getAsLong();
+        Map<String, List<PooledTransaction>> bySender = new HashMap<>();
+        for (Eip1559Transaction tx : transactions) {
+            if (tx.getNonce().bitLength() >= Long.SIZE) {
+                continue;
+            }
+            PooledTransaction pooled = new PooledTransaction(tx, sequence.incrementAndGet(), now);
+            bySender.computeIfAbsent(pooled.sender, k -> new ArrayList<>()).add(pooled);
+        }
+
+        int loaded = 0;
+        for (Map.Entry<String, List<PooledTransaction>> entry : bySender.entrySet()) {
+            String sender = entry.getKey();
+            List<PooledTransaction> pooledList = entry.getValue();
+            pooledList.sort(Comparator.comparingLong(p -> p.nonce)); // 稳定排序，同 nonce 保持日志顺序
+            ReentrantLock lock = stripe(sender);
+            lock.lock();
+            try {
+                SenderChain chain = senders.get(sender);
+                if (chain == null) {
+                    chain = new SenderChain(getCurrentNonceFromState(sender));
+                }
+                for (PooledTransaction pooled : pooledList) {
+                    long gap = pooled.nonce - chain.nonce();
+                    if (gap < 0 || gap >= options.getMaxNonceGap() || allTransactions.containsKey(pooled.hash)) {
+                        continue;
+                    }
+                    PooledTransaction existing = chain.get(pooled.nonce);
+                    if (existing == null && chain.size() >= options.getSenderSlots()) {
+                        continue;
+                    }
+                    chain.put(pooled);
+                    allTransactions.put(pooled.hash, pooled);
+                    count.incrementAndGet();
+                    bytes.addAndGet(pooled.size);
+                    if (existing != null) {
+                        allTransactions.remove(existing.hash);
+                        count.decrementAndGet();
+                        bytes.addAndGet(-existing.size);
+                        existing.removed = true;
+                    } else {
+                        loaded++;
+                    }
+                    reprice(existing, pooled);
+                }
+                if (!chain.isEmpty()) {
+                    senders.putIfAbsent(sender, chain);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        templateBuilder.invalidate();
+        evictOverflow();
+        return loaded;
+    }
+
+    // 按池内交易重写日志；已有线程在重写时直接返回
+    private void rotateJournal() {
+        if (!rotateLock.tryLock()) {
+            return;
+        }
+        try {
+            journal.rotate(() -> allTransactions.values().stream().map(pooled -> pooled.tx).iterator());
+        } finally {
+            rotateLock.unlock();
+        }
+    }
+
+    private void rotateJournalInBackground() {
+        try {
+            rotateJournal();
+        } catch (RuntimeException e) {
+            // 原日志文件仍在使用，下一个重写间隔再试
+            log.error("Failed to rotate transaction journal", e);
+        } finally {
+            rotationQueued.set(false);
+        }
     }
 
-    private BigInteger getCurrentNonceFromState(String from) {
-        return new BigInteger(from);
+    private boolean validateTransaction(Eip1559Transaction tx) {
+        // nonce 必须能用 long 表示（EIP-2681 限制 nonce < 2^64 - 1）；签名必须能恢复出发送者
+        return tx != null && tx.validate() && tx.getNonce().bitLength() < Long.SIZE && tx.recoverSender() != null;
     }
 
-    private boolean validateTransaction(Transaction tx) {
-        return false;
+    private boolean isReplacement(Eip1559Transaction existing, Eip1559Transaction replacement) {
+        BigInteger percent = BigInteger.valueOf(100L + options.getPriceBumpPercent());
+        BigInteger hundred = BigInteger.valueOf(100);
+        return replacement.getMaxFeePerGas().multiply(hundred).compareTo(existing.getMaxFeePerGas().multiply(percent)) >= 0
+                && replacement.getMaxPriorityFeePerGas().multiply(hundred).compareTo(existing.getMaxPriorityFeePerGas().multiply(percent)) >= 0;
     }
 
-    private boolean addToPending(Transaction tx) {
-        String from = tx.getFrom();
-        BigInteger nonce = tx.getNonce();
+    private long getCurrentNonceFromState(String from) {
+        Account account = accountRepo.query(from);
+        return account == null || account.getNonce() == null ? 0 : account.getNonce().longValue();
+    }
+
+    private boolean isFull(long extraBytes, int extraCount) {
+        return count.get() + extraCount > options.getGlobalSlots() || bytes.get() + extraBytes > options.getMaxPoolBytes();
+    }
 
-        TreeMap<BigInteger, Transaction> accountTxs = pending.computeIfAbsent(from, k -> new TreeMap<>());
+    // 新交易的有效小费高于池中最便宜的交易
+    private boolean outbids(PooledTransaction pooled) {
+        pricedLock.lock();
+        try {
+            PooledTransaction cheapest = pricedTransactions.peek();
+            return cheapest == null || pooled.effectiveTip(baseFee) > cheapest.tip;
+        } finally {
+            pricedLock.unlock();
+        }
+    }
 
-        // 检查是否存在相同Nonce的交易，并进行价格比较替换（PriceBump机制）
-        Transaction existingTx = accountTxs.get(nonce);
-        if (existingTx != null) {
-            if (tx.getGasPrice().compareTo(existingTx.getGasPrice()) <= 0) {
-                return false; // 新交易Gas价格不够高，不替换
+    /**
+     * 超出容量时从价格堆顶逐出最便宜的交易；该发送者 nonce 更大的交易失去前序，一并逐出
+     */
+    private void evictOverflow() {
+        while (isFull(0, 0)) {
+            PooledTransaction cheapest;
+            pricedLock.lock();
+            try {
+                cheapest = pricedTransactions.peek();
+            } finally {
+                pricedLock.unlock();
+            }
+            if (cheapest == null) {
+                return;
+            }
+            ReentrantLock lock = stripe(cheapest.sender);
+            lock.lock();
+            try {
+                SenderChain chain = senders.get(cheapest.sender);
+                if (!cheapest.removed && chain != null) {
+                    for (PooledTransaction tx : chain.from(cheapest.nonce)) {
+                        removeLocked(tx);
+                    }
+                }
+            } finally {
+                lock.unlock();
             }
-            // 移除旧交易
-            removeTransactionFromGlobalIndices(existingTx);
         }
+    }
 
-        // 加入pending和全局索引
-        accountTxs.put(nonce, tx);
-        allTransactions.put(tx.getHash(), tx);
-        pricedTransactions.offer(tx);
+    /**
+     * 丢弃等待超过 queuedLifetimeMillis 的交易（nonce 不连续，迟迟没有补齐），返回丢弃的数量
+     * 入池时按 expiryCheckIntervalMillis 的间隔自动调用
+     */
+    public int evictExpired() {
+        if (!expiryLock.tryLock()) {
+            return 0; // 其它线程正在清理
+        }
+        try {
+            long now = clock.getAsLong();
+            nextExpiryCheck = now + options.getExpiryCheckIntervalMillis();
+            long deadline = now - options.getQueuedLifetimeMillis();
+            int expired = 0;
+            for (String sender : senders.keySet()) {
+                ReentrantLock lock = stripe(sender);
+                lock.lock();
+                try {
+                    SenderChain chain = senders.get(sender);
+                    if (chain != null) {
+                        for (PooledTransaction tx : chain.queuedBefore(deadline)) {
+                            removeLocked(tx);
+                            expired++;
+                        }
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return expired;
+        } finally {
+            expiryLock.unlock();
+        }
+    }
 
-        // 尝试促进（promote）queue中因这个新交易而变得连续的交易
-        promoteExecutables(from);
-        return true;
+    // 在价格堆中用新交易替换旧交易（旧交易可以为 null）
+    private void reprice(PooledTransaction removed, PooledTransaction added) {
+        pricedLock.lock();
+        try {
+            if (removed != null) {
+                pricedTransactions.remove(removed);
+            }
+            if (added != null) {
+                added.tip = added.effectiveTip(baseFee);
+                pricedTransactions.offer(added);
+            }
+        } finally {
+            pricedLock.unlock();
+        }
     }
 
-    private boolean addToQueue(Transaction tx) {
-        // 逻辑类似addToPending，但交易被加入到queue中
-        // 同时也会加入allTransactions和pricedTransactions
-        // ...
-        return true;
+    /**
+     * 更新基础费用，按新的有效小费重建价格堆
+     */
+    public void setBaseFee(BigInteger baseFeePerGas) {
+        long fee = PooledTransaction.saturate(baseFeePerGas);
+        pricedLock.lock();
+        try {
+            this.baseFeePerGas = baseFeePerGas;
+            baseFee = fee;
+            pricedTransactions.forEach(tx -> tx.tip = tx.effectiveTip(fee));
+            pricedTransactions.reheap();
+        } finally {
+            pricedLock.unlock();
+        }
     }
 
-    private void promoteExecutables(String accountAddress) {
-        TreeMap<BigInteger, Transaction> queued = queue.get(accountAddress);
-        if (queued == null) return;
+    /**
+     * 按当前基础费用和默认区块 Gas 上限构建区块模板，返回其中的前 limit 笔交易
+     */
+    @Override
+    public List<Eip1559Transaction> getPendingTransactions(int limit) {
+        List<Eip1559Transaction> transactions = getBlockTemplate(baseFeePerGas, options.getBlockGasLimit()).getTransactions();
+        return transactions.size() <= limit ? transactions : new ArrayList<>(transactions.subList(0, limit));
+    }
+
+    /**
+     * 区块模板：按有效小费选出装得下 gasLimit 的交易，同一发送者保持 nonce 顺序
+     * 参数不变时在上一次的模板上增量更新
+     */
+    public BlockTemplate getBlockTemplate(BigInteger baseFeePerGas, long gasLimit) {
+        return templateBuilder.template(baseFeePerGas, gasLimit);
+    }
+
+    // 各发送者可执行交易链的副本
+    List<PooledTransaction[]> executableChains() {
+        List<PooledTransaction[]> chains = new ArrayList<>(senders.size());
+        for (Map.Entry<String, SenderChain> entry : senders.entrySet()) {
+            PooledTransaction[] executables;
+            ReentrantLock lock = stripe(entry.getKey());
+            lock.lock();
+            try {
+                executables = entry.getValue().executables(0);
+            } finally {
+                lock.unlock();
+            }
+            if (executables.length > 0) {
+                chains.add(executables);
+            }
+        }
+        return chains;
+    }
 
-        BigInteger nextExpectedNonce = getCurrentNonceFromState(accountAddress).add(BigInteger.ONE);
-        List<Transaction> toPromote = new ArrayList<>();
+    /**
+     * 发送者从 fromNonce 开始的连续可执行交易，fromNonce 为 -1 时从账户 nonce 开始
+     */
+    PooledTransaction[] executableRun(String sender, long fromNonce) {
+        ReentrantLock lock = stripe(sender);
+        lock.lock();
+        try {
+            SenderChain chain = senders.get(sender);
+            if (chain == null) {
+                return SenderChain.EMPTY;
+            }
+            long from = fromNonce < 0 ? 0 : fromNonce - chain.nonce();
+            return from < 0 || from > Integer.MAX_VALUE ? SenderChain.EMPTY : chain.executables((int) from);
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        // 查找从nextExpectedNonce开始连续的交易
-        for (BigInteger nonce = nextExpectedNonce; queued.containsKey(nonce); nonce = nonce.add(BigInteger.ONE)) {
-            toPromote.add(queued.get(nonce));
+    @Override
+    public void removeTransaction(String txHash) {
+        PooledTransaction pooled = allTransactions.get(txHash);
+        if (pooled == null) {
+            return;
+        }
+        ReentrantLock lock = stripe(pooled.sender);
+        lock.lock();
+        try {
+            removeLocked(pooled);
+        } finally {
+            lock.unlock();
         }
+    }
 
-        // 将这些交易从queue移到pending
-        for (Transaction tx : toPromote) {
-            queued.remove(tx.getNonce());
-            addToPending(tx); // 复用方法
+    // 从交易链和所有索引中删除交易，调用方持有发送者的分段锁
+    private void removeLocked(PooledTransaction pooled) {
+        if (!unindex(pooled)) {
+            return; // 已被并发替换或删除
+        }
+        SenderChain chain = senders.get(pooled.sender);
+        if (chain != null) {
+            chain.remove(pooled);
+            if (chain.isEmpty()) {
+                senders.remove(pooled.sender);
+            }
         }
+    }
 
-        if (queued.isEmpty()) {
-            queue.remove(accountAddress);
+    // 从哈希索引、价格堆和容量统计中删除（不动交易链），调用方持有发送者的分段锁
+    private boolean unindex(PooledTransaction pooled) {
+        if (!allTransactions.remove(pooled.hash, pooled)) {
+            return false;
         }
+        count.decrementAndGet();
+        bytes.addAndGet(-pooled.size);
+        reprice(pooled, null);
+        pooled.removed = true;
+        templateBuilder.onChanged(pooled);
+        return true;
     }
 
+    /**
+     * 链头变化，一次批量处理：
+     * 1. 按发送者归集新旧区块中的交易，只处理涉及的发送者，不扫描整个交易池
+     * 2. 每个发送者加一次锁，按 IAccountRepo 中的新 nonce 重定交易链基准：
+     *    已打包（nonce 更小）的交易丢弃，后续交易随之提升为可执行；nonce 后退时交易降为等待
+     * 3. 被回滚且未被新区块打包的交易回注到交易链中，补上后退出的空位
+     * 发送者取自区块体（区块执行时已恢复），不做 ecrecover；回滚交易只在确实回注时才计算哈希和编码长度
+     */
     @Override
-    public List<Transaction> getPendingTransactions(int limit) {
-        List<Transaction> candidates = new ArrayList<>();
-        // 从priced队列（已按GasPrice排序）中获取交易，直到满足数量或Gas上限
-        // 注意：需要确保来自同一账户的交易按Nonce顺序取出
-        Iterator<Transaction> priceIterator = pricedTransactions.iterator();
+    public void onNewHead(List<BlockBody> reverted, List<BlockBody> applied) {
+        long now = clock.getAsLong();
+        Map<String, List<Eip1559Transaction>> touched = new HashMap<>();
+        for (BlockBody block : reverted) {
+            List<Eip1559Transaction> transactions = block.getTransactions();
+            List<String> blockSenders = sendersOf(block);
+            for (int i = 0; i < transactions.size(); i++) {
+                touched.computeIfAbsent(blockSenders.get(i), k -> new ArrayList<>()).add(transactions.get(i));
+            }
+        }
+        for (BlockBody block : applied) {
+            for (String sender : sendersOf(block)) {
+                touched.putIfAbsent(sender, List.of());
+            }
+        }
 
-        while (priceIterator.hasNext() && candidates.size() < limit) {
-            Transaction tx = priceIterator.next();
-            // 这里需要复杂的逻辑来确保账户交易顺序，并避免重复，此处大幅简化
-            if (isStillPending(tx)) { // 检查交易是否仍在pending池中
-                candidates.add(tx);
+        for (Map.Entry<String, List<Eip1559Transaction>> entry : touched.entrySet()) {
+            String sender = entry.getKey();
+            long nonce = getCurrentNonceFromState(sender);
+            ReentrantLock lock = stripe(sender);
+            lock.lock();
+            try {
+                SenderChain chain = senders.get(sender);
+                if (chain == null) {
+                    if (entry.getValue().isEmpty()) {
+                        continue;
+                    }
+                    chain = new SenderChain(nonce);
+                    senders.put(sender, chain);
+                } else {
+                    for (PooledTransaction stale : chain.rebase(nonce)) {
+                        unindex(stale);
+                    }
+                }
+                for (Eip1559Transaction tx : entry.getValue()) {
+                    reinject(chain, sender, tx, now);
+                }
+                if (chain.isEmpty()) {
+                    senders.remove(sender);
+                }
+            } finally {
+                lock.unlock();
             }
         }
-        return candidates;
+        templateBuilder.invalidate();
+        evictOverflow();
     }
 
-    private boolean isStillPending(Transaction tx) {
-        return tx.getGasPrice().compareTo(tx.getGasPrice()) == 0;
+    // 区块体中已恢复的发送者，与交易一一对应
+    private static List<String> sendersOf(BlockBody block) {
+        if (!block.hasSenders()) {
+            throw new IllegalArgumentException("Block body senders are not recovered");
+        }
+        return block.getSenders();
     }
 
-    @Override
-    public void removeTransaction(String txHash) {
-        Transaction tx = allTransactions.remove(txHash);
-        if (tx == null) return;
+    // 回注回滚区块中的交易（已在区块中验证过），已打包、已在池中或已有同 nonce 交易时跳过
+    private void reinject(SenderChain chain, String sender, Eip1559Transaction tx, long now) {
+        long nonce = tx.getNonce().longValue();
+        long gap = nonce - chain.nonce();
+        if (gap < 0 || gap >= options.getMaxNonceGap() || chain.get(nonce) != null) {
+            return;
+        }
+        PooledTransaction pooled = new PooledTransaction(tx, sender, PooledTransaction.measure(tx), sequence.incrementAndGet(), now);
+        if (allTransactions.containsKey(pooled.hash)) {
+            return;
+        }
+        chain.put(pooled);
+        allTransactions.put(pooled.hash, pooled);
+        count.incrementAndGet();
+        bytes.addAndGet(pooled.size);
+        reprice(null, pooled);
+    }
 
-        String from = tx.getFrom();
-        BigInteger nonce = tx.getNonce();
+    public Eip1559Transaction getTransaction(String txHash) {
+        PooledTransaction pooled = allTransactions.get(txHash);
+        return pooled == null ? null : pooled.tx;
+    }
 
-        // 从pending或queue中移除
-        removeFromMap(pending, from, nonce);
-        removeFromMap(queue, from, nonce);
+    @Override
+    public int size() {
+        return count.get();
+    }
 
-        // 从价格排序队列中移除（实际实现可能需要更高效的方式）
-        pricedTransactions.remove(tx);
+    // 池内交易编码字节数之和
+    public long bytes() {
+        return bytes.get();
     }
 
-    private void removeFromMap(Map<String, TreeMap<BigInteger, Transaction>> map, String from, BigInteger nonce) {
-        TreeMap<BigInteger, Transaction> accountTxs = map.get(from);
-        if (accountTxs != null) {
-            accountTxs.remove(nonce);
-            if (accountTxs.isEmpty()) {
-                map.remove(from);
+    // 可执行（nonce 连续）的交易数
+    public int pendingCount() {
+        int count = 0;
+        for (Map.Entry<String, SenderChain> entry : senders.entrySet()) {
+            ReentrantLock lock = stripe(entry.getKey());
+            lock.lock();
+            try {
+                count += entry.getValue().executableCount();
+            } finally {
+                lock.unlock();
             }
         }
+        return count;
+    }
+
+    /**
+     * 把日志 force 到磁盘并关闭；未配置日志时什么也不做
+     */
+    @Override
+    public void close() {
+        if (journal == null) {
+            return;
+        }
+        journalRotator.shutdown();
+        try {
+            journalRotator.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to close transaction journal", e);
+        }
+    }
+
+    private ReentrantLock stripe(String sender) {
+        int h = sender.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
     }
 }
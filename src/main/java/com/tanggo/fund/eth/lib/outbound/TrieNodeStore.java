@@ -0,0 +1,19 @@
+package com.tanggo.fund.eth.lib.outbound;
+
+import java.util.SortedMap;
+
+/**
+ * 默克尔树节点存储：键为节点 RLP 编码的 Keccak256 哈希，值为编码本身
+ */
+public interface TrieNodeStore {
+
+    /**
+     * @return 节点编码，不存在时返回 null
+     */
+    byte[] get(byte[] hash);
+
+    /**
+     * 一次写入一批节点，按哈希无符号字节序排列
+     */
+    void putAll(SortedMap<byte[], byte[]> nodes);
+}
@@ -0,0 +1,286 @@
+package com.tanggo.fund.eth.lib.outbound;
+
+import com.tanggo.fund.eth.lib.config.TxPoolOptions;
+import com.tanggo.fund.eth.lib.domain.transaction.Eip1559Transaction;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32C;
+
+/**
+ * 交易池日志
+ *
+ * 入池的交易按 Transaction.encode() 的编码追加到一个文件，重启时重放恢复交易池
+ * 记录格式: [长度(4字节)][CRC32C(4字节)][发送者(20字节)][哈希(32字节)][编码]，长度不含自身，CRC 覆盖发送者及之后的字节
+ * 发送者和哈希随记录保存：校验和匹配的记录重放时直接采用，不必重新验证和恢复签名
+ *
+ * 每条记录立即写入文件，按 journalSyncIntervalMillis 的间隔 force；
+ * 按 journalRotateMillis 的间隔（或日志超过 maxPoolBytes 的两倍时）用交易池当前内容重写到临时文件再原子替换，
+ * 丢弃已打包、被替换或被逐出的交易；重写不持有追加锁，期间的追加照常写入旧文件，并在替换前补写到新文件
+ */
+@Slf4j
+final class TxPoolJournal implements Closeable {
+    private static final int ADDRESS_LENGTH = 20;
+    private static final int HASH_LENGTH = 32;
+    private static final int RECORD_HEADER = 4 + 4 + ADDRESS_LENGTH + HASH_LENGTH;
+
+    private final Path path;
+    private final TxPoolOptions options;
+    private final LongSupplier clock; // 毫秒
+    private final Object lock = new Object();
+    private FileChannel channel;
+    private long nextSync;
+    private volatile long nextRotate;
+    private volatile long fileBytes; // 日志文件当前大小
+    private boolean dirty; // 有写入但尚未 force
+    private List<ByteBuffer> tail; // 重写期间追加的记录，替换前补写到新文件；不在重写时为 null
+
+    TxPoolJournal(Path path, TxPoolOptions options, LongSupplier clock) {
+        this.path = path;
+        this.options = options;
+        this.clock = clock;
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            fileBytes = channel.size();
+            channel.position(fileBytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open transaction journal at: " + path, e);
+        }
+        long now = clock.getAsLong();
+        nextSync = now + options.getJournalSyncIntervalMillis();
+        nextRotate = now + options.getJournalRotateMillis();
+    }
+
+    // ==================== 重放 ====================
+
+    /**
+     * 读出日志中的全部交易
+     * 校验和匹配的记录带上已保存的发送者和哈希放入 verified；校验和不匹配但仍能解码的放入 unverified，需要重新验证；
+     * 长度不合法或无法解码的记录视为写了一半，之后的内容丢弃
+     */
+    Replay replay() {
+        Replay replay = new Replay();
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read transaction journal: " + path, e);
+        }
+        while (buffer.remaining() >= 4) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            if (length < RECORD_HEADER - 4 || length > buffer.remaining()) {
+                break;
+            }
+            int end = start + 4 + length;
+            int stored = buffer.getInt();
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.duplicate().limit(end));
+            byte[] sender = new byte[ADDRESS_LENGTH];
+            byte[] hash = new byte[HASH_LENGTH];
+            buffer.get(sender).get(hash);
+            byte[] encoded = new byte[end - buffer.position()];
+            buffer.get(encoded);
+
+            Eip1559Transaction tx;
+            try {
+                tx = Eip1559Transaction.decode(encoded);
+            } catch (IllegalArgumentException e) {
+                buffer.position(start);
+                break;
+            }
+            if ((int) crc.getValue() == stored) {
+                tx.setCachedSender(sender);
+                tx.setCachedHash(hash);
+                replay.verified.add(tx);
+            } else {
+                replay.unverified.add(tx);
+            }
+        }
+        if (buffer.hasRemaining()) {
+            log.warn("Transaction journal {} is corrupt at position {}, dropping the rest", path.getFileName(), buffer.position());
+        }
+        return replay;
+    }
+
+    // ==================== 追加 ====================
+
+    /**
+     * 追加一笔已入池的交易，encoded 为 tx.encode() 的结果
+     */
+    void append(Eip1559Transaction tx, byte[] encoded) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + encoded.length);
+        writeRecord(record, tx, encoded);
+        synchronized (lock) {
+            try {
+                write(channel, record.flip());
+                fileBytes += record.limit();
+                dirty = true;
+                if (tail != null) {
+                    tail.add(record);
+                }
+                if (clock.getAsLong() >= nextSync) {
+                    sync();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to append transaction journal: " + path, e);
+            }
+        }
+    }
+
+    private static void writeRecord(ByteBuffer buffer, Eip1559Transaction tx, byte[] encoded) {
+        int start = buffer.position();
+        buffer.position(start + 8);
+        buffer.put(fixed(tx.recoverSender(), ADDRESS_LENGTH));
+        buffer.put(fixed(tx.getTransactionHash(), HASH_LENGTH));
+        buffer.put(encoded);
+        int end = buffer.position();
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().position(start + 8).limit(end));
+        buffer.putInt(start, end - start - 4);
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    private static byte[] fixed(byte[] bytes, int length) {
+        return bytes != null && bytes.length == length ? bytes : Arrays.copyOf(bytes == null ? new byte[0] : bytes, length);
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // 持有 lock
+    private void sync() throws IOException {
+        if (dirty) {
+            channel.force(false);
+            dirty = false;
+        }
+        nextSync = clock.getAsLong() + options.getJournalSyncIntervalMillis();
+    }
+
+    /**
+     * 把已写入的记录 force 到磁盘
+     */
+    void flush() {
+        synchronized (lock) {
+            try {
+                sync();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to sync transaction journal: " + path, e);
+            }
+        }
+    }
+
+    // ==================== 重写 ====================
+
+    // 到了重写间隔，或日志已超过交易池字节上限的两倍
+    boolean rotateDue() {
+        return fileBytes > 2 * options.getMaxPoolBytes() || clock.getAsLong() >= nextRotate;
+    }
+
+    /**
+     * 用交易池当前的交易重写日志：写入临时文件并 force 后原子替换原文件
+     * 重写期间追加照常进行，只在补写期间追加的记录和替换文件时短暂持锁；失败时继续使用原文件
+     * 由一个线程调用（交易池的重写线程，或启动时的构造线程）
+     */
+    void rotate(Iterable<Eip1559Transaction> live) {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        FileChannel out = null;
+        try {
+            out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            synchronized (lock) {
+                tail = new ArrayList<>();
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(256 * 1024);
+            for (Eip1559Transaction tx : live) {
+                byte[] encoded = tx.encode();
+                if (buffer.remaining() < RECORD_HEADER + encoded.length) {
+                    write(out, buffer.flip());
+                    buffer.clear();
+                    if (buffer.capacity() < RECORD_HEADER + encoded.length) {
+                        buffer = ByteBuffer.allocate(RECORD_HEADER + encoded.length);
+                    }
+                }
+                writeRecord(buffer, tx, encoded);
+            }
+            write(out, buffer.flip());
+            out.force(false);
+
+            synchronized (lock) {
+                // 快照之后追加的交易可能已在快照中，重放时按哈希去重
+                for (ByteBuffer record : tail) {
+                    write(out, record.duplicate().rewind());
+                }
+                tail = null;
+                out.force(false);
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                // 原文件被替换后才关闭；新文件沿用写临时文件的通道
+                FileChannel old = channel;
+                channel = out;
+                out = null;
+                fileBytes = channel.position();
+                dirty = false;
+                nextRotate = clock.getAsLong() + options.getJournalRotateMillis();
+                closeQuietly(old);
+            }
+        } catch (IOException e) {
+            synchronized (lock) {
+                tail = null;
+            }
+            // 之后的追加仍写入原文件，下一个重写间隔再试
+            nextRotate = clock.getAsLong() + options.getJournalRotateMillis();
+            throw new RuntimeException("Failed to rotate transaction journal: " + path, e);
+        } finally {
+            if (out != null) {
+                closeQuietly(out);
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close transaction journal channel", e);
+        }
+    }
+
+    long size() {
+        return fileBytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            sync();
+            channel.close();
+        }
+    }
+
+    // 重放结果
+    static final class Replay {
+        final List<Eip1559Transaction> verified = new ArrayList<>();   // 校验和匹配，发送者和哈希已恢复
+        final List<Eip1559Transaction> unverified = new ArrayList<>(); // 校验和不匹配，需要完整验证
+    }
+}
@@ -0,0 +1,319 @@
+package com.tanggo.fund.eth.lib.outbound;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 有界缓存，W-TinyLFU 准入策略
+ *
+ * - 新条目先进入窗口 LRU（约 1% 容量），吸收突发的新键
+ * - 主区为分段 LRU：试用段和保护段（约主区的 80%），试用段中再次命中的条目升入保护段
+ * - 窗口溢出的条目作为候选与试用段最久未用的条目比较频率（Count-Min Sketch 估计，4 位计数器定期减半），
+ *   频率低的一方被淘汰，偶尔访问的键挤不掉热点
+ *
+ * 读取直接查 ConcurrentHashMap，访问顺序的调整在 tryLock 成功时进行，争用时丢弃（不影响正确性，只影响命中率）；
+ * 插入、删除和淘汰持有策略锁
+ */
+final class WTinyLfuCache<K, V> {
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+
+    private final Map<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final AccessDeque<K, V> window = new AccessDeque<>();
+    private final AccessDeque<K, V> probation = new AccessDeque<>();
+    private final AccessDeque<K, V> protectedDeque = new AccessDeque<>();
+    private final int maximumSize;
+    private final int windowMax;
+    private final int protectedMax;
+    private final LongAdder evictions = new LongAdder();
+
+    WTinyLfuCache(int maximumSize, int windowPercent, int protectedPercent) {
+        if (maximumSize < 2) {
+            throw new IllegalArgumentException("Cache size must be at least 2: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.windowMax = Math.max(1, (int) ((long) maximumSize * windowPercent / 100));
+        this.protectedMax = (int) ((long) (maximumSize - windowMax) * protectedPercent / 100);
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * 查询缓存，命中时记录一次访问
+     */
+    V getIfPresent(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            recordMiss(key);
+            return null;
+        }
+        if (lock.tryLock()) {
+            try {
+                sketch.increment(key.hashCode());
+                onAccess(node);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return node.value;
+    }
+
+    // 未命中也计入频率，再次出现时才有机会被准入
+    private void recordMiss(K key) {
+        if (lock.tryLock()) {
+            try {
+                sketch.increment(key.hashCode());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 键不存在时插入（读穿透加载的结果），已存在时保留原值
+     */
+    void putIfAbsent(K key, V value) {
+        lock.lock();
+        try {
+            if (!data.containsKey(key)) {
+                insert(key, value);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 插入或覆盖（写入时分配）
+     */
+    void put(K key, V value) {
+        lock.lock();
+        try {
+            Node<K, V> node = data.get(key);
+            if (node != null) {
+                node.value = value;
+                onAccess(node);
+            } else {
+                insert(key, value);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void invalidate(K key) {
+        lock.lock();
+        try {
+            Node<K, V> node = data.remove(key);
+            if (node != null) {
+                dequeOf(node).unlink(node);
+                node.retired = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        return data.size();
+    }
+
+    long evictions() {
+        return evictions.sum();
+    }
+
+    // ==================== 策略（持有 lock） ====================
+
+    private void insert(K key, V value) {
+        Node<K, V> node = new Node<>(key, value);
+        data.put(key, node);
+        node.queue = WINDOW;
+        window.addFirst(node);
+        evict();
+    }
+
+    private void onAccess(Node<K, V> node) {
+        if (node.retired) {
+            return; // 读取后被并发淘汰或删除
+        }
+        switch (node.queue) {
+            case WINDOW -> window.moveToFirst(node);
+            case PROBATION -> {
+                probation.unlink(node);
+                node.queue = PROTECTED;
+                protectedDeque.addFirst(node);
+                // 保护段超出时把最久未用的降回试用段
+                while (protectedDeque.size > protectedMax) {
+                    Node<K, V> demoted = protectedDeque.last;
+                    protectedDeque.unlink(demoted);
+                    demoted.queue = PROBATION;
+                    probation.addFirst(demoted);
+                }
+            }
+            default -> protectedDeque.moveToFirst(node);
+        }
+    }
+
+    private void evict() {
+        while (window.size > windowMax) {
+            Node<K, V> candidate = window.last;
+            window.unlink(candidate);
+            candidate.queue = PROBATION;
+            probation.addFirst(candidate);
+            if (probation.size + protectedDeque.size <= maximumSize - windowMax) {
+                continue;
+            }
+            Node<K, V> victim = probation.last;
+            Node<K, V> loser = victim == candidate
+                    || sketch.frequency(candidate.key.hashCode()) <= sketch.frequency(victim.key.hashCode())
+                    ? candidate : victim;
+            probation.unlink(loser);
+            loser.retired = true;
+            data.remove(loser.key, loser);
+            evictions.increment();
+        }
+    }
+
+    private AccessDeque<K, V> dequeOf(Node<K, V> node) {
+        return switch (node.queue) {
+            case WINDOW -> window;
+            case PROBATION -> probation;
+            default -> protectedDeque;
+        };
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        volatile V value;
+        Node<K, V> prev;
+        Node<K, V> next;
+        byte queue;
+        boolean retired;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    // 访问顺序双向链表，first 为最近访问
+    private static final class AccessDeque<K, V> {
+        Node<K, V> first;
+        Node<K, V> last;
+        int size;
+
+        void addFirst(Node<K, V> node) {
+            node.prev = null;
+            node.next = first;
+            if (first != null) {
+                first.prev = node;
+            } else {
+                last = node;
+            }
+            first = node;
+            size++;
+        }
+
+        void unlink(Node<K, V> node) {
+            if (node.prev != null) {
+                node.prev.next = node.next;
+            } else {
+                first = node.next;
+            }
+            if (node.next != null) {
+                node.next.prev = node.prev;
+            } else {
+                last = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            size--;
+        }
+
+        void moveToFirst(Node<K, V> node) {
+            if (first != node) {
+                unlink(node);
+                addFirst(node);
+            }
+        }
+    }
+
+    /**
+     * Count-Min Sketch，每个计数器 4 位，每个键落在 4 个计数器上取最小值
+     * 累计增量达到 10 倍容量时所有计数器减半，让历史热度逐渐衰减
+     */
+    static final class FrequencySketch {
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maximumSize) {
+            int length = Integer.highestOneBit(Math.max(16, maximumSize) - 1) << 1;
+            this.table = new long[length];
+            this.sampleSize = (int) Math.min(10L * maximumSize, Integer.MAX_VALUE);
+        }
+
+        int frequency(int hashCode) {
+            int hash = spread(hashCode);
+            int start = (hash & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        void increment(int hashCode) {
+            int hash = spread(hashCode);
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                added |= incrementAt(indexOf(hash, i), start + i);
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        private boolean incrementAt(int index, int counter) {
+            int offset = counter << 2;
+            long mask = 0xfL << offset;
+            if ((table[index] & mask) != mask) {
+                table[index] += 1L << offset;
+                return true;
+            }
+            return false;
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions >>>= 1;
+        }
+
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return (int) h & (table.length - 1);
+        }
+
+        private static int spread(int x) {
+            x ^= x >>> 17;
+            x *= 0xed5ad4bb;
+            x ^= x >>> 11;
+            x *= 0xac4c1b51;
+            x ^= x >>> 15;
+            return x;
+        }
+    }
+}
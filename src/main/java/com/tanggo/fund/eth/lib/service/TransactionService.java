@@ -3,14 +3,18 @@ package com.tanggo.fund.eth.lib.service;
 import com.tanggo.fund.eth.lib.domain.Account;
 import com.tanggo.fund.eth.lib.domain.Block;
 import com.tanggo.fund.eth.lib.domain.Receipt;
+import com.tanggo.fund.eth.lib.domain.repo.IAccountRepo;
+import com.tanggo.fund.eth.lib.domain.repo.StateBatch;
 import com.tanggo.fund.eth.lib.domain.transaction.Eip1559Transaction;
 import com.tanggo.fund.eth.lib.domain.transaction.Transaction;
-import com.tanggo.fund.eth.lib.outbound.AccountRepo;
 import com.tanggo.fund.eth.lib.outbound.ReceiptRepo;
 import com.tanggo.fund.eth.lib.outbound.TxPoolRepo;
 import lombok.RequiredArgsConstructor;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
 
 /**
  * 交易应用服务（用例层）
@@ -35,7 +39,7 @@ import java.math.BigInteger;
 public class TransactionService {
 
     private final TxPoolRepo txPoolRepo;
-    private final AccountRepo accountRepo;
+    private final IAccountRepo accountRepo; // 通常为 CachedAccountRepo 包装的 AccountRepo
     private final ReceiptRepo receiptRepo;
 
     /**
@@ -123,42 +127,38 @@ public class TransactionService {
             return false;
         }
 
-        // 查询发送者账户
-        Account sender = accountRepo.query(bytesToHex(senderAddress));
-        if (sender == null) {
-            // 账户不存在，创建新账户（余额为0）
-            sender = Account.createEOA(senderAddress);
-        }
+        BigInteger required = maxCost(transaction);
+
+        // 只读访问发送者账户：缓存命中时不复制，未命中时从 LMDB 只解码 nonce 和余额
+        // 账户不存在时视为新账户（nonce和余额为0）
+        // nonce必须等于账户当前nonce，余额必须足够支付最大成本
+        // 接收者可以不存在（新账户）或已存在，不需要读取
+        return accountRepo.read(senderAddress, sender -> sender == null
+                ? transaction.getNonce().signum() == 0 && required.signum() == 0
+                : sender.nonceEquals(transaction.getNonce()) && sender.hasSufficientBalance(required));
+    }
 
-        // 验证nonce（必须等于账户当前nonce）
-        if (!transaction.getNonce().equals(sender.getNonce())) {
+    /**
+     * 在状态批次上做有状态验证，能看到同一批次内先前交易的修改
+     */
+    private boolean statefulValidation(Transaction transaction, StateBatch batch) {
+        byte[] senderAddress = transaction.recoverSender();
+        if (senderAddress == null || senderAddress.length != 20) {
             return false;
         }
+        Account sender = batch.getOrCreate(senderAddress);
+        return transaction.getNonce().equals(sender.getNonce()) && sender.hasSufficientBalance(maxCost(transaction));
+    }
 
-        // 验证余额充足
+    // 最大成本：转账金额 + 最大Gas成本（取决于交易类型）
+    private BigInteger maxCost(Transaction transaction) {
         BigInteger maxCost = transaction.getValue();
-
-        // 计算最大Gas成本（取决于交易类型）
         if (transaction instanceof Eip1559Transaction) {
             Eip1559Transaction eip1559 = (Eip1559Transaction) transaction;
             BigInteger maxGasCost = eip1559.getGasLimit().multiply(eip1559.getMaxFeePerGas());
             maxCost = maxCost.add(maxGasCost);
         }
-
-        if (!sender.hasSufficientBalance(maxCost)) {
-            return false;
-        }
-
-        // 如果不是合约创建，验证接收者
-        if (!transaction.isContractCreation()) {
-            byte[] recipientAddress = transaction.getTo();
-            Account recipient = accountRepo.query(bytesToHex(recipientAddress));
-
-            // 接收者可以不存在（新账户）或已存在
-            // 如果存在且是合约账户，需要确保data字段包含有效的调用数据
-        }
-
-        return true;
+        return maxCost;
     }
 
     /**
@@ -172,23 +172,63 @@ public class TransactionService {
      * 5. 更新账户状态
      * 6. 生成收据
      *
+     * 每次调用都是一次独立的状态提交（重新哈希修改路径并切换 stateRoot），区块执行应使用 executeTransactions
+     *
      * @param transaction 待执行的交易
      * @param baseFeePerGas 区块的基础费用（EIP-1559）
      * @return 交易收据
      */
     public Receipt executeTransaction(Transaction transaction, BigInteger baseFeePerGas) {
+        // 发送者和接收者的修改在一个写事务内提交；执行失败时扣除的Gas费用同样提交
+        // 收据（包括失败收据）在状态提交成功后才保存
+        List<Receipt> receipts = new ArrayList<>(1);
+        try (StateBatch batch = accountRepo.beginBatch()) {
+            try {
+                return executeTransaction(transaction, baseFeePerGas, batch, receipts);
+            } finally {
+                batch.commit();
+                receipts.forEach(receiptRepo::save);
+            }
+        }
+    }
+
+    /**
+     * 在同一个状态批次内按顺序执行一个区块的交易，全部成功后一次提交
+     * 任一交易验证或执行失败时整个批次丢弃，不写入任何账户修改，也不保存任何收据
+     *
+     * @param transactions 区块中的交易
+     * @param baseFeePerGas 区块的基础费用（EIP-1559）
+     * @return 各交易的收据
+     */
+    public List<Receipt> executeTransactions(List<? extends Transaction> transactions, BigInteger baseFeePerGas) {
+        try (StateBatch batch = accountRepo.beginBatch()) {
+            List<Receipt> receipts = new ArrayList<>(transactions.size());
+            for (Transaction transaction : transactions) {
+                executeTransaction(transaction, baseFeePerGas, batch, receipts);
+            }
+            batch.commit();
+            receipts.forEach(receiptRepo::save);
+            return receipts;
+        }
+    }
+
+    /**
+     * 在状态批次上执行交易，账户修改记录在批次中，由调用方提交
+     * 生成的收据（执行失败时为失败收据）追加到 receipts，由调用方在提交成功后保存
+     */
+    private Receipt executeTransaction(Transaction transaction, BigInteger baseFeePerGas, StateBatch batch, List<Receipt> receipts) {
         // 1. 验证交易
         if (!statelessValidation(transaction)) {
             throw new IllegalArgumentException("Transaction failed stateless validation");
         }
 
-        if (!statefulValidation(transaction)) {
+        if (!statefulValidation(transaction, batch)) {
             throw new IllegalArgumentException("Transaction failed stateful validation");
         }
 
         // 2. 获取发送者和接收者账户
         byte[] senderAddress = transaction.recoverSender();
-        Account sender = accountRepo.query(bytesToHex(senderAddress));
+        Account sender = batch.get(senderAddress);
 
         if (sender == null) {
             throw new IllegalStateException("Sender account not found");
@@ -218,21 +258,17 @@ public class TransactionService {
             sender.incrementNonce();
 
             // 更新发送者账户
-            accountRepo.update(sender);
+            batch.put(sender);
 
             // 如果不是合约创建，处理接收者
             if (!transaction.isContractCreation()) {
                 byte[] recipientAddress = transaction.getTo();
-                Account recipient = accountRepo.query(bytesToHex(recipientAddress));
-
-                if (recipient == null) {
-                    // 创建新的EOA账户
-                    recipient = Account.createEOA(recipientAddress);
-                }
+                // 不存在时创建新的EOA账户
+                Account recipient = batch.getOrCreate(recipientAddress);
 
                 // 增加接收者余额
                 recipient.credit(transaction.getValue());
-                accountRepo.update(recipient);
+                batch.put(recipient);
             } else {
                 // TODO: 处理合约创建
                 // 1. 计算合约地址
@@ -243,7 +279,7 @@ public class TransactionService {
 
             // 5. 生成收据（简化版本）
             Receipt receipt = createReceipt(transaction, sender, gasUsed, true);
-            receiptRepo.save(receipt);
+            receipts.add(receipt);
 
             return receipt;
 
@@ -251,11 +287,11 @@ public class TransactionService {
             // 交易执行失败，仍然消耗Gas但不执行状态转换
             sender.debit(txFee); // 仍然扣除Gas费用
             sender.incrementNonce();
-            accountRepo.update(sender);
+            batch.put(sender);
 
             // 生成失败收据
             Receipt receipt = createReceipt(transaction, sender, gasUsed, false);
-            receiptRepo.save(receipt);
+            receipts.add(receipt);
 
             throw new RuntimeException("Transaction execution failed: " + e.getMessage(), e);
         }
@@ -269,7 +305,12 @@ public class TransactionService {
      */
     public void packageToBlock(Transaction transaction, Block block) {
         if (transaction instanceof Eip1559Transaction) {
-            block.getBlockBody().getTransactions().add((Eip1559Transaction) transaction);
+            // 执行时已恢复过发送者（缓存在交易上），一并记入区块体供交易池使用
+            byte[] sender = transaction.recoverSender();
+            if (sender == null || sender.length != 20) {
+                throw new IllegalArgumentException("Cannot package transaction with invalid signature");
+            }
+            block.getBlockBody().addTransaction((Eip1559Transaction) transaction, "0x" + HexFormat.of().formatHex(sender));
         }
     }
 
@@ -306,20 +347,4 @@ public class TransactionService {
 
         return null; // 占位
     }
-
-    // ==================== 辅助方法 ====================
-
-    /**
-     * 字节数组转十六进制字符串
-     */
-    private String bytesToHex(byte[] bytes) {
-        if (bytes == null) {
-            return null;
-        }
-        StringBuilder sb = new StringBuilder("0x");
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b));
-        }
-        return sb.toString();
-    }
 }
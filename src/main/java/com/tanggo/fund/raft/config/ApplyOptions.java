@@ -0,0 +1,16 @@
+package com.tanggo.fund.raft.config;
+
+import lombok.Data;
+
+/**
+ * 状态机应用参数
+ */
+@Data
+public class ApplyOptions {
+    // 应用环形缓冲区容量（条），需为 2 的幂
+    private int ringSize = 4096;
+    // 应用线程每批最多应用的日志条数
+    private int maxBatchSize = 256;
+    // 提交索引领先应用索引超过该值时，领导者暂停追加新命令
+    private int maxApplyLag = 10000;
+}
@@ -1,8 +1,12 @@
 package com.tanggo.fund.raft.config;
 
+import com.tanggo.fund.raft.inbound.RaftTcpServer;
 import com.tanggo.fund.raft.service.ILogEntryService;
 import com.tanggo.fund.raft.service.command.impl.LogEntryService;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -35,6 +39,28 @@ public class RaftConfiguration {
         return service;
     }
 
+    /**
+     * 把 Raft 节点指标注册到 Actuator 的 MeterRegistry
+     */
+    @Bean
+    public MeterBinder raftMetrics(ILogEntryService logEntryService) {
+        return registry -> {
+            if (logEntryService instanceof LogEntryService service) {
+                service.getMetrics().bindTo(registry);
+            }
+        };
+    }
+
+    /**
+     * Raft 二进制 RPC 服务端
+     * 配置 raft.tcp.port 后启用，供 BinaryLogEntryService 连接
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(name = "raft.tcp.port")
+    public RaftTcpServer raftTcpServer(ILogEntryService logEntryService, @Value("${raft.tcp.port}") int port) {
+        return new RaftTcpServer(logEntryService, port);
+    }
+
     /**
      * TODO: 在实际集群部署中，需要配置多个节点
      * 示例配置：
@@ -49,6 +75,7 @@ public class RaftConfiguration {
      *     nodes.put("node1", new ProxyLogEntryService(node1Url));
      *     nodes.put("node2", new ProxyLogEntryService(node2Url));
      *     nodes.put("node3", new ProxyLogEntryService(node3Url));
+     *     // 或使用二进制协议: new BinaryLogEntryService("node3", 9547)
      *     return nodes;
      * }
      */
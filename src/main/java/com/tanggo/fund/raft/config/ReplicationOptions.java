@@ -0,0 +1,25 @@
+package com.tanggo.fund.raft.config;
+
+import lombok.Data;
+
+/**
+ * 日志复制参数
+ * 控制每个从节点复制流水线的在途窗口
+ */
+@Data
+public class ReplicationOptions {
+    // 每个从节点最多同时在途的 AppendEntries 请求数
+    private int maxInflightRequests = 8;
+    // 单个 AppendEntries 最多携带的日志条数
+    private int maxBatchEntries = 1024;
+    // 每个从节点在途日志的字节上限
+    private long maxInflightBytes = 8 * 1024 * 1024;
+    // 学习者落后领导者不超过该条数时才能提升为投票成员，避免新成员拖慢提交
+    private int maxPromotionLag = 1000;
+    // 从节点落后超过该条数时进入追赶模式
+    private int catchUpThreshold = 16 * 1024;
+    // 追赶模式下单个 AppendEntries 最多携带的日志条数
+    private int catchUpBatchEntries = 8 * 1024;
+    // 追赶模式下每个从节点在途日志的字节上限
+    private long catchUpInflightBytes = 64 * 1024 * 1024;
+}
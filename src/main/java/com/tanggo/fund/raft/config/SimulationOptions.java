@@ -0,0 +1,31 @@
+package com.tanggo.fund.raft.config;
+
+import lombok.Data;
+
+/**
+ * 确定性模拟参数
+ * 网络和磁盘参数在模拟运行中修改后立即生效，用于按时间注入故障
+ */
+@Data
+public class SimulationOptions {
+    // 节点数
+    private int nodeCount = 3;
+    // 随机数种子，相同种子和相同故障脚本得到相同结果
+    private long seed = 1;
+    // 单向网络延迟范围(微秒)，链路默认按发送顺序投递
+    private long minLatencyMicros = 200;
+    private long maxLatencyMicros = 1000;
+    // 消息丢失概率，丢失的请求在 RPC 超时后以异常完成
+    private double dropRate = 0;
+    // 消息乱序概率，乱序消息额外延迟 [0, reorderDelayMicros) 且不受链路顺序约束
+    private double reorderRate = 0;
+    private long reorderDelayMicros = 5000;
+    // RPC 超时(毫秒)，与 TCP 传输的超时一致
+    private long rpcTimeoutMillis = 3000;
+    // 每次日志刷盘的耗时(微秒)，刷盘期间节点不处理其它事件
+    private long fsyncMicros = 100;
+    // 客户端命令大小(字节)
+    private int commandBytes = 64;
+    // 两次提交之间的间隔超过该值计为不可用时间(毫秒)
+    private long downtimeThresholdMillis = 50;
+}
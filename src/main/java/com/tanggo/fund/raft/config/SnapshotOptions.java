@@ -0,0 +1,17 @@
+package com.tanggo.fund.raft.config;
+
+import lombok.Data;
+
+/**
+ * 快照参数
+ * 日志条数或字节数任一超过阈值即生成快照并压缩日志前缀
+ */
+@Data
+public class SnapshotOptions {
+    // 上次快照之后累计的日志条数阈值
+    private int logEntriesThreshold = 10000;
+    // 日志存储字节数阈值
+    private long logBytesThreshold = 64 * 1024 * 1024;
+    // InstallSnapshot 每个分片的字节数
+    private int chunkSize = 64 * 1024;
+}
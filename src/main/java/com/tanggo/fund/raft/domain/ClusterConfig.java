@@ -0,0 +1,154 @@
+package com.tanggo.fund.raft.domain;
+
+import lombok.Data;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * 集群成员配置
+ * 投票成员参与选举和提交多数派；学习者只接收日志，不计入多数派
+ * 联合共识期间 oldVoters 非空，选举和提交需要新旧两组投票成员各自的多数
+ *
+ * 配置以普通日志条目复制，命令格式: "raft:config voters=a,b;old=c;learners=d"
+ */
+@Data
+public class ClusterConfig {
+    private static final String COMMAND_PREFIX = "raft:config ";
+
+    private final Set<String> voters;
+    private final Set<String> oldVoters; // 联合配置中的旧投票成员，非联合配置为空
+    private final Set<String> learners;
+
+    public ClusterConfig(Collection<String> voters, Collection<String> oldVoters, Collection<String> learners) {
+        this.voters = immutable(voters);
+        this.oldVoters = immutable(oldVoters);
+        this.learners = immutable(learners);
+    }
+
+    // 全部为投票成员的配置
+    public static ClusterConfig of(Collection<String> voters) {
+        return new ClusterConfig(voters, Set.of(), Set.of());
+    }
+
+    public boolean isJoint() {
+        return !oldVoters.isEmpty();
+    }
+
+    // 新旧任一配置中的投票成员
+    public boolean isVoter(String nodeId) {
+        return voters.contains(nodeId) || oldVoters.contains(nodeId);
+    }
+
+    // 需要复制日志的全部成员
+    public Set<String> members() {
+        Set<String> members = new LinkedHashSet<>(voters);
+        members.addAll(oldVoters);
+        members.addAll(learners);
+        return members;
+    }
+
+    // 联合配置提交后进入的新配置
+    public ClusterConfig leaveJoint() {
+        return new ClusterConfig(voters, Set.of(), learners);
+    }
+
+    /**
+     * 确认集合是否构成多数派（联合配置下新旧配置都需要多数）
+     */
+    public boolean isQuorum(Set<String> acks) {
+        return isMajority(voters, acks) && isMajority(oldVoters, acks);
+    }
+
+    /**
+     * 多数派已复制的最大日志索引（联合配置下取新旧配置中的较小值）
+     */
+    public int committedIndex(ToIntFunction<String> matchIndex) {
+        return Math.min(quorumIndex(voters, matchIndex), quorumIndex(oldVoters, matchIndex));
+    }
+
+    private static boolean isMajority(Set<String> group, Set<String> acks) {
+        if (group.isEmpty()) {
+            return true;
+        }
+        int count = 0;
+        for (String nodeId : group) {
+            if (acks.contains(nodeId)) {
+                count++;
+            }
+        }
+        return count > group.size() / 2;
+    }
+
+    // 从大到小第 (n/2+1) 个匹配索引，空配置不构成约束
+    private static int quorumIndex(Set<String> group, ToIntFunction<String> matchIndex) {
+        if (group.isEmpty()) {
+            return Integer.MAX_VALUE;
+        }
+        int[] indexes = new int[group.size()];
+        int i = 0;
+        for (String nodeId : group) {
+            indexes[i++] = matchIndex.applyAsInt(nodeId);
+        }
+        Arrays.sort(indexes);
+        return indexes[(indexes.length - 1) / 2];
+    }
+
+    public static boolean isConfigCommand(String command) {
+        return command != null && command.startsWith(COMMAND_PREFIX);
+    }
+
+    public String toCommand() {
+        return COMMAND_PREFIX + "voters=" + String.join(",", voters)
+                + ";old=" + String.join(",", oldVoters)
+                + ";learners=" + String.join(",", learners);
+    }
+
+    public static ClusterConfig fromCommand(String command) {
+        if (!isConfigCommand(command)) {
+            throw new IllegalArgumentException("Not a configuration command: " + command);
+        }
+        Set<String> voters = Set.of();
+        Set<String> oldVoters = Set.of();
+        Set<String> learners = Set.of();
+        for (String part : command.substring(COMMAND_PREFIX.length()).split(";")) {
+            int eq = part.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Malformed configuration command: " + command);
+            }
+            Set<String> ids = parseIds(part.substring(eq + 1));
+            switch (part.substring(0, eq)) {
+                case "voters" -> voters = ids;
+                case "old" -> oldVoters = ids;
+                case "learners" -> learners = ids;
+                default -> throw new IllegalArgumentException("Malformed configuration command: " + command);
+            }
+        }
+        return new ClusterConfig(voters, oldVoters, learners);
+    }
+
+    private static Set<String> parseIds(String value) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (String id : value.split(",")) {
+            if (!id.isEmpty()) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private static Set<String> immutable(Collection<String> ids) {
+        Set<String> copy = new LinkedHashSet<>();
+        for (String id : ids) {
+            if (id.isEmpty() || id.indexOf(',') >= 0 || id.indexOf(';') >= 0 || id.indexOf('=') >= 0) {
+                throw new IllegalArgumentException("Invalid node id in configuration: " + id);
+            }
+            copy.add(id);
+        }
+        return Collections.unmodifiableSet(copy);
+    }
+}
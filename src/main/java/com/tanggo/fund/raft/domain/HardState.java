@@ -0,0 +1,15 @@
+package com.tanggo.fund.raft.domain;
+
+import lombok.Data;
+
+// 必须在响应投票和发起选举前落盘的节点状态，重启后恢复，保证一个任期内最多投一票
+@Data
+public class HardState {
+    private final int currentTerm;
+    private final String votedFor; // 本任期投给的候选人，未投票为 null
+
+    public HardState(int currentTerm, String votedFor) {
+        this.currentTerm = currentTerm;
+        this.votedFor = votedFor;
+    }
+}
@@ -1,24 +1,47 @@
 package com.tanggo.fund.raft.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
+import java.nio.charset.StandardCharsets;
+
 // 命令行流水 binlog
+// 载荷为二进制，类型区分客户端命令和成员配置，二进制格式见 RaftCodec
 @Data
 public class LogEntry {
-    private final String nodeId;
+    public enum Type {
+        COMMAND,       // 客户端命令，应用到状态机
+        CONFIGURATION, // 成员配置（ClusterConfig），不进入状态机
+        NOOP           // 新领导者提交的空日志，不进入状态机
+    }
+
+    private final Type type;
     private final int term;        // 创建时的任期号
     private final int index;       // 日志索引位置
-    private final String command;  // 操作指令
+    private final byte[] payload;  // 指令内容
     private boolean committed; // 是否已提交
 
-    public LogEntry(String nodeId, int term, int index, String command) {
-        this.nodeId = nodeId;
+    public LogEntry(Type type, int term, int index, byte[] payload) {
+        this.type = type;
         this.term = term;
         this.index = index;
-        this.command = command;
+        this.payload = payload != null ? payload : new byte[0];
         this.committed = false;
     }
 
+    // 客户端命令，载荷为 UTF-8 编码
+    public LogEntry(int term, int index, String command) {
+        this(Type.COMMAND, term, index, command.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static LogEntry noop(int term, int index) {
+        return new LogEntry(Type.NOOP, term, index, null);
+    }
+
+    public static LogEntry configuration(int term, int index, ClusterConfig config) {
+        return new LogEntry(Type.CONFIGURATION, term, index, config.toCommand().getBytes(StandardCharsets.UTF_8));
+    }
+
     // getter和setter方法
     public int getTerm() {
         return term;
@@ -28,8 +51,21 @@ public class LogEntry {
         return index;
     }
 
+    // 载荷按 UTF-8 解码的文本形式
+    @JsonIgnore
     public String getCommand() {
-        return command;
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
+    public boolean isConfiguration() {
+        return type == Type.CONFIGURATION;
+    }
+
+    public ClusterConfig toConfiguration() {
+        if (!isConfiguration()) {
+            throw new IllegalStateException("Not a configuration entry: " + index);
+        }
+        return ClusterConfig.fromCommand(getCommand());
     }
 
     public boolean isCommitted() {
@@ -5,8 +5,14 @@ import lombok.Data;
 @Data
 public class PeerRaftNode {
 
+    public enum Role {
+        VOTER,   // 参与选举和提交多数派
+        LEARNER  // 只接收日志的只读副本
+    }
+
     private String nodeId;
     private String remoteNodeId;
+    private Role role;
 
 
     //远程信息
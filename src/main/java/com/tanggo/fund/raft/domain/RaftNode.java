@@ -14,17 +14,20 @@ public class RaftNode {
     public static final int ELECTION_TIMEOUT_MAX = 600; // 最大选举超时
     // 节点核心属性状态
     private final String nodeId;
+    private String groupId; // Multi-Raft 时所属的 Raft 组，单组部署为 null
     // 领导者专用状态
     private final Map<String, Integer> nextIndex;   // 每个从节点的下一个日志索引
     private final Map<String, Integer> matchIndex;  // 每个从节点已复制的最高日志索引
     // 网络通信和线程池
     // 其它
     private final Random random = new Random();
-    private String votedFor;
-    private int commitIndex;
-    private int lastApplied;
-    private State state;
-    private int currentTerm;
+    // 以下状态只在 LogEntryService.lock 内修改；复制流水线、tick/心跳和客户端路径的 isLeader 不加锁读取，
+    // 因此声明为 volatile，读到的总是某次完整写入后的最新值（currentTerm++ 等复合操作仍依赖锁）
+    private volatile String votedFor;
+    private volatile int commitIndex;
+    private volatile int lastApplied;
+    private volatile State state;
+    private volatile int currentTerm;
 
     public RaftNode(String nodeId, Map<String, RaftNode> clusterNodes) {
         this.nodeId = nodeId;
@@ -47,7 +50,7 @@ public class RaftNode {
     }
 
     public void printLog() {
-        System.out.println("=== 节点 " + nodeId + " 日志状态 ===");
+        System.out.println("=== 节点 " + nodeId + (groupId != null ? " 组 " + groupId : "") + " 日志状态 ===");
         System.out.println("角色: " + state + ", 任期: " + currentTerm + ", 提交索引: " + commitIndex + ", 最后应用: " + lastApplied);
 
     }
@@ -60,6 +63,16 @@ public class RaftNode {
     }
 
 
+    public void becomeCandidate() {
+        state = State.CANDIDATE;
+        currentTerm++;
+        votedFor = nodeId;
+
+        System.out.println("节点 " + nodeId + " 发起选举，任期: " + currentTerm);
+
+    }
+
+
     // 节点状态枚举
     public enum State {FOLLOWER, CANDIDATE, LEADER}
 
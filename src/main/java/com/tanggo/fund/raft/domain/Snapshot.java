@@ -0,0 +1,23 @@
+package com.tanggo.fund.raft.domain;
+
+import lombok.Data;
+
+// 状态机快照，包含 lastIncludedIndex 及之前全部日志的效果
+@Data
+public class Snapshot {
+    private final int lastIncludedIndex; // 快照包含的最后一条日志索引
+    private final int lastIncludedTerm;  // 该日志的任期
+    private final byte[] data;           // 状态机序列化数据
+    private final ClusterConfig config;  // lastIncludedIndex 处生效的成员配置，未变更过成员时为 null
+
+    public Snapshot(int lastIncludedIndex, int lastIncludedTerm, byte[] data) {
+        this(lastIncludedIndex, lastIncludedTerm, data, null);
+    }
+
+    public Snapshot(int lastIncludedIndex, int lastIncludedTerm, byte[] data, ClusterConfig config) {
+        this.lastIncludedIndex = lastIncludedIndex;
+        this.lastIncludedTerm = lastIncludedTerm;
+        this.data = data;
+        this.config = config;
+    }
+}
@@ -1,10 +1,18 @@
 package com.tanggo.fund.raft.inbound;
 
+import com.tanggo.fund.raft.domain.LogEntry;
 import com.tanggo.fund.raft.service.ILogEntryService;
 import com.tanggo.fund.raft.service.command.AppendEntriesCommand;
 import com.tanggo.fund.raft.service.command.AppendEntriesResponse;
+import com.tanggo.fund.raft.service.command.InstallSnapshotCommand;
+import com.tanggo.fund.raft.service.command.InstallSnapshotResponse;
+import com.tanggo.fund.raft.service.command.ReadMode;
+import com.tanggo.fund.raft.service.command.RequestVoteCommand;
+import com.tanggo.fund.raft.service.command.RequestVoteResponse;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -59,6 +67,24 @@ public class RaftRpcController {
                 String command = (String) params.get(0);
                 yield logEntryService.handleClientCommand(command);
             }
+            case "raft_handleRequestVote" -> {
+                Map<String, Object> requestMap = (Map<String, Object>) params.get(0);
+                RequestVoteResponse resp = logEntryService.handleRequestVote(new RequestVoteCommand(
+                        ((Number) requestMap.get("term")).intValue(),
+                        (String) requestMap.get("candidateId"),
+                        ((Number) requestMap.get("lastLogIndex")).intValue(),
+                        ((Number) requestMap.get("lastLogTerm")).intValue(),
+                        Boolean.TRUE.equals(requestMap.get("preVote"))));
+                Map<String, Object> result = new HashMap<>();
+                result.put("term", resp.getTerm());
+                result.put("voteGranted", resp.isVoteGranted());
+                yield result;
+            }
+            case "raft_read" -> {
+                String query = (String) params.get(0);
+                ReadMode mode = params.size() > 1 ? ReadMode.valueOf((String) params.get(1)) : ReadMode.READ_INDEX;
+                yield logEntryService.read(query, mode).join();
+            }
             case "raft_handleAppendEntries" -> {
                 // 从参数中构造 AppendEntriesCommand
                 Map<String, Object> requestMap = (Map<String, Object>) params.get(0);
@@ -66,6 +92,18 @@ public class RaftRpcController {
                 AppendEntriesResponse resp = logEntryService.handleAppendEntries(cmd);
                 yield convertAppendEntriesResponse(resp);
             }
+            case "raft_handleInstallSnapshot" -> {
+                Map<String, Object> requestMap = (Map<String, Object>) params.get(0);
+                InstallSnapshotResponse resp = logEntryService.handleInstallSnapshot(parseInstallSnapshotCommand(requestMap));
+                Map<String, Object> result = new HashMap<>();
+                result.put("term", resp.getTerm());
+                result.put("success", resp.isSuccess());
+                yield result;
+            }
+            case "raft_printLog" -> {
+                logEntryService.printLog();
+                yield null;
+            }
             default -> throw new IllegalArgumentException("Unknown method: " + method);
         };
     }
@@ -81,8 +119,35 @@ public class RaftRpcController {
         List<Object> entriesData = (List<Object>) map.get("entries");
         int leaderCommit = ((Number) map.get("leaderCommit")).intValue();
 
-        // TODO: 解析 entries 列表，暂时传 null
-        return new AppendEntriesCommand(term, prevLogIndex, prevLogTerm, null, leaderCommit);
+        List<LogEntry> entries = new ArrayList<>();
+        if (entriesData != null) {
+            for (Object item : entriesData) {
+                Map<String, Object> entryMap = (Map<String, Object>) item;
+                // byte[] 载荷由 Jackson 编码为 Base64
+                entries.add(new LogEntry(
+                        LogEntry.Type.valueOf((String) entryMap.get("type")),
+                        ((Number) entryMap.get("term")).intValue(),
+                        ((Number) entryMap.get("index")).intValue(),
+                        Base64.getDecoder().decode((String) entryMap.get("payload"))));
+            }
+        }
+        return new AppendEntriesCommand(term, prevLogIndex, prevLogTerm, entries, leaderCommit);
+    }
+
+    /**
+     * 解析 InstallSnapshotCommand，分片数据由 Jackson 编码为 Base64
+     */
+    private InstallSnapshotCommand parseInstallSnapshotCommand(Map<String, Object> map) {
+        InstallSnapshotCommand cmd = new InstallSnapshotCommand(
+                ((Number) map.get("term")).intValue(),
+                (String) map.get("leaderId"),
+                ((Number) map.get("lastIncludedIndex")).intValue(),
+                ((Number) map.get("lastIncludedTerm")).intValue(),
+                ((Number) map.get("offset")).longValue(),
+                Base64.getDecoder().decode((String) map.get("data")),
+                Boolean.TRUE.equals(map.get("done")));
+        cmd.setConfig((String) map.get("config"));
+        return cmd;
     }
 
     /**
@@ -93,9 +158,19 @@ public class RaftRpcController {
         result.put("term", response.getTerm());
         result.put("success", response.isSuccess());
         result.put("matchIndex", response.getMatchIndex());
+        result.put("conflictTerm", response.getConflictTerm());
+        result.put("conflictIndex", response.getConflictIndex());
         return result;
     }
 
+    /**
+     * 指标端点：提交延迟、复制滞后、AppendEntries 往返时间、刷盘耗时、选举次数和应用滞后
+     */
+    @GetMapping("/metrics")
+    public Map<String, Object> metrics() {
+        return logEntryService.metrics();
+    }
+
     /**
      * 健康检查端点
      */
@@ -0,0 +1,299 @@
+package com.tanggo.fund.raft.inbound;
+
+import com.tanggo.fund.raft.outbound.RaftCodec;
+import com.tanggo.fund.raft.outbound.SharedWal;
+import com.tanggo.fund.raft.service.ILogEntryService;
+import com.tanggo.fund.raft.service.command.AppendEntriesCommand;
+import com.tanggo.fund.raft.service.command.AppendEntriesResponse;
+import com.tanggo.fund.raft.service.command.InstallSnapshotResponse;
+import com.tanggo.fund.raft.service.command.ReadMode;
+import com.tanggo.fund.raft.service.command.RequestVoteResponse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Raft 二进制 RPC 服务端
+ * 处理来自 BinaryLogEntryService 的持久连接，每次读取连接上已到达的全部请求作为一批处理
+ * 同一组的请求按顺序处理，保证 AppendEntries 不乱序；Multi-Raft 时不同组的请求并发处理，
+ * 共享 WAL 的刷盘推迟到整批处理完后只做一次，再一起写回响应
+ * 读请求需要等待心跳确认和日志应用，异步完成后再写回响应，不阻塞同一连接上的后续请求
+ * 批量心跳逐条交给各组处理后合并响应，与同一连接上之前的请求保持顺序
+ */
+public class RaftTcpServer implements Closeable {
+
+    private final ILogEntryService logEntryService; // 不带组ID的请求由它处理
+    private final Function<String, ILogEntryService> groups; // 按组ID查找 Raft 组，找不到返回 null
+    private final int port;
+    private final SharedWal wal; // 各组共用的 WAL，为 null 时每个请求各自刷盘
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    // 连接 -> 写锁；同步响应和异步读响应共用，不用对象监视器，连接线程是虚拟线程，等锁和写出时可以让出载体线程
+    private final Map<SocketChannel, ReentrantLock> connections = new ConcurrentHashMap<>();
+    private ServerSocketChannel serverChannel;
+    private volatile boolean running;
+
+    public RaftTcpServer(ILogEntryService logEntryService, int port) {
+        this(logEntryService, groupId -> null, port, null);
+    }
+
+    public RaftTcpServer(Function<String, ILogEntryService> groups, int port) {
+        this(null, groups, port, null);
+    }
+
+    /**
+     * Multi-Raft 服务端：各组的日志在同一个 WAL 中，一批请求只刷一次盘
+     */
+    public RaftTcpServer(Function<String, ILogEntryService> groups, int port, SharedWal wal) {
+        this(null, groups, port, wal);
+    }
+
+    private RaftTcpServer(ILogEntryService logEntryService, Function<String, ILogEntryService> groups, int port, SharedWal wal) {
+        this.logEntryService = logEntryService;
+        this.groups = groups;
+        this.port = port;
+        this.wal = wal;
+    }
+
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        running = true;
+        Thread.ofPlatform().daemon().name("raft-rpc-acceptor-" + port).start(this::acceptLoop);
+        System.out.println("Raft 二进制 RPC 服务启动，端口: " + port);
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                SocketChannel ch = serverChannel.accept();
+                ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                connections.put(ch, new ReentrantLock());
+                Thread.ofVirtual().name("raft-rpc-conn-" + ch.getRemoteAddress()).start(() -> serve(ch));
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                System.err.println("接受 Raft 连接失败: " + e.getMessage());
+            }
+        }
+    }
+
+    private void serve(SocketChannel ch) {
+        RaftCodec.FrameReader reader = new RaftCodec.FrameReader();
+        try (ch) {
+            List<ByteBuffer> frames;
+            while ((frames = reader.read(ch)) != null) {
+                serveBatch(ch, frames);
+            }
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Raft 连接异常断开: " + e.getMessage());
+            }
+        } finally {
+            connections.remove(ch);
+        }
+    }
+
+    // 一批请求按目标组分开；批量心跳之前的请求先处理完，保证同一组的消息不乱序
+    private void serveBatch(SocketChannel ch, List<ByteBuffer> frames) throws IOException {
+        Map<ILogEntryService, List<Request>> byGroup = new IdentityHashMap<>();
+        List<Request> requests = new ArrayList<>(frames.size());
+        for (ByteBuffer frame : frames) {
+            long id = frame.getLong();
+            byte type = frame.get();
+            ILogEntryService target = logEntryService;
+            if ((type & RaftCodec.GROUP_FLAG) != 0) {
+                type &= ~RaftCodec.GROUP_FLAG;
+                target = groups.apply(RaftCodec.getString(frame));
+            }
+            if (type == RaftCodec.HEARTBEAT_BATCH) {
+                process(ch, requests, byGroup.values());
+                requests.clear();
+                byGroup.clear();
+                Request heartbeats = new Request(() -> dispatchHeartbeats(id, frame));
+                process(ch, List.of(heartbeats), List.of(List.of(heartbeats)));
+                continue;
+            }
+            if (target == null) {
+                requests.add(new Request(() -> RaftCodec.encodeString(id, RaftCodec.ERROR, "Unknown raft group")));
+                continue;
+            }
+            if (type == RaftCodec.READ) {
+                dispatchRead(target, ch, id, frame);
+                continue;
+            }
+            ILogEntryService group = target;
+            byte messageType = type;
+            Request request = new Request(() -> {
+                try {
+                    return dispatch(group, id, messageType, frame);
+                } catch (Exception e) {
+                    return RaftCodec.encodeString(id, RaftCodec.ERROR, "Internal error: " + e.getMessage());
+                }
+            });
+            requests.add(request);
+            byGroup.computeIfAbsent(group, g -> new ArrayList<>()).add(request);
+        }
+        process(ch, requests, byGroup.values());
+    }
+
+    // 不同组并发处理、同组按顺序处理；共享 WAL 时各组的刷盘合并成一次，落盘后按请求顺序一起写回响应
+    private void process(SocketChannel ch, List<Request> requests, Collection<List<Request>> groups) throws IOException {
+        if (requests.isEmpty()) {
+            return;
+        }
+        if (groups.size() <= 1) {
+            groups.forEach(this::handle);
+        } else {
+            List<CompletableFuture<Void>> tasks = new ArrayList<>(groups.size());
+            for (List<Request> group : groups) {
+                tasks.add(CompletableFuture.runAsync(() -> handle(group), workers));
+            }
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
+        }
+        if (wal != null) {
+            wal.flush();
+        }
+        ByteBuffer[] responses = new ByteBuffer[requests.size()];
+        for (int i = 0; i < responses.length; i++) {
+            Request request = requests.get(i);
+            responses[i] = request.response != null ? request.response : request.handler.get();
+        }
+        reply(ch, responses);
+    }
+
+    private void handle(List<Request> requests) {
+        Runnable task = () -> {
+            for (Request request : requests) {
+                request.response = request.handler.get();
+            }
+        };
+        if (wal != null) {
+            wal.deferFlush(task);
+        } else {
+            task.run();
+        }
+    }
+
+    // 批量心跳：按顺序交给各组处理，未知的组回复失败
+    private ByteBuffer dispatchHeartbeats(long id, ByteBuffer body) {
+        int count = body.getInt();
+        List<AppendEntriesResponse> responses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ILogEntryService group = groups.apply(RaftCodec.getString(body));
+            AppendEntriesCommand heartbeat = RaftCodec.decodeHeartbeat(body);
+            AppendEntriesResponse response = new AppendEntriesResponse(0, false, -1);
+            if (group != null) {
+                try {
+                    response = group.handleAppendEntries(heartbeat);
+                } catch (Exception e) {
+                    System.err.println("处理批量心跳失败: " + e.getMessage());
+                }
+            }
+            responses.add(response);
+        }
+        return RaftCodec.encodeHeartbeatBatchResponse(id, responses);
+    }
+
+    private void dispatchRead(ILogEntryService logEntryService, SocketChannel ch, long id, ByteBuffer body) {
+        ReadMode mode = RaftCodec.getReadMode(body);
+        String query = RaftCodec.getString(body);
+        logEntryService.read(query, mode).whenComplete((value, error) -> {
+            ByteBuffer response = error == null
+                    ? RaftCodec.encodeString(id, RaftCodec.READ_RESPONSE, value)
+                    : RaftCodec.encodeString(id, RaftCodec.ERROR, "Read failed: " + error.getMessage());
+            try {
+                reply(ch, response);
+            } catch (IOException e) {
+                System.err.println("写回读响应失败: " + e.getMessage());
+            }
+        });
+    }
+
+    // 同一连接上的同步响应和异步读响应共用写锁
+    private void reply(SocketChannel ch, ByteBuffer... responses) throws IOException {
+        ReentrantLock writeLock = connections.get(ch);
+        if (writeLock == null) {
+            throw new ClosedChannelException();
+        }
+        writeLock.lock();
+        try {
+            RaftCodec.writeFully(ch, responses);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 分发 RPC 方法调用
+     */
+    private ByteBuffer dispatch(ILogEntryService logEntryService, long id, byte type, ByteBuffer body) {
+        return switch (type) {
+            case RaftCodec.APPEND_ENTRIES -> {
+                AppendEntriesCommand cmd = RaftCodec.decodeAppendEntries(body);
+                AppendEntriesResponse resp = logEntryService.handleAppendEntries(cmd);
+                yield RaftCodec.encodeAppendEntriesResponse(id, resp);
+            }
+            case RaftCodec.REQUEST_VOTE -> {
+                RequestVoteResponse resp = logEntryService.handleRequestVote(RaftCodec.decodeRequestVote(body));
+                yield RaftCodec.encodeRequestVoteResponse(id, resp);
+            }
+            case RaftCodec.INSTALL_SNAPSHOT -> {
+                InstallSnapshotResponse resp = logEntryService.handleInstallSnapshot(RaftCodec.decodeInstallSnapshot(body));
+                yield RaftCodec.encodeInstallSnapshotResponse(id, resp);
+            }
+            case RaftCodec.CLIENT_COMMAND -> {
+                boolean accepted = logEntryService.handleClientCommand(RaftCodec.getString(body));
+                yield RaftCodec.encodeBoolean(id, RaftCodec.CLIENT_COMMAND_RESPONSE, accepted);
+            }
+            case RaftCodec.PRINT_LOG -> {
+                logEntryService.printLog();
+                yield RaftCodec.encodeEmpty(id, RaftCodec.PRINT_LOG_RESPONSE);
+            }
+            default -> throw new IllegalArgumentException("Unknown message type: " + type);
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+        for (SocketChannel ch : connections.keySet()) {
+            ch.close();
+        }
+        workers.shutdownNow();
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    // 一个待处理的请求，处理结果在刷盘后写回
+    private static final class Request {
+        final Supplier<ByteBuffer> handler;
+        ByteBuffer response;
+
+        Request(Supplier<ByteBuffer> handler) {
+            this.handler = handler;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.tanggo.fund.raft.outbound;
+
+import com.tanggo.fund.raft.domain.ClusterConfig;
+import com.tanggo.fund.raft.domain.Snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 文件快照仓储
+ * 先写临时文件并刷盘，再原子替换 snapshot.bin，崩溃时旧快照保持完整
+ *
+ * 文件格式: [lastIncludedIndex(4字节)][lastIncludedTerm(4字节)][数据长度(4字节)][数据][成员配置(可选)]
+ */
+public class FileSnapshotRepo implements SnapshotRepo {
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+
+    private final Path file;
+    private final Path tmpFile;
+    private Snapshot cached;
+
+    public FileSnapshotRepo(Path dir) {
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create snapshot directory: " + dir, e);
+        }
+        this.file = dir.resolve(SNAPSHOT_FILE);
+        this.tmpFile = dir.resolve(SNAPSHOT_FILE + ".tmp");
+    }
+
+    @Override
+    public synchronized void save(Snapshot snapshot) {
+        ByteBuffer header = ByteBuffer.allocate(12)
+                .putInt(snapshot.getLastIncludedIndex())
+                .putInt(snapshot.getLastIncludedTerm())
+                .putInt(snapshot.getData().length)
+                .flip();
+        String config = snapshot.getConfig() == null ? null : snapshot.getConfig().toCommand();
+        ByteBuffer trailer = ByteBuffer.allocate(4 + RaftCodec.utf8Length(config));
+        RaftCodec.putString(trailer, config);
+        trailer.flip();
+        try {
+            try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                RaftCodec.writeFully(channel, header, ByteBuffer.wrap(snapshot.getData()), trailer);
+                channel.force(true);
+            }
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to save snapshot: " + file, e);
+        }
+        cached = snapshot;
+    }
+
+    @Override
+    public synchronized Snapshot load() {
+        if (cached != null || !Files.exists(file)) {
+            return cached;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            int lastIncludedIndex = buffer.getInt();
+            int lastIncludedTerm = buffer.getInt();
+            byte[] data = new byte[buffer.getInt()];
+            buffer.get(data);
+            // 旧格式的快照没有成员配置
+            String config = buffer.hasRemaining() ? RaftCodec.getString(buffer) : null;
+            cached = new Snapshot(lastIncludedIndex, lastIncludedTerm, data,
+                    config == null ? null : ClusterConfig.fromCommand(config));
+            return cached;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load snapshot: " + file, e);
+        }
+    }
+}
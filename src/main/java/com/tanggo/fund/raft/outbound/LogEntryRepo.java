@@ -1,16 +1,101 @@
 package com.tanggo.fund.raft.outbound;
 
+import com.tanggo.fund.raft.domain.HardState;
 import com.tanggo.fund.raft.domain.LogEntry;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
-public class LogEntryRepo {
-    private List<LogEntry> log;
+/**
+ * Raft 日志仓储
+ * 按索引随机访问，避免每次操作都拷贝整个日志
+ * 索引从 0 开始，空日志的 lastIndex 为 -1
+ * 快照压缩后，firstIndex 之前的日志不可访问，firstIndex - 1 的任期仍可通过 getTerm 获取
+ */
+public interface LogEntryRepo {
 
-    public  List<LogEntry> query() {
+    // 追加一条日志，索引必须等于 lastIndex() + 1
+    void insert(LogEntry logEntry);
+
+    // 按索引读取日志，越界返回 null
+    LogEntry get(int index);
+
+    // 读取 [fromIndex, toIndex) 区间的日志
+    List<LogEntry> slice(int fromIndex, int toIndex);
+
+    // [fromIndex, toIndex) 区间的原始记录字节（格式见 RaftCodec），不支持时返回 null
+    default ByteBuffer readRaw(int fromIndex, int toIndex) {
         return null;
     }
 
-    public void insert(LogEntry logEntry) {
+    // 删除 fromIndex 及之后的所有日志（冲突截断）
+    void truncateSuffix(int fromIndex);
+
+    // 快照压缩：丢弃 index 及之前的日志，index 的任期记为 term
+    void truncatePrefix(int index, int term);
+
+    // 安装快照：丢弃全部日志，下一条日志从 index + 1 开始
+    void reset(int index, int term);
+
+    // 第一条可访问日志的索引，未压缩时为 0
+    int firstIndex();
+
+    // 日志占用的字节数（估算），用于触发快照
+    long byteSize();
+
+    // 最后一条日志的索引，空日志返回 -1
+    int lastIndex();
+
+    // 最后一条日志的任期，空日志返回 0
+    int lastTerm();
+
+    // 指定索引的任期，index < firstIndex - 1 或越界返回 0
+    int getTerm(int index);
+
+    // 将已追加的日志刷到持久化介质
+    void flush();
+
+    // 持久化当前任期和投票，返回时已落盘
+    void saveHardState(HardState state);
+
+    // 最近保存的任期和投票，从未保存过时返回 null
+    HardState loadHardState();
+
+    // (firstIndex - 1, upTo] 区间内任期为 term 的第一条日志索引，没有时返回 -1；日志任期单调不减，按任期二分查找
+    default int firstIndexOfTerm(int term, int upTo) {
+        int low = firstIndex();
+        int high = Math.min(upTo, lastIndex());
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getTerm(mid) < term) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low <= high && low <= lastIndex() && getTerm(low) == term ? low : -1;
+    }
+
+    // [firstIndex - 1, upTo] 区间内任期为 term 的最后一条日志索引，没有时返回 -1
+    default int lastIndexOfTerm(int term, int upTo) {
+        int low = firstIndex() - 1;
+        int high = Math.min(upTo, lastIndex());
+        if (high < low) {
+            return -1;
+        }
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (getTerm(mid) > term) {
+                high = mid - 1;
+            } else {
+                low = mid;
+            }
+        }
+        return getTerm(low) == term ? low : -1;
+    }
+
+    // 全量日志（仅用于调试打印）
+    default List<LogEntry> query() {
+        return slice(firstIndex(), lastIndex() + 1);
     }
 }
@@ -0,0 +1,177 @@
+package com.tanggo.fund.raft.outbound;
+
+import com.tanggo.fund.raft.domain.LogEntry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 日志段文件
+ * 固定大小、内存映射，只追加写入
+ *
+ * 记录格式见 RaftCodec，长度为 0 表示段内数据结束
+ * 恢复时校验每条记录的 CRC，写了一半的记录及其后的内容被丢弃
+ */
+final class LogSegment {
+    static final int LENGTH_FIELD = 4;
+
+    private final int baseIndex;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int[] offsets = new int[1024]; // 段内第 i 条日志的起始位置
+    private int count;
+    private int writePosition;
+
+    private LogSegment(int baseIndex, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.baseIndex = baseIndex;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * 打开（或创建）段文件，并扫描恢复已写入的记录
+     */
+    static LogSegment open(Path path, int baseIndex, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            LogSegment segment = new LogSegment(baseIndex, path, channel, buffer);
+            segment.recover();
+            return segment;
+        } catch (IOException | RuntimeException | Error e) {
+            // 映射失败（内存不足、文件被截断等）时关闭刚打开的通道，不泄漏文件句柄
+            try {
+                channel.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    static int recordSize(LogEntry entry) {
+        return RaftCodec.recordSize(entry);
+    }
+
+    // 顺序扫描记录，遇到长度为 0、越界、校验失败或索引不连续即停止
+    private void recover() {
+        int position = 0;
+        while (position + LENGTH_FIELD <= buffer.capacity()) {
+            if (!RaftCodec.isValidRecord(buffer, position) || RaftCodec.recordIndex(buffer, position) != baseIndex + count) {
+                break;
+            }
+            addOffset(position);
+            position += LENGTH_FIELD + buffer.getInt(position);
+        }
+        writePosition = position;
+        // 清掉损坏记录的长度字段，之后追加的记录从这里覆盖
+        if (writePosition + LENGTH_FIELD <= buffer.capacity()) {
+            buffer.putInt(writePosition, 0);
+        }
+    }
+
+    boolean hasRoom(int recordSize) {
+        return writePosition + recordSize <= buffer.capacity();
+    }
+
+    void append(LogEntry entry) {
+        int position = writePosition;
+        ByteBuffer target = buffer.duplicate();
+        target.position(position);
+        RaftCodec.writeEntry(target, entry);
+
+        writePosition = target.position();
+        // 写入结束标记，防止截断后残留的旧记录被恢复
+        if (writePosition + LENGTH_FIELD <= buffer.capacity()) {
+            buffer.putInt(writePosition, 0);
+        }
+        addOffset(position);
+    }
+
+    LogEntry read(int index) {
+        ByteBuffer source = buffer.duplicate();
+        source.position(offsets[index - baseIndex]);
+        return RaftCodec.readEntry(source);
+    }
+
+    /**
+     * [fromIndex, toIndex) 区间记录的只读字节视图，与网络格式一致，可直接写入连接
+     */
+    ByteBuffer rawSlice(int fromIndex, int toIndex) {
+        int start = offsets[fromIndex - baseIndex];
+        int end = toIndex - baseIndex < count ? offsets[toIndex - baseIndex] : writePosition;
+        return buffer.slice(start, end - start).asReadOnlyBuffer();
+    }
+
+    // 只读取任期字段，无需解码整条记录
+    int term(int index) {
+        return RaftCodec.recordTerm(buffer, offsets[index - baseIndex]);
+    }
+
+    /**
+     * 删除 index 及之后的记录
+     */
+    void truncateFrom(int index) {
+        int local = index - baseIndex;
+        if (local >= count) {
+            return;
+        }
+        writePosition = offsets[local];
+        buffer.putInt(writePosition, 0);
+        count = local;
+    }
+
+    private void addOffset(int position) {
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+        }
+        offsets[count++] = position;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    int getBaseIndex() {
+        return baseIndex;
+    }
+
+    // 已写入的字节数
+    int size() {
+        return writePosition;
+    }
+
+    // index 处记录在段内的起始位置，即它之前的记录占用的字节数
+    int offsetOf(int index) {
+        return offsets[index - baseIndex];
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    int lastIndex() {
+        return baseIndex + count - 1;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+}
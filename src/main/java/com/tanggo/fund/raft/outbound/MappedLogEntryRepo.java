@@ -0,0 +1,332 @@
+package com.tanggo.fund.raft.outbound;
+
+import com.tanggo.fund.raft.domain.HardState;
+import com.tanggo.fund.raft.domain.LogEntry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 分段内存映射日志仓储
+ *
+ * 日志由固定大小的段文件组成，文件名为段内第一条日志的索引
+ * 追加、按索引读取、截断后缀、lastIndex/lastTerm 均不需要遍历整个日志
+ * 快照压缩点（最后被快照包含的索引和任期）记录在 snapshot.meta 中，之前的整段文件直接删除
+ * 当前任期和投票记录在 raft.meta 中
+ */
+public class MappedLogEntryRepo implements LogEntryRepo, Closeable {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024; // 64MB
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String META_FILE = "snapshot.meta";
+    private static final String HARD_STATE_FILE = "raft.meta";
+
+    private final Path dir;
+    private final int segmentSize;
+    private final List<LogSegment> segments = new ArrayList<>();
+    private int lastIndex = -1;
+    private int lastTerm = 0;
+    private int firstIndex = 0;
+    private int snapshotTerm = 0; // firstIndex - 1 的任期
+    private HardState hardState;
+
+    public MappedLogEntryRepo(Path dir) {
+        this(dir, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public MappedLogEntryRepo(Path dir, int segmentSize) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(dir);
+            load();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open raft log at: " + dir, e);
+        }
+    }
+
+    // 读取压缩点，再按文件名顺序加载所有段，丢弃已压缩或不连续的段
+    private void load() throws IOException {
+        Path meta = dir.resolve(META_FILE);
+        if (Files.exists(meta)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(meta));
+            firstIndex = buffer.getInt() + 1;
+            snapshotTerm = buffer.getInt();
+        }
+        Path hardStateFile = dir.resolve(HARD_STATE_FILE);
+        if (Files.exists(hardStateFile)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(hardStateFile));
+            hardState = new HardState(buffer.getInt(), RaftCodec.getString(buffer));
+        }
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(dir)) {
+            files = stream.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+
+        int expected = firstIndex;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            int baseIndex = Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            boolean contiguous = segments.isEmpty() ? baseIndex <= firstIndex : baseIndex == expected;
+            if (!contiguous) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+            LogSegment segment = LogSegment.open(file, baseIndex, segmentSize);
+            if (segment.lastIndex() < firstIndex || (segment.isEmpty() && !segments.isEmpty())) {
+                segment.delete();
+                continue;
+            }
+            segments.add(segment);
+            expected = segment.lastIndex() + 1;
+        }
+
+        lastIndex = expected - 1;
+        lastTerm = getTerm(lastIndex);
+    }
+
+    private void writeMeta(int index, int term) {
+        writeAtomically(META_FILE, ByteBuffer.allocate(8).putInt(index).putInt(term).flip());
+    }
+
+    // 先写临时文件并刷盘，再原子替换，崩溃时旧文件保持完整
+    private void writeAtomically(String name, ByteBuffer buffer) {
+        Path meta = dir.resolve(name);
+        Path tmp = dir.resolve(name + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                RaftCodec.writeFully(channel, buffer);
+                channel.force(true);
+            }
+            Files.move(tmp, meta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write raft log meta: " + meta, e);
+        }
+    }
+
+    @Override
+    public synchronized void insert(LogEntry logEntry) {
+        if (logEntry.getIndex() != lastIndex + 1) {
+            throw new IllegalArgumentException("Non-contiguous log index: " + logEntry.getIndex() + ", expected " + (lastIndex + 1));
+        }
+        int recordSize = LogSegment.recordSize(logEntry);
+        if (recordSize + LogSegment.LENGTH_FIELD > segmentSize) {
+            throw new IllegalArgumentException("Log entry too large for segment: " + recordSize + " bytes");
+        }
+
+        LogSegment active = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (active == null || !active.hasRoom(recordSize)) {
+            if (active != null) {
+                active.force();
+            }
+            active = openSegment(logEntry.getIndex());
+        }
+
+        active.append(logEntry);
+        lastIndex = logEntry.getIndex();
+        lastTerm = logEntry.getTerm();
+    }
+
+    private LogSegment openSegment(int baseIndex) {
+        Path file = dir.resolve(String.format("%020d%s", baseIndex, SEGMENT_SUFFIX));
+        try {
+            LogSegment segment = LogSegment.open(file, baseIndex, segmentSize);
+            segments.add(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create log segment: " + file, e);
+        }
+    }
+
+    // 段按 baseIndex 递增排列，二分查找所在段
+    private LogSegment segmentOf(int index) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (segments.get(mid).getBaseIndex() <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return segments.get(low);
+    }
+
+    @Override
+    public synchronized LogEntry get(int index) {
+        if (index < firstIndex || index > lastIndex) {
+            return null;
+        }
+        return segmentOf(index).read(index);
+    }
+
+    @Override
+    public synchronized List<LogEntry> slice(int fromIndex, int toIndex) {
+        int from = Math.max(fromIndex, firstIndex);
+        int to = Math.min(toIndex, lastIndex + 1);
+        List<LogEntry> entries = new ArrayList<>(Math.max(to - from, 0));
+        for (int i = from; i < to; i++) {
+            entries.add(segmentOf(i).read(i));
+        }
+        return entries;
+    }
+
+    @Override
+    public synchronized ByteBuffer readRaw(int fromIndex, int toIndex) {
+        if (fromIndex < firstIndex || fromIndex >= toIndex || toIndex - 1 > lastIndex) {
+            return null;
+        }
+        LogSegment segment = segmentOf(fromIndex);
+        if (toIndex - 1 > segment.lastIndex()) {
+            return null; // 跨段时退回逐条编码
+        }
+        return segment.rawSlice(fromIndex, toIndex);
+    }
+
+    @Override
+    public synchronized void truncateSuffix(int fromIndex) {
+        if (fromIndex > lastIndex) {
+            return;
+        }
+        int from = Math.max(fromIndex, firstIndex);
+        try {
+            // 删除整段位于截断点之后的段文件（第一个段保留）
+            while (segments.size() > 1 && segments.get(segments.size() - 1).getBaseIndex() >= from) {
+                segments.remove(segments.size() - 1).delete();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete log segment", e);
+        }
+        if (!segments.isEmpty()) {
+            LogSegment tail = segments.get(segments.size() - 1);
+            tail.truncateFrom(from);
+            tail.force();
+        }
+
+        lastIndex = from - 1;
+        lastTerm = getTerm(lastIndex);
+    }
+
+    @Override
+    public synchronized void truncatePrefix(int index, int term) {
+        if (index < firstIndex) {
+            return;
+        }
+        if (index >= lastIndex) {
+            reset(index, term);
+            return;
+        }
+        // 先持久化压缩点，再删除整段已被快照覆盖的段文件
+        writeMeta(index, term);
+        firstIndex = index + 1;
+        snapshotTerm = term;
+        try {
+            while (segments.get(0).lastIndex() < firstIndex) {
+                segments.remove(0).delete();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete compacted log segment", e);
+        }
+    }
+
+    @Override
+    public synchronized void reset(int index, int term) {
+        writeMeta(index, term);
+        try {
+            for (LogSegment segment : segments) {
+                segment.delete();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete log segment", e);
+        }
+        segments.clear();
+        firstIndex = index + 1;
+        snapshotTerm = term;
+        lastIndex = index;
+        lastTerm = term;
+    }
+
+    @Override
+    public synchronized int firstIndex() {
+        return firstIndex;
+    }
+
+    // 只计 firstIndex 之后的日志：第一个段中已被快照覆盖的记录不计入，否则压缩后仍超过阈值会连续触发快照
+    @Override
+    public synchronized long byteSize() {
+        long size = 0;
+        for (LogSegment segment : segments) {
+            size += segment.size();
+        }
+        if (!segments.isEmpty()) {
+            LogSegment first = segments.get(0);
+            if (firstIndex > first.getBaseIndex() && firstIndex <= first.lastIndex()) {
+                size -= first.offsetOf(firstIndex);
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public synchronized int lastIndex() {
+        return lastIndex;
+    }
+
+    @Override
+    public synchronized int lastTerm() {
+        return lastTerm;
+    }
+
+    @Override
+    public synchronized int getTerm(int index) {
+        if (index == firstIndex - 1) {
+            return snapshotTerm;
+        }
+        if (index < firstIndex || index > lastIndex) {
+            return 0;
+        }
+        return segmentOf(index).term(index);
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (!segments.isEmpty()) {
+            segments.get(segments.size() - 1).force();
+        }
+    }
+
+    @Override
+    public synchronized void saveHardState(HardState state) {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + RaftCodec.utf8Length(state.getVotedFor()));
+        buffer.putInt(state.getCurrentTerm());
+        RaftCodec.putString(buffer, state.getVotedFor());
+        writeAtomically(HARD_STATE_FILE, buffer.flip());
+        hardState = state;
+    }
+
+    @Override
+    public synchronized HardState loadHardState() {
+        return hardState;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        for (LogSegment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+    }
+}
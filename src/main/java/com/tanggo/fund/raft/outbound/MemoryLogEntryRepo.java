@@ -0,0 +1,136 @@
+package com.tanggo.fund.raft.outbound;
+
+import com.tanggo.fund.raft.domain.HardState;
+import com.tanggo.fund.raft.domain.LogEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 内存日志仓储
+ * 用于单机演示和测试，进程重启后日志丢失
+ */
+public class MemoryLogEntryRepo implements LogEntryRepo {
+    private static final int ENTRY_OVERHEAD = 16; // 日志条目固定字段的估算字节数
+
+    private final List<LogEntry> log = new ArrayList<>();
+    private int firstIndex = 0;    // log.get(0) 对应的日志索引
+    private int snapshotTerm = 0;  // firstIndex - 1 的任期
+    private long byteSize;
+    private volatile HardState hardState;
+
+    @Override
+    public synchronized void insert(LogEntry logEntry) {
+        int expected = firstIndex + log.size();
+        if (logEntry.getIndex() != expected) {
+            throw new IllegalArgumentException("Non-contiguous log index: " + logEntry.getIndex() + ", expected " + expected);
+        }
+        log.add(logEntry);
+        byteSize += sizeOf(logEntry);
+    }
+
+    @Override
+    public synchronized LogEntry get(int index) {
+        if (index < firstIndex || index > lastIndex()) {
+            return null;
+        }
+        return log.get(index - firstIndex);
+    }
+
+    @Override
+    public synchronized List<LogEntry> slice(int fromIndex, int toIndex) {
+        int from = Math.max(fromIndex, firstIndex);
+        int to = Math.min(toIndex, lastIndex() + 1);
+        if (from >= to) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(log.subList(from - firstIndex, to - firstIndex));
+    }
+
+    @Override
+    public synchronized void truncateSuffix(int fromIndex) {
+        if (fromIndex <= lastIndex()) {
+            List<LogEntry> removed = log.subList(Math.max(fromIndex, firstIndex) - firstIndex, log.size());
+            for (LogEntry entry : removed) {
+                byteSize -= sizeOf(entry);
+            }
+            removed.clear();
+        }
+    }
+
+    @Override
+    public synchronized void truncatePrefix(int index, int term) {
+        if (index < firstIndex) {
+            return;
+        }
+        if (index >= lastIndex()) {
+            reset(index, term);
+            return;
+        }
+        List<LogEntry> removed = log.subList(0, index - firstIndex + 1);
+        for (LogEntry entry : removed) {
+            byteSize -= sizeOf(entry);
+        }
+        removed.clear();
+        firstIndex = index + 1;
+        snapshotTerm = term;
+    }
+
+    @Override
+    public synchronized void reset(int index, int term) {
+        log.clear();
+        byteSize = 0;
+        firstIndex = index + 1;
+        snapshotTerm = term;
+    }
+
+    @Override
+    public synchronized int firstIndex() {
+        return firstIndex;
+    }
+
+    @Override
+    public synchronized long byteSize() {
+        return byteSize;
+    }
+
+    @Override
+    public synchronized int lastIndex() {
+        return firstIndex + log.size() - 1;
+    }
+
+    @Override
+    public synchronized int lastTerm() {
+        return log.isEmpty() ? snapshotTerm : log.get(log.size() - 1).getTerm();
+    }
+
+    @Override
+    public synchronized int getTerm(int index) {
+        if (index == firstIndex - 1) {
+            return snapshotTerm;
+        }
+        if (index < firstIndex || index > lastIndex()) {
+            return 0;
+        }
+        return log.get(index - firstIndex).getTerm();
+    }
+
+    @Override
+    public void flush() {
+        // 内存存储无需刷盘
+    }
+
+    @Override
+    public void saveHardState(HardState state) {
+        this.hardState = state;
+    }
+
+    @Override
+    public HardState loadHardState() {
+        return hardState;
+    }
+
+    private static long sizeOf(LogEntry entry) {
+        return ENTRY_OVERHEAD + entry.getPayload().length;
+    }
+}
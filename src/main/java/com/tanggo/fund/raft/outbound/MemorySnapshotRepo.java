@@ -0,0 +1,21 @@
+package com.tanggo.fund.raft.outbound;
+
+import com.tanggo.fund.raft.domain.Snapshot;
+
+/**
+ * 内存快照仓储
+ * 用于单机演示和测试
+ */
+public class MemorySnapshotRepo implements SnapshotRepo {
+    private volatile Snapshot snapshot;
+
+    @Override
+    public void save(Snapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public Snapshot load() {
+        return snapshot;
+    }
+}
@@ -1,13 +1,30 @@
 package com.tanggo.fund.raft.outbound;
 
+import com.tanggo.fund.raft.domain.ClusterConfig;
 import com.tanggo.fund.raft.domain.PeerRaftNode;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.Supplier;
 
-//邻居节点信息
+//邻居节点信息，按当前生效的成员配置给出每个节点的角色
 public class PeerRaftNodeRepo {
 
+    private final Supplier<ClusterConfig> configuration;
+
+    public PeerRaftNodeRepo(Supplier<ClusterConfig> configuration) {
+        this.configuration = configuration;
+    }
+
     public Map<String, PeerRaftNode> query() {
-        return null;
+        ClusterConfig config = configuration.get();
+        Map<String, PeerRaftNode> peers = new LinkedHashMap<>();
+        for (String nodeId : config.members()) {
+            PeerRaftNode peer = new PeerRaftNode();
+            peer.setNodeId(nodeId);
+            peer.setRole(config.isVoter(nodeId) ? PeerRaftNode.Role.VOTER : PeerRaftNode.Role.LEARNER);
+            peers.put(nodeId, peer);
+        }
+        return peers;
     }
 }
@@ -0,0 +1,639 @@
+package com.tanggo.fund.raft.outbound;
+
+import com.tanggo.fund.raft.domain.LogEntry;
+import com.tanggo.fund.raft.service.command.AppendEntriesCommand;
+import com.tanggo.fund.raft.service.command.AppendEntriesResponse;
+import com.tanggo.fund.raft.service.command.InstallSnapshotCommand;
+import com.tanggo.fund.raft.service.command.InstallSnapshotResponse;
+import com.tanggo.fund.raft.service.command.ReadMode;
+import com.tanggo.fund.raft.service.command.RequestVoteCommand;
+import com.tanggo.fund.raft.service.command.RequestVoteResponse;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Raft 二进制编解码
+ *
+ * 帧格式: [帧长度(4字节)][请求ID(8字节)][类型(1字节)][消息体]
+ * 帧长度不含自身的 4 字节
+ * Multi-Raft 时类型带 GROUP_FLAG，类型之后紧跟 Raft 组ID: [帧长度][请求ID][类型|GROUP_FLAG][组ID][消息体]
+ *
+ * 日志记录格式与段文件一致，段文件中的字节可以不经重新编码直接写入连接：
+ * [长度(4字节)][CRC32C(4字节)][标志(1字节)][term(varint)][index(varint)][载荷]
+ * 长度不含自身，CRC 覆盖标志及之后的字节，用于发现写了一半的记录；标志低 4 位为日志类型
+ * 载荷不小于 COMPRESSION_THRESHOLD 且压缩后更小时以 Deflate 压缩存储: [原始长度(varint)][压缩数据]
+ */
+public final class RaftCodec {
+    public static final int FRAME_HEADER = 4 + 8 + 1;
+    public static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+    // 消息类型
+    public static final byte APPEND_ENTRIES = 1;
+    public static final byte APPEND_ENTRIES_RESPONSE = 2;
+    public static final byte CLIENT_COMMAND = 3;
+    public static final byte CLIENT_COMMAND_RESPONSE = 4;
+    public static final byte PRINT_LOG = 5;
+    public static final byte PRINT_LOG_RESPONSE = 6;
+    public static final byte ERROR = 7;
+    public static final byte INSTALL_SNAPSHOT = 8;
+    public static final byte INSTALL_SNAPSHOT_RESPONSE = 9;
+    public static final byte READ = 10;
+    public static final byte READ_RESPONSE = 11;
+    public static final byte REQUEST_VOTE = 12;
+    public static final byte REQUEST_VOTE_RESPONSE = 13;
+    public static final byte HEARTBEAT_BATCH = 14;
+    public static final byte HEARTBEAT_BATCH_RESPONSE = 15;
+
+    // 请求发往指定的 Raft 组
+    public static final byte GROUP_FLAG = 0x40;
+
+    // AppendEntries 固定字段: term, prevLogIndex, prevLogTerm, leaderCommit, entryCount
+    private static final int APPEND_ENTRIES_FIXED = 4 * 5;
+    // AppendEntries 响应: term, success, matchIndex, conflictTerm, conflictIndex
+    private static final int APPEND_RESPONSE_SIZE = 4 + 1 + 4 + 4 + 4;
+
+    // 日志记录: 长度、校验和、标志
+    private static final int RECORD_HEADER = 4 + 4 + 1;
+    private static final int TYPE_MASK = 0x0F;
+    private static final byte COMPRESSED = 0x10;
+    // 载荷达到该字节数才尝试压缩，小命令压缩收益抵不上开销
+    public static final int COMPRESSION_THRESHOLD = 256;
+    // Deflater/Inflater 持有本地内存，复用而不是按线程缓存（虚拟线程数量不受限）
+    private static final Queue<Deflater> DEFLATERS = new ConcurrentLinkedQueue<>();
+    private static final Queue<Inflater> INFLATERS = new ConcurrentLinkedQueue<>();
+
+    private RaftCodec() {
+    }
+
+    // ==================== 帧读写 ====================
+
+    /**
+     * 读取一帧，返回的缓冲区位于请求ID处（[请求ID][类型][消息体]）
+     * 连接正常关闭返回 null
+     */
+    public static ByteBuffer readFrame(ReadableByteChannel channel) throws IOException {
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        if (!readFully(channel, lengthBuffer, true)) {
+            return null;
+        }
+        int length = lengthBuffer.flip().getInt();
+        if (length < 9 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Invalid raft frame length: " + length);
+        }
+        ByteBuffer frame = ByteBuffer.allocate(length);
+        readFully(channel, frame, false);
+        return frame.flip();
+    }
+
+    /**
+     * 按批读取帧：阻塞到至少有一帧完整，返回已到达的全部完整帧，不完整的部分留到下次
+     * 对端发得快时一次读到多帧，服务端可以整批处理
+     */
+    public static final class FrameReader {
+        private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+        // 返回的每个缓冲区位于请求ID处；连接在帧边界正常关闭返回 null
+        public List<ByteBuffer> read(ReadableByteChannel channel) throws IOException {
+            List<ByteBuffer> frames = new ArrayList<>();
+            while (true) {
+                buffer.flip();
+                while (buffer.remaining() >= 4) {
+                    int length = buffer.getInt(buffer.position());
+                    if (length < 9 || length > MAX_FRAME_SIZE) {
+                        throw new IOException("Invalid raft frame length: " + length);
+                    }
+                    if (buffer.remaining() < 4 + length) {
+                        break;
+                    }
+                    ByteBuffer frame = ByteBuffer.allocate(length);
+                    buffer.position(buffer.position() + 4);
+                    frame.put(buffer.duplicate().limit(buffer.position() + length));
+                    buffer.position(buffer.position() + length);
+                    frames.add(frame.flip());
+                }
+                int needed = buffer.remaining() >= 4 ? 4 + buffer.getInt(buffer.position()) : 4;
+                buffer.compact();
+                if (!frames.isEmpty()) {
+                    return frames;
+                }
+                if (needed > buffer.capacity()) {
+                    buffer = ByteBuffer.allocate(needed).put(buffer.flip());
+                }
+                if (channel.read(buffer) < 0) {
+                    if (buffer.position() == 0) {
+                        return null;
+                    }
+                    throw new EOFException("Connection closed in the middle of a raft frame");
+                }
+            }
+        }
+    }
+
+    private static boolean readFully(ReadableByteChannel channel, ByteBuffer buffer, boolean eofAllowed) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (eofAllowed && buffer.position() == 0) {
+                    return false;
+                }
+                throw new EOFException("Connection closed in the middle of a raft frame");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 聚集写出一帧的所有缓冲区
+     */
+    public static void writeFully(GatheringByteChannel channel, ByteBuffer... buffers) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    // ==================== 日志记录 ====================
+
+    /**
+     * 记录最大字节数（压缩只会让记录变小），用于预留缓冲区空间
+     */
+    public static int recordSize(LogEntry entry) {
+        return RECORD_HEADER + 5 + 5 + entry.getPayload().length;
+    }
+
+    /**
+     * 在 buffer 当前位置写入一条日志记录（长度和校验和最后写入）
+     */
+    public static void writeEntry(ByteBuffer buffer, LogEntry entry) {
+        int start = buffer.position();
+        int flagsPosition = start + 8;
+        buffer.position(flagsPosition + 1);
+        putVarInt(buffer, entry.getTerm());
+        putVarInt(buffer, entry.getIndex());
+        byte[] payload = entry.getPayload();
+        byte flags = (byte) entry.getType().ordinal();
+        if (payload.length >= COMPRESSION_THRESHOLD && compress(buffer, payload)) {
+            flags |= COMPRESSED;
+        } else {
+            buffer.put(payload);
+        }
+        buffer.put(flagsPosition, flags);
+        buffer.putInt(start, buffer.position() - start - 4);
+        buffer.putInt(start + 4, checksum(buffer, flagsPosition, buffer.position()));
+    }
+
+    /**
+     * 从 buffer 当前位置读取一条日志记录，校验和不匹配时抛出 IllegalStateException
+     */
+    public static LogEntry readEntry(ByteBuffer buffer) {
+        int start = buffer.position();
+        int end = start + 4 + buffer.getInt();
+        if (!isValidRecord(buffer, start)) {
+            throw new IllegalStateException("Corrupted raft log record at position " + start);
+        }
+        buffer.position(start + 8);
+        byte flags = buffer.get();
+        LogEntry.Type type = LogEntry.Type.values()[flags & TYPE_MASK];
+        int term = getVarInt(buffer);
+        int index = getVarInt(buffer);
+        byte[] payload;
+        if ((flags & COMPRESSED) != 0) {
+            int rawLength = getVarInt(buffer);
+            payload = decompress(buffer.duplicate().limit(end), rawLength);
+        } else {
+            payload = new byte[end - buffer.position()];
+            buffer.get(payload);
+        }
+        buffer.position(end);
+        return new LogEntry(type, term, index, payload);
+    }
+
+    /**
+     * position 处的记录是否完整：长度在缓冲区范围内、类型合法且校验和匹配
+     */
+    public static boolean isValidRecord(ByteBuffer buffer, int position) {
+        if (position + RECORD_HEADER > buffer.limit()) {
+            return false;
+        }
+        int length = buffer.getInt(position);
+        int end = position + 4 + length;
+        if (length < RECORD_HEADER - 4 + 2 || end > buffer.limit() || end < position) {
+            return false;
+        }
+        if ((buffer.get(position + 8) & TYPE_MASK) >= LogEntry.Type.values().length) {
+            return false;
+        }
+        return buffer.getInt(position + 4) == checksum(buffer, position + 8, end);
+    }
+
+    // 只读取记录的任期字段，无需解码整条记录
+    public static int recordTerm(ByteBuffer buffer, int position) {
+        return getVarInt(buffer, position + RECORD_HEADER);
+    }
+
+    public static int recordIndex(ByteBuffer buffer, int position) {
+        int termPosition = position + RECORD_HEADER;
+        return getVarInt(buffer, termPosition + varIntLength(buffer, termPosition));
+    }
+
+    private static int checksum(ByteBuffer buffer, int from, int to) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(from, to - from));
+        return (int) crc.getValue();
+    }
+
+    // 压缩后不比原始载荷小时放弃压缩，buffer 位置不变，返回 false
+    private static boolean compress(ByteBuffer buffer, byte[] payload) {
+        int start = buffer.position();
+        putVarInt(buffer, payload.length);
+        int budget = Math.min(payload.length - (buffer.position() - start) - 1, buffer.remaining());
+        if (budget <= 0) {
+            buffer.position(start);
+            return false;
+        }
+        ByteBuffer target = buffer.slice(buffer.position(), budget);
+        Deflater deflater = DEFLATERS.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.BEST_SPEED);
+        }
+        try {
+            deflater.setInput(payload);
+            deflater.finish();
+            while (!deflater.finished() && target.hasRemaining()) {
+                deflater.deflate(target);
+            }
+            if (!deflater.finished()) {
+                buffer.position(start);
+                return false;
+            }
+            buffer.position(buffer.position() + target.position());
+            return true;
+        } finally {
+            deflater.reset();
+            DEFLATERS.offer(deflater);
+        }
+    }
+
+    private static byte[] decompress(ByteBuffer source, int rawLength) {
+        // 原始长度来自记录本身（可能来自网络），先校验再分配
+        if (rawLength < 0 || rawLength > MAX_FRAME_SIZE) {
+            throw new IllegalStateException("Invalid compressed raft log payload length: " + rawLength);
+        }
+        byte[] payload = new byte[rawLength];
+        Inflater inflater = INFLATERS.poll();
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+        try {
+            inflater.setInput(source);
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(payload, length, rawLength - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != rawLength) {
+                throw new IllegalStateException("Truncated compressed raft log payload: " + length + " of " + rawLength + " bytes");
+            }
+            return payload;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Failed to decompress raft log payload", e);
+        } finally {
+            inflater.reset();
+            INFLATERS.offer(inflater);
+        }
+    }
+
+    // ==================== 消息 ====================
+
+    /**
+     * 编码 AppendEntries 帧头和固定字段
+     * 日志部分由调用方追加：有段文件原始字节时直接聚集写，否则用 encodeEntries 编码
+     */
+    public static ByteBuffer encodeAppendEntriesHeader(long requestId, AppendEntriesCommand command, int entriesBytes) {
+        ByteBuffer buffer = ByteBuffer.allocate(FRAME_HEADER + APPEND_ENTRIES_FIXED);
+        buffer.putInt(8 + 1 + APPEND_ENTRIES_FIXED + entriesBytes);
+        buffer.putLong(requestId);
+        buffer.put(APPEND_ENTRIES);
+        buffer.putInt(command.getTerm());
+        buffer.putInt(command.getPrevLogIndex());
+        buffer.putInt(command.getPrevLogTerm());
+        buffer.putInt(command.getLeaderCommit());
+        buffer.putInt(command.getEntries().size());
+        return buffer.flip();
+    }
+
+    public static ByteBuffer encodeEntries(List<LogEntry> entries) {
+        int size = 0;
+        for (LogEntry entry : entries) {
+            size += recordSize(entry);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (LogEntry entry : entries) {
+            writeEntry(buffer, entry);
+        }
+        return buffer.flip();
+    }
+
+    public static AppendEntriesCommand decodeAppendEntries(ByteBuffer body) {
+        int term = body.getInt();
+        int prevLogIndex = body.getInt();
+        int prevLogTerm = body.getInt();
+        int leaderCommit = body.getInt();
+        int count = body.getInt();
+        List<LogEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(readEntry(body));
+        }
+        return new AppendEntriesCommand(term, prevLogIndex, prevLogTerm, entries, leaderCommit);
+    }
+
+    public static ByteBuffer encodeAppendEntriesResponse(long requestId, AppendEntriesResponse response) {
+        ByteBuffer buffer = frame(requestId, APPEND_ENTRIES_RESPONSE, APPEND_RESPONSE_SIZE);
+        putAppendEntriesResponse(buffer, response);
+        return buffer.flip();
+    }
+
+    // [term][success][matchIndex][conflictTerm][conflictIndex]
+    private static void putAppendEntriesResponse(ByteBuffer buffer, AppendEntriesResponse response) {
+        buffer.putInt(response.getTerm());
+        buffer.put((byte) (response.isSuccess() ? 1 : 0));
+        buffer.putInt(response.getMatchIndex());
+        buffer.putInt(response.getConflictTerm());
+        buffer.putInt(response.getConflictIndex());
+    }
+
+    public static AppendEntriesResponse decodeAppendEntriesResponse(ByteBuffer body) {
+        int term = body.getInt();
+        boolean success = body.get() == 1;
+        int matchIndex = body.getInt();
+        int conflictTerm = body.getInt();
+        int conflictIndex = body.getInt();
+        return new AppendEntriesResponse(term, success, matchIndex, conflictTerm, conflictIndex);
+    }
+
+    public static ByteBuffer encodeInstallSnapshot(long requestId, InstallSnapshotCommand command) {
+        ByteBuffer buffer = frame(requestId, INSTALL_SNAPSHOT,
+                4 + 4 + utf8Length(command.getLeaderId()) + 4 + 4 + 8 + 1 + 4 + command.getData().length
+                        + 4 + utf8Length(command.getConfig()));
+        buffer.putInt(command.getTerm());
+        putString(buffer, command.getLeaderId());
+        buffer.putInt(command.getLastIncludedIndex());
+        buffer.putInt(command.getLastIncludedTerm());
+        buffer.putLong(command.getOffset());
+        buffer.put((byte) (command.isDone() ? 1 : 0));
+        buffer.putInt(command.getData().length);
+        buffer.put(command.getData());
+        putString(buffer, command.getConfig());
+        return buffer.flip();
+    }
+
+    public static InstallSnapshotCommand decodeInstallSnapshot(ByteBuffer body) {
+        int term = body.getInt();
+        String leaderId = getString(body);
+        int lastIncludedIndex = body.getInt();
+        int lastIncludedTerm = body.getInt();
+        long offset = body.getLong();
+        boolean done = body.get() == 1;
+        byte[] data = new byte[body.getInt()];
+        body.get(data);
+        InstallSnapshotCommand command = new InstallSnapshotCommand(term, leaderId, lastIncludedIndex, lastIncludedTerm, offset, data, done);
+        command.setConfig(getString(body));
+        return command;
+    }
+
+    public static ByteBuffer encodeInstallSnapshotResponse(long requestId, InstallSnapshotResponse response) {
+        ByteBuffer buffer = frame(requestId, INSTALL_SNAPSHOT_RESPONSE, 4 + 1);
+        buffer.putInt(response.getTerm());
+        buffer.put((byte) (response.isSuccess() ? 1 : 0));
+        return buffer.flip();
+    }
+
+    public static InstallSnapshotResponse decodeInstallSnapshotResponse(ByteBuffer body) {
+        int term = body.getInt();
+        boolean success = body.get() == 1;
+        return new InstallSnapshotResponse(term, success);
+    }
+
+    public static ByteBuffer encodeRequestVote(long requestId, RequestVoteCommand command) {
+        ByteBuffer buffer = frame(requestId, REQUEST_VOTE, 4 + 4 + utf8Length(command.getCandidateId()) + 4 + 4 + 1);
+        buffer.putInt(command.getTerm());
+        putString(buffer, command.getCandidateId());
+        buffer.putInt(command.getLastLogIndex());
+        buffer.putInt(command.getLastLogTerm());
+        buffer.put((byte) (command.isPreVote() ? 1 : 0));
+        return buffer.flip();
+    }
+
+    public static RequestVoteCommand decodeRequestVote(ByteBuffer body) {
+        int term = body.getInt();
+        String candidateId = getString(body);
+        int lastLogIndex = body.getInt();
+        int lastLogTerm = body.getInt();
+        boolean preVote = body.get() == 1;
+        return new RequestVoteCommand(term, candidateId, lastLogIndex, lastLogTerm, preVote);
+    }
+
+    public static ByteBuffer encodeRequestVoteResponse(long requestId, RequestVoteResponse response) {
+        ByteBuffer buffer = frame(requestId, REQUEST_VOTE_RESPONSE, 4 + 1);
+        buffer.putInt(response.getTerm());
+        buffer.put((byte) (response.isVoteGranted() ? 1 : 0));
+        return buffer.flip();
+    }
+
+    public static RequestVoteResponse decodeRequestVoteResponse(ByteBuffer body) {
+        int term = body.getInt();
+        boolean voteGranted = body.get() == 1;
+        return new RequestVoteResponse(term, voteGranted);
+    }
+
+    /**
+     * 把一帧改写为发往 groupId 的帧：重写帧头并在类型后插入组ID，消息体缓冲区原样复用
+     */
+    public static ByteBuffer[] routeToGroup(String groupId, ByteBuffer... frame) {
+        ByteBuffer first = frame[0].duplicate();
+        int length = first.getInt(first.position());
+        long requestId = first.getLong(first.position() + 4);
+        byte type = first.get(first.position() + 12);
+        first.position(first.position() + FRAME_HEADER);
+
+        int groupBytes = 4 + utf8Length(groupId);
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER + groupBytes);
+        header.putInt(length + groupBytes);
+        header.putLong(requestId);
+        header.put((byte) (type | GROUP_FLAG));
+        putString(header, groupId);
+
+        ByteBuffer[] routed = new ByteBuffer[frame.length + 1];
+        routed[0] = header.flip();
+        routed[1] = first;
+        System.arraycopy(frame, 1, routed, 2, frame.length - 1);
+        return routed;
+    }
+
+    // 消息体: [心跳数(4字节)][组ID, term, prevLogIndex, prevLogTerm, leaderCommit]*
+    public static ByteBuffer encodeHeartbeatBatch(long requestId, List<String> groupIds, List<AppendEntriesCommand> heartbeats) {
+        int size = 4;
+        for (String groupId : groupIds) {
+            size += 4 + utf8Length(groupId) + 4 * 4;
+        }
+        ByteBuffer buffer = frame(requestId, HEARTBEAT_BATCH, size);
+        buffer.putInt(heartbeats.size());
+        for (int i = 0; i < heartbeats.size(); i++) {
+            AppendEntriesCommand heartbeat = heartbeats.get(i);
+            putString(buffer, groupIds.get(i));
+            buffer.putInt(heartbeat.getTerm());
+            buffer.putInt(heartbeat.getPrevLogIndex());
+            buffer.putInt(heartbeat.getPrevLogTerm());
+            buffer.putInt(heartbeat.getLeaderCommit());
+        }
+        return buffer.flip();
+    }
+
+    // 读取批量心跳中的一条，组ID由调用方先用 getString 读出
+    public static AppendEntriesCommand decodeHeartbeat(ByteBuffer body) {
+        int term = body.getInt();
+        int prevLogIndex = body.getInt();
+        int prevLogTerm = body.getInt();
+        int leaderCommit = body.getInt();
+        return new AppendEntriesCommand(term, prevLogIndex, prevLogTerm, new ArrayList<>(), leaderCommit);
+    }
+
+    // 消息体: [响应数(4字节)][追加日志响应]*，顺序与请求一致
+    public static ByteBuffer encodeHeartbeatBatchResponse(long requestId, List<AppendEntriesResponse> responses) {
+        ByteBuffer buffer = frame(requestId, HEARTBEAT_BATCH_RESPONSE, 4 + responses.size() * APPEND_RESPONSE_SIZE);
+        buffer.putInt(responses.size());
+        for (AppendEntriesResponse response : responses) {
+            putAppendEntriesResponse(buffer, response);
+        }
+        return buffer.flip();
+    }
+
+    public static List<AppendEntriesResponse> decodeHeartbeatBatchResponse(ByteBuffer body) {
+        int count = body.getInt();
+        List<AppendEntriesResponse> responses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            responses.add(decodeAppendEntriesResponse(body));
+        }
+        return responses;
+    }
+
+    // 消息体: [读模式(1字节)][查询]
+    public static ByteBuffer encodeRead(long requestId, String query, ReadMode mode) {
+        ByteBuffer buffer = frame(requestId, READ, 1 + 4 + utf8Length(query));
+        buffer.put((byte) mode.ordinal());
+        putString(buffer, query);
+        return buffer.flip();
+    }
+
+    public static ReadMode getReadMode(ByteBuffer body) {
+        return ReadMode.values()[body.get()];
+    }
+
+    public static ByteBuffer encodeString(long requestId, byte type, String value) {
+        ByteBuffer buffer = frame(requestId, type, 4 + utf8Length(value));
+        putString(buffer, value);
+        return buffer.flip();
+    }
+
+    public static ByteBuffer encodeBoolean(long requestId, byte type, boolean value) {
+        ByteBuffer buffer = frame(requestId, type, 1);
+        buffer.put((byte) (value ? 1 : 0));
+        return buffer.flip();
+    }
+
+    public static ByteBuffer encodeEmpty(long requestId, byte type) {
+        return frame(requestId, type, 0).flip();
+    }
+
+    // 分配帧缓冲并写入帧头
+    private static ByteBuffer frame(long requestId, byte type, int bodySize) {
+        ByteBuffer buffer = ByteBuffer.allocate(FRAME_HEADER + bodySize);
+        buffer.putInt(8 + 1 + bodySize);
+        buffer.putLong(requestId);
+        buffer.put(type);
+        return buffer;
+    }
+
+    // ==================== 字符串 ====================
+
+    // null 编码为长度 -1
+    public static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    public static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static int utf8Length(String value) {
+        return value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    // ==================== varint ====================
+
+    // 无符号 LEB128，每字节 7 位，最高位表示后面还有字节
+    public static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public static int getVarInt(ByteBuffer buffer) {
+        int value = getVarInt(buffer, buffer.position());
+        buffer.position(buffer.position() + varIntLength(buffer, buffer.position()));
+        return value;
+    }
+
+    private static int getVarInt(ByteBuffer buffer, int position) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get(position++);
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint at position " + (position - 5));
+    }
+
+    private static int varIntLength(ByteBuffer buffer, int position) {
+        int length = 1;
+        while (length < 5 && buffer.get(position) < 0) {
+            position++;
+            length++;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,37 @@
+package com.tanggo.fund.raft.outbound;
+
+import com.googlecode.jsonrpc4j.JsonRpcMethod;
+import com.tanggo.fund.raft.service.command.AppendEntriesCommand;
+import com.tanggo.fund.raft.service.command.InstallSnapshotCommand;
+import com.tanggo.fund.raft.service.command.ReadMode;
+import com.tanggo.fund.raft.service.command.RequestVoteCommand;
+
+import java.util.Map;
+
+/**
+ * Raft JSON-RPC 客户端接口，方法名与 RaftRpcController 的分发一一对应
+ * 响应按 RaftRpcController 返回的字段表接收，由 ProxyLogEntryService 转换为响应对象
+ */
+public interface RaftRpcClient {
+
+    @JsonRpcMethod("raft_handleClientCommand")
+    boolean handleClientCommand(String command);
+
+    // 字段: term, success, matchIndex, conflictTerm, conflictIndex
+    @JsonRpcMethod("raft_handleAppendEntries")
+    Map<String, Object> handleAppendEntries(AppendEntriesCommand request);
+
+    // 字段: term, voteGranted
+    @JsonRpcMethod("raft_handleRequestVote")
+    Map<String, Object> handleRequestVote(RequestVoteCommand request);
+
+    // 字段: term, success
+    @JsonRpcMethod("raft_handleInstallSnapshot")
+    Map<String, Object> handleInstallSnapshot(InstallSnapshotCommand request);
+
+    @JsonRpcMethod("raft_read")
+    String read(String query, ReadMode mode);
+
+    @JsonRpcMethod("raft_printLog")
+    void printLog();
+}
@@ -0,0 +1,502 @@
+package com.tanggo.fund.raft.outbound;
+
+import com.tanggo.fund.raft.domain.HardState;
+import com.tanggo.fund.raft.domain.LogEntry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 多个 Raft 组共用的预写日志
+ *
+ * 每个组的日志在内存中各自维护（WalLogEntryRepo），所有修改按顺序追加到同一组段文件，
+ * 一次 flush 把所有组积攒的记录一起写出并 force，多个组的组提交合并成一次刷盘
+ *
+ * 记录格式: [长度(4字节)][CRC32C(4字节)][操作(1字节)][组ID][操作数据]，长度不含自身，CRC 覆盖操作及之后的字节
+ * 段文件写满后换新段，并在新段开头写入各组当前的压缩点和任期投票；旧段中的日志全部被各自组的压缩点覆盖后删除
+ * 段数超过上限时，仍引用最旧段的组（空闲、未到快照阈值）把现存日志整体重写到新段，旧段随之可以删除
+ * 启动时按顺序重放所有段，遇到第一条损坏的记录（写了一半）截断并停止
+ */
+public class SharedWal implements Closeable {
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024; // 64MB
+    public static final int DEFAULT_MAX_SEGMENTS = 4;
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final int RECORD_HEADER = 4 + 4 + 1;
+
+    // 操作类型
+    static final byte ENTRY = 1;           // 数据: 日志记录（格式见 RaftCodec）
+    static final byte TRUNCATE_SUFFIX = 2; // 数据: [fromIndex]
+    static final byte TRUNCATE_PREFIX = 3; // 数据: [index][term]
+    static final byte RESET = 4;           // 数据: [index][term]
+    static final byte HARD_STATE = 5;      // 数据: [currentTerm][votedFor]
+    static final byte DROP = 6;            // 组已移除，无数据
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final int maxSegments;
+    private final Object lock = new Object();      // 保护待写缓冲和各组压缩点
+    private final ReentrantLock flushLock = new ReentrantLock(); // 串行化写出和换段，刷盘期间等待的组线程可以让出载体线程
+    private final Map<String, WalLogEntryRepo> repos = new HashMap<>();
+    private final Map<String, int[]> prefixes = new HashMap<>();          // 组 -> [压缩点索引, 任期]
+    private final Map<String, HardState> hardStates = new HashMap<>();    // 组 -> 最近的任期和投票
+    private Map<String, Integer> pendingMaxIndex = new HashMap<>();       // 待写缓冲中各组的最大日志索引
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private long appendedRecords;
+    private long syncedRecords;
+    private long nextSegmentId;
+    private FileChannel channel;
+    private boolean replaying;
+    private final ThreadLocal<Boolean> flushDeferred = new ThreadLocal<>(); // 当前线程的 flush 推迟到调用方统一执行
+
+    public SharedWal(Path dir) {
+        this(dir, DEFAULT_SEGMENT_BYTES, DEFAULT_MAX_SEGMENTS);
+    }
+
+    public SharedWal(Path dir, long segmentBytes) {
+        this(dir, segmentBytes, DEFAULT_MAX_SEGMENTS);
+    }
+
+    public SharedWal(Path dir, long segmentBytes, int maxSegments) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = Math.max(2, maxSegments);
+        try {
+            Files.createDirectories(dir);
+            replay();
+            if (segments.isEmpty()) {
+                openSegment();
+            } else {
+                Segment last = segments.peekLast();
+                channel = FileChannel.open(last.path, StandardOpenOption.WRITE);
+                channel.position(channel.size());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open shared raft wal at: " + dir, e);
+        }
+    }
+
+    /**
+     * 打开（或重放后取得）一个组的日志仓储
+     */
+    public WalLogEntryRepo open(String groupId) {
+        synchronized (lock) {
+            return repos.computeIfAbsent(groupId, g -> new WalLogEntryRepo(this, g));
+        }
+    }
+
+    /**
+     * 移除一个组：之后不再重放它的日志，旧段也不再因它而保留
+     * 调用前应先停止使用该组的仓储
+     */
+    public void drop(String groupId) {
+        synchronized (lock) {
+            repos.remove(groupId);
+            prefixes.remove(groupId);
+            hardStates.remove(groupId);
+            pendingMaxIndex.remove(groupId);
+            seal(begin(groupId, DROP, 0));
+        }
+        flushLock.lock();
+        try {
+            forget(groupId);
+        } finally {
+            flushLock.unlock();
+        }
+        flush();
+    }
+
+    // ==================== 追加 ====================
+
+    void logEntry(String groupId, LogEntry entry) {
+        synchronized (lock) {
+            if (replaying) {
+                return;
+            }
+            writeEntry(groupId, entry);
+        }
+    }
+
+    private void writeEntry(String groupId, LogEntry entry) {
+        int start = begin(groupId, ENTRY, RaftCodec.recordSize(entry));
+        RaftCodec.writeEntry(pending, entry);
+        seal(start);
+        pendingMaxIndex.merge(groupId, entry.getIndex(), Math::max);
+    }
+
+    // 重写一个组的现存日志：先记录压缩点（重放时清空之前的日志），再写入全部日志
+    void logRewrite(String groupId, int index, int term, List<LogEntry> entries) {
+        synchronized (lock) {
+            if (replaying) {
+                return;
+            }
+            int start = begin(groupId, RESET, 8);
+            pending.putInt(index).putInt(term);
+            seal(start);
+            for (LogEntry entry : entries) {
+                writeEntry(groupId, entry);
+            }
+        }
+    }
+
+    void logTruncateSuffix(String groupId, int fromIndex) {
+        synchronized (lock) {
+            if (replaying) {
+                return;
+            }
+            int start = begin(groupId, TRUNCATE_SUFFIX, 4);
+            pending.putInt(fromIndex);
+            seal(start);
+        }
+    }
+
+    // 压缩或安装快照后记录新的压缩点
+    void logPrefix(String groupId, byte op, int index, int term) {
+        synchronized (lock) {
+            if (replaying) {
+                return;
+            }
+            prefixes.put(groupId, new int[]{index, term});
+            int start = begin(groupId, op, 8);
+            pending.putInt(index).putInt(term);
+            seal(start);
+        }
+    }
+
+    // 记录任期和投票，调用方随后 flush 落盘
+    void logHardState(String groupId, HardState state) {
+        synchronized (lock) {
+            if (replaying) {
+                return;
+            }
+            hardStates.put(groupId, state);
+            writeHardState(groupId, state);
+        }
+    }
+
+    private void writeHardState(String groupId, HardState state) {
+        int start = begin(groupId, HARD_STATE, 8 + RaftCodec.utf8Length(state.getVotedFor()));
+        pending.putInt(state.getCurrentTerm());
+        RaftCodec.putString(pending, state.getVotedFor());
+        seal(start);
+    }
+
+    // 写入记录头，返回记录起始位置；调用方随后写入操作数据并调用 seal
+    private int begin(String groupId, byte op, int payloadSize) {
+        byte[] group = groupId.getBytes(StandardCharsets.UTF_8);
+        reserve(RECORD_HEADER + 4 + group.length + payloadSize);
+        int start = pending.position();
+        pending.position(start + 8);
+        pending.put(op);
+        pending.putInt(group.length);
+        pending.put(group);
+        return start;
+    }
+
+    // 保证待写缓冲至少还能写入 size 字节
+    private void reserve(int size) {
+        if (pending.remaining() < size) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + size));
+            grown.put(pending.flip());
+            pending = grown;
+        }
+    }
+
+    private void seal(int start) {
+        int end = pending.position();
+        CRC32C crc = new CRC32C();
+        crc.update(pending.duplicate().position(start + 8).limit(end));
+        pending.putInt(start, end - start - 4);
+        pending.putInt(start + 4, (int) crc.getValue());
+        appendedRecords++;
+    }
+
+    // ==================== 刷盘 ====================
+
+    /**
+     * 在当前线程执行 task，期间的 flush 不落盘，记录留在待写缓冲中，由调用方随后统一 flush 一次
+     * 调用方必须在 flush 之后才对外确认 task 中的修改（例如服务端一批请求处理完、刷盘后再写回响应）
+     */
+    public void deferFlush(Runnable task) {
+        flushDeferred.set(Boolean.TRUE);
+        try {
+            task.run();
+        } finally {
+            flushDeferred.remove();
+        }
+    }
+
+    /**
+     * 把所有组积攒的记录写出并 force
+     * 并发调用时先到者把其它组的记录一起写出，后到者发现已经落盘直接返回
+     */
+    public void flush() {
+        if (flushDeferred.get() != null) {
+            return;
+        }
+        long target;
+        synchronized (lock) {
+            target = appendedRecords;
+        }
+        flushLock.lock();
+        try {
+            if (syncedRecords >= target) {
+                return;
+            }
+            syncedRecords = writePending();
+            if (channel.size() >= segmentBytes) {
+                rotate();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to flush shared raft wal: " + dir, e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // 写出待写缓冲，返回已落盘的记录数（持有 flushLock）
+    private long writePending() throws IOException {
+        ByteBuffer batch;
+        Map<String, Integer> batchMaxIndex;
+        long records;
+        synchronized (lock) {
+            batch = pending.flip();
+            pending = ByteBuffer.allocate(Math.max(64 * 1024, batch.capacity() / 2));
+            batchMaxIndex = pendingMaxIndex;
+            pendingMaxIndex = new HashMap<>();
+            records = appendedRecords;
+        }
+        while (batch.hasRemaining()) {
+            channel.write(batch);
+        }
+        channel.force(false);
+        Segment current = segments.peekLast();
+        batchMaxIndex.forEach((groupId, index) -> current.maxIndex.merge(groupId, index, Math::max));
+        return records;
+    }
+
+    // 换新段：写入各组压缩点和任期投票后删除已被完全压缩的旧段
+    // 上次写出之后追加的记录排在压缩点之后，重放新段时先恢复压缩点再应用这些记录
+    void rotate() throws IOException {
+        flushLock.lock();
+        try {
+            channel.close();
+            openSegment();
+            Map<String, int[]> checkpoint;
+            synchronized (lock) {
+                ByteBuffer leftover = pending.flip();
+                pending = ByteBuffer.allocate(Math.max(64 * 1024, leftover.capacity()));
+                checkpoint = new HashMap<>(prefixes);
+                for (Map.Entry<String, int[]> prefix : checkpoint.entrySet()) {
+                    int start = begin(prefix.getKey(), TRUNCATE_PREFIX, 8);
+                    pending.putInt(prefix.getValue()[0]).putInt(prefix.getValue()[1]);
+                    seal(start);
+                }
+                hardStates.forEach(this::writeHardState);
+                reserve(leftover.remaining());
+                pending.put(leftover);
+            }
+            Set<String> rewritten = rewriteLaggards(checkpoint);
+            syncedRecords = writePending();
+            // 重写过的组之后只依赖新段
+            if (!rewritten.isEmpty()) {
+                for (Segment segment : segments) {
+                    if (segment != segments.peekLast()) {
+                        segment.maxIndex.keySet().removeAll(rewritten);
+                    }
+                }
+            }
+
+            // 只从最旧的段开始连续删除，保证重放顺序不被打乱
+            while (segments.size() > 1 && segments.peekFirst().isCompacted(checkpoint)) {
+                Files.deleteIfExists(segments.pollFirst().path);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // 段数超过上限时，超出部分的旧段中仍有未压缩日志的组，把现存日志重写到新段（持有 flushLock）
+    private Set<String> rewriteLaggards(Map<String, int[]> checkpoint) {
+        Set<String> laggards = new HashSet<>();
+        int excess = segments.size() - maxSegments;
+        for (Iterator<Segment> it = segments.iterator(); it.hasNext() && excess-- > 0; ) {
+            for (Map.Entry<String, Integer> entry : it.next().maxIndex.entrySet()) {
+                int[] prefix = checkpoint.get(entry.getKey());
+                if (prefix == null || prefix[0] < entry.getValue()) {
+                    laggards.add(entry.getKey());
+                }
+            }
+        }
+        Set<String> rewritten = new HashSet<>();
+        for (String groupId : laggards) {
+            WalLogEntryRepo repo;
+            synchronized (lock) {
+                repo = repos.get(groupId);
+            }
+            if (repo != null) {
+                repo.rewrite();
+                rewritten.add(groupId);
+            }
+        }
+        return rewritten;
+    }
+
+    private void openSegment() throws IOException {
+        Path file = dir.resolve(String.format("%020d%s", nextSegmentId++, SEGMENT_SUFFIX));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        segments.addLast(new Segment(file));
+    }
+
+    // ==================== 重放 ====================
+
+    private void replay() throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(dir)) {
+            files = stream.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+        replaying = true;
+        try {
+            boolean torn = false;
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                nextSegmentId = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())) + 1;
+                if (torn) {
+                    Files.delete(file); // 损坏记录之后的段不再可信
+                    continue;
+                }
+                Segment segment = new Segment(file);
+                segments.addLast(segment);
+                torn = !replaySegment(segment);
+            }
+        } finally {
+            replaying = false;
+        }
+        for (Map.Entry<String, WalLogEntryRepo> entry : repos.entrySet()) {
+            WalLogEntryRepo repo = entry.getValue();
+            if (repo.firstIndex() > 0) {
+                prefixes.put(entry.getKey(), new int[]{repo.firstIndex() - 1, repo.getTerm(repo.firstIndex() - 1)});
+            }
+            if (repo.loadHardState() != null) {
+                hardStates.put(entry.getKey(), repo.loadHardState());
+            }
+        }
+    }
+
+    // 重放一个段，遇到损坏的记录时截断文件并返回 false
+    private boolean replaySegment(Segment segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment.path));
+        while (buffer.remaining() >= 4) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            if (length < RECORD_HEADER - 4 + 4 || length > buffer.remaining()) {
+                return truncate(segment, start);
+            }
+            int stored = buffer.getInt();
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.duplicate().limit(start + 4 + length));
+            if ((int) crc.getValue() != stored) {
+                return truncate(segment, start);
+            }
+            ByteBuffer record = buffer.duplicate().limit(start + 4 + length);
+            buffer.position(start + 4 + length);
+
+            byte op = record.get();
+            String groupId = RaftCodec.getString(record);
+            WalLogEntryRepo repo = repos.computeIfAbsent(groupId, g -> new WalLogEntryRepo(this, g));
+            switch (op) {
+                case ENTRY -> {
+                    LogEntry entry = RaftCodec.readEntry(record);
+                    repo.replayEntry(entry);
+                    segment.maxIndex.merge(groupId, entry.getIndex(), Math::max);
+                }
+                case TRUNCATE_SUFFIX -> repo.truncateSuffix(record.getInt());
+                case TRUNCATE_PREFIX -> repo.truncatePrefix(record.getInt(), record.getInt());
+                case RESET -> {
+                    repo.reset(record.getInt(), record.getInt());
+                    forget(groupId); // 之前的日志已全部丢弃
+                }
+                case HARD_STATE -> repo.replayHardState(new HardState(record.getInt(), RaftCodec.getString(record)));
+                case DROP -> {
+                    repos.remove(groupId);
+                    forget(groupId);
+                }
+                default -> {
+                    return truncate(segment, start);
+                }
+            }
+        }
+        if (buffer.hasRemaining()) {
+            return truncate(segment, buffer.position());
+        }
+        return true;
+    }
+
+    // 已有的段不再因该组而保留
+    private void forget(String groupId) {
+        for (Segment segment : segments) {
+            segment.maxIndex.remove(groupId);
+        }
+    }
+
+    private boolean truncate(Segment segment, int position) throws IOException {
+        System.err.println("WAL 段 " + segment.path.getFileName() + " 在位置 " + position + " 处损坏，截断后续内容");
+        try (FileChannel ch = FileChannel.open(segment.path, StandardOpenOption.WRITE)) {
+            ch.truncate(position);
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        flushLock.lock();
+        try {
+            channel.close();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // 段文件及其中各组的最大日志索引
+    private static final class Segment {
+        final Path path;
+        final Map<String, Integer> maxIndex = new HashMap<>();
+
+        Segment(Path path) {
+            this.path = path;
+        }
+
+        // 段中每个组的日志都已被该组的压缩点覆盖
+        boolean isCompacted(Map<String, int[]> prefixes) {
+            for (Map.Entry<String, Integer> entry : maxIndex.entrySet()) {
+                int[] prefix = prefixes.get(entry.getKey());
+                if (prefix == null || prefix[0] < entry.getValue()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.tanggo.fund.raft.outbound;
+
+import com.tanggo.fund.raft.domain.Snapshot;
+
+/**
+ * Raft 快照仓储
+ * 只保留最新的一份快照
+ */
+public interface SnapshotRepo {
+
+    // 保存快照，替换之前的快照
+    void save(Snapshot snapshot);
+
+    // 最新快照，没有时返回 null
+    Snapshot load();
+}
@@ -0,0 +1,95 @@
+package com.tanggo.fund.raft.outbound;
+
+import com.tanggo.fund.raft.domain.HardState;
+import com.tanggo.fund.raft.domain.LogEntry;
+
+/**
+ * 共享 WAL 中一个 Raft 组的日志仓储
+ * 读取全部走内存，修改先更新内存再追加到 SharedWal；flush 由 SharedWal 合并所有组一起刷盘
+ */
+public class WalLogEntryRepo extends MemoryLogEntryRepo {
+
+    private final SharedWal wal;
+    private final String groupId;
+
+    WalLogEntryRepo(SharedWal wal, String groupId) {
+        this.wal = wal;
+        this.groupId = groupId;
+    }
+
+    @Override
+    public synchronized void insert(LogEntry logEntry) {
+        super.insert(logEntry);
+        wal.logEntry(groupId, logEntry);
+    }
+
+    @Override
+    public synchronized void truncateSuffix(int fromIndex) {
+        if (fromIndex > lastIndex()) {
+            return;
+        }
+        super.truncateSuffix(fromIndex);
+        wal.logTruncateSuffix(groupId, fromIndex);
+    }
+
+    @Override
+    public synchronized void truncatePrefix(int index, int term) {
+        if (index < firstIndex()) {
+            return;
+        }
+        if (index >= lastIndex()) {
+            reset(index, term);
+            return;
+        }
+        super.truncatePrefix(index, term);
+        wal.logPrefix(groupId, SharedWal.TRUNCATE_PREFIX, index, term);
+    }
+
+    @Override
+    public synchronized void reset(int index, int term) {
+        super.reset(index, term);
+        wal.logPrefix(groupId, SharedWal.RESET, index, term);
+    }
+
+    // 不加锁：SharedWal 刷盘时不会回调本仓储，避免与其它组的仓储锁形成环
+    @Override
+    public void flush() {
+        wal.flush();
+    }
+
+    // 与日志记录一起合并刷盘
+    @Override
+    public void saveHardState(HardState state) {
+        super.saveHardState(state);
+        wal.logHardState(groupId, state);
+        wal.flush();
+    }
+
+    void replayHardState(HardState state) {
+        super.saveHardState(state);
+    }
+
+    // 把现存日志整体重写到 WAL 末尾，之前的段不再被本组引用（SharedWal 换段时调用）
+    synchronized void rewrite() {
+        int first = firstIndex();
+        wal.logRewrite(groupId, first - 1, getTerm(first - 1), slice(first, lastIndex() + 1));
+    }
+
+    // 重放时容忍重复和覆盖：已压缩的跳过，与现有日志重叠的截断后替换；
+    // 日志从中间开始时以该条为起点（压缩点任期未知），正常情况下段开头的压缩点记录先于日志重放，不会走到这里
+    synchronized void replayEntry(LogEntry entry) {
+        if (entry.getIndex() < firstIndex()) {
+            return;
+        }
+        if (entry.getIndex() <= lastIndex()) {
+            super.truncateSuffix(entry.getIndex());
+        } else if (entry.getIndex() > lastIndex() + 1) {
+            super.reset(entry.getIndex() - 1, 0);
+        }
+        super.insert(entry);
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+}
@@ -2,14 +2,57 @@ package com.tanggo.fund.raft.service;
 
 import com.tanggo.fund.raft.service.command.AppendEntriesCommand;
 import com.tanggo.fund.raft.service.command.AppendEntriesResponse;
+import com.tanggo.fund.raft.service.command.InstallSnapshotCommand;
+import com.tanggo.fund.raft.service.command.InstallSnapshotResponse;
+import com.tanggo.fund.raft.service.command.ReadMode;
+import com.tanggo.fund.raft.service.command.RequestVoteCommand;
+import com.tanggo.fund.raft.service.command.RequestVoteResponse;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public interface ILogEntryService {
     // 处理客户端请求（仅领导者）
     boolean handleClientCommand(String command);
 
+    // 提交客户端命令，日志提交后完成（仅领导者）
+    default CompletableFuture<Boolean> submitCommand(String command) {
+        return CompletableFuture.completedFuture(handleClientCommand(command));
+    }
+
+    // 线性一致读（仅领导者），不写日志，返回状态机查询结果
+    default CompletableFuture<String> read(String query, ReadMode mode) {
+        return CompletableFuture.failedFuture(new UnsupportedOperationException("Read is not supported"));
+    }
+
     // 处理追加日志请求（跟随者侧）
     AppendEntriesResponse handleAppendEntries(AppendEntriesCommand request);
 
+    // 异步发送追加日志请求，供领导者流水线复制使用
+    // 异步方法由各传输实现提供执行方式，不能落到公共 ForkJoinPool 上阻塞
+    CompletableFuture<AppendEntriesResponse> appendEntriesAsync(AppendEntriesCommand request);
+
+    // 处理投票和预投票请求
+    default RequestVoteResponse handleRequestVote(RequestVoteCommand request) {
+        throw new UnsupportedOperationException("RequestVote is not supported");
+    }
+
+    // 异步发送投票请求，供候选者并发拉票
+    CompletableFuture<RequestVoteResponse> requestVoteAsync(RequestVoteCommand request);
+
+    // 处理安装快照分片（跟随者侧）
+    default InstallSnapshotResponse handleInstallSnapshot(InstallSnapshotCommand request) {
+        throw new UnsupportedOperationException("InstallSnapshot is not supported");
+    }
+
+    // 异步发送安装快照分片，供领导者向落后的从节点传输快照
+    CompletableFuture<InstallSnapshotResponse> installSnapshotAsync(InstallSnapshotCommand request);
+
+    // 节点指标快照，不支持时为空
+    default Map<String, Object> metrics() {
+        return Map.of();
+    }
+
     // 工具方法
     void printLog();
 }
@@ -0,0 +1,22 @@
+package com.tanggo.fund.raft.service;
+
+import com.tanggo.fund.raft.domain.LogEntry;
+
+/**
+ * Raft 状态机
+ * 按日志顺序应用已提交的命令，并支持生成和恢复快照
+ */
+public interface StateMachine {
+
+    // 应用一条已提交的日志
+    void apply(LogEntry entry);
+
+    // 查询当前状态（只读）
+    String query(String query);
+
+    // 序列化当前状态
+    byte[] snapshot();
+
+    // 用快照数据替换当前状态
+    void restore(byte[] data);
+}
@@ -1,8 +1,10 @@
 package com.tanggo.fund.raft.service.command;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.tanggo.fund.raft.domain.LogEntry;
 import lombok.Data;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -13,6 +15,8 @@ public class AppendEntriesCommand {
     private final int prevLogTerm;     // 上一条日志的任期
     private final List<LogEntry> entries; // 要复制的日志条目
     private final int leaderCommit;    // 领导者的提交索引
+    @JsonIgnore
+    private transient ByteBuffer encodedEntries; // entries 对应的段文件原始字节，二进制传输时直接写出
 
     // 构造方法、getter和setter
     public AppendEntriesCommand(int term, int prevLogIndex, int prevLogTerm, List<LogEntry> entries, int leaderCommit) {
@@ -4,11 +4,20 @@ public class AppendEntriesResponse {
     private final int term;        // 当前任期号
     private final boolean success; // 是否成功
     private final int matchIndex;  // 已匹配的日志索引
+    // 拒绝时的回退提示：prevLogIndex 处冲突日志的任期（日志过短时为 -1）及本节点该任期的第一条日志索引
+    private final int conflictTerm;
+    private final int conflictIndex;
 
     public AppendEntriesResponse(int term, boolean success, int matchIndex) {
+        this(term, success, matchIndex, -1, -1);
+    }
+
+    public AppendEntriesResponse(int term, boolean success, int matchIndex, int conflictTerm, int conflictIndex) {
         this.term = term;
         this.success = success;
         this.matchIndex = matchIndex;
+        this.conflictTerm = conflictTerm;
+        this.conflictIndex = conflictIndex;
     }
 
     // getter方法
@@ -23,4 +32,12 @@ public class AppendEntriesResponse {
     public int getMatchIndex() {
         return matchIndex;
     }
+
+    public int getConflictTerm() {
+        return conflictTerm;
+    }
+
+    public int getConflictIndex() {
+        return conflictIndex;
+    }
 }
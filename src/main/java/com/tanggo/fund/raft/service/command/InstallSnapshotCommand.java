@@ -0,0 +1,26 @@
+package com.tanggo.fund.raft.service.command;
+
+import lombok.Data;
+
+// 安装快照请求，快照按偏移量分片顺序发送
+@Data
+public class InstallSnapshotCommand {
+    private final int term;              // 领导者的任期
+    private final String leaderId;       // 领导者ID
+    private final int lastIncludedIndex; // 快照包含的最后一条日志索引
+    private final int lastIncludedTerm;  // 该日志的任期
+    private final long offset;           // 本分片在快照中的偏移量
+    private final byte[] data;           // 分片数据
+    private final boolean done;          // 是否最后一个分片
+    private String config;               // 快照处的成员配置命令，仅最后一个分片携带
+
+    public InstallSnapshotCommand(int term, String leaderId, int lastIncludedIndex, int lastIncludedTerm, long offset, byte[] data, boolean done) {
+        this.term = term;
+        this.leaderId = leaderId;
+        this.lastIncludedIndex = lastIncludedIndex;
+        this.lastIncludedTerm = lastIncludedTerm;
+        this.offset = offset;
+        this.data = data;
+        this.done = done;
+    }
+}
@@ -0,0 +1,20 @@
+package com.tanggo.fund.raft.service.command;
+
+public class InstallSnapshotResponse {
+    private final int term;        // 当前任期号
+    private final boolean success; // 分片是否被接受，失败时领导者从头重传
+
+    public InstallSnapshotResponse(int term, boolean success) {
+        this.term = term;
+        this.success = success;
+    }
+
+    // getter方法
+    public int getTerm() {
+        return term;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+}
@@ -0,0 +1,9 @@
+package com.tanggo.fund.raft.service.command;
+
+// 线性一致读模式
+public enum ReadMode {
+    // 一轮心跳确认领导权后读取，不依赖时钟
+    READ_INDEX,
+    // 领导者租约有效期内直接读取，租约过期时退化为 READ_INDEX
+    LEASE
+}
@@ -0,0 +1,21 @@
+package com.tanggo.fund.raft.service.command;
+
+import lombok.Data;
+
+// 请求投票，preVote 为 true 时是预投票：不增加任期，也不记录投票
+@Data
+public class RequestVoteCommand {
+    private final int term;          // 候选人的任期（预投票时为将要使用的任期）
+    private final String candidateId; // 候选人ID
+    private final int lastLogIndex;  // 候选人最后一条日志的索引
+    private final int lastLogTerm;   // 候选人最后一条日志的任期
+    private final boolean preVote;   // 是否预投票
+
+    public RequestVoteCommand(int term, String candidateId, int lastLogIndex, int lastLogTerm, boolean preVote) {
+        this.term = term;
+        this.candidateId = candidateId;
+        this.lastLogIndex = lastLogIndex;
+        this.lastLogTerm = lastLogTerm;
+        this.preVote = preVote;
+    }
+}
@@ -0,0 +1,20 @@
+package com.tanggo.fund.raft.service.command;
+
+public class RequestVoteResponse {
+    private final int term;            // 当前任期号
+    private final boolean voteGranted; // 是否投票给候选人
+
+    public RequestVoteResponse(int term, boolean voteGranted) {
+        this.term = term;
+        this.voteGranted = voteGranted;
+    }
+
+    // getter方法
+    public int getTerm() {
+        return term;
+    }
+
+    public boolean isVoteGranted() {
+        return voteGranted;
+    }
+}
@@ -0,0 +1,186 @@
+package com.tanggo.fund.raft.service.command.impl;
+
+import com.tanggo.fund.raft.domain.LogEntry;
+import com.tanggo.fund.raft.domain.Snapshot;
+import com.tanggo.fund.raft.service.StateMachine;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 状态机应用阶段
+ * 提交索引推进时，LogEntryService 在自身锁内把已提交日志写入单生产者单消费者环形缓冲区，
+ * 由专用线程按批应用到状态机，复制和心跳不再等待状态机
+ *
+ * 状态机只由应用线程访问：快照恢复也排入应用线程执行，快照在应用线程生成
+ * 模拟运行时不创建应用线程，signal 把一次排空排入运行时的事件队列
+ */
+class ApplyStage {
+
+    // 应用线程回调，每批应用完成后调用
+    interface Listener {
+        void onApplied(int appliedIndex);
+
+        // 状态机应用 index 处的日志失败，应用阶段已停止
+        void onApplyFailed(int index, RuntimeException error);
+    }
+
+    private final StateMachine stateMachine;
+    private final Listener listener;
+    private final LogEntry[] ring;
+    private final int mask;
+    private final int maxBatchSize;
+    private final RaftRuntime runtime;
+    private final Thread worker;
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    private volatile long published; // 生产者已发布的槽位序号
+    private volatile long consumed;  // 消费者已释放的槽位序号
+    private volatile int queuedIndex;  // 已排入缓冲区的最大日志索引
+    private volatile int appliedIndex; // 已应用到状态机的最大日志索引
+    private volatile Snapshot pendingRestore;
+    private volatile boolean running = true;
+
+    ApplyStage(RaftRuntime runtime, String name, StateMachine stateMachine, int ringSize, int maxBatchSize, int appliedIndex, Listener listener) {
+        if (Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("Apply ring size must be a power of two: " + ringSize);
+        }
+        this.stateMachine = stateMachine;
+        this.listener = listener;
+        this.ring = new LogEntry[ringSize];
+        this.mask = ringSize - 1;
+        this.maxBatchSize = maxBatchSize;
+        this.queuedIndex = appliedIndex;
+        this.appliedIndex = appliedIndex;
+        this.runtime = runtime;
+        this.worker = runtime.isSimulated() ? null : runtime.workerThread(name).start(this::run);
+    }
+
+    /**
+     * 排入下一条已提交日志（仅生产者调用），缓冲区已满返回 false
+     */
+    boolean offer(LogEntry entry) {
+        long seq = published;
+        if (seq - consumed >= ring.length) {
+            return false;
+        }
+        ring[(int) (seq & mask)] = entry;
+        published = seq + 1;
+        queuedIndex = entry.getIndex();
+        return true;
+    }
+
+    // 唤醒应用线程（生产者一轮排入结束后调用一次）
+    void signal() {
+        if (worker != null) {
+            LockSupport.unpark(worker);
+        } else if (drainScheduled.compareAndSet(false, true)) {
+            runtime.getExecutor().execute(this::drain);
+        }
+    }
+
+    /**
+     * 用快照替换状态机（仅生产者调用），缓冲区中不超过快照索引的日志将被跳过
+     */
+    void restore(Snapshot snapshot) {
+        queuedIndex = Math.max(queuedIndex, snapshot.getLastIncludedIndex());
+        pendingRestore = snapshot;
+        signal();
+    }
+
+    private void run() {
+        while (running) {
+            if (!step()) {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    // 模拟运行时：应用完缓冲区中已有的日志
+    private void drain() {
+        drainScheduled.set(false);
+        while (running && step()) {
+            // 继续下一批
+        }
+    }
+
+    /**
+     * 执行待恢复的快照或应用一批日志，没有可做的工作时返回 false
+     */
+    private boolean step() {
+        int applied = appliedIndex;
+        Snapshot snapshot = pendingRestore;
+        if (snapshot != null) {
+            pendingRestore = null;
+            if (snapshot.getLastIncludedIndex() > applied) {
+                stateMachine.restore(snapshot.getData());
+                applied = snapshot.getLastIncludedIndex();
+                appliedIndex = applied;
+                listener.onApplied(applied);
+            }
+            return true;
+        }
+
+        long head = consumed;
+        long available = published - head;
+        if (available == 0) {
+            return false;
+        }
+        int count = (int) Math.min(available, maxBatchSize);
+        try {
+            for (int i = 0; i < count; i++) {
+                int slot = (int) ((head + i) & mask);
+                LogEntry entry = ring[slot];
+                ring[slot] = null;
+                if (entry.getIndex() == applied + 1) {
+                    // 成员配置由 LogEntryService 处理，空日志无需应用，只有客户端命令交给状态机
+                    if (entry.getType() == LogEntry.Type.COMMAND) {
+                        stateMachine.apply(entry);
+                    }
+                    applied = entry.getIndex();
+                }
+            }
+        } catch (RuntimeException e) {
+            // 状态机异常无法跳过，否则副本状态分叉；停止应用并交给 LogEntryService 让节点退出服务
+            System.err.println("状态机应用日志[" + (applied + 1) + "]失败，应用线程停止: " + e.getMessage());
+            running = false;
+            appliedIndex = applied;
+            listener.onApplyFailed(applied + 1, e);
+            return false;
+        }
+        consumed = head + count;
+        appliedIndex = applied;
+        listener.onApplied(applied);
+        return true;
+    }
+
+    /**
+     * 提交索引领先应用索引超过 maxLag 时阻塞调用方，用于对领导者追加新命令施加反压
+     */
+    void awaitLag(int commitIndex, int maxLag) {
+        if (worker == null) {
+            // 模拟运行时只有一个线程，由调用方就地应用
+            while (running && commitIndex - appliedIndex > maxLag && step()) {
+                // 继续下一批
+            }
+            return;
+        }
+        while (running && commitIndex - appliedIndex > maxLag && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    int getQueuedIndex() {
+        return queuedIndex;
+    }
+
+    int getAppliedIndex() {
+        return appliedIndex;
+    }
+
+    void close() {
+        running = false;
+        signal();
+    }
+}
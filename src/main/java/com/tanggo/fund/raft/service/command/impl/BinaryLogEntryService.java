@@ -0,0 +1,156 @@
+package com.tanggo.fund.raft.service.command.impl;
+
+import com.tanggo.fund.raft.outbound.RaftCodec;
+import com.tanggo.fund.raft.service.ILogEntryService;
+import com.tanggo.fund.raft.service.command.AppendEntriesCommand;
+import com.tanggo.fund.raft.service.command.AppendEntriesResponse;
+import com.tanggo.fund.raft.service.command.InstallSnapshotCommand;
+import com.tanggo.fund.raft.service.command.InstallSnapshotResponse;
+import com.tanggo.fund.raft.service.command.ReadMode;
+import com.tanggo.fund.raft.service.command.RequestVoteCommand;
+import com.tanggo.fund.raft.service.command.RequestVoteResponse;
+
+import java.io.Closeable;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Raft 服务代理实现（二进制协议）
+ * 通过一条持久 TCP 连接远程调用其他 Raft 节点，多个请求共用连接，按请求ID匹配响应
+ * forGroup 返回发往远程节点上某个 Raft 组的视图，同一节点上的所有组共用一条连接
+ */
+public class BinaryLogEntryService implements ILogEntryService, Closeable {
+    private final RaftConnection connection;
+    private final String groupId; // Multi-Raft 组视图的目标组，直连单组节点时为 null
+
+    public BinaryLogEntryService(String host, int port) {
+        this(new RaftConnection(new InetSocketAddress(host, port)), null);
+    }
+
+    private BinaryLogEntryService(RaftConnection connection, String groupId) {
+        this.connection = connection;
+        this.groupId = groupId;
+    }
+
+    @Override
+    public boolean handleClientCommand(String command) {
+        try {
+            long id = connection.nextId();
+            ByteBuffer body = call(id, RaftCodec.encodeString(id, RaftCodec.CLIENT_COMMAND, command)).get();
+            return body.get() == 1;
+        } catch (Exception e) {
+            System.err.println("远程调用 handleClientCommand 失败: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> read(String query, ReadMode mode) {
+        long id = connection.nextId();
+        return call(id, RaftCodec.encodeRead(id, query, mode)).thenApply(RaftCodec::getString);
+    }
+
+    @Override
+    public AppendEntriesResponse handleAppendEntries(AppendEntriesCommand request) {
+        try {
+            return appendEntriesAsync(request).get();
+        } catch (Exception e) {
+            System.err.println("远程调用 handleAppendEntries 失败: " + e.getMessage());
+            // 返回失败响应
+            return new AppendEntriesResponse(0, false, -1);
+        }
+    }
+
+    /**
+     * 发送追加日志请求，不等待响应
+     * 请求携带段文件原始字节时直接聚集写出，不重新编码
+     */
+    @Override
+    public CompletableFuture<AppendEntriesResponse> appendEntriesAsync(AppendEntriesCommand request) {
+        if (groupId != null && connection.isBatchHeartbeats() && request.getEncodedEntries() == null
+                && request.getEntries().isEmpty()) {
+            return connection.queueHeartbeat(groupId, request);
+        }
+        long id = connection.nextId();
+        ByteBuffer entries = request.getEncodedEntries() != null
+                ? request.getEncodedEntries().duplicate()
+                : RaftCodec.encodeEntries(request.getEntries());
+        ByteBuffer header = RaftCodec.encodeAppendEntriesHeader(id, request, entries.remaining());
+        return call(id, header, entries).thenApply(RaftCodec::decodeAppendEntriesResponse);
+    }
+
+    @Override
+    public RequestVoteResponse handleRequestVote(RequestVoteCommand request) {
+        try {
+            return requestVoteAsync(request).get();
+        } catch (Exception e) {
+            System.err.println("远程调用 handleRequestVote 失败: " + e.getMessage());
+            return new RequestVoteResponse(0, false);
+        }
+    }
+
+    @Override
+    public CompletableFuture<RequestVoteResponse> requestVoteAsync(RequestVoteCommand request) {
+        long id = connection.nextId();
+        return call(id, RaftCodec.encodeRequestVote(id, request)).thenApply(RaftCodec::decodeRequestVoteResponse);
+    }
+
+    @Override
+    public InstallSnapshotResponse handleInstallSnapshot(InstallSnapshotCommand request) {
+        try {
+            return installSnapshotAsync(request).get();
+        } catch (Exception e) {
+            System.err.println("远程调用 handleInstallSnapshot 失败: " + e.getMessage());
+            return new InstallSnapshotResponse(0, false);
+        }
+    }
+
+    @Override
+    public CompletableFuture<InstallSnapshotResponse> installSnapshotAsync(InstallSnapshotCommand request) {
+        long id = connection.nextId();
+        return call(id, RaftCodec.encodeInstallSnapshot(id, request)).thenApply(RaftCodec::decodeInstallSnapshotResponse);
+    }
+
+    @Override
+    public void printLog() {
+        try {
+            long id = connection.nextId();
+            call(id, RaftCodec.encodeEmpty(id, RaftCodec.PRINT_LOG)).get();
+        } catch (Exception e) {
+            System.err.println("远程调用 printLog 失败: " + e.getMessage());
+        }
+    }
+
+    // 组视图在帧头中带上组ID
+    private CompletableFuture<ByteBuffer> call(long id, ByteBuffer... frame) {
+        return connection.call(id, groupId == null ? frame : RaftCodec.routeToGroup(groupId, frame));
+    }
+
+    /**
+     * 发往远程节点上指定 Raft 组的视图，与本实例共用连接
+     */
+    public BinaryLogEntryService forGroup(String groupId) {
+        return new BinaryLogEntryService(connection, groupId);
+    }
+
+    /**
+     * 开启批量心跳：组视图的心跳排队，每个 tick 合并成一帧发出
+     */
+    public void batchHeartbeats(TickWheel tickWheel) {
+        connection.setBatchHeartbeats(true);
+        tickWheel.addTickListener(connection::flushHeartbeats);
+    }
+
+    // 组视图共用连接，只有根实例关闭连接
+    @Override
+    public void close() {
+        if (groupId == null) {
+            connection.close();
+        }
+    }
+
+    public InetSocketAddress getAddress() {
+        return connection.getAddress();
+    }
+}
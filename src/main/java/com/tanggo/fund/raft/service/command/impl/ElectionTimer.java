@@ -0,0 +1,40 @@
+package com.tanggo.fund.raft.service.command.impl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 选举超时截止时间
+ * 收到心跳只改写截止时间，不创建定时任务；由 TickWheel 在截止时间检查是否到期
+ */
+class ElectionTimer {
+
+    private final RaftRuntime runtime; // 时钟和随机数来源
+    private volatile long deadline;
+
+    ElectionTimer(RaftRuntime runtime) {
+        this.runtime = runtime;
+        reset();
+    }
+
+    /**
+     * 重新计时：截止时间为当前时间加随机选举超时
+     */
+    void reset() {
+        deadline = runtime.nanoTime() + TimeUnit.MILLISECONDS.toNanos(runtime.electionTimeoutMillis());
+    }
+
+    /**
+     * 已到期时以新的随机超时重新计时并返回 true
+     */
+    boolean expire(long now) {
+        if (now - deadline < 0) {
+            return false;
+        }
+        reset();
+        return true;
+    }
+
+    long getDeadline() {
+        return deadline;
+    }
+}
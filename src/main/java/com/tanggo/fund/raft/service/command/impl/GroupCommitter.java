@@ -0,0 +1,118 @@
+package com.tanggo.fund.raft.service.command.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 组提交阶段
+ * 将并发到达的客户端命令攒成一批，由单个线程交给批处理器：
+ * 一次日志追加、一次 fsync、每个从节点一次 AppendEntries
+ *
+ * 模拟运行时不创建线程，有命令入队时把一次排空排入运行时的事件队列
+ */
+class GroupCommitter {
+
+    private final BlockingQueue<PendingCommand> queue = new LinkedBlockingQueue<>();
+    private final RaftRuntime runtime;
+    private final int maxBatchSize;
+    private final Consumer<List<PendingCommand>> batchHandler;
+    private final Thread worker;
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private volatile boolean running = true;
+
+    GroupCommitter(RaftRuntime runtime, String name, int maxBatchSize, Consumer<List<PendingCommand>> batchHandler) {
+        this.runtime = runtime;
+        this.maxBatchSize = maxBatchSize;
+        this.batchHandler = batchHandler;
+        this.worker = runtime.isSimulated() ? null : runtime.workerThread(name).start(this::run);
+    }
+
+    /**
+     * 提交命令，返回的 future 在该命令对应的日志提交后完成
+     */
+    CompletableFuture<Boolean> submit(String command) {
+        PendingCommand pending = new PendingCommand(command, runtime.nanoTime());
+        if (!running) {
+            pending.future.complete(false);
+            return pending.future;
+        }
+        queue.add(pending);
+        // 与 close 并发时，close 可能已排空队列：命令仍在队列中就由这里取回并完成，
+        // 已被 close 或工作线程取走的由对方完成
+        if (!running) {
+            if (queue.remove(pending)) {
+                pending.future.complete(false);
+            }
+            return pending.future;
+        }
+        if (worker == null && drainScheduled.compareAndSet(false, true)) {
+            runtime.getExecutor().execute(this::drain);
+        }
+        return pending.future;
+    }
+
+    private void run() {
+        List<PendingCommand> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                // 阻塞等待第一条命令，再把队列中已到达的命令一并取出
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatchSize - 1);
+                handle(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    // 模拟运行时：按批处理完队列中已有的命令
+    private void drain() {
+        drainScheduled.set(false);
+        List<PendingCommand> batch = new ArrayList<>(maxBatchSize);
+        while (running && queue.drainTo(batch, maxBatchSize) > 0) {
+            handle(batch);
+        }
+    }
+
+    private void handle(List<PendingCommand> batch) {
+        try {
+            batchHandler.accept(batch);
+        } catch (Exception e) {
+            System.err.println("组提交失败: " + e.getMessage());
+            for (PendingCommand pending : batch) {
+                pending.future.completeExceptionally(e);
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+
+    void close() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+        PendingCommand pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.complete(false);
+        }
+    }
+
+    // 等待组提交的客户端命令
+    static final class PendingCommand {
+        final String command;
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        final long submittedNanos; // 入队时刻，用于统计提交延迟
+
+        PendingCommand(String command, long submittedNanos) {
+            this.command = command;
+            this.submittedNanos = submittedNanos;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.tanggo.fund.raft.service.command.impl;
+
+import com.tanggo.fund.raft.domain.LogEntry;
+import com.tanggo.fund.raft.service.StateMachine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 键值状态机（默认实现）
+ * 支持 "SET key value" 和 "DELETE key"，其它命令忽略
+ */
+public class KeyValueStateMachine implements StateMachine {
+    private final Map<String, String> data = new HashMap<>();
+
+    @Override
+    public synchronized void apply(LogEntry entry) {
+        String command = entry.getCommand();
+        if (command == null) {
+            return;
+        }
+        String[] parts = command.trim().split("\\s+", 3);
+        if (parts.length == 3 && parts[0].equalsIgnoreCase("SET")) {
+            data.put(parts[1], parts[2]);
+        } else if (parts.length == 2 && parts[0].equalsIgnoreCase("DELETE")) {
+            data.remove(parts[1]);
+        }
+    }
+
+    public synchronized String get(String key) {
+        return data.get(key);
+    }
+
+    // 查询参数即键
+    @Override
+    public String query(String query) {
+        return get(query);
+    }
+
+    // 格式: [条数(4字节)] 之后每条 [key][value]，字符串为 UTF 编码
+    @Override
+    public synchronized byte[] snapshot() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(data.size());
+            for (Map.Entry<String, String> entry : data.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to serialize key-value state", e);
+        }
+    }
+
+    @Override
+    public synchronized void restore(byte[] snapshot) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot));
+            int size = in.readInt();
+            data.clear();
+            for (int i = 0; i < size; i++) {
+                data.put(in.readUTF(), in.readUTF());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to restore key-value state", e);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.tanggo.fund.raft.service.command.impl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * ReadIndex 领导权确认
+ * 同一时刻只有一轮心跳在途；在途期间到达的读请求合并到下一轮，
+ * 保证每个读请求等待的心跳轮次都在它到达之后发出
+ */
+class LeadershipConfirmer {
+
+    private final Supplier<CompletableFuture<Boolean>> heartbeatRound;
+    private CompletableFuture<Boolean> inflight;
+    private CompletableFuture<Boolean> next;
+
+    LeadershipConfirmer(Supplier<CompletableFuture<Boolean>> heartbeatRound) {
+        this.heartbeatRound = heartbeatRound;
+    }
+
+    /**
+     * 返回的 future 在多数节点确认当前任期后完成为 true，确认失败为 false
+     */
+    CompletableFuture<Boolean> confirm() {
+        CompletableFuture<Boolean> round;
+        synchronized (this) {
+            if (inflight != null) {
+                if (next == null) {
+                    next = new CompletableFuture<>();
+                }
+                return next;
+            }
+            round = new CompletableFuture<>();
+            inflight = round;
+        }
+        run(round);
+        return round;
+    }
+
+    private void run(CompletableFuture<Boolean> round) {
+        heartbeatRound.get().whenComplete((confirmed, error) -> {
+            CompletableFuture<Boolean> following;
+            synchronized (this) {
+                following = next;
+                next = null;
+                inflight = following;
+            }
+            if (error != null) {
+                round.completeExceptionally(error);
+            } else {
+                round.complete(confirmed);
+            }
+            if (following != null) {
+                run(following);
+            }
+        });
+    }
+}
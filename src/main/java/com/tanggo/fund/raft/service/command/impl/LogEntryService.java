@@ -1,301 +1,1179 @@
 package com.tanggo.fund.raft.service.command.impl;
 
 
+import com.tanggo.fund.raft.config.ApplyOptions;
+import com.tanggo.fund.raft.config.ReplicationOptions;
+import com.tanggo.fund.raft.config.SnapshotOptions;
+import com.tanggo.fund.raft.domain.ClusterConfig;
+import com.tanggo.fund.raft.domain.HardState;
 import com.tanggo.fund.raft.domain.LogEntry;
-import com.tanggo.fund.raft.domain.PeerRaftNode;
 import com.tanggo.fund.raft.domain.RaftNode;
+import com.tanggo.fund.raft.domain.Snapshot;
 import com.tanggo.fund.raft.outbound.LogEntryRepo;
+import com.tanggo.fund.raft.outbound.MemoryLogEntryRepo;
+import com.tanggo.fund.raft.outbound.MemorySnapshotRepo;
 import com.tanggo.fund.raft.outbound.PeerRaftNodeRepo;
+import com.tanggo.fund.raft.outbound.SnapshotRepo;
 import com.tanggo.fund.raft.service.ILogEntryService;
+import com.tanggo.fund.raft.service.StateMachine;
 import com.tanggo.fund.raft.service.command.AppendEntriesCommand;
 import com.tanggo.fund.raft.service.command.AppendEntriesResponse;
+import com.tanggo.fund.raft.service.command.InstallSnapshotCommand;
+import com.tanggo.fund.raft.service.command.InstallSnapshotResponse;
+import com.tanggo.fund.raft.service.command.ReadMode;
+import com.tanggo.fund.raft.service.command.RequestVoteCommand;
+import com.tanggo.fund.raft.service.command.RequestVoteResponse;
 
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 // 节点状态枚举
 
-public class LogEntryService implements ILogEntryService {
+public class LogEntryService implements ILogEntryService, ReplicationPipeline.Listener, ApplyStage.Listener, TickWheel.Tickable, Closeable {
+    private static final int MAX_GROUP_COMMIT_SIZE = 512; // 单次组提交最多合并的命令数
+    // 领导者租约：多数节点确认心跳后，从节点在最小选举超时内不会选出新领导者；留 10% 余量抵消时钟漂移
+    private static final long LEASE_DURATION_NANOS = TimeUnit.MILLISECONDS.toNanos(RaftNode.ELECTION_TIMEOUT_MIN * 9L / 10);
+    // 最小选举超时内收到过领导者消息的节点不参与选举，避免打断健康的领导者，也是租约读的前提
+    private static final long LEADER_STICKINESS_NANOS = TimeUnit.MILLISECONDS.toNanos(RaftNode.ELECTION_TIMEOUT_MIN);
+    private static final long HEARTBEAT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(RaftNode.HEARTBEAT_INTERVAL);
 
     private final RaftNode currentNode; //当前节点信息
-    private final ScheduledExecutorService scheduler;
+    // 保护本组状态；不用对象监视器，组线程在共享运行时中是虚拟线程，等锁时可以让出载体线程
+    private final ReentrantLock lock = new ReentrantLock();
+    // 时间轮和异步执行器，Multi-Raft 时多个组共享
+    private final RaftRuntime runtime;
+    private final boolean ownsRuntime;
     private final Map<String, ILogEntryService> nodes;
-    private PeerRaftNodeRepo peerRaftNodeRepo;
     private LogEntryRepo logEntryRepo;
-    private ScheduledFuture<?> heartbeatTask;
+    private volatile long nextHeartbeatNanos;
+    private boolean closed; // 关闭后不再处理请求、不再访问日志仓储
+    private final GroupCommitter groupCommitter;
+    private final ReplicationOptions replicationOptions;
+    private final SnapshotRepo snapshotRepo;
+    private final StateMachine stateMachine;
+    private final SnapshotOptions snapshotOptions;
+    private final ApplyOptions applyOptions;
+    // 已提交日志由专用线程应用到状态机
+    private final ApplyStage applyStage;
+    // 跟随者正在接收的快照
+    private ByteArrayOutputStream receivingSnapshot;
+    private int receivingSnapshotIndex;
+    // 每个从节点一条复制流水线
+    private final Map<String, ReplicationPipeline> pipelines = new ConcurrentHashMap<>();
+    // 等待提交的客户端：日志索引 -> future
+    private final NavigableMap<Integer, GroupCommitter.PendingCommand> commitWaiters = new ConcurrentSkipListMap<>();
+    // 等待应用的读请求：日志索引 -> future
+    private final NavigableMap<Integer, CompletableFuture<Void>> applyWaiters = new ConcurrentSkipListMap<>();
+    private final LeadershipConfirmer leadershipConfirmer = new LeadershipConfirmer(this::heartbeatRound);
+    // 本任期的空日志提交后完成，此后 commitIndex 才可作为 readIndex
+    private volatile CompletableFuture<Boolean> leaderReady;
+    private volatile long leaseExpiresNanos;
+    private final ElectionTimer electionTimer;
+    private long lastLeaderContactNanos;
+    private final RaftMetrics metrics;
+    // 成员配置：日志中的配置条目（索引 -> 配置），之前的配置已压缩进 baseConfig；追加即生效，不等提交
+    private final NavigableMap<Integer, ClusterConfig> configLog = new TreeMap<>();
+    private ClusterConfig baseConfig; // 为 null 且日志中没有配置时，地址簿中的节点都是投票成员
+    private volatile ClusterConfig configuration; // 当前生效的配置，供锁外读取
+    private CompletableFuture<Boolean> configChange; // 进行中的成员变更，最终配置提交后完成
+    private final PeerRaftNodeRepo peerRaftNodeRepo = new PeerRaftNodeRepo(this::getConfiguration);
+    // 状态机应用失败后不再接受写入、读取和选举，只作为跟随者继续复制日志
+    private volatile RuntimeException applyFailure;
 
     public LogEntryService(String node1, Map<String, ILogEntryService> nodes) {
+        this(node1, nodes, new MemoryLogEntryRepo());
+    }
+
+    public LogEntryService(String node1, Map<String, ILogEntryService> nodes, LogEntryRepo logEntryRepo) {
+        this(node1, nodes, logEntryRepo, new ReplicationOptions());
+    }
+
+    public LogEntryService(String node1, Map<String, ILogEntryService> nodes, LogEntryRepo logEntryRepo, ReplicationOptions replicationOptions) {
+        this(node1, nodes, logEntryRepo, replicationOptions, new MemorySnapshotRepo(), new KeyValueStateMachine(), new SnapshotOptions());
+    }
+
+    public LogEntryService(String node1, Map<String, ILogEntryService> nodes, LogEntryRepo logEntryRepo, ReplicationOptions replicationOptions,
+                           SnapshotRepo snapshotRepo, StateMachine stateMachine, SnapshotOptions snapshotOptions) {
+        this(node1, nodes, logEntryRepo, replicationOptions, snapshotRepo, stateMachine, snapshotOptions, new ApplyOptions());
+    }
+
+    public LogEntryService(String node1, Map<String, ILogEntryService> nodes, LogEntryRepo logEntryRepo, ReplicationOptions replicationOptions,
+                           SnapshotRepo snapshotRepo, StateMachine stateMachine, SnapshotOptions snapshotOptions, ApplyOptions applyOptions) {
+        this(node1, nodes, logEntryRepo, replicationOptions, snapshotRepo, stateMachine, snapshotOptions, applyOptions,
+                RaftRuntime.standalone(node1), true);
+    }
 
-        currentNode = new RaftNode("ss", null);
-        this.scheduler = Executors.newScheduledThreadPool(3);
+    /**
+     * 使用共享运行时创建，运行时由调用方关闭
+     */
+    public LogEntryService(String node1, Map<String, ILogEntryService> nodes, LogEntryRepo logEntryRepo, ReplicationOptions replicationOptions,
+                           SnapshotRepo snapshotRepo, StateMachine stateMachine, SnapshotOptions snapshotOptions, ApplyOptions applyOptions,
+                           RaftRuntime runtime) {
+        this(node1, nodes, logEntryRepo, replicationOptions, snapshotRepo, stateMachine, snapshotOptions, applyOptions, runtime, false);
+    }
+
+    private LogEntryService(String node1, Map<String, ILogEntryService> nodes, LogEntryRepo logEntryRepo, ReplicationOptions replicationOptions,
+                            SnapshotRepo snapshotRepo, StateMachine stateMachine, SnapshotOptions snapshotOptions, ApplyOptions applyOptions,
+                            RaftRuntime runtime, boolean ownsRuntime) {
+
+        currentNode = new RaftNode(node1, null);
+        this.runtime = runtime;
+        this.ownsRuntime = ownsRuntime;
         this.nodes = nodes;
-        // 启动定时任务
-        startElectionTimeout();
+        this.logEntryRepo = logEntryRepo;
+        this.replicationOptions = replicationOptions;
+        this.snapshotRepo = snapshotRepo;
+        this.stateMachine = stateMachine;
+        this.snapshotOptions = snapshotOptions;
+        this.applyOptions = applyOptions;
+        this.metrics = new RaftMetrics(this, currentNode, runtime::nanoTime);
+        this.electionTimer = new ElectionTimer(runtime);
+        this.lastLeaderContactNanos = runtime.nanoTime() - LEADER_STICKINESS_NANOS;
+        this.groupCommitter = new GroupCommitter(runtime, "raft-group-commit-" + node1, MAX_GROUP_COMMIT_SIZE, this::appendBatch);
+        // 恢复任期和投票，重启后不会在已投过票的任期再投给别人
+        HardState hardState = logEntryRepo.loadHardState();
+        if (hardState != null) {
+            currentNode.setCurrentTerm(hardState.getCurrentTerm());
+            currentNode.setVotedFor(hardState.getVotedFor());
+        }
+        // 从快照恢复状态机，之后的日志在提交索引推进后重放
+        Snapshot snapshot = snapshotRepo.load();
+        if (snapshot != null) {
+            stateMachine.restore(snapshot.getData());
+            alignLogWithSnapshot(snapshot);
+            currentNode.setCommitIndex(snapshot.getLastIncludedIndex());
+            currentNode.setLastApplied(snapshot.getLastIncludedIndex());
+        }
+        // 恢复日志中的成员配置
+        for (int i = logEntryRepo.firstIndex(); i <= logEntryRepo.lastIndex(); i++) {
+            trackConfig(logEntryRepo.get(i));
+        }
+        this.applyStage = new ApplyStage(runtime, "raft-apply-" + node1, stateMachine, applyOptions.getRingSize(),
+                applyOptions.getMaxBatchSize(), currentNode.getLastApplied(), this);
+        // 由时间轮驱动选举超时和心跳
+        runtime.getTickWheel().register(this);
 
     }
 
 
-    // 处理客户端请求（仅领导者）
+    // 处理客户端请求（仅领导者），命令进入组提交队列后立即返回
     @Override
-    public synchronized boolean handleClientCommand(String command) {
+    public boolean handleClientCommand(String command) {
+        if (!currentNode.isLeader() || applyFailure != null) {
+            return false; // 由客户端重定向到领导者
+        }
+
+        groupCommitter.submit(command);
+        return true;
+    }
+
+    // 提交客户端命令，日志提交后 future 完成为 true；非领导者或失去领导权时为 false
+    @Override
+    public CompletableFuture<Boolean> submitCommand(String command) {
+        if (applyFailure != null) {
+            return CompletableFuture.failedFuture(applyFailure);
+        }
         if (!currentNode.isLeader()) {
-            System.out.println("重定向到领导者: 本节点不是领导者");
-            return false;
+            return CompletableFuture.completedFuture(false);
         }
+        return groupCommitter.submit(command);
+    }
 
-        // 创建新日志条目
-        List<LogEntry> log = logEntryRepo.query();
-        int newIndex = log.size();
-        LogEntry newEntry = new LogEntry(currentNode.getNodeId(), currentNode.getCurrentTerm(), newIndex, command);
+    // 线性一致读（仅领导者）：记录 readIndex，确认领导权（或租约有效），等待状态机应用到 readIndex 后查询
+    @Override
+    public CompletableFuture<String> read(String query, ReadMode mode) {
+        if (applyFailure != null) {
+            return CompletableFuture.failedFuture(applyFailure);
+        }
+        CompletableFuture<Boolean> ready = leaderReady;
+        if (!currentNode.isLeader() || ready == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Not leader: " + currentNode.getNodeId()));
+        }
+        return ready.thenCompose(committed -> {
+            if (!committed) {
+                throw new IllegalStateException("Lost leadership before committing in current term");
+            }
+            int readIndex = commitIndex();
+            if (mode == ReadMode.LEASE && leaseValid()) {
+                return awaitApplied(readIndex);
+            }
+            return leadershipConfirmer.confirm().thenCompose(confirmed -> {
+                if (!confirmed) {
+                    throw new IllegalStateException("Leadership not confirmed by a majority");
+                }
+                return awaitApplied(readIndex);
+            });
+        }).thenApply(applied -> stateMachine.query(query));
+    }
 
-        logEntryRepo.insert(newEntry);
-        System.out.println("领导者节点 " + currentNode.getNodeId() + " 追加日志: " + command + " (索引: " + newIndex + ")");
+    private int commitIndex() {
+        lock.lock();
+        try {
+            return currentNode.getCommitIndex();
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        // 开始复制到从节点
-        replicateLog();
-        return true;
+    // 状态机已应用的日志索引
+    public int getAppliedIndex() {
+        return applyStage.getAppliedIndex();
     }
 
-    // 日志复制到从节点
-    private void replicateLog() {
-        Map<String, PeerRaftNode> clusterNodes = peerRaftNodeRepo.query();
-        for (String followerId : clusterNodes.keySet()) {
-            if (!followerId.equals(currentNode.getNodeId())) {
-                // 异步发送日志条目
-                CompletableFuture.runAsync(() -> sendAppendEntries(followerId));
+    // 已提交的日志索引
+    public int getCommitIndex() {
+        return commitIndex();
+    }
+
+    public boolean isLeader() {
+        return currentNode.isLeader();
+    }
+
+    public int getCurrentTerm() {
+        return currentNode.getCurrentTerm();
+    }
+
+    private boolean leaseValid() {
+        return currentNode.isLeader() && runtime.nanoTime() - leaseExpiresNanos < 0;
+    }
+
+    // 状态机应用到 index 后完成
+    public CompletableFuture<Void> awaitApplied(int index) {
+        lock.lock();
+        try {
+            if (currentNode.getLastApplied() >= index) {
+                return CompletableFuture.completedFuture(null);
             }
+            if (applyFailure != null) {
+                return CompletableFuture.failedFuture(applyFailure);
+            }
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Raft node closed: " + currentNode.getNodeId()));
+            }
+            return applyWaiters.computeIfAbsent(index, i -> new CompletableFuture<>());
+        } finally {
+            lock.unlock();
         }
     }
 
-    // 发送日志追加请求
-    private void sendAppendEntries(String followerId) {
-        List<LogEntry> log = logEntryRepo.query();
-        int nextIdx = currentNode.getNextIndex().getOrDefault(followerId, 0);
+    // 向所有从节点发送一轮心跳，多数节点（含自身）以当前任期响应后完成为 true 并续租
+    private CompletableFuture<Boolean> heartbeatRound() {
+        long start = runtime.nanoTime();
+        int term = currentNode.getCurrentTerm();
+        ClusterConfig config = getConfiguration();
+        List<String> followers = followerIds();
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        // 学习者也会收到心跳，但只有投票成员的确认计入多数派
+        Set<String> acks = ConcurrentHashMap.newKeySet();
+        acks.add(currentNode.getNodeId());
+        if (config.isQuorum(acks)) {
+            extendLease(start, term);
+            result.complete(currentNode.isLeader());
+            return result;
+        }
+        if (followers.isEmpty()) {
+            result.complete(false);
+            return result;
+        }
 
-        // 检查是否有新日志需要发送
-        if (nextIdx <= log.size() - 1) {
-            List<LogEntry> entries = new ArrayList<>();
-            if (nextIdx < log.size()) {
-                entries = log.subList(nextIdx, log.size());
-            }
+        AtomicInteger replies = new AtomicInteger();
+        for (String followerId : followers) {
+            sendHeartbeat(followerId).whenComplete((response, error) -> {
+                if (error == null && response != null) {
+                    if (response.getTerm() > term) {
+                        onHigherTerm(response.getTerm());
+                    } else if (response.getTerm() == term && acks.add(followerId) && !result.isDone()
+                            && config.isQuorum(acks)) {
+                        extendLease(start, term);
+                        result.complete(true);
+                    }
+                }
+                if (replies.incrementAndGet() == followers.size()) {
+                    result.complete(false); // 已确认时无效果
+                }
+            });
+        }
+        return result;
+    }
 
-            int prevLogIndex = nextIdx - 1;
-            int prevLogTerm = (prevLogIndex >= 0 && prevLogIndex < log.size()) ? log.get(prevLogIndex).getTerm() : 0;
+    // 租约从本轮心跳发出时刻起算
+    private void extendLease(long start, int term) {
+        if (currentNode.isLeader() && currentNode.getCurrentTerm() == term) {
+            long expires = start + LEASE_DURATION_NANOS;
+            if (expires - leaseExpiresNanos > 0) {
+                leaseExpiresNanos = expires;
+            }
+        }
+    }
 
-            AppendEntriesCommand request = new AppendEntriesCommand(currentNode.getCurrentTerm(), prevLogIndex, prevLogTerm, entries, currentNode.getCommitIndex());
+    // 组提交：状态机应用落后过多时先等待其追上（反压），再整批追加
+    private void appendBatch(List<GroupCommitter.PendingCommand> batch) {
+        applyStage.awaitLag(commitIndex(), applyOptions.getMaxApplyLag());
+        appendBatchLocked(batch);
+    }
 
-            try {
-                // 模拟网络发送（实际实现需使用HTTP/gRPC）
-                ILogEntryService follower = nodes.get(followerId);
-                if (follower != null) {
-                    AppendEntriesResponse response = follower.handleAppendEntries(request);
-                    // 处理响应
-                    processAppendResponse(followerId, response, nextIdx, entries.size());
+    // 整批命令一次追加、一次刷盘、一次复制
+    private void appendBatchLocked(List<GroupCommitter.PendingCommand> batch) {
+        lock.lock();
+        try {
+            if (closed || !currentNode.isLeader()) {
+                for (GroupCommitter.PendingCommand pending : batch) {
+                    pending.future.complete(false);
                 }
-            } catch (Exception e) {
-                System.err.println("向节点 " + followerId + " 发送日志失败: " + e.getMessage());
+                return;
             }
-        } else {
-            // 发送心跳
-            sendHeartbeat(followerId);
+
+            int term = currentNode.getCurrentTerm();
+            int index = logEntryRepo.lastIndex() + 1;
+            for (GroupCommitter.PendingCommand pending : batch) {
+                logEntryRepo.insert(pending.command == null ? LogEntry.noop(term, index) : new LogEntry(term, index, pending.command));
+                commitWaiters.put(index, pending);
+                index++;
+            }
+            flushLog();
+            metrics.recordBatchSize(batch.size());
+
+            // 开始复制到从节点
+            replicateLog();
+            // 单节点集群无需等待从节点响应
+            updateCommitIndex();
+        } finally {
+            lock.unlock();
         }
     }
 
-    // 处理追加日志请求（跟随者侧）
-    @Override
-    public synchronized AppendEntriesResponse handleAppendEntries(AppendEntriesCommand request) {
-        // 重置选举超时（收到领导者消息）
-        resetElectionTimeout();
+    private void flushLog() {
+        long start = runtime.nanoTime();
+        logEntryRepo.flush();
+        metrics.recordFsync(runtime.nanoTime() - start);
+    }
 
-        List<LogEntry> log = logEntryRepo.query();
+    // 日志复制到从节点
+    private void replicateLog() {
+        for (String followerId : followerIds()) {
+            ReplicationPipeline pipeline = pipeline(followerId);
+            if (pipeline != null) {
+                pipeline.pump();
+            }
+        }
+    }
 
-        // 1. 任期检查
-        if (request.getTerm() < currentNode.getCurrentTerm()) {
-            return new AppendEntriesResponse(currentNode.getCurrentTerm(), false, log.size() - 1);
+    // 除自身外需要复制日志的成员，含学习者
+    private List<String> followerIds() {
+        List<String> followers = new ArrayList<>(nodes.size());
+        for (String nodeId : getConfiguration().members()) {
+            if (!nodeId.equals(currentNode.getNodeId())) {
+                followers.add(nodeId);
+            }
         }
+        return followers;
+    }
 
-        // 更新任期（如果请求任期更大）
-        if (request.getTerm() > currentNode.getCurrentTerm()) {
-            currentNode.setCurrentTerm(request.getTerm());
-            becomeFollower();
+    private ReplicationPipeline pipeline(String followerId) {
+        ILogEntryService follower = nodes.get(followerId);
+        if (follower == null || followerId.equals(currentNode.getNodeId())) {
+            return null;
         }
+        return pipelines.computeIfAbsent(followerId, id -> {
+            metrics.onFollower(id);
+            return new ReplicationPipeline(id, follower, currentNode, logEntryRepo, replicationOptions,
+                    snapshotRepo, snapshotOptions, metrics, this);
+        });
+    }
+
+    // 处理追加日志请求（跟随者侧）
+    @Override
+    public AppendEntriesResponse handleAppendEntries(AppendEntriesCommand request) {
+        lock.lock();
+        try {
+            checkOpen();
+            // 1. 任期检查
+            if (request.getTerm() < currentNode.getCurrentTerm()) {
+                return new AppendEntriesResponse(currentNode.getCurrentTerm(), false, logEntryRepo.lastIndex());
+            }
+
+            // 收到当前领导者消息：更新任期并重置选举超时
+            onLeaderContact(request.getTerm());
 
-        // 2. 日志一致性检查
-        if (request.getPrevLogIndex() >= 0) {
-            if (log.size() <= request.getPrevLogIndex() || (request.getPrevLogIndex() >= 0 && log.get(request.getPrevLogIndex()).getTerm() != request.getPrevLogTerm())) {
-                return new AppendEntriesResponse(currentNode.getCurrentTerm(), false, log.size() - 1);
+            // 2. 日志一致性检查（已压缩进快照的部分必然一致）
+            // 不一致时带上回退提示：日志过短时从本节点末尾之后重发，任期冲突时领导者整段跳过冲突任期
+            int prevLogIndex = request.getPrevLogIndex();
+            if (prevLogIndex >= logEntryRepo.firstIndex() - 1) {
+                int lastIndex = logEntryRepo.lastIndex();
+                if (lastIndex < prevLogIndex) {
+                    return new AppendEntriesResponse(currentNode.getCurrentTerm(), false, lastIndex, -1, lastIndex + 1);
+                }
+                int conflictTerm = logEntryRepo.getTerm(prevLogIndex);
+                if (conflictTerm != request.getPrevLogTerm()) {
+                    int conflictIndex = logEntryRepo.firstIndexOfTerm(conflictTerm, prevLogIndex);
+                    return new AppendEntriesResponse(currentNode.getCurrentTerm(), false, lastIndex, conflictTerm,
+                            conflictIndex >= 0 ? conflictIndex : prevLogIndex);
+                }
             }
-        }
 
-        // 3. 追加新日志条目
-        if (request.getEntries() != null && !request.getEntries().isEmpty()) {
-            int index = request.getPrevLogIndex() + 1;
+            // 3. 追加新日志条目
+            if (request.getEntries() != null && !request.getEntries().isEmpty()) {
+                int index = prevLogIndex + 1;
 
-            for (LogEntry newEntry : request.getEntries()) {
-                if (index < log.size()) {
-                    // 冲突检测：如果现有日志条目与新的冲突，则删除后续所有
-                    if (log.get(index).getTerm() != newEntry.getTerm()) {
-                        log = new ArrayList<>(log.subList(0, index));
-                        log.add(newEntry);
+                for (LogEntry newEntry : request.getEntries()) {
+                    if (index < logEntryRepo.firstIndex()) {
+                        // 已包含在快照中
+                    } else if (index <= logEntryRepo.lastIndex()) {
+                        // 冲突检测：如果现有日志条目与新的冲突，则删除后续所有
+                        if (logEntryRepo.getTerm(index) != newEntry.getTerm()) {
+                            logEntryRepo.truncateSuffix(index);
+                            truncateConfigs(index);
+                            logEntryRepo.insert(newEntry);
+                            trackConfig(newEntry);
+                        }
+                    } else {
+                        // 追加新日志
+                        logEntryRepo.insert(newEntry);
+                        trackConfig(newEntry);
                     }
-                } else {
-                    // 追加新日志
-                    log.add(newEntry);
+                    index++;
                 }
-                index++;
+                flushLog();
             }
-        }
 
-        // 4. 更新提交索引
-        if (request.getLeaderCommit() > currentNode.getCommitIndex()) {
-            currentNode.setCommitIndex(Math.min(request.getLeaderCommit(), log.size() - 1));
-            applyCommittedEntries();
-        }
+            // 4. 更新提交索引
+            // 只能提交到本次请求确认一致的最后一条；批次有上限，之后可能还留着与领导者冲突的旧日志
+            int lastNewIndex = prevLogIndex + (request.getEntries() == null ? 0 : request.getEntries().size());
+            int newCommitIndex = Math.min(request.getLeaderCommit(), lastNewIndex);
+            if (newCommitIndex > currentNode.getCommitIndex()) {
+                currentNode.setCommitIndex(newCommitIndex);
+                applyCommittedEntries();
+            }
 
-        return new AppendEntriesResponse(currentNode.getCurrentTerm(), true, log.size() - 1);
+            return new AppendEntriesResponse(currentNode.getCurrentTerm(), true, logEntryRepo.lastIndex());
+        } finally {
+            lock.unlock();
+        }
     }
 
-    // 应用已提交的日志到状态机
+    // 把新提交的日志排入应用缓冲区，缓冲区满时剩余部分在应用线程腾出空间后继续排入
     private void applyCommittedEntries() {
-        List<LogEntry> log = logEntryRepo.query();
-        while (currentNode.getLastApplied() < currentNode.getCommitIndex()) {
-            currentNode.setLastApplied(currentNode.getLastApplied() + 1);
-            LogEntry entry = log.get(currentNode.getLastApplied());
+        int queued = applyStage.getQueuedIndex();
+        int commitIndex = currentNode.getCommitIndex();
+        boolean offered = false;
+        while (queued < commitIndex) {
+            LogEntry entry = logEntryRepo.get(queued + 1);
+            if (!applyStage.offer(entry)) {
+                break;
+            }
             entry.setCommitted(true);
+            queued++;
+            offered = true;
+        }
+        if (offered) {
+            applyStage.signal();
+        }
+    }
 
-            // 实际应用中这里应该执行命令并更新状态机
-            System.out.println("节点 " + currentNode.getNodeId() + " 应用日志[" + currentNode.getLastApplied() + "]: " + entry.getCommand());
+    // 应用线程每批应用完成后回调
+    @Override
+    public void onApplied(int appliedIndex) {
+        List<CompletableFuture<Void>> waiters;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            currentNode.setLastApplied(appliedIndex);
+            waiters = takeApplyWaiters();
+            applyCommittedEntries();
+        } finally {
+            lock.unlock();
         }
+        // 读请求在完成回调中同步查询状态机并回写响应，必须在锁外完成
+        for (CompletableFuture<Void> waiter : waiters) {
+            waiter.complete(null);
+        }
+        maybeSnapshot(appliedIndex);
     }
 
-    // 处理追加日志响应（领导者侧）
-    private synchronized void processAppendResponse(String followerId, AppendEntriesResponse response, int sentIndex, int entryCount) {
-        if (response.getTerm() > currentNode.getCurrentTerm()) {
-            // 发现更高任期，转为跟随者
-            currentNode.setCurrentTerm(response.getTerm());
-            becomeFollower();
+    // 应用线程停止：让出领导权，等待应用的读请求全部失败
+    @Override
+    public void onApplyFailed(int index, RuntimeException error) {
+        List<CompletableFuture<Void>> waiters;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            applyFailure = new IllegalStateException("State machine failed to apply log entry " + index + " on " + currentNode.getNodeId(), error);
+            if (currentNode.getState() != RaftNode.State.FOLLOWER) {
+                becomeFollower();
+            }
+            waiters = new ArrayList<>(applyWaiters.values());
+            applyWaiters.clear();
+        } finally {
+            lock.unlock();
+        }
+        for (CompletableFuture<Void> waiter : waiters) {
+            waiter.completeExceptionally(applyFailure);
+        }
+        System.err.println("节点 " + currentNode.getNodeId() + " 状态机故障，停止对外服务: " + error.getMessage());
+    }
+
+    // 取出已应用位置之前的等待者，由调用方在释放锁后完成
+    private List<CompletableFuture<Void>> takeApplyWaiters() {
+        NavigableMap<Integer, CompletableFuture<Void>> done = applyWaiters.headMap(currentNode.getLastApplied(), true);
+        if (done.isEmpty()) {
+            return List.of();
+        }
+        List<CompletableFuture<Void>> waiters = new ArrayList<>(done.values());
+        done.clear();
+        return waiters;
+    }
+
+    // 已应用的日志条数或日志字节数超过阈值时生成快照，并压缩日志前缀（应用线程调用）
+    private void maybeSnapshot(int lastApplied) {
+        int appliedEntries = lastApplied - logEntryRepo.firstIndex() + 1;
+        if (appliedEntries <= 0) {
+            return;
+        }
+        if (appliedEntries < snapshotOptions.getLogEntriesThreshold() && logEntryRepo.byteSize() < snapshotOptions.getLogBytesThreshold()) {
             return;
         }
+        ClusterConfig config;
+        lock.lock();
+        try {
+            config = configAt(lastApplied);
+        } finally {
+            lock.unlock();
+        }
+        Snapshot snapshot = new Snapshot(lastApplied, logEntryRepo.getTerm(lastApplied), stateMachine.snapshot(), config);
+        // 与跟随者安装快照互斥，避免旧快照覆盖刚安装的新快照
+        synchronized (snapshotRepo) {
+            if (lastApplied < logEntryRepo.firstIndex()) {
+                return;
+            }
+            snapshotRepo.save(snapshot);
+            logEntryRepo.truncatePrefix(snapshot.getLastIncludedIndex(), snapshot.getLastIncludedTerm());
+        }
+        lock.lock();
+        try {
+            compactConfigs(lastApplied);
+        } finally {
+            lock.unlock();
+        }
+        System.out.println("节点 " + currentNode.getNodeId() + " 生成快照(索引: " + lastApplied + ", " + snapshot.getData().length + " 字节)，压缩日志 " + appliedEntries + " 条");
+    }
 
-        if (response.isSuccess()) {
-            // 更新对应从节点的匹配索引
-            int newMatchIndex = sentIndex + entryCount - 1;
-            currentNode.getMatchIndex().put(followerId, newMatchIndex);
-            currentNode.getNextIndex().put(followerId, newMatchIndex + 1);
+    // 处理安装快照分片（跟随者侧），分片按偏移量顺序拼接，最后一片到达后安装
+    @Override
+    public InstallSnapshotResponse handleInstallSnapshot(InstallSnapshotCommand request) {
+        lock.lock();
+        try {
+            checkOpen();
+            if (request.getTerm() < currentNode.getCurrentTerm()) {
+                return new InstallSnapshotResponse(currentNode.getCurrentTerm(), false);
+            }
+            onLeaderContact(request.getTerm());
 
-            // 检查是否可以提交日志
-            updateCommitIndex();
+            if (request.getOffset() == 0) {
+                receivingSnapshot = new ByteArrayOutputStream();
+                receivingSnapshotIndex = request.getLastIncludedIndex();
+            } else if (receivingSnapshot == null || receivingSnapshotIndex != request.getLastIncludedIndex()
+                    || receivingSnapshot.size() != request.getOffset()) {
+                // 分片不连续，领导者从头重传
+                receivingSnapshot = null;
+                return new InstallSnapshotResponse(currentNode.getCurrentTerm(), false);
+            }
+            receivingSnapshot.writeBytes(request.getData());
+            if (!request.isDone()) {
+                return new InstallSnapshotResponse(currentNode.getCurrentTerm(), true);
+            }
+
+            Snapshot snapshot = new Snapshot(request.getLastIncludedIndex(), request.getLastIncludedTerm(), receivingSnapshot.toByteArray(),
+                    request.getConfig() == null ? null : ClusterConfig.fromCommand(request.getConfig()));
+            receivingSnapshot = null;
+            // 快照之前的日志已全部排入应用缓冲区时无需安装
+            if (snapshot.getLastIncludedIndex() > applyStage.getQueuedIndex()) {
+                synchronized (snapshotRepo) {
+                    snapshotRepo.save(snapshot);
+                    alignLogWithSnapshot(snapshot);
+                }
+                currentNode.setCommitIndex(Math.max(currentNode.getCommitIndex(), snapshot.getLastIncludedIndex()));
+                applyStage.restore(snapshot);
+                System.out.println("节点 " + currentNode.getNodeId() + " 安装快照(索引: " + snapshot.getLastIncludedIndex() + ")");
+            }
+            return new InstallSnapshotResponse(currentNode.getCurrentTerm(), true);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 日志与快照末尾一致时保留后续日志，否则整体丢弃
+    private void alignLogWithSnapshot(Snapshot snapshot) {
+        int index = snapshot.getLastIncludedIndex();
+        int term = snapshot.getLastIncludedTerm();
+        if (index <= logEntryRepo.lastIndex() && logEntryRepo.getTerm(index) == term) {
+            logEntryRepo.truncatePrefix(index, term);
         } else {
-            // 复制失败，回退nextIndex重试
-            currentNode.getNextIndex().put(followerId, Math.max(sentIndex - 1, 0));
+            logEntryRepo.reset(index, term);
+            truncateConfigs(index + 1);
+        }
+        compactConfigs(index);
+        if (snapshot.getConfig() != null) {
+            baseConfig = snapshot.getConfig();
+            refreshConfiguration();
+        }
+    }
+
+    // 从节点复制进度前移（领导者侧）
+    @Override
+    public void onMatchIndexAdvanced(String followerId, int matchIndex) {
+        lock.lock();
+        try {
+            if (currentNode.isLeader()) {
+                updateCommitIndex();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 从节点响应了更高任期，转为跟随者
+    @Override
+    public void onHigherTerm(int term) {
+        lock.lock();
+        try {
+            if (term > currentNode.getCurrentTerm()) {
+                stepDown(term);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
     // 更新提交索引（领导者）
     private void updateCommitIndex() {
-        List<LogEntry> log = logEntryRepo.query();
-        // 收集所有匹配索引
-        List<Integer> matchIndexes = new ArrayList<>(currentNode.getMatchIndex().values());
-        matchIndexes.add(log.size() - 1); // 包括领导者自己
-
-        // 排序并找到中位数（多数节点已复制的索引）
-        Collections.sort(matchIndexes);
-        int newCommitIndex = matchIndexes.get(matchIndexes.size() / 2);
+        int lastIndex = logEntryRepo.lastIndex();
+        String self = currentNode.getNodeId();
+        // 多数投票成员已复制的索引；学习者不参与，领导者被移出投票成员时不计自身
+        int newCommitIndex = getConfiguration().committedIndex(
+                nodeId -> nodeId.equals(self) ? lastIndex : currentNode.getMatchIndex().getOrDefault(nodeId, -1));
 
         // 只能提交当前任期的日志
-        if (newCommitIndex > currentNode.getCommitIndex() && newCommitIndex < log.size() && log.get(newCommitIndex).getTerm() == currentNode.getCurrentTerm()) {
+        if (newCommitIndex > currentNode.getCommitIndex() && newCommitIndex <= lastIndex && logEntryRepo.getTerm(newCommitIndex) == currentNode.getCurrentTerm()) {
             currentNode.setCommitIndex(newCommitIndex);
             applyCommittedEntries();
+            completeCommitWaiters(newCommitIndex, true);
 
             // 通知从节点提交日志
-            Map<String, PeerRaftNode> clusterNodes = peerRaftNodeRepo.query();
-            for (String followerId : clusterNodes.keySet()) {
-                if (!followerId.equals(currentNode.getNodeId())) {
-                    sendHeartbeat(followerId);
-                }
+            for (String followerId : followerIds()) {
+                sendHeartbeat(followerId);
             }
+            advanceConfigChange();
         }
     }
 
-    // 发送心跳包
-    private void sendHeartbeat(String followerId) {
-        List<LogEntry> log = logEntryRepo.query();
-        AppendEntriesCommand heartbeat = new AppendEntriesCommand(currentNode.getCurrentTerm(), log.size() - 1, log.isEmpty() ? 0 : log.get(log.size() - 1).getTerm(), null, currentNode.getCommitIndex());
+    /**
+     * 在线变更成员（仅领导者）
+     * 投票成员变化时先追加联合配置，联合配置提交后再追加新配置；只调整学习者时一步完成
+     * 新增的投票成员需先作为学习者追上日志，返回的 future 在最终配置提交后完成为 true
+     */
+    public CompletableFuture<Boolean> changeConfiguration(Collection<String> voters, Collection<String> learners) {
+        lock.lock();
+        try {
+            if (!currentNode.isLeader()) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Not leader: " + currentNode.getNodeId()));
+            }
+            ClusterConfig current = getConfiguration();
+            if (configChange != null || current.isJoint() || lastConfigIndex() > currentNode.getCommitIndex()) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Configuration change in progress"));
+            }
+            ClusterConfig target = new ClusterConfig(voters, Set.of(), learners);
+            validateConfiguration(current, target);
+            ClusterConfig next = target.getVoters().equals(current.getVoters())
+                    ? target
+                    : new ClusterConfig(target.getVoters(), current.getVoters(), target.getLearners());
+            CompletableFuture<Boolean> result = new CompletableFuture<>();
+            configChange = result;
+            appendConfig(next);
+            return result;
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        CompletableFuture.runAsync(() -> {
-            try {
-                ILogEntryService follower = nodes.get(followerId);
-                if (follower != null) {
-                    follower.handleAppendEntries(heartbeat);
-                }
-            } catch (Exception e) {
-                System.err.println("向节点 " + followerId + " 发送心跳失败: " + e.getMessage());
+    private void validateConfiguration(ClusterConfig current, ClusterConfig target) {
+        if (target.getVoters().isEmpty()) {
+            throw new IllegalArgumentException("Configuration must contain at least one voter");
+        }
+        for (String nodeId : target.members()) {
+            if (!nodes.containsKey(nodeId)) {
+                throw new IllegalArgumentException("Unknown node: " + nodeId);
+            }
+            if (target.getVoters().contains(nodeId) && target.getLearners().contains(nodeId)) {
+                throw new IllegalArgumentException("Node cannot be both voter and learner: " + nodeId);
+            }
+        }
+        for (String nodeId : target.getVoters()) {
+            if (!current.isVoter(nodeId) && !nodeId.equals(currentNode.getNodeId())
+                    && replicationLag(nodeId) > replicationOptions.getMaxPromotionLag()) {
+                throw new IllegalStateException("Node not caught up: " + nodeId);
+            }
+        }
+    }
+
+    // 追加成员配置日志，追加后立即生效
+    private void appendConfig(ClusterConfig config) {
+        LogEntry entry = LogEntry.configuration(currentNode.getCurrentTerm(), logEntryRepo.lastIndex() + 1, config);
+        logEntryRepo.insert(entry);
+        trackConfig(entry);
+        flushLog();
+        replicateLog();
+        updateCommitIndex();
+    }
+
+    // 配置日志提交后推进成员变更：联合配置提交后追加新配置；新配置提交后变更完成，不在新配置中的领导者让位
+    private void advanceConfigChange() {
+        if (lastConfigIndex() > currentNode.getCommitIndex()) {
+            return;
+        }
+        ClusterConfig config = getConfiguration();
+        if (config.isJoint()) {
+            appendConfig(config.leaveJoint());
+            return;
+        }
+        if (configChange != null) {
+            configChange.complete(true);
+            configChange = null;
+        }
+        if (!config.isVoter(currentNode.getNodeId())) {
+            becomeFollower();
+        }
+    }
+
+    // 日志中的配置条目，追加即生效
+    private void trackConfig(LogEntry entry) {
+        if (entry != null && entry.isConfiguration()) {
+            configLog.put(entry.getIndex(), entry.toConfiguration());
+            refreshConfiguration();
+        }
+    }
+
+    // 日志后缀被截断，其中的配置随之失效
+    private void truncateConfigs(int fromIndex) {
+        NavigableMap<Integer, ClusterConfig> removed = configLog.tailMap(fromIndex, true);
+        if (!removed.isEmpty()) {
+            removed.clear();
+            refreshConfiguration();
+        }
+    }
+
+    // 日志前缀压缩进快照，index 处生效的配置成为基准配置
+    private void compactConfigs(int index) {
+        baseConfig = configAt(index);
+        configLog.headMap(index, true).clear();
+        refreshConfiguration();
+    }
+
+    private ClusterConfig configAt(int index) {
+        Map.Entry<Integer, ClusterConfig> entry = configLog.floorEntry(index);
+        return entry != null ? entry.getValue() : baseConfig;
+    }
+
+    private int lastConfigIndex() {
+        return configLog.isEmpty() ? -1 : configLog.lastKey();
+    }
+
+    private void refreshConfiguration() {
+        configuration = configLog.isEmpty() ? baseConfig : configLog.lastEntry().getValue();
+    }
+
+    /**
+     * 当前生效的成员配置；从未变更过成员时，地址簿中的节点都是投票成员
+     */
+    public ClusterConfig getConfiguration() {
+        ClusterConfig config = configuration;
+        return config != null ? config : ClusterConfig.of(nodes.keySet());
+    }
+
+    public PeerRaftNodeRepo getPeerRaftNodeRepo() {
+        return peerRaftNodeRepo;
+    }
+
+    /**
+     * 以空配置加入已有集群（新增节点在启动后调用）
+     * 空配置下不发起选举，收到领导者复制的配置日志或快照后按其中的角色工作
+     */
+    public void joinCluster() {
+        lock.lock();
+        try {
+            if (configuration == null) {
+                baseConfig = new ClusterConfig(Set.of(), Set.of(), Set.of());
+                refreshConfiguration();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 通知索引不超过 upToIndex 的等待者，提交成功时记录提交延迟
+    private void completeCommitWaiters(int upToIndex, boolean committed) {
+        NavigableMap<Integer, GroupCommitter.PendingCommand> done = commitWaiters.headMap(upToIndex, true);
+        long now = runtime.nanoTime();
+        for (GroupCommitter.PendingCommand pending : done.values()) {
+            if (committed) {
+                metrics.recordCommitLatency(now - pending.submittedNanos);
+            }
+            pending.future.complete(committed);
+        }
+        done.clear();
+    }
+
+    // 发送心跳包，返回从节点响应
+    private CompletableFuture<AppendEntriesResponse> sendHeartbeat(String followerId) {
+        AppendEntriesCommand heartbeat = new AppendEntriesCommand(currentNode.getCurrentTerm(), logEntryRepo.lastIndex(), logEntryRepo.lastTerm(), null, currentNode.getCommitIndex());
+
+        ILogEntryService follower = nodes.get(followerId);
+        if (follower == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Unknown node: " + followerId));
+        }
+        long start = runtime.nanoTime();
+        return follower.appendEntriesAsync(heartbeat).whenComplete((response, error) -> {
+            if (error != null) {
+                System.err.println("向节点 " + followerId + " 发送心跳失败: " + error.getMessage());
+            } else {
+                metrics.recordAppendRtt(runtime.nanoTime() - start);
             }
         });
     }
 
-    // 启动心跳定时任务（领导者）
-    private void startHeartbeat() {
-        if (heartbeatTask != null) {
-            heartbeatTask.cancel(true);
+    // 时间轮回调：领导者到点发心跳，其它角色检查选举超时，耗时的工作交给执行器
+    @Override
+    public long onTick(long now) {
+        if (currentNode.isLeader()) {
+            if (now - nextHeartbeatNanos >= 0) {
+                nextHeartbeatNanos = now + HEARTBEAT_INTERVAL_NANOS;
+                runtime.getExecutor().execute(this::heartbeat);
+            }
+            return nextHeartbeatNanos;
+        }
+        if (electionTimer.expire(now)) {
+            runtime.getExecutor().execute(this::onElectionTimeout);
         }
+        return electionTimer.getDeadline();
+    }
 
-        heartbeatTask = scheduler.scheduleAtFixedRate(() -> {
-            if (currentNode.getState() == RaftNode.State.LEADER) {
-                Map<String, PeerRaftNode> clusterNodes = peerRaftNodeRepo.query();
-                for (String followerId : clusterNodes.keySet()) {
-                    if (!followerId.equals(currentNode.getNodeId())) {
-                        sendHeartbeat(followerId);
-                    }
+    // 心跳（领导者）
+    private void heartbeat() {
+        if (currentNode.getState() == RaftNode.State.LEADER) {
+            // 落后的从节点继续补发日志
+            for (String followerId : followerIds()) {
+                ReplicationPipeline pipeline = pipeline(followerId);
+                if (pipeline != null && !pipeline.isCaughtUp()) {
+                    pipeline.pump();
                 }
             }
-        }, 0, RaftNode.HEARTBEAT_INTERVAL, TimeUnit.MILLISECONDS);
+            // 心跳轮次与读请求共用，同时续期租约
+            leadershipConfirmer.confirm();
+        }
     }
 
     // 状态转换方法
+    // 任期不小于当前任期的领导者发来消息
+    private void onLeaderContact(int term) {
+        if (term > currentNode.getCurrentTerm() || currentNode.getState() != RaftNode.State.FOLLOWER) {
+            stepDown(term);
+        }
+        lastLeaderContactNanos = runtime.nanoTime();
+        electionTimer.reset();
+    }
+
+    // 进入更高任期（清空投票）或在当前任期让位给领导者
+    private void stepDown(int term) {
+        if (term > currentNode.getCurrentTerm()) {
+            currentNode.setCurrentTerm(term);
+            currentNode.setVotedFor(null);
+            saveHardState();
+        }
+        becomeFollower();
+    }
+
+    // 任期或投票变化后先落盘，再对外响应
+    private void saveHardState() {
+        logEntryRepo.saveHardState(new HardState(currentNode.getCurrentTerm(), currentNode.getVotedFor()));
+    }
+
     private void becomeFollower() {
         currentNode.setState(RaftNode.State.FOLLOWER);
-        currentNode.setVotedFor(null);
-        startElectionTimeout();
-        if (heartbeatTask != null) {
-            heartbeatTask.cancel(true);
+        electionTimer.reset();
+        leaseExpiresNanos = runtime.nanoTime();
+        leaderReady = null;
+        // 失去领导权，未提交的日志可能被新领导者覆盖，由客户端重试
+        completeCommitWaiters(Integer.MAX_VALUE, false);
+        if (configChange != null) {
+            configChange.complete(false);
+            configChange = null;
         }
     }
 
     private void becomeLeader() {
         currentNode.becomeLeader();
+        metrics.onLeaderElected();
 
-        List<LogEntry> log = logEntryRepo.query();
+        int nextIndex = logEntryRepo.lastIndex() + 1;
         // 初始化领导者状态
-        Map<String, PeerRaftNode> clusterNodes = peerRaftNodeRepo.query();
-        for (String nodeId : clusterNodes.keySet()) {
-            currentNode.getNextIndex().put(nodeId, log.size());
+        for (String nodeId : followerIds()) {
+            currentNode.getNextIndex().put(nodeId, nextIndex);
             currentNode.getMatchIndex().put(nodeId, -1);
+            ReplicationPipeline pipeline = pipeline(nodeId);
+            if (pipeline != null) {
+                pipeline.reset(nextIndex);
+            }
         }
 
-        startHeartbeat();
+        // 尚未记录过成员配置时，把当前地址簿固化为初始配置，此后地址簿的增减不再改变成员
+        if (configuration == null) {
+            appendConfig(ClusterConfig.of(nodes.keySet()));
+        }
+
+        // 下一个 tick 立即发出第一轮心跳
+        nextHeartbeatNanos = runtime.nanoTime();
+        runtime.getTickWheel().wakeup(this);
+        // 提交一条本任期的空日志，之前任期的日志随之提交，读请求才能使用 commitIndex
+        leaderReady = groupCommitter.submit(null);
     }
 
-    // 选举超时处理
-    private void startElectionTimeout() {
-        scheduler.schedule(() -> {
-            if (!currentNode.isLeader()) {
-                startElection();
+    // 选举超时：先预投票，确认能赢得多数后才增加任期正式选举，被隔离的节点不会推高集群任期
+    private void onElectionTimeout() {
+        RequestVoteCommand preVote;
+        lock.lock();
+        try {
+            // 学习者、已被移出的节点和状态机故障的节点不参与选举
+            if (currentNode.isLeader() || applyFailure != null || !getConfiguration().isVoter(currentNode.getNodeId())) {
+                return;
             }
+            preVote = new RequestVoteCommand(currentNode.getCurrentTerm() + 1, currentNode.getNodeId(),
+                    logEntryRepo.lastIndex(), logEntryRepo.lastTerm(), true);
+            metrics.onPreVote();
+        } finally {
+            lock.unlock();
+        }
+        requestVotes(preVote, () -> startElection(preVote.getTerm() - 1));
+    }
 
-        }, currentNode.getRandom().nextInt(RaftNode.ELECTION_TIMEOUT_MAX - RaftNode.ELECTION_TIMEOUT_MIN) + RaftNode.ELECTION_TIMEOUT_MIN, TimeUnit.MILLISECONDS);
+    private void startElection(int preVoteTerm) {
+        lock.lock();
+        try {
+            // 预投票期间任期已变化（收到新领导者或更高任期），放弃本轮
+            if (currentNode.isLeader() || currentNode.getCurrentTerm() != preVoteTerm) {
+                return;
+            }
+            currentNode.becomeCandidate();
+            saveHardState();
+            metrics.onElection();
+            electionTimer.reset();
+            int term = currentNode.getCurrentTerm();
+            RequestVoteCommand request = new RequestVoteCommand(term, currentNode.getNodeId(),
+                    logEntryRepo.lastIndex(), logEntryRepo.lastTerm(), false);
+            requestVotes(request, () -> onElectionWon(term));
+        } finally {
+            lock.unlock();
+        }
     }
 
-    private void resetElectionTimeout() {
-        startElectionTimeout();
+    private void onElectionWon(int term) {
+        lock.lock();
+        try {
+            if (currentNode.getState() == RaftNode.State.CANDIDATE && currentNode.getCurrentTerm() == term) {
+                becomeLeader();
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
-    private void startElection() {
-        //todo
-        // 省略选举具体实现...
+    // 向其它投票成员并发请求投票，获得多数票（含自己，联合配置下新旧配置各自多数）时回调一次
+    private void requestVotes(RequestVoteCommand request, Runnable onMajority) {
+        ClusterConfig config = getConfiguration();
+        Set<String> granted = ConcurrentHashMap.newKeySet();
+        granted.add(currentNode.getNodeId());
+        if (config.isQuorum(granted)) {
+            onMajority.run();
+            return;
+        }
+        AtomicBoolean won = new AtomicBoolean();
+        for (String peerId : followerIds()) {
+            ILogEntryService peer = nodes.get(peerId);
+            if (peer == null || !config.isVoter(peerId)) {
+                continue;
+            }
+            peer.requestVoteAsync(request).whenComplete((response, error) -> {
+                if (error != null) {
+                    System.err.println("向节点 " + peerId + " 请求投票失败: " + error.getMessage());
+                    return;
+                }
+                if (response.isVoteGranted()) {
+                    granted.add(peerId);
+                    if (config.isQuorum(granted) && won.compareAndSet(false, true)) {
+                        onMajority.run();
+                    }
+                } else {
+                    onHigherTerm(response.getTerm());
+                }
+            });
+        }
+    }
+
+    // 处理投票和预投票请求
+    @Override
+    public RequestVoteResponse handleRequestVote(RequestVoteCommand request) {
+        lock.lock();
+        try {
+            checkOpen();
+            int currentTerm = currentNode.getCurrentTerm();
+            boolean logUpToDate = request.getLastLogTerm() > logEntryRepo.lastTerm()
+                    || (request.getLastLogTerm() == logEntryRepo.lastTerm() && request.getLastLogIndex() >= logEntryRepo.lastIndex());
+            boolean leaderAlive = currentNode.isLeader() || runtime.nanoTime() - lastLeaderContactNanos < LEADER_STICKINESS_NANOS;
+
+            if (request.isPreVote()) {
+                // 预投票不改变本节点的任期和投票
+                boolean granted = request.getTerm() > currentTerm && logUpToDate && !leaderAlive;
+                return new RequestVoteResponse(currentTerm, granted);
+            }
+            if (request.getTerm() < currentTerm || leaderAlive) {
+                return new RequestVoteResponse(currentTerm, false);
+            }
+            if (request.getTerm() > currentTerm) {
+                stepDown(request.getTerm());
+            }
+
+            String votedFor = currentNode.getVotedFor();
+            if ((votedFor == null || votedFor.equals(request.getCandidateId())) && logUpToDate) {
+                if (votedFor == null) {
+                    currentNode.setVotedFor(request.getCandidateId());
+                    saveHardState();
+                }
+                electionTimer.reset();
+                return new RequestVoteResponse(currentNode.getCurrentTerm(), true);
+            }
+            return new RequestVoteResponse(currentNode.getCurrentTerm(), false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 进程内的节点直接互相调用时，请求在被调用节点运行时的执行器（虚拟线程或模拟驱动）上处理
+    @Override
+    public CompletableFuture<AppendEntriesResponse> appendEntriesAsync(AppendEntriesCommand request) {
+        return onRuntime(() -> handleAppendEntries(request));
+    }
+
+    @Override
+    public CompletableFuture<RequestVoteResponse> requestVoteAsync(RequestVoteCommand request) {
+        return onRuntime(() -> handleRequestVote(request));
+    }
+
+    @Override
+    public CompletableFuture<InstallSnapshotResponse> installSnapshotAsync(InstallSnapshotCommand request) {
+        return onRuntime(() -> handleInstallSnapshot(request));
+    }
+
+    private <T> CompletableFuture<T> onRuntime(Supplier<T> handler) {
+        try {
+            return CompletableFuture.supplyAsync(handler, runtime.getExecutor());
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e); // 运行时已关闭
+        }
+    }
+
+    // 提交索引领先应用索引的条数
+    long applyLag() {
+        return Math.max(0, currentNode.getCommitIndex() - getAppliedIndex());
+    }
+
+    // 从节点落后领导者的日志条数，非领导者为 0
+    long replicationLag(String followerId) {
+        if (closed || !currentNode.isLeader()) {
+            return 0;
+        }
+        Integer matchIndex = currentNode.getMatchIndex().get(followerId);
+        return Math.max(0, logEntryRepo.lastIndex() - (matchIndex == null ? -1 : matchIndex));
+    }
+
+    // 按日志中条目的平均大小估算落后的字节数，不遍历日志
+    long replicationLagBytes(String followerId) {
+        long lag = replicationLag(followerId);
+        long entries = logEntryRepo.lastIndex() - logEntryRepo.firstIndex() + 1;
+        if (lag == 0 || entries <= 0) {
+            return 0;
+        }
+        return logEntryRepo.byteSize() / entries * lag;
+    }
+
+    public RaftMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        return metrics.snapshot();
+    }
+
+    void setGroupId(String groupId) {
+        currentNode.setGroupId(groupId);
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Raft node closed: " + currentNode.getNodeId());
+        }
+    }
+
+    // 停止驱动本节点并释放线程，返回后不再访问日志仓储
+    @Override
+    public void close() {
+        List<CompletableFuture<Void>> waiters;
+        CompletableFuture<Boolean> ready;
+        lock.lock();
+        try {
+            closed = true;
+            // 与 becomeFollower 相同：在途的提交以 false 完成，等待应用和领导就绪的读请求以异常完成
+            completeCommitWaiters(Integer.MAX_VALUE, false);
+            if (configChange != null) {
+                configChange.complete(false);
+                configChange = null;
+            }
+            ready = leaderReady;
+            leaderReady = null;
+            waiters = new ArrayList<>(applyWaiters.values());
+            applyWaiters.clear();
+        } finally {
+            lock.unlock();
+        }
+        IllegalStateException error = new IllegalStateException("Raft node closed: " + currentNode.getNodeId());
+        for (CompletableFuture<Void> waiter : waiters) {
+            waiter.completeExceptionally(error);
+        }
+        if (ready != null) {
+            ready.completeExceptionally(error); // 已以 false 完成时无效果
+        }
+        runtime.getTickWheel().unregister(this);
+        groupCommitter.close();
+        applyStage.close();
+        if (ownsRuntime) {
+            runtime.close();
+        }
     }
 
     // 工具方法
@@ -304,10 +1182,13 @@ public class LogEntryService implements ILogEntryService {
 
         currentNode.printLog();
 
-        List<LogEntry> log = logEntryRepo.query();
-        for (int i = 0; i < log.size(); i++) {
-            LogEntry entry = log.get(i);
-            System.out.println("[" + i + "] 任期:" + entry.getTerm() + " 指令:" + entry.getCommand() + (entry.isCommitted() ? " [已提交]" : " [未提交]"));
+        int lastIndex = logEntryRepo.lastIndex();
+        if (logEntryRepo.firstIndex() > 0) {
+            System.out.println("[0-" + (logEntryRepo.firstIndex() - 1) + "] 已压缩进快照");
+        }
+        for (int i = logEntryRepo.firstIndex(); i <= lastIndex; i++) {
+            LogEntry entry = logEntryRepo.get(i);
+            System.out.println("[" + i + "] 任期:" + entry.getTerm() + " 指令:" + entry.getCommand() + (i <= currentNode.getCommitIndex() ? " [已提交]" : " [未提交]"));
         }
         System.out.println();
     }
@@ -0,0 +1,140 @@
+package com.tanggo.fund.raft.service.command.impl;
+
+import com.tanggo.fund.raft.config.ApplyOptions;
+import com.tanggo.fund.raft.config.ReplicationOptions;
+import com.tanggo.fund.raft.config.SnapshotOptions;
+import com.tanggo.fund.raft.inbound.RaftTcpServer;
+import com.tanggo.fund.raft.outbound.FileSnapshotRepo;
+import com.tanggo.fund.raft.outbound.SharedWal;
+import com.tanggo.fund.raft.service.ILogEntryService;
+import com.tanggo.fund.raft.service.StateMachine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Multi-Raft 宿主
+ * 一个 JVM 内承载大量 Raft 组，所有组共用：
+ * - 一个时间轮驱动选举超时和心跳，一个虚拟线程执行器处理异步任务
+ * - 到每个远程节点的一条连接，同一 tick 内各组发往该节点的心跳合并成一帧
+ * - 一个 SharedWal，各组的组提交合并成一次刷盘；从节点收到的一批请求中各组的追加也只刷一次盘
+ * 每个组的状态（任期、角色、提交索引等）仍由各自的 LogEntryService / RaftNode 维护
+ */
+public class MultiRaftHost implements Closeable {
+
+    private final String nodeId;
+    private final Path dataDir;
+    private final RaftRuntime runtime;
+    private final SharedWal wal;
+    private final Map<String, BinaryLogEntryService> peers = new HashMap<>();
+    private final Map<String, LogEntryService> groups = new ConcurrentHashMap<>();
+    private final ReplicationOptions replicationOptions;
+    private final SnapshotOptions snapshotOptions;
+    private final ApplyOptions applyOptions;
+    private RaftTcpServer server;
+
+    public MultiRaftHost(String nodeId, Map<String, InetSocketAddress> peerAddresses, Path dataDir) {
+        this(nodeId, peerAddresses, dataDir, new ReplicationOptions(), new SnapshotOptions(), new ApplyOptions());
+    }
+
+    public MultiRaftHost(String nodeId, Map<String, InetSocketAddress> peerAddresses, Path dataDir,
+                         ReplicationOptions replicationOptions, SnapshotOptions snapshotOptions, ApplyOptions applyOptions) {
+        this.nodeId = nodeId;
+        this.dataDir = dataDir;
+        this.replicationOptions = replicationOptions;
+        this.snapshotOptions = snapshotOptions;
+        this.applyOptions = applyOptions;
+        this.runtime = RaftRuntime.shared(nodeId);
+        this.wal = new SharedWal(dataDir.resolve("wal"));
+        for (Map.Entry<String, InetSocketAddress> peer : peerAddresses.entrySet()) {
+            if (peer.getKey().equals(nodeId)) {
+                continue;
+            }
+            BinaryLogEntryService connection = new BinaryLogEntryService(peer.getValue().getHostString(), peer.getValue().getPort());
+            connection.batchHeartbeats(runtime.getTickWheel());
+            peers.put(peer.getKey(), connection);
+        }
+    }
+
+    /**
+     * 创建本节点参与的一个 Raft 组，members 包含本节点
+     * 重启后用相同的 groupId 创建即可从共享 WAL 和快照恢复
+     */
+    public LogEntryService createGroup(String groupId, Collection<String> members, StateMachine stateMachine) {
+        if (groups.containsKey(groupId)) {
+            throw new IllegalArgumentException("Raft group already exists: " + groupId);
+        }
+        if (!members.contains(nodeId)) {
+            throw new IllegalArgumentException("Local node " + nodeId + " is not a member of group " + groupId);
+        }
+        Map<String, ILogEntryService> nodes = new ConcurrentHashMap<>();
+        for (String member : members) {
+            if (member.equals(nodeId)) {
+                continue;
+            }
+            BinaryLogEntryService peer = peers.get(member);
+            if (peer == null) {
+                throw new IllegalArgumentException("Unknown peer " + member + " in group " + groupId);
+            }
+            nodes.put(member, peer.forGroup(groupId));
+        }
+
+        LogEntryService group = new LogEntryService(nodeId, nodes, wal.open(groupId), replicationOptions,
+                new FileSnapshotRepo(dataDir.resolve("snapshots").resolve(groupId)), stateMachine,
+                snapshotOptions, applyOptions, runtime);
+        group.setGroupId(groupId);
+        nodes.put(nodeId, group);
+        groups.put(groupId, group);
+        return group;
+    }
+
+    /**
+     * 移除本节点上的一个组：停止该组，并从共享 WAL 中移除它的日志，旧段不再因它而保留
+     */
+    public void removeGroup(String groupId) {
+        LogEntryService group = groups.remove(groupId);
+        if (group == null) {
+            throw new IllegalArgumentException("Unknown raft group: " + groupId);
+        }
+        group.close();
+        wal.drop(groupId);
+    }
+
+    public LogEntryService group(String groupId) {
+        return groups.get(groupId);
+    }
+
+    /**
+     * 启动本节点的二进制 RPC 服务，按帧头中的组ID分发请求，一批请求共用一次 WAL 刷盘
+     */
+    public RaftTcpServer listen(int port) throws IOException {
+        server = new RaftTcpServer(groups::get, port, wal);
+        server.start();
+        return server;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+        for (LogEntryService group : groups.values()) {
+            group.close();
+        }
+        for (BinaryLogEntryService peer : peers.values()) {
+            peer.close();
+        }
+        runtime.close();
+        wal.close();
+    }
+}
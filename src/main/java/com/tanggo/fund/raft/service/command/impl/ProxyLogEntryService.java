@@ -6,17 +6,29 @@ import com.tanggo.fund.raft.outbound.RaftRpcClient;
 import com.tanggo.fund.raft.service.ILogEntryService;
 import com.tanggo.fund.raft.service.command.AppendEntriesCommand;
 import com.tanggo.fund.raft.service.command.AppendEntriesResponse;
+import com.tanggo.fund.raft.service.command.InstallSnapshotCommand;
+import com.tanggo.fund.raft.service.command.InstallSnapshotResponse;
+import com.tanggo.fund.raft.service.command.ReadMode;
+import com.tanggo.fund.raft.service.command.RequestVoteCommand;
+import com.tanggo.fund.raft.service.command.RequestVoteResponse;
 
 import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Raft 服务代理实现
  * 通过 JSON-RPC 远程调用其他 Raft 节点的服务
+ * 同步方法失败时返回失败响应；异步方法（领导者复制、候选者拉票）失败时以异常完成，由调用方重试
  */
 public class ProxyLogEntryService implements ILogEntryService {
 
+    // 阻塞的 HTTP 调用放在虚拟线程上，慢节点或分区的节点不会占满公共 ForkJoinPool
+    private static final ExecutorService RPC_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
     private final String rpcUrl;
     private final RaftRpcClient rpcClient;
 
@@ -26,14 +38,21 @@ public class ProxyLogEntryService implements ILogEntryService {
      * @param rpcUrl Raft 节点的 JSON-RPC 端点 URL (例如: http://localhost:8080/raft/rpc)
      */
     public ProxyLogEntryService(String rpcUrl) {
+        this(rpcUrl, createRpcClient(rpcUrl));
+    }
+
+    /**
+     * 使用给定的 RPC 客户端（如测试中直接调用 RaftRpcController 的客户端）
+     */
+    public ProxyLogEntryService(String rpcUrl, RaftRpcClient rpcClient) {
         this.rpcUrl = rpcUrl;
-        this.rpcClient = createRpcClient(rpcUrl);
+        this.rpcClient = rpcClient;
     }
 
     /**
      * 创建 RPC 客户端
      */
-    private RaftRpcClient createRpcClient(String rpcUrl) {
+    private static RaftRpcClient createRpcClient(String rpcUrl) {
         try {
             URL url = new URL(rpcUrl);
             Map<String, String> headers = new HashMap<>();
@@ -42,7 +61,7 @@ public class ProxyLogEntryService implements ILogEntryService {
             JsonRpcHttpClient httpClient = new JsonRpcHttpClient(url, headers);
 
             return ProxyUtil.createClientProxy(
-                    getClass().getClassLoader(),
+                    ProxyLogEntryService.class.getClassLoader(),
                     RaftRpcClient.class,
                     httpClient
             );
@@ -66,6 +85,14 @@ public class ProxyLogEntryService implements ILogEntryService {
         }
     }
 
+    /**
+     * 线性一致读 - 通过 JSON-RPC 远程调用，远端不是领导者或确认失败时以异常完成
+     */
+    @Override
+    public CompletableFuture<String> read(String query, ReadMode mode) {
+        return CompletableFuture.supplyAsync(() -> rpcClient.read(query, mode), RPC_EXECUTOR);
+    }
+
     /**
      * 处理追加日志请求 - 通过 JSON-RPC 远程调用
      * @param request 追加日志请求
@@ -74,7 +101,7 @@ public class ProxyLogEntryService implements ILogEntryService {
     @Override
     public AppendEntriesResponse handleAppendEntries(AppendEntriesCommand request) {
         try {
-            return rpcClient.handleAppendEntries(request);
+            return appendEntries(request);
         } catch (Exception e) {
             System.err.println("远程调用 handleAppendEntries 失败: " + e.getMessage());
             // 返回失败响应
@@ -82,6 +109,76 @@ public class ProxyLogEntryService implements ILogEntryService {
         }
     }
 
+    @Override
+    public CompletableFuture<AppendEntriesResponse> appendEntriesAsync(AppendEntriesCommand request) {
+        return CompletableFuture.supplyAsync(() -> appendEntries(request), RPC_EXECUTOR);
+    }
+
+    private AppendEntriesResponse appendEntries(AppendEntriesCommand request) {
+        Map<String, Object> result = rpcClient.handleAppendEntries(request);
+        return new AppendEntriesResponse(
+                intValue(result, "term"),
+                Boolean.TRUE.equals(result.get("success")),
+                intValue(result, "matchIndex"),
+                intValue(result, "conflictTerm"),
+                intValue(result, "conflictIndex"));
+    }
+
+    /**
+     * 处理投票和预投票请求 - 通过 JSON-RPC 远程调用
+     */
+    @Override
+    public RequestVoteResponse handleRequestVote(RequestVoteCommand request) {
+        try {
+            return requestVote(request);
+        } catch (Exception e) {
+            System.err.println("远程调用 handleRequestVote 失败: " + e.getMessage());
+            return new RequestVoteResponse(0, false);
+        }
+    }
+
+    @Override
+    public CompletableFuture<RequestVoteResponse> requestVoteAsync(RequestVoteCommand request) {
+        return CompletableFuture.supplyAsync(() -> requestVote(request), RPC_EXECUTOR);
+    }
+
+    private RequestVoteResponse requestVote(RequestVoteCommand request) {
+        Map<String, Object> result = rpcClient.handleRequestVote(request);
+        return new RequestVoteResponse(intValue(result, "term"), Boolean.TRUE.equals(result.get("voteGranted")));
+    }
+
+    /**
+     * 处理安装快照分片 - 通过 JSON-RPC 远程调用
+     */
+    @Override
+    public InstallSnapshotResponse handleInstallSnapshot(InstallSnapshotCommand request) {
+        try {
+            return installSnapshot(request);
+        } catch (Exception e) {
+            System.err.println("远程调用 handleInstallSnapshot 失败: " + e.getMessage());
+            return new InstallSnapshotResponse(0, false);
+        }
+    }
+
+    @Override
+    public CompletableFuture<InstallSnapshotResponse> installSnapshotAsync(InstallSnapshotCommand request) {
+        return CompletableFuture.supplyAsync(() -> installSnapshot(request), RPC_EXECUTOR);
+    }
+
+    private InstallSnapshotResponse installSnapshot(InstallSnapshotCommand request) {
+        Map<String, Object> result = rpcClient.handleInstallSnapshot(request);
+        return new InstallSnapshotResponse(intValue(result, "term"), Boolean.TRUE.equals(result.get("success")));
+    }
+
+    // JSON 数字按 Integer/Long 等类型反序列化
+    private static int intValue(Map<String, Object> result, String field) {
+        Object value = result.get(field);
+        if (!(value instanceof Number number)) {
+            throw new IllegalStateException("Missing field in Raft RPC response: " + field);
+        }
+        return number.intValue();
+    }
+
     /**
      * 打印日志 - 通过 JSON-RPC 远程调用
      */
@@ -0,0 +1,223 @@
+package com.tanggo.fund.raft.service.command.impl;
+
+import com.tanggo.fund.raft.outbound.RaftCodec;
+import com.tanggo.fund.raft.service.command.AppendEntriesCommand;
+import com.tanggo.fund.raft.service.command.AppendEntriesResponse;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 到一个远程节点的持久 TCP 连接
+ * 多个请求（Multi-Raft 时多个组）共用连接，按请求ID匹配响应；开启批量心跳后，各组的心跳先排队，由 flushHeartbeats 合并成一帧发出
+ * 调用方多为虚拟线程，连接和写出都用 ReentrantLock 而不是对象监视器，阻塞时不占用载体线程；
+ * 建连有超时，失败后在退避期内直接失败，节点不可达时不会让每个调用方都等待系统的连接超时
+ */
+class RaftConnection {
+    private static final long RPC_TIMEOUT_MS = 3000;
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+    private static final long RECONNECT_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private final InetSocketAddress address;
+    private final AtomicLong requestIds = new AtomicLong();
+    private final Map<Long, CompletableFuture<ByteBuffer>> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock connectLock = new ReentrantLock(); // 保护 channel 的建立和替换
+    private final Queue<QueuedHeartbeat> heartbeats = new ConcurrentLinkedQueue<>();
+    private volatile boolean batchHeartbeats;
+    private SocketChannel channel;
+    private long reconnectAtNanos; // 上次建连失败后，此时刻之前不再尝试
+
+    RaftConnection(InetSocketAddress address) {
+        this.address = address;
+    }
+
+    long nextId() {
+        return requestIds.incrementAndGet();
+    }
+
+    // 发送一帧，返回的 future 以响应消息体完成
+    CompletableFuture<ByteBuffer> call(long id, ByteBuffer... frame) {
+        CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+        pending.put(id, future);
+        SocketChannel ch = null;
+        try {
+            ch = connect();
+            writeLock.lock();
+            try {
+                RaftCodec.writeFully(ch, frame);
+            } finally {
+                writeLock.unlock();
+            }
+        } catch (IOException e) {
+            pending.remove(id);
+            future.completeExceptionally(e);
+            if (ch != null) {
+                disconnect(ch, e);
+            }
+            return future;
+        }
+        return future.orTimeout(RPC_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .whenComplete((body, error) -> pending.remove(id));
+    }
+
+    void setBatchHeartbeats(boolean batchHeartbeats) {
+        this.batchHeartbeats = batchHeartbeats;
+    }
+
+    boolean isBatchHeartbeats() {
+        return batchHeartbeats;
+    }
+
+    // 心跳排队，等待下一次 flushHeartbeats
+    CompletableFuture<AppendEntriesResponse> queueHeartbeat(String groupId, AppendEntriesCommand heartbeat) {
+        QueuedHeartbeat queued = new QueuedHeartbeat(groupId, heartbeat);
+        heartbeats.add(queued);
+        return queued.future;
+    }
+
+    /**
+     * 把排队的心跳合并成一个 HEARTBEAT_BATCH 帧发出，响应按顺序分发给各组
+     */
+    void flushHeartbeats() {
+        if (heartbeats.isEmpty()) {
+            return;
+        }
+        List<QueuedHeartbeat> batch = new ArrayList<>();
+        QueuedHeartbeat queued;
+        while ((queued = heartbeats.poll()) != null) {
+            batch.add(queued);
+        }
+        List<String> groupIds = new ArrayList<>(batch.size());
+        List<AppendEntriesCommand> commands = new ArrayList<>(batch.size());
+        for (QueuedHeartbeat heartbeat : batch) {
+            groupIds.add(heartbeat.groupId);
+            commands.add(heartbeat.command);
+        }
+        long id = nextId();
+        call(id, RaftCodec.encodeHeartbeatBatch(id, groupIds, commands)).whenComplete((body, error) -> {
+            if (error != null) {
+                for (QueuedHeartbeat heartbeat : batch) {
+                    heartbeat.future.completeExceptionally(error);
+                }
+                return;
+            }
+            List<AppendEntriesResponse> responses = RaftCodec.decodeHeartbeatBatchResponse(body);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(i < responses.size() ? responses.get(i) : null);
+            }
+        });
+    }
+
+    // 建立连接（断开后下次调用自动重连），每条连接一个读线程
+    private SocketChannel connect() throws IOException {
+        connectLock.lock();
+        try {
+            if (channel != null && channel.isOpen()) {
+                return channel;
+            }
+            if (System.nanoTime() - reconnectAtNanos < 0) {
+                throw new ConnectException("Raft peer unreachable, retrying later: " + address);
+            }
+            SocketChannel ch = SocketChannel.open();
+            try {
+                ch.socket().connect(address, CONNECT_TIMEOUT_MS);
+                ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            } catch (IOException e) {
+                ch.close();
+                reconnectAtNanos = System.nanoTime() + RECONNECT_BACKOFF_NANOS;
+                throw e;
+            }
+            channel = ch;
+            Thread.ofVirtual().name("raft-rpc-reader-" + address).start(() -> readLoop(ch));
+            return ch;
+        } finally {
+            connectLock.unlock();
+        }
+    }
+
+    private void readLoop(SocketChannel ch) {
+        try {
+            ByteBuffer frame;
+            while ((frame = RaftCodec.readFrame(ch)) != null) {
+                long id = frame.getLong();
+                byte type = frame.get();
+                CompletableFuture<ByteBuffer> future = pending.remove(id);
+                if (future == null) {
+                    continue; // 已超时
+                }
+                if (type == RaftCodec.ERROR) {
+                    future.completeExceptionally(new IOException(RaftCodec.getString(frame)));
+                } else {
+                    future.complete(frame);
+                }
+            }
+            disconnect(ch, new IOException("Connection closed by " + address));
+        } catch (IOException e) {
+            disconnect(ch, e);
+        }
+    }
+
+    // 关闭连接并让所有在途请求失败
+    private void disconnect(SocketChannel ch, Exception cause) {
+        connectLock.lock();
+        try {
+            if (ch != channel) {
+                return; // 旧连接，已被替换
+            }
+            try {
+                ch.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        } finally {
+            connectLock.unlock();
+        }
+        for (Long id : pending.keySet()) {
+            CompletableFuture<ByteBuffer> future = pending.remove(id);
+            if (future != null) {
+                future.completeExceptionally(cause);
+            }
+        }
+    }
+
+    void close() {
+        connectLock.lock();
+        try {
+            if (channel != null) {
+                disconnect(channel, new IOException("Client closed"));
+            }
+        } finally {
+            connectLock.unlock();
+        }
+    }
+
+    InetSocketAddress getAddress() {
+        return address;
+    }
+
+    private static final class QueuedHeartbeat {
+        final String groupId;
+        final AppendEntriesCommand command;
+        final CompletableFuture<AppendEntriesResponse> future = new CompletableFuture<>();
+
+        QueuedHeartbeat(String groupId, AppendEntriesCommand command) {
+            this.groupId = groupId;
+            this.command = command;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.tanggo.fund.raft.service.command.impl;
+
+import com.tanggo.fund.raft.domain.RaftNode;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Raft 节点指标
+ * 延迟和批大小写入 HdrHistogram Recorder（写入无锁），读取时合并进累计分布；计数使用 LongAdder
+ * 复制滞后和应用滞后在读取时由节点状态计算，热路径上没有额外开销
+ * bindTo 注册到 Micrometer，snapshot 供 /raft/rpc/metrics 端点读取
+ */
+public class RaftMetrics implements MeterBinder {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_KEYS = {"p50", "p90", "p99", "p999"};
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double NANOS_PER_MICRO = 1e3;
+
+    private final LogEntryService service;
+    private final RaftNode node;
+    private final LongSupplier clock; // 计时时钟，模拟运行时为虚拟时钟
+    private final Distribution commitLatency = new Distribution();  // 提交延迟(ns)：命令入队到多数节点复制
+    private final Distribution appendRtt = new Distribution();      // AppendEntries 往返时间(ns)，含心跳
+    private final Distribution fsyncLatency = new Distribution();   // 日志刷盘耗时(ns)
+    private final Distribution batchSize = new Distribution();      // 组提交每批命令数
+    private final LongAdder preVotes = new LongAdder();
+    private final LongAdder elections = new LongAdder();
+    private final LongAdder leaderships = new LongAdder();
+    private final Set<String> followers = ConcurrentHashMap.newKeySet();
+    private final List<MeterRegistry> registries = new CopyOnWriteArrayList<>();
+
+    RaftMetrics(LogEntryService service, RaftNode node) {
+        this(service, node, System::nanoTime);
+    }
+
+    RaftMetrics(LogEntryService service, RaftNode node, LongSupplier clock) {
+        this.service = service;
+        this.node = node;
+        this.clock = clock;
+    }
+
+    long nanoTime() {
+        return clock.getAsLong();
+    }
+
+    void recordCommitLatency(long nanos) {
+        commitLatency.record(nanos);
+    }
+
+    void recordAppendRtt(long nanos) {
+        appendRtt.record(nanos);
+    }
+
+    void recordFsync(long nanos) {
+        fsyncLatency.record(nanos);
+    }
+
+    void recordBatchSize(int size) {
+        batchSize.record(size);
+    }
+
+    void onPreVote() {
+        preVotes.increment();
+    }
+
+    void onElection() {
+        elections.increment();
+    }
+
+    void onLeaderElected() {
+        leaderships.increment();
+    }
+
+    // 新的从节点出现时注册其复制滞后指标
+    void onFollower(String followerId) {
+        if (followers.add(followerId)) {
+            for (MeterRegistry registry : registries) {
+                bindFollower(registry, followerId);
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Tags tags = tags();
+        bindDistribution(registry, "raft.commit.latency", "seconds", commitLatency, 1 / NANOS_PER_SECOND, tags);
+        bindDistribution(registry, "raft.append.rtt", "seconds", appendRtt, 1 / NANOS_PER_SECOND, tags);
+        bindDistribution(registry, "raft.fsync.latency", "seconds", fsyncLatency, 1 / NANOS_PER_SECOND, tags);
+        bindDistribution(registry, "raft.commit.batch.size", "entries", batchSize, 1, tags);
+        FunctionCounter.builder("raft.elections", preVotes, LongAdder::doubleValue)
+                .tags(tags).tag("phase", "pre_vote").register(registry);
+        FunctionCounter.builder("raft.elections", elections, LongAdder::doubleValue)
+                .tags(tags).tag("phase", "election").register(registry);
+        FunctionCounter.builder("raft.elections", leaderships, LongAdder::doubleValue)
+                .tags(tags).tag("phase", "won").register(registry);
+        Gauge.builder("raft.commit.index", node, RaftNode::getCommitIndex).tags(tags).register(registry);
+        Gauge.builder("raft.applied.index", service, LogEntryService::getAppliedIndex).tags(tags).register(registry);
+        Gauge.builder("raft.apply.lag", service, LogEntryService::applyLag).tags(tags).baseUnit("entries").register(registry);
+        registries.add(registry);
+        for (String followerId : followers) {
+            bindFollower(registry, followerId);
+        }
+    }
+
+    private void bindFollower(MeterRegistry registry, String followerId) {
+        Tags tags = tags().and("follower", followerId);
+        Gauge.builder("raft.replication.lag", service, s -> s.replicationLag(followerId))
+                .tags(tags).baseUnit("entries").register(registry);
+        Gauge.builder("raft.replication.lag.bytes", service, s -> s.replicationLagBytes(followerId))
+                .tags(tags).baseUnit("bytes").register(registry);
+    }
+
+    // 百分位以 quantile 标签的 Gauge 发布，另有总数和最大值
+    private static void bindDistribution(MeterRegistry registry, String name, String unit, Distribution distribution,
+                                         double scale, Tags tags) {
+        for (double quantile : QUANTILES) {
+            Gauge.builder(name, distribution, d -> d.valueAt(quantile) * scale)
+                    .tags(tags).tag("quantile", Double.toString(quantile)).baseUnit(unit).register(registry);
+        }
+        Gauge.builder(name + ".max", distribution, d -> d.max() * scale).tags(tags).baseUnit(unit).register(registry);
+        FunctionCounter.builder(name + ".count", distribution, Distribution::count).tags(tags).register(registry);
+    }
+
+    private Tags tags() {
+        String groupId = node.getGroupId();
+        Tags tags = Tags.of("node", node.getNodeId());
+        return groupId == null ? tags : tags.and("group", groupId);
+    }
+
+    /**
+     * 当前指标快照，延迟单位为微秒
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("node", node.getNodeId());
+        if (node.getGroupId() != null) {
+            result.put("group", node.getGroupId());
+        }
+        result.put("role", node.getState().name());
+        result.put("term", node.getCurrentTerm());
+        result.put("commitIndex", node.getCommitIndex());
+        result.put("appliedIndex", service.getAppliedIndex());
+        result.put("applyLag", service.applyLag());
+        result.put("commitLatencyMicros", commitLatency.summary(1 / NANOS_PER_MICRO));
+        result.put("appendRttMicros", appendRtt.summary(1 / NANOS_PER_MICRO));
+        result.put("fsyncLatencyMicros", fsyncLatency.summary(1 / NANOS_PER_MICRO));
+        result.put("commitBatchSize", batchSize.summary(1));
+        Map<String, Object> electionCounts = new LinkedHashMap<>();
+        electionCounts.put("preVote", preVotes.sum());
+        electionCounts.put("election", elections.sum());
+        electionCounts.put("won", leaderships.sum());
+        result.put("elections", electionCounts);
+        Map<String, Object> replication = new LinkedHashMap<>();
+        for (String followerId : followers) {
+            Map<String, Object> lag = new LinkedHashMap<>();
+            lag.put("entries", service.replicationLag(followerId));
+            lag.put("bytes", service.replicationLagBytes(followerId));
+            replication.put(followerId, lag);
+        }
+        result.put("replicationLag", replication);
+        return result;
+    }
+
+    // 写入端无锁的直方图，读取时把区间样本合并进累计分布
+    static final class Distribution {
+        private final Recorder recorder = new Recorder(2);
+        private final Histogram interval = new Histogram(2);
+        private final Histogram total = new Histogram(2);
+
+        void record(long value) {
+            recorder.recordValue(Math.max(0, value));
+        }
+
+        private Histogram merged() {
+            recorder.getIntervalHistogramInto(interval);
+            total.add(interval);
+            return total;
+        }
+
+        synchronized double valueAt(double quantile) {
+            return merged().getValueAtPercentile(quantile * 100);
+        }
+
+        synchronized double max() {
+            return merged().getMaxValue();
+        }
+
+        synchronized double count() {
+            return merged().getTotalCount();
+        }
+
+        synchronized Map<String, Object> summary(double scale) {
+            Histogram histogram = merged();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("count", histogram.getTotalCount());
+            result.put("mean", histogram.getMean() * scale);
+            for (int i = 0; i < QUANTILES.length; i++) {
+                result.put(QUANTILE_KEYS[i], histogram.getValueAtPercentile(QUANTILES[i] * 100) * scale);
+            }
+            result.put("max", histogram.getMaxValue() * scale);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.tanggo.fund.raft.service.command.impl;
+
+import com.tanggo.fund.raft.domain.RaftNode;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raft 运行时资源：时间轮、异步任务执行器、工作线程、时钟和随机数
+ * 单组部署时每个 LogEntryService 独占一份；Multi-Raft 时由 MultiRaftHost 创建一份供所有组共享
+ * 确定性模拟时由 Driver 提供虚拟时钟和事件队列，不创建任何线程
+ */
+public class RaftRuntime implements Closeable {
+    public static final long TICK_MILLIS = 10;
+    private static final long CLOSE_TIMEOUT_MILLIS = 3000;
+
+    /**
+     * 模拟运行时的驱动方：虚拟时钟、可复现的随机数和单线程事件队列
+     */
+    public interface Driver {
+        long nanoTime();
+
+        // [origin, bound) 内的随机数
+        int nextInt(int origin, int bound);
+
+        // 排入事件队列，在当前虚拟时刻之后由驱动线程执行
+        void execute(Runnable task);
+    }
+
+    private final TickWheel tickWheel;
+    private final ExecutorService executor;
+    private final boolean virtualWorkers;
+    private final Driver driver;
+
+    private RaftRuntime(TickWheel tickWheel, ExecutorService executor, boolean virtualWorkers, Driver driver) {
+        this.tickWheel = tickWheel;
+        this.executor = executor;
+        this.virtualWorkers = virtualWorkers;
+        this.driver = driver;
+    }
+
+    /**
+     * 单组运行时：时间轮跑在虚拟线程上，组提交和应用使用平台线程
+     */
+    public static RaftRuntime standalone(String name) {
+        return new RaftRuntime(new TickWheel(Thread.ofVirtual().name("raft-tick-" + name), TICK_MILLIS),
+                Executors.newVirtualThreadPerTaskExecutor(), false, null);
+    }
+
+    /**
+     * 多组共享运行时：一个平台线程驱动时间轮，各组的组提交和应用线程都是虚拟线程
+     */
+    public static RaftRuntime shared(String name) {
+        return new RaftRuntime(new TickWheel(Thread.ofPlatform().daemon().name("raft-tick-" + name), TICK_MILLIS),
+                Executors.newVirtualThreadPerTaskExecutor(), true, null);
+    }
+
+    /**
+     * 模拟运行时：时间轮由驱动方调用 TickWheel.advance 推进，异步任务、组提交和应用都排入驱动方的事件队列
+     */
+    public static RaftRuntime simulated(Driver driver) {
+        return new RaftRuntime(new TickWheel(TICK_MILLIS), new DriverExecutor(driver), false, driver);
+    }
+
+    public TickWheel getTickWheel() {
+        return tickWheel;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    // 组提交、应用等常驻工作线程，模拟运行时不创建
+    Thread.Builder workerThread(String name) {
+        return virtualWorkers ? Thread.ofVirtual().name(name) : Thread.ofPlatform().daemon().name(name);
+    }
+
+    boolean isSimulated() {
+        return driver != null;
+    }
+
+    long nanoTime() {
+        return driver != null ? driver.nanoTime() : System.nanoTime();
+    }
+
+    // 随机选举超时(ms)
+    int electionTimeoutMillis() {
+        return driver != null
+                ? driver.nextInt(RaftNode.ELECTION_TIMEOUT_MIN, RaftNode.ELECTION_TIMEOUT_MAX)
+                : ThreadLocalRandom.current().nextInt(RaftNode.ELECTION_TIMEOUT_MIN, RaftNode.ELECTION_TIMEOUT_MAX);
+    }
+
+    // 停止时间轮并等待在途任务结束，之后才能安全关闭日志仓储
+    @Override
+    public void close() {
+        tickWheel.close();
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 把任务转交给驱动方事件队列的执行器
+    private static final class DriverExecutor extends AbstractExecutorService {
+        private final Driver driver;
+        private volatile boolean shutdown;
+
+        DriverExecutor(Driver driver) {
+            this.driver = driver;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (shutdown) {
+                throw new RejectedExecutionException("Raft runtime closed");
+            }
+            driver.execute(command);
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
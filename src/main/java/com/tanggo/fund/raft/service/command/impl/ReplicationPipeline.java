@@ -0,0 +1,339 @@
+package com.tanggo.fund.raft.service.command.impl;
+
+import com.tanggo.fund.raft.config.ReplicationOptions;
+import com.tanggo.fund.raft.config.SnapshotOptions;
+import com.tanggo.fund.raft.domain.LogEntry;
+import com.tanggo.fund.raft.domain.RaftNode;
+import com.tanggo.fund.raft.domain.Snapshot;
+import com.tanggo.fund.raft.outbound.LogEntryRepo;
+import com.tanggo.fund.raft.outbound.SnapshotRepo;
+import com.tanggo.fund.raft.service.ILogEntryService;
+import com.tanggo.fund.raft.service.command.AppendEntriesCommand;
+import com.tanggo.fund.raft.service.command.AppendEntriesResponse;
+import com.tanggo.fund.raft.service.command.InstallSnapshotCommand;
+import com.tanggo.fund.raft.service.command.InstallSnapshotResponse;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 单个从节点的日志复制流水线
+ *
+ * 不等待响应即可连续发送多个 AppendEntries（受请求数和字节窗口限制），
+ * nextIndex 乐观前移；被拒绝或发送失败时回退 nextIndex 并丢弃在途请求
+ * nextIndex 已被压缩进快照时，改为按分片顺序发送 InstallSnapshot，完成后从快照之后继续复制
+ * 被拒绝时按从节点返回的冲突任期提示整段回退；落后较多时进入追赶模式，用更大的批次和字节窗口批量传输段文件字节
+ */
+class ReplicationPipeline {
+
+    // 领导者侧回调，在流水线锁之外调用，避免与 LogEntryService 锁形成环
+    interface Listener {
+        void onMatchIndexAdvanced(String followerId, int matchIndex);
+
+        void onHigherTerm(int term);
+    }
+
+    private static final int ENTRY_OVERHEAD = 16; // 日志条目固定字段的估算字节数
+
+    private final String followerId;
+    private final ILogEntryService follower;
+    private final RaftNode currentNode;
+    private final LogEntryRepo logEntryRepo;
+    private final ReplicationOptions options;
+    private final SnapshotRepo snapshotRepo;
+    private final SnapshotOptions snapshotOptions;
+    private final RaftMetrics metrics;
+    private final Listener listener;
+
+    private final Deque<Inflight> inflight = new ArrayDeque<>();
+    private long inflightBytes;
+    private int nextIndex;
+    private int matchIndex = -1;
+    private long epoch; // 每次回退递增，用于识别过期响应
+    private boolean snapshotting; // 正在传输快照，期间不发送 AppendEntries
+    private boolean probing = true; // 从节点日志与 nextIndex 是否衔接尚未确认
+
+    ReplicationPipeline(String followerId, ILogEntryService follower, RaftNode currentNode,
+                        LogEntryRepo logEntryRepo, ReplicationOptions options,
+                        SnapshotRepo snapshotRepo, SnapshotOptions snapshotOptions, RaftMetrics metrics, Listener listener) {
+        this.followerId = followerId;
+        this.follower = follower;
+        this.currentNode = currentNode;
+        this.logEntryRepo = logEntryRepo;
+        this.options = options;
+        this.snapshotRepo = snapshotRepo;
+        this.snapshotOptions = snapshotOptions;
+        this.metrics = metrics;
+        this.listener = listener;
+    }
+
+    /**
+     * 成为领导者时重置复制进度
+     */
+    synchronized void reset(int nextIndex) {
+        rollback(nextIndex);
+        this.matchIndex = -1;
+    }
+
+    /**
+     * 在窗口允许的范围内尽可能多地发送日志
+     */
+    void pump() {
+        while (true) {
+            Inflight sent;
+            AppendEntriesCommand request;
+            Snapshot snapshot = null;
+            long snapshotEpoch = 0;
+            synchronized (this) {
+                if (!currentNode.isLeader() || snapshotting) {
+                    return;
+                }
+                if (nextIndex < logEntryRepo.firstIndex()) {
+                    // 所需日志已被压缩，改发快照
+                    snapshot = snapshotRepo.load();
+                    if (snapshot == null) {
+                        return;
+                    }
+                    snapshotting = true;
+                    snapshotEpoch = epoch;
+                }
+            }
+            if (snapshot != null) {
+                System.out.println("节点 " + followerId + " 落后于快照，开始发送快照(索引: " + snapshot.getLastIncludedIndex() + ", " + snapshot.getData().length + " 字节)");
+                sendSnapshotChunk(snapshot, 0, snapshotEpoch);
+                return;
+            }
+            synchronized (this) {
+                int lastIndex = logEntryRepo.lastIndex();
+                boolean catchingUp = lastIndex - nextIndex >= options.getCatchUpThreshold();
+                long maxInflightBytes = catchingUp ? options.getCatchUpInflightBytes() : options.getMaxInflightBytes();
+                if (!currentNode.isLeader() || snapshotting || nextIndex < logEntryRepo.firstIndex() || nextIndex > lastIndex
+                        || inflight.size() >= options.getMaxInflightRequests()
+                        || inflightBytes >= maxInflightBytes) {
+                    return;
+                }
+                // 探测阶段只发一个请求，避免被拒绝时流水线上的批次全部作废
+                if (probing && !inflight.isEmpty()) {
+                    return;
+                }
+
+                int batchEntries = catchingUp ? options.getCatchUpBatchEntries() : options.getMaxBatchEntries();
+                int toIndex = Math.min(lastIndex + 1, nextIndex + batchEntries);
+                List<LogEntry> entries = logEntryRepo.slice(nextIndex, toIndex);
+                if (entries.isEmpty()) {
+                    return;
+                }
+                long bytes = trimToByteWindow(entries, maxInflightBytes);
+
+                int prevLogIndex = nextIndex - 1;
+                request = new AppendEntriesCommand(currentNode.getCurrentTerm(), prevLogIndex,
+                        logEntryRepo.getTerm(prevLogIndex), entries, currentNode.getCommitIndex());
+                // 段文件原始字节，二进制传输时零拷贝写出
+                request.setEncodedEntries(logEntryRepo.readRaw(nextIndex, nextIndex + entries.size()));
+
+                sent = new Inflight(nextIndex, entries.size(), bytes, epoch, metrics.nanoTime());
+                inflight.addLast(sent);
+                inflightBytes += bytes;
+                nextIndex += entries.size();
+                currentNode.getNextIndex().put(followerId, nextIndex);
+            }
+
+            follower.appendEntriesAsync(request).whenComplete((response, error) -> onResponse(sent, response, error));
+            synchronized (this) {
+                if (sent.epoch != epoch) {
+                    // 响应已同步到达并回退（如连接处于重连退避期时立即失败），本轮不再重发，由下一次心跳触发重试
+                    return;
+                }
+            }
+        }
+    }
+
+    // 按剩余字节窗口截断本批日志（至少保留一条），返回本批字节数
+    private long trimToByteWindow(List<LogEntry> entries, long maxInflightBytes) {
+        long budget = maxInflightBytes - inflightBytes;
+        long bytes = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            long size = estimateSize(entries.get(i));
+            if (i > 0 && bytes + size > budget) {
+                entries.subList(i, entries.size()).clear();
+                break;
+            }
+            bytes += size;
+        }
+        return bytes;
+    }
+
+    private static long estimateSize(LogEntry entry) {
+        return ENTRY_OVERHEAD + entry.getPayload().length;
+    }
+
+    private void onResponse(Inflight sent, AppendEntriesResponse response, Throwable error) {
+        if (response != null) {
+            metrics.recordAppendRtt(metrics.nanoTime() - sent.sentNanos);
+        }
+        int advancedTo = -1;
+        int higherTerm = -1;
+        String failure = null;
+        synchronized (this) {
+            if (sent.epoch != epoch) {
+                return; // 回退之前发出的请求，结果已无意义
+            }
+            inflight.remove(sent);
+            inflightBytes -= sent.bytes;
+
+            if (error != null || response == null) {
+                rollback(sent.startIndex);
+                failure = error != null ? error.getMessage() : "空响应";
+            } else if (response.getTerm() > currentNode.getCurrentTerm()) {
+                higherTerm = response.getTerm();
+                rollback(sent.startIndex);
+            } else if (response.isSuccess()) {
+                probing = false;
+                int newMatchIndex = sent.startIndex + sent.count - 1;
+                if (newMatchIndex > matchIndex) {
+                    matchIndex = newMatchIndex;
+                    currentNode.getMatchIndex().put(followerId, matchIndex);
+                    advancedTo = matchIndex;
+                }
+            } else {
+                rollback(Math.max(nextIndexAfterReject(sent, response), 0));
+            }
+        }
+
+        if (failure != null) {
+            // 在锁外打印，避免持锁等待输出流
+            System.err.println("向节点 " + followerId + " 发送日志失败: " + failure);
+            return; // 由下一次心跳触发重试
+        }
+        if (higherTerm >= 0) {
+            listener.onHigherTerm(higherTerm);
+            return;
+        }
+        if (advancedTo >= 0) {
+            listener.onMatchIndexAdvanced(followerId, advancedTo);
+        }
+        pump();
+    }
+
+    /**
+     * 被拒绝后的下一个发送位置
+     * 从节点日志过短时跳到其末尾之后；任期冲突时，领导者有该任期的日志则从其最后一条之后发送，
+     * 否则跳过从节点上整个冲突任期，每个冲突任期只需一次往返
+     */
+    private int nextIndexAfterReject(Inflight sent, AppendEntriesResponse response) {
+        int prevLogIndex = sent.startIndex - 1;
+        int target;
+        if (response.getConflictIndex() < 0) {
+            // 未带提示的旧节点：回退一步，或跳到其日志末尾
+            target = response.getMatchIndex() >= 0 ? response.getMatchIndex() + 1 : prevLogIndex;
+        } else if (response.getConflictTerm() < 0) {
+            target = response.getConflictIndex();
+        } else {
+            int last = logEntryRepo.lastIndexOfTerm(response.getConflictTerm(), prevLogIndex);
+            target = last >= 0 ? last + 1 : response.getConflictIndex();
+        }
+        return Math.min(target, prevLogIndex);
+    }
+
+    // 发送 offset 处的快照分片，收到成功响应后再发下一片
+    private void sendSnapshotChunk(Snapshot snapshot, int offset, long snapshotEpoch) {
+        byte[] data = snapshot.getData();
+        int end = Math.min(data.length, offset + snapshotOptions.getChunkSize());
+        InstallSnapshotCommand request = new InstallSnapshotCommand(currentNode.getCurrentTerm(), currentNode.getNodeId(),
+                snapshot.getLastIncludedIndex(), snapshot.getLastIncludedTerm(), offset,
+                Arrays.copyOfRange(data, offset, end), end == data.length);
+        if (request.isDone() && snapshot.getConfig() != null) {
+            request.setConfig(snapshot.getConfig().toCommand());
+        }
+        follower.installSnapshotAsync(request)
+                .whenComplete((response, error) -> onSnapshotResponse(snapshot, end, snapshotEpoch, response, error));
+    }
+
+    private void onSnapshotResponse(Snapshot snapshot, int end, long snapshotEpoch,
+                                    InstallSnapshotResponse response, Throwable error) {
+        int advancedTo = -1;
+        int higherTerm = -1;
+        synchronized (this) {
+            if (snapshotEpoch != epoch) {
+                return; // 复制进度已被重置
+            }
+            if (error != null || response == null || !currentNode.isLeader()) {
+                snapshotting = false;
+                if (error == null) {
+                    return; // 由下一次心跳从头重传
+                }
+            } else if (response.getTerm() > currentNode.getCurrentTerm()) {
+                snapshotting = false;
+                higherTerm = response.getTerm();
+            } else if (!response.isSuccess()) {
+                snapshotting = false;
+                return;
+            } else if (end == snapshot.getData().length) {
+                // 快照安装完成，从快照之后继续复制日志
+                snapshotting = false;
+                nextIndex = snapshot.getLastIncludedIndex() + 1;
+                currentNode.getNextIndex().put(followerId, nextIndex);
+                if (snapshot.getLastIncludedIndex() > matchIndex) {
+                    matchIndex = snapshot.getLastIncludedIndex();
+                    currentNode.getMatchIndex().put(followerId, matchIndex);
+                    advancedTo = matchIndex;
+                }
+            }
+        }
+
+        if (error != null) {
+            System.err.println("向节点 " + followerId + " 发送快照失败: " + error.getMessage());
+            return;
+        }
+        if (higherTerm >= 0) {
+            listener.onHigherTerm(higherTerm);
+            return;
+        }
+        if (end < snapshot.getData().length) {
+            sendSnapshotChunk(snapshot, end, snapshotEpoch);
+            return;
+        }
+        if (advancedTo >= 0) {
+            listener.onMatchIndexAdvanced(followerId, advancedTo);
+        }
+        pump();
+    }
+
+    // 丢弃全部在途请求，从 index 重新发送
+    private void rollback(int index) {
+        epoch++;
+        snapshotting = false;
+        probing = true;
+        inflight.clear();
+        inflightBytes = 0;
+        nextIndex = index;
+        currentNode.getNextIndex().put(followerId, nextIndex);
+    }
+
+    synchronized boolean isCaughtUp() {
+        return !snapshotting && inflight.isEmpty() && nextIndex > logEntryRepo.lastIndex();
+    }
+
+    synchronized int getMatchIndex() {
+        return matchIndex;
+    }
+
+    // 在途请求
+    private static final class Inflight {
+        final int startIndex;
+        final int count;
+        final long bytes;
+        final long epoch;
+        final long sentNanos;
+
+        Inflight(int startIndex, int count, long bytes, long epoch, long sentNanos) {
+            this.startIndex = startIndex;
+            this.count = count;
+            this.bytes = bytes;
+            this.epoch = epoch;
+            this.sentNanos = sentNanos;
+        }
+    }
+}
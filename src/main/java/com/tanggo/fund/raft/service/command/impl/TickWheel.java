@@ -0,0 +1,176 @@
+package com.tanggo.fund.raft.service.command.impl;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 时间轮
+ * 一个线程驱动任意多个 Raft 组的选举超时和心跳：每个组只在自己下一次需要检查的时刻所在的槽位出现，
+ * 每个 tick 只处理到期槽位中的组，与组总数无关
+ *
+ * 截止时间前移（如收到心跳）不操作时间轮，组在原槽位被检查时返回新的时间再重新入槽；
+ * 需要提前检查时（如刚成为领导者）调用 wakeup
+ *
+ * 不带线程构造时由调用方按 tick 间隔调用 advance，用于虚拟时钟下的确定性模拟
+ */
+public final class TickWheel implements Closeable {
+
+    // 被驱动的组
+    public interface Tickable {
+        /**
+         * 检查到期事件，返回下一次需要检查的时间（与 now 同一时钟）
+         */
+        long onTick(long now);
+    }
+
+    private static final int SLOTS = 512;
+
+    private final long tickNanos;
+    private final ArrayDeque<Entry>[] slots = newSlots(SLOTS);
+    private ArrayDeque<Entry> spare = new ArrayDeque<>();
+    private final Map<Tickable, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> wakeups = new ConcurrentLinkedQueue<>();
+    private final List<Runnable> tickListeners = new CopyOnWriteArrayList<>();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private long tick; // 仅时间轮线程访问
+
+    public TickWheel(Thread.Builder threadBuilder, long tickMillis) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.worker = threadBuilder.start(this::run);
+    }
+
+    // 手动推进的时间轮
+    public TickWheel(long tickMillis) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.worker = null;
+    }
+
+    // 泛型数组只能经原始类型创建，元素类型由调用方保证
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> ArrayDeque<T>[] newSlots(int n) {
+        ArrayDeque<T>[] slots = new ArrayDeque[n];
+        for (int i = 0; i < n; i++) {
+            slots[i] = new ArrayDeque<>();
+        }
+        return slots;
+    }
+
+    public void register(Tickable tickable) {
+        Entry entry = new Entry(tickable);
+        entries.put(tickable, entry);
+        wakeups.add(entry);
+    }
+
+    public void unregister(Tickable tickable) {
+        Entry entry = entries.remove(tickable);
+        if (entry != null) {
+            entry.cancelled = true;
+        }
+    }
+
+    /**
+     * 在下一个 tick 检查该组
+     */
+    public void wakeup(Tickable tickable) {
+        Entry entry = entries.get(tickable);
+        if (entry != null) {
+            wakeups.add(entry);
+        }
+    }
+
+    /**
+     * 每个 tick 处理完到期的组后调用，用于批量发送
+     */
+    public void addTickListener(Runnable listener) {
+        tickListeners.add(listener);
+    }
+
+    private void run() {
+        long nextTick = System.nanoTime() + tickNanos;
+        while (running) {
+            long wait = nextTick - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            nextTick += tickNanos;
+            advance(System.nanoTime());
+        }
+    }
+
+    /**
+     * 推进一个 tick：处理唤醒的组和本槽位到期的组，然后调用 tick 回调
+     */
+    public void advance(long now) {
+        tick++;
+        Entry woken;
+        while ((woken = wakeups.poll()) != null) {
+            fire(woken, now);
+        }
+
+        // 与备用队列交换，处理期间重新入槽的组不会落回本槽
+        int index = (int) (tick & (SLOTS - 1));
+        ArrayDeque<Entry> due = slots[index];
+        slots[index] = spare;
+        for (Entry entry : due) {
+            if (entry.scheduledTick == tick) {
+                fire(entry, now);
+            }
+        }
+        due.clear();
+        spare = due;
+
+        for (Runnable listener : tickListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                System.err.println("时间轮回调失败: " + e.getMessage());
+            }
+        }
+    }
+
+    private void fire(Entry entry, long now) {
+        if (entry.cancelled) {
+            return;
+        }
+        long next;
+        try {
+            next = entry.tickable.onTick(now);
+        } catch (Exception e) {
+            System.err.println("时间轮驱动失败: " + e.getMessage());
+            next = now + tickNanos;
+        }
+        // 向上取整到 tick，至少下一个 tick，最多一圈（超过一圈的到时再检查一次）
+        long ticks = Math.max(1, Math.min(SLOTS - 1, (next - now + tickNanos - 1) / tickNanos));
+        entry.scheduledTick = tick + ticks;
+        slots[(int) (entry.scheduledTick & (SLOTS - 1))].add(entry);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (worker != null) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    // 同一个组在多个槽位中可能有旧记录，只有 scheduledTick 匹配的那条有效
+    private static final class Entry {
+        final Tickable tickable;
+        long scheduledTick = -1;
+        volatile boolean cancelled;
+
+        Entry(Tickable tickable) {
+            this.tickable = tickable;
+        }
+    }
+}
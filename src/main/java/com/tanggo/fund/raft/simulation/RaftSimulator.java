@@ -0,0 +1,559 @@
+package com.tanggo.fund.raft.simulation;
+
+import com.tanggo.fund.raft.config.ApplyOptions;
+import com.tanggo.fund.raft.config.ReplicationOptions;
+import com.tanggo.fund.raft.config.SimulationOptions;
+import com.tanggo.fund.raft.config.SnapshotOptions;
+import com.tanggo.fund.raft.domain.LogEntry;
+import com.tanggo.fund.raft.outbound.MemoryLogEntryRepo;
+import com.tanggo.fund.raft.outbound.MemorySnapshotRepo;
+import com.tanggo.fund.raft.outbound.RaftCodec;
+import com.tanggo.fund.raft.service.ILogEntryService;
+import com.tanggo.fund.raft.service.command.AppendEntriesCommand;
+import com.tanggo.fund.raft.service.command.AppendEntriesResponse;
+import com.tanggo.fund.raft.service.command.InstallSnapshotCommand;
+import com.tanggo.fund.raft.service.command.InstallSnapshotResponse;
+import com.tanggo.fund.raft.service.command.RequestVoteCommand;
+import com.tanggo.fund.raft.service.command.RequestVoteResponse;
+import com.tanggo.fund.raft.service.command.impl.KeyValueStateMachine;
+import com.tanggo.fund.raft.service.command.impl.LogEntryService;
+import com.tanggo.fund.raft.service.command.impl.RaftRuntime;
+import org.HdrHistogram.Histogram;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * 确定性 Raft 模拟器
+ * 多个 LogEntryService 在同一个线程里运行：虚拟时钟、虚拟网络和一个按时间排序的事件队列，
+ * 所有随机性来自一个种子，相同种子和相同故障脚本的两次运行得到相同的事件序列和结果
+ *
+ * 网络：链路默认按发送顺序投递（与 TCP 一致），可注入丢失、乱序、分区和拒绝连接；日志条目经 RaftCodec 编解码后投递
+ * 磁盘：每次刷盘使节点忙碌 fsyncMicros，stallDisk 让节点一段时间内不处理任何事件；忙碌期间节点发出的消息在忙碌结束后才离开
+ * 负载：客户端与领导者同处一地，按固定速率提交命令，统计吞吐、提交延迟和提交中断时间
+ */
+public class RaftSimulator implements Closeable {
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(RaftRuntime.TICK_MILLIS);
+
+    private final SimulationOptions options;
+    private final Random random;
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private final Map<String, SimNode> nodes = new LinkedHashMap<>();
+    private final Map<String, Integer> partitions = new HashMap<>(); // 节点 -> 分区号，未列出的节点在分区 0
+    private final Map<String, Long> linkArrivals = new HashMap<>();  // 链路上最后一条按序消息的到达时间
+    private final Set<String> unreachable = new HashSet<>();         // 拒绝连接的节点
+    private long now;
+    private long sequence;
+
+    // 统计
+    private final Histogram commitLatency = new Histogram(3);
+    private long eventCount;
+    private long messages;
+    private long droppedMessages;
+    private long replicatedBytes;
+    private long submitted;
+    private long committed;
+    private long failed;
+    private long rejected;
+    private long lastCommitNanos;
+    private long maxCommitGapNanos;
+    private long downtimeNanos;
+    private long leaderChanges;
+    private String observedLeader;
+    private int observedTerm;
+
+    // 负载
+    private long workloadIntervalNanos;
+    private long workloadStartNanos = -1;
+    private long workloadStopNanos = -1;
+    private long workloadEpoch;
+    private long commandSequence;
+    private final String commandValue;
+
+    public RaftSimulator(SimulationOptions options) {
+        this(options, new ReplicationOptions(), new ApplyOptions(), new SnapshotOptions());
+    }
+
+    public RaftSimulator(SimulationOptions options, ReplicationOptions replicationOptions, ApplyOptions applyOptions,
+                         SnapshotOptions snapshotOptions) {
+        if (options.getNodeCount() < 1) {
+            throw new IllegalArgumentException("Node count must be positive: " + options.getNodeCount());
+        }
+        this.options = options;
+        this.random = new Random(options.getSeed());
+        this.commandValue = "x".repeat(Math.max(1, options.getCommandBytes() - 16));
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 1; i <= options.getNodeCount(); i++) {
+            ids.add("n" + i);
+        }
+        for (String id : ids) {
+            nodes.put(id, new SimNode(id));
+        }
+        for (SimNode node : nodes.values()) {
+            Map<String, ILogEntryService> peers = new LinkedHashMap<>();
+            for (String id : ids) {
+                peers.put(id, new Link(node, id));
+            }
+            node.service = new LogEntryService(node.id, peers, node.repo, replicationOptions, new MemorySnapshotRepo(),
+                    node.stateMachine, snapshotOptions, applyOptions, node.runtime);
+            // 各节点的 tick 错开，避免所有节点在同一时刻检查超时
+            schedule(node, random.nextLong(TICK_NANOS), () -> tick(node));
+        }
+    }
+
+    // ==================== 运行 ====================
+
+    /**
+     * 推进虚拟时间 millis 毫秒，执行期间到期的所有事件
+     */
+    public void runFor(long millis) {
+        runUntil(() -> false, millis);
+    }
+
+    /**
+     * 运行直到条件成立（每个事件后检查）或超过 maxMillis，返回条件是否成立
+     */
+    public boolean runUntil(BooleanSupplier condition, long maxMillis) {
+        long end = now + TimeUnit.MILLISECONDS.toNanos(maxMillis);
+        if (condition.getAsBoolean()) {
+            return true;
+        }
+        while (!events.isEmpty() && events.peek().time <= end) {
+            Event event = events.poll();
+            // 节点忙碌（刷盘或卡顿）期间的事件顺延到忙碌结束
+            if (event.owner != null && event.owner.busyUntil > event.time) {
+                schedule(event.owner, event.owner.busyUntil, event.task);
+                continue;
+            }
+            now = event.time;
+            eventCount++;
+            try {
+                event.task.run();
+            } catch (RuntimeException e) {
+                System.err.println("模拟事件执行失败: " + e);
+            }
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+        }
+        now = Math.max(now, end);
+        return condition.getAsBoolean();
+    }
+
+    private void tick(SimNode node) {
+        node.runtime.getTickWheel().advance(now);
+        observeLeader();
+        schedule(node, now + TICK_NANOS, () -> tick(node));
+    }
+
+    private void schedule(SimNode owner, long time, Runnable task) {
+        events.add(new Event(Math.max(time, now), sequence++, owner, task));
+    }
+
+    // ==================== 故障注入 ====================
+
+    /**
+     * 划分网络分区：同一组内的节点互通，未列出的节点组成另一个分区
+     */
+    @SafeVarargs
+    public final void partition(Collection<String>... groups) {
+        partitions.clear();
+        for (int i = 0; i < groups.length; i++) {
+            for (String nodeId : groups[i]) {
+                node(nodeId);
+                partitions.put(nodeId, i + 1);
+            }
+        }
+    }
+
+    // 把一个节点与其它所有节点隔离
+    public void isolate(String nodeId) {
+        partition(Set.of(nodeId));
+    }
+
+    /**
+     * 节点不可达：发往它和由它发出的 RPC 立即以连接被拒绝失败，不等待超时
+     * （与 RaftConnection 建连失败或处于重连退避期时的行为一致）
+     */
+    public void refuseConnections(String nodeId) {
+        node(nodeId);
+        unreachable.add(nodeId);
+    }
+
+    public void heal() {
+        partitions.clear();
+        unreachable.clear();
+    }
+
+    /**
+     * 磁盘卡顿：节点在 millis 毫秒内不处理任何事件（如同被一次很慢的同步刷盘阻塞）
+     */
+    public void stallDisk(String nodeId, long millis) {
+        SimNode node = node(nodeId);
+        node.busyUntil = Math.max(node.busyUntil, now) + TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    // ==================== 负载 ====================
+
+    /**
+     * 以固定速率向当前领导者提交命令，直到 stopWorkload
+     */
+    public void startWorkload(int commandsPerSecond) {
+        if (commandsPerSecond <= 0) {
+            throw new IllegalArgumentException("Workload rate must be positive: " + commandsPerSecond);
+        }
+        workloadIntervalNanos = Math.max(1, TimeUnit.SECONDS.toNanos(1) / commandsPerSecond);
+        workloadStartNanos = now;
+        workloadStopNanos = -1;
+        lastCommitNanos = now;
+        long epoch = ++workloadEpoch;
+        schedule(null, now, () -> submitNext(epoch));
+    }
+
+    public void stopWorkload() {
+        if (workloadStartNanos >= 0 && workloadStopNanos < 0) {
+            workloadStopNanos = now;
+        }
+        workloadEpoch++;
+    }
+
+    private void submitNext(long epoch) {
+        if (epoch != workloadEpoch) {
+            return;
+        }
+        SimNode leader = leaderNode();
+        if (leader == null) {
+            rejected++;
+        } else {
+            submitted++;
+            long start = now;
+            leader.service.submitCommand("SET k" + (commandSequence++) + " " + commandValue).whenComplete((ok, error) -> {
+                if (error == null && ok) {
+                    onCommitted(start);
+                } else {
+                    failed++;
+                }
+            });
+        }
+        schedule(null, now + workloadIntervalNanos, () -> submitNext(epoch));
+    }
+
+    private void onCommitted(long submittedNanos) {
+        committed++;
+        commitLatency.recordValue(Math.max(0, now - submittedNanos) / 1000);
+        long gap = now - lastCommitNanos;
+        maxCommitGapNanos = Math.max(maxCommitGapNanos, gap);
+        if (gap > TimeUnit.MILLISECONDS.toNanos(options.getDowntimeThresholdMillis())) {
+            downtimeNanos += gap;
+        }
+        lastCommitNanos = now;
+    }
+
+    // ==================== 观察 ====================
+
+    /**
+     * 任期最高的领导者，没有时返回 null
+     */
+    public String leader() {
+        SimNode leader = leaderNode();
+        return leader == null ? null : leader.id;
+    }
+
+    private SimNode leaderNode() {
+        SimNode leader = null;
+        for (SimNode node : nodes.values()) {
+            if (node.service.isLeader() && (leader == null || node.service.getCurrentTerm() > leader.service.getCurrentTerm())) {
+                leader = node;
+            }
+        }
+        return leader;
+    }
+
+    private void observeLeader() {
+        SimNode leader = leaderNode();
+        if (leader == null) {
+            return;
+        }
+        int term = leader.service.getCurrentTerm();
+        if (!leader.id.equals(observedLeader) || term != observedTerm) {
+            if (observedLeader != null) {
+                leaderChanges++;
+            }
+            observedLeader = leader.id;
+            observedTerm = term;
+        }
+    }
+
+    public LogEntryService service(String nodeId) {
+        return node(nodeId).service;
+    }
+
+    public KeyValueStateMachine stateMachine(String nodeId) {
+        return node(nodeId).stateMachine;
+    }
+
+    public Set<String> nodeIds() {
+        return nodes.keySet();
+    }
+
+    // 虚拟时钟(ns)
+    public long nanoTime() {
+        return now;
+    }
+
+    public SimulationOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * 各节点已提交的日志两两一致（只比较双方都保留且都已提交的区间）
+     */
+    public boolean isConsistent() {
+        List<SimNode> all = new ArrayList<>(nodes.values());
+        for (int i = 0; i < all.size(); i++) {
+            for (int j = i + 1; j < all.size(); j++) {
+                SimNode a = all.get(i);
+                SimNode b = all.get(j);
+                int from = Math.max(a.repo.firstIndex(), b.repo.firstIndex());
+                int to = Math.min(a.service.getCommitIndex(), b.service.getCommitIndex());
+                for (int index = from; index <= to; index++) {
+                    LogEntry x = a.repo.get(index);
+                    LogEntry y = b.repo.get(index);
+                    if (x == null || y == null || x.getTerm() != y.getTerm() || !Arrays.equals(x.getPayload(), y.getPayload())) {
+                        System.err.println("节点 " + a.id + " 与 " + b.id + " 的已提交日志[" + index + "]不一致");
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    public SimulationReport report() {
+        SimulationReport report = new SimulationReport();
+        report.setSimulatedMillis(TimeUnit.NANOSECONDS.toMillis(now));
+        long workloadNanos = workloadStartNanos < 0 ? 0 : (workloadStopNanos >= 0 ? workloadStopNanos : now) - workloadStartNanos;
+        report.setWorkloadMillis(TimeUnit.NANOSECONDS.toMillis(workloadNanos));
+        report.setSubmitted(submitted);
+        report.setCommitted(committed);
+        report.setFailed(failed);
+        report.setRejected(rejected);
+        report.setThroughputPerSecond(workloadNanos == 0 ? 0 : committed * 1e9 / workloadNanos);
+        report.setCommitLatencyP50Micros(commitLatency.getValueAtPercentile(50));
+        report.setCommitLatencyP99Micros(commitLatency.getValueAtPercentile(99));
+        report.setCommitLatencyMaxMicros(commitLatency.getMaxValue());
+        report.setMaxCommitGapMillis(TimeUnit.NANOSECONDS.toMillis(maxCommitGapNanos));
+        report.setDowntimeMillis(TimeUnit.NANOSECONDS.toMillis(downtimeNanos));
+        report.setLeaderChanges(leaderChanges);
+        report.setMessages(messages);
+        report.setDroppedMessages(droppedMessages);
+        report.setReplicatedBytes(replicatedBytes);
+        report.setEvents(eventCount);
+        report.setConsistent(isConsistent());
+        return report;
+    }
+
+    private SimNode node(String nodeId) {
+        SimNode node = nodes.get(nodeId);
+        if (node == null) {
+            throw new IllegalArgumentException("Unknown simulated node: " + nodeId);
+        }
+        return node;
+    }
+
+    // ==================== 虚拟网络 ====================
+
+    private boolean connected(SimNode from, SimNode to) {
+        return partitions.getOrDefault(from.id, 0).equals(partitions.getOrDefault(to.id, 0));
+    }
+
+    // 分区或随机丢失的消息不会到达
+    private boolean lost(SimNode from, SimNode to) {
+        return !connected(from, to) || (options.getDropRate() > 0 && random.nextDouble() < options.getDropRate());
+    }
+
+    // 消息到达时间：链路按序投递，乱序消息额外延迟且不占用链路顺序
+    private long arrival(SimNode from, SimNode to, long departure) {
+        long latency = TimeUnit.MICROSECONDS.toNanos(
+                random.nextLong(options.getMinLatencyMicros(), Math.max(options.getMinLatencyMicros(), options.getMaxLatencyMicros()) + 1));
+        if (options.getReorderRate() > 0 && random.nextDouble() < options.getReorderRate()) {
+            return departure + latency + TimeUnit.MICROSECONDS.toNanos(random.nextLong(Math.max(1, options.getReorderDelayMicros())));
+        }
+        String link = from.id + "->" + to.id;
+        long at = Math.max(departure + latency, linkArrivals.getOrDefault(link, 0L));
+        linkArrivals.put(link, at);
+        return at;
+    }
+
+    /**
+     * 一次 RPC：请求到达后在目标节点上执行 handler，响应再经网络回到调用方
+     * 请求或响应丢失时，调用方在 RPC 超时后收到异常
+     */
+    private <T> CompletableFuture<T> call(SimNode from, SimNode to, Function<LogEntryService, T> handler) {
+        messages++;
+        if (unreachable.contains(from.id) || unreachable.contains(to.id)) {
+            droppedMessages++;
+            return CompletableFuture.failedFuture(new ConnectException("Simulated peer unreachable: " + from.id + " -> " + to.id));
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long departure = Math.max(now, from.busyUntil);
+        if (lost(from, to)) {
+            timeout(from, to, departure, result);
+            return result;
+        }
+        schedule(to, arrival(from, to, departure), () -> {
+            T response;
+            try {
+                response = handler.apply(to.service);
+            } catch (RuntimeException e) {
+                schedule(from, arrival(to, from, Math.max(now, to.busyUntil)), () -> result.completeExceptionally(e));
+                return;
+            }
+            long back = Math.max(now, to.busyUntil); // 处理中刷盘的耗时计入响应
+            if (lost(to, from)) {
+                timeout(from, to, departure, result);
+                return;
+            }
+            schedule(from, arrival(to, from, back), () -> result.complete(response));
+        });
+        return result;
+    }
+
+    private void timeout(SimNode from, SimNode to, long departure, CompletableFuture<?> result) {
+        droppedMessages++;
+        schedule(from, departure + TimeUnit.MILLISECONDS.toNanos(options.getRpcTimeoutMillis()),
+                () -> result.completeExceptionally(new IOException("Simulated message loss: " + from.id + " -> " + to.id)));
+    }
+
+    // 日志条目经二进制编解码复制，副本之间不共享对象
+    private AppendEntriesCommand copy(AppendEntriesCommand request) {
+        if (request.getEntries().isEmpty()) {
+            return request;
+        }
+        ByteBuffer encoded = request.getEncodedEntries() != null
+                ? request.getEncodedEntries().duplicate()
+                : RaftCodec.encodeEntries(request.getEntries());
+        replicatedBytes += encoded.remaining();
+        List<LogEntry> entries = new ArrayList<>(request.getEntries().size());
+        while (encoded.hasRemaining()) {
+            entries.add(RaftCodec.readEntry(encoded));
+        }
+        return new AppendEntriesCommand(request.getTerm(), request.getPrevLogIndex(), request.getPrevLogTerm(), entries,
+                request.getLeaderCommit());
+    }
+
+    @Override
+    public void close() {
+        for (SimNode node : nodes.values()) {
+            node.service.close();
+            node.runtime.close();
+        }
+        events.clear();
+    }
+
+    // ==================== 内部类型 ====================
+
+    private final class SimNode {
+        final String id;
+        final RaftRuntime runtime;
+        final MemoryLogEntryRepo repo;
+        final KeyValueStateMachine stateMachine = new KeyValueStateMachine();
+        LogEntryService service;
+        long busyUntil; // 刷盘或卡顿结束的时间
+
+        SimNode(String id) {
+            this.id = id;
+            this.runtime = RaftRuntime.simulated(new RaftRuntime.Driver() {
+                @Override
+                public long nanoTime() {
+                    return now;
+                }
+
+                @Override
+                public int nextInt(int origin, int bound) {
+                    return random.nextInt(origin, bound);
+                }
+
+                @Override
+                public void execute(Runnable task) {
+                    schedule(SimNode.this, now, task);
+                }
+            });
+            this.repo = new MemoryLogEntryRepo() {
+                @Override
+                public void flush() {
+                    busyUntil = Math.max(busyUntil, now) + TimeUnit.MICROSECONDS.toNanos(options.getFsyncMicros());
+                }
+            };
+        }
+    }
+
+    // 从 from 节点看到的远端节点
+    private final class Link implements ILogEntryService {
+        private final SimNode from;
+        private final String to;
+
+        Link(SimNode from, String to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean handleClientCommand(String command) {
+            throw new UnsupportedOperationException("Simulated peers accept client commands only through the simulator");
+        }
+
+        @Override
+        public AppendEntriesResponse handleAppendEntries(AppendEntriesCommand request) {
+            throw new UnsupportedOperationException("Simulated peers only support asynchronous RPC");
+        }
+
+        @Override
+        public CompletableFuture<AppendEntriesResponse> appendEntriesAsync(AppendEntriesCommand request) {
+            AppendEntriesCommand copy = copy(request);
+            return call(from, node(to), service -> service.handleAppendEntries(copy));
+        }
+
+        @Override
+        public CompletableFuture<RequestVoteResponse> requestVoteAsync(RequestVoteCommand request) {
+            return call(from, node(to), service -> service.handleRequestVote(request));
+        }
+
+        @Override
+        public CompletableFuture<InstallSnapshotResponse> installSnapshotAsync(InstallSnapshotCommand request) {
+            return call(from, node(to), service -> service.handleInstallSnapshot(request));
+        }
+
+        @Override
+        public void printLog() {
+            node(to).service.printLog();
+        }
+    }
+
+    // 按时间排序，同一时刻按排入顺序执行
+    private record Event(long time, long seq, SimNode owner, Runnable task) implements Comparable<Event> {
+        @Override
+        public int compareTo(Event other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(seq, other.seq);
+        }
+    }
+}
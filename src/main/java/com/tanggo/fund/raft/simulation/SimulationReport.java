@@ -0,0 +1,28 @@
+package com.tanggo.fund.raft.simulation;
+
+import lombok.Data;
+
+/**
+ * 模拟运行结果，时间均为虚拟时间
+ */
+@Data
+public class SimulationReport {
+    private long simulatedMillis;      // 虚拟时钟当前时间
+    private long workloadMillis;       // 客户端负载持续时间
+    private long submitted;            // 提交给领导者的命令数
+    private long committed;            // 已提交的命令数
+    private long failed;               // 因失去领导权等原因失败的命令数
+    private long rejected;             // 没有领导者而无法提交的命令数
+    private double throughputPerSecond; // 负载期间每秒提交的命令数
+    private double commitLatencyP50Micros;
+    private double commitLatencyP99Micros;
+    private double commitLatencyMaxMicros;
+    private long maxCommitGapMillis;   // 两次提交之间的最长间隔
+    private long downtimeMillis;       // 超过阈值的提交间隔之和，即选举等造成的不可用时间
+    private long leaderChanges;        // 观察到的领导者变更次数（不含首次选出）
+    private long messages;             // 发送的 RPC 数
+    private long droppedMessages;      // 丢失或被分区拦截的 RPC 数
+    private long replicatedBytes;      // AppendEntries 携带的日志字节数
+    private long events;               // 执行的事件数
+    private boolean consistent;        // 各节点已提交的日志是否一致
+}
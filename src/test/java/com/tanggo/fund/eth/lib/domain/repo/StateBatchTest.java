@@ -0,0 +1,88 @@
+package com.tanggo.fund.eth.lib.domain.repo;
+
+import com.tanggo.fund.eth.lib.domain.Account;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 状态批次测试：批内读写、按地址排序提交、丢弃未提交的修改
+ */
+class StateBatchTest {
+
+    private final Map<String, Account> accounts = new HashMap<>();
+    private int queries;
+
+    private final IAccountRepo repo = new IAccountRepo() {
+        @Override
+        public Account query(String address) {
+            queries++;
+            Account account = accounts.get(address);
+            return account == null ? null : account.copy();
+        }
+
+        @Override
+        public void update(Account account) {
+            accounts.put(account.getAddressHex(), account.copy());
+        }
+    };
+
+    private static byte[] address(int id) {
+        byte[] address = new byte[20];
+        address[0] = (byte) id;
+        return address;
+    }
+
+    @Test
+    void testCommitWritesSortedDiffOnce() {
+        repo.update(Account.builder().address(address(1)).balance(BigInteger.valueOf(100)).build());
+        List<List<Account>> commits = new ArrayList<>();
+        StateBatch batch = new StateBatch(repo, batchAccounts -> {
+            commits.add(batchAccounts);
+            batchAccounts.forEach(repo::update);
+        });
+
+        Account sender = batch.get(address(1));
+        sender.debit(BigInteger.valueOf(30));
+        sender.incrementNonce();
+        batch.put(sender);
+        Account recipient = batch.getOrCreate(address(0xf0));
+        recipient.credit(BigInteger.valueOf(30));
+        batch.put(recipient);
+        Account other = batch.getOrCreate(address(2));
+        other.credit(BigInteger.ONE);
+        batch.put(other);
+
+        // 批内再次读取看到的是修改后的账户，不再查询仓储
+        int before = queries;
+        assertEquals(BigInteger.valueOf(70), batch.get(address(1)).getBalance());
+        assertEquals(before, queries);
+        assertNull(accounts.get(Account.createEOA(address(0xf0)).getAddressHex()));
+
+        batch.commit();
+        assertEquals(1, commits.size());
+        // 按地址无符号字节序：0x01.. < 0x02.. < 0xf0..
+        assertEquals(List.of(1, 2, 0xf0), commits.get(0).stream().map(a -> a.getAddress()[0] & 0xff).toList());
+        assertEquals(BigInteger.valueOf(70), repo.query(address(1)).getBalance());
+        assertEquals(BigInteger.ONE, repo.query(address(1)).getNonce());
+        assertEquals(BigInteger.valueOf(30), repo.query(address(0xf0)).getBalance());
+        assertEquals(0, batch.size());
+    }
+
+    @Test
+    void testCloseDiscardsUncommitted() {
+        StateBatch batch = repo.beginBatch();
+        Account account = batch.getOrCreate(address(3));
+        account.credit(BigInteger.TEN);
+        batch.put(account);
+        batch.close();
+        assertNull(repo.query(address(3)));
+        assertThrows(IllegalStateException.class, () -> batch.get(address(3)));
+    }
+}
@@ -0,0 +1,85 @@
+package com.tanggo.fund.eth.lib.domain.transaction;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EIP-1559 交易测试：交易哈希、签名恢复发送者、编码往返
+ */
+class Eip1559TransactionTest {
+
+    // 私钥 1 对应的公钥即生成元 G，地址是公开的已知值
+    private static final BigInteger PRIVATE_KEY = BigInteger.ONE;
+    private static final String ADDRESS = "7e5f4552091a69125d5dfcb7b8c2659029395bdf";
+
+    private static Eip1559Transaction unsigned(long nonce, long value) {
+        return Eip1559Transaction.builder()
+                .chainId(BigInteger.ONE)
+                .nonce(BigInteger.valueOf(nonce))
+                .maxPriorityFeePerGas(BigInteger.valueOf(2_000_000_000L))
+                .maxFeePerGas(BigInteger.valueOf(30_000_000_000L))
+                .gasLimit(BigInteger.valueOf(21_000))
+                .to(HexFormat.of().parseHex("2b5ad5c4795c026514f8317c7a215e218dccd6cf"))
+                .value(BigInteger.valueOf(value))
+                .data(new byte[0])
+                .accessList(List.of())
+                .build();
+    }
+
+    // 固定 k 的签名，s 按 EIP-2 取低半区并翻转 recId
+    private static Eip1559Transaction sign(Eip1559Transaction tx, BigInteger k) {
+        BigInteger n = Secp256k1.N;
+        BigInteger[] point = Secp256k1.multiplyBase(k);
+        BigInteger r = point[0].mod(n);
+        BigInteger z = new BigInteger(1, tx.getSigningHash());
+        BigInteger s = k.modInverse(n).multiply(z.add(r.multiply(PRIVATE_KEY))).mod(n);
+        int recId = point[1].testBit(0) ? 1 : 0;
+        if (s.compareTo(n.shiftRight(1)) > 0) {
+            s = n.subtract(s);
+            recId ^= 1;
+        }
+        tx.setV(BigInteger.valueOf(recId));
+        tx.setR(r);
+        tx.setS(s);
+        return tx;
+    }
+
+    @Test
+    void testRecoverSender() {
+        for (long k = 1; k <= 8; k++) {
+            Eip1559Transaction tx = sign(unsigned(k, 1_000 * k), BigInteger.valueOf(0x1234567L * k));
+            assertTrue(tx.verifySignature());
+            assertEquals(ADDRESS, HexFormat.of().formatHex(tx.recoverSender()));
+        }
+    }
+
+    @Test
+    void testHashAndRoundTrip() {
+        Eip1559Transaction first = sign(unsigned(0, 1), BigInteger.valueOf(99));
+        Eip1559Transaction second = sign(unsigned(0, 2), BigInteger.valueOf(99));
+        assertArrayEquals(Keccak.keccak256(first.encode()), first.getTransactionHash());
+        assertFalse(HexFormat.of().formatHex(first.getTransactionHash()).equals(HexFormat.of().formatHex(second.getTransactionHash())));
+
+        Eip1559Transaction decoded = Eip1559Transaction.decode(first.encode());
+        assertArrayEquals(first.getTransactionHash(), decoded.getTransactionHash());
+        assertEquals(ADDRESS, HexFormat.of().formatHex(decoded.recoverSender()));
+    }
+
+    @Test
+    void testTamperedOrInvalidSignature() {
+        Eip1559Transaction signed = sign(unsigned(0, 1), BigInteger.valueOf(7));
+        Eip1559Transaction tampered = Eip1559Transaction.decode(signed.encode());
+        tampered.setValue(BigInteger.valueOf(2));
+        assertNotEquals(ADDRESS, HexFormat.of().formatHex(tampered.recoverSender()));
+
+        Eip1559Transaction invalid = Eip1559Transaction.decode(signed.encode());
+        invalid.setV(BigInteger.TWO);
+        assertNull(invalid.recoverSender());
+        assertFalse(invalid.verifySignature());
+    }
+}
@@ -0,0 +1,76 @@
+package com.tanggo.fund.eth.lib.outbound;
+
+import com.tanggo.fund.eth.lib.domain.Account;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 账户定长编码和只读视图测试
+ */
+class AccountCodecTest {
+
+    private static byte[] address(int id) {
+        byte[] address = new byte[20];
+        address[0] = (byte) 0xab;
+        address[19] = (byte) id;
+        return address;
+    }
+
+    // 复制一份编码结果，模拟 LMDB 返回的独立缓冲区
+    private static ByteBuffer copy(ByteBuffer buffer) {
+        ByteBuffer copy = ByteBuffer.allocateDirect(buffer.remaining());
+        copy.put(buffer.duplicate()).flip();
+        return copy;
+    }
+
+    @Test
+    void testRoundTrip() {
+        BigInteger large = BigInteger.TWO.pow(200).add(BigInteger.valueOf(12345));
+        Account contract = Account.createContract(address(1), Account.EMPTY_STORAGE_ROOT);
+        contract.setNonce(BigInteger.valueOf(7));
+        contract.setBalance(large);
+
+        ByteBuffer value = copy(AccountCodec.value(contract));
+        assertEquals(AccountCodec.VALUE_SIZE, value.remaining());
+        Account decoded = AccountCodec.decode(address(1), value);
+        assertEquals(BigInteger.valueOf(7), decoded.getNonce());
+        assertEquals(large, decoded.getBalance());
+        assertArrayEquals(Account.EMPTY_STORAGE_ROOT, decoded.getStorageRoot());
+        assertArrayEquals(Account.EMPTY_STORAGE_ROOT, decoded.getCodeHash());
+
+        // 未设置的哈希解码为 null，u64 上界的 nonce 不丢失
+        Account plain = Account.builder().address(address(2)).nonce(new BigInteger("18446744073709551614")).balance(BigInteger.TEN).build();
+        decoded = AccountCodec.decode(address(2), copy(AccountCodec.value(plain)));
+        assertEquals(new BigInteger("18446744073709551614"), decoded.getNonce());
+        assertEquals(BigInteger.TEN, decoded.getBalance());
+        assertNull(decoded.getStorageRoot());
+        assertNull(decoded.getCodeHash());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> AccountCodec.value(Account.builder().address(address(3)).balance(BigInteger.TWO.pow(256)).build()));
+    }
+
+    @Test
+    void testHexKeyAndView() {
+        ByteBuffer key = copy(AccountCodec.key("0xab000000000000000000000000000000000000" + "05"));
+        assertEquals(ByteBuffer.wrap(address(5)), key);
+        assertNull(AccountCodec.key("0x1234"));
+        assertNull(AccountCodec.key("0xzz000000000000000000000000000000000000" + "05"));
+
+        Account account = Account.createEOA(address(5));
+        account.setNonce(BigInteger.valueOf(3));
+        account.setBalance(BigInteger.valueOf(1_000));
+        AccountView view = new AccountView().wrap(key, copy(AccountCodec.value(account)));
+        assertEquals(3, view.getNonce());
+        assertTrue(view.nonceEquals(BigInteger.valueOf(3)));
+        assertTrue(view.hasSufficientBalance(BigInteger.valueOf(1_000)));
+        assertFalse(view.hasSufficientBalance(BigInteger.valueOf(1_001)));
+        assertFalse(view.hasSufficientBalance(BigInteger.TWO.pow(100)));
+        assertTrue(view.isExternallyOwnedAccount());
+        assertArrayEquals(address(5), view.toAccount().getAddress());
+    }
+}
@@ -0,0 +1,153 @@
+package com.tanggo.fund.eth.lib.outbound;
+
+import com.tanggo.fund.eth.lib.domain.Account;
+import com.tanggo.fund.eth.lib.domain.repo.StateBatch;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lmdbjava.Dbi;
+import org.lmdbjava.Env;
+import org.lmdbjava.Txn;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LMDB 账户仓储测试：多次提交后状态树节点按引用计数回收，重新打开后从保存的 stateRoot 继续
+ */
+class AccountRepoTest {
+
+    private static final int ACCOUNTS = 200;
+
+    @TempDir
+    Path dir;
+
+    private AccountRepo open() {
+        AccountRepo repo = new AccountRepo();
+        ReflectionTestUtils.setField(repo, "dbPath", dir.toString());
+        repo.init();
+        return repo;
+    }
+
+    private static byte[] address(int id) {
+        byte[] address = new byte[20];
+        address[0] = (byte) (id >>> 8);
+        address[19] = (byte) id;
+        return address;
+    }
+
+    private static Account account(int id, long balance) {
+        return Account.builder().address(address(id)).nonce(BigInteger.ZERO).balance(BigInteger.valueOf(balance)).build();
+    }
+
+    // 从根出发经子节点哈希可达的节点
+    private static Set<String> reachable(AccountRepo repo, byte[] root) {
+        Set<String> seen = new HashSet<>();
+        ArrayDeque<byte[]> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            byte[] hash = pending.pop();
+            if (!seen.add(HexFormat.of().formatHex(hash))) {
+                continue;
+            }
+            byte[] encoded = repo.get(hash);
+            assertNotNull(encoded, "可达节点缺失");
+            MerklePatriciaTrie.childHashes(encoded).forEach(pending::push);
+        }
+        return seen;
+    }
+
+    // 关闭仓储后直接打开环境统计库中的条目数
+    private long entries(String dbName) {
+        try (Env<ByteBuffer> env = Env.create().setMapSize(100 * 1024 * 1024).setMaxDbs(4).open(dir.toFile())) {
+            Dbi<ByteBuffer> dbi = env.openDbi(dbName);
+            try (Txn<ByteBuffer> txn = env.txnRead()) {
+                return dbi.stat(txn).entries;
+            } finally {
+                dbi.close();
+            }
+        }
+    }
+
+    @Test
+    void testCommitsPruneUnreachableNodesAndReopenAtRoot() {
+        long[] balances = new long[ACCOUNTS];
+        AccountRepo repo = open();
+        byte[] root;
+        Set<String> live;
+        try {
+            try (StateBatch batch = repo.beginBatch()) {
+                for (int i = 0; i < ACCOUNTS; i++) {
+                    balances[i] = 1_000;
+                    batch.put(account(i, balances[i]));
+                }
+                batch.commit();
+            }
+            // 每次提交改写一部分账户，旧路径上的节点随旧根释放
+            for (int round = 1; round <= 50; round++) {
+                try (StateBatch batch = repo.beginBatch()) {
+                    for (int i = round % 7; i < ACCOUNTS; i += 7) {
+                        balances[i] += round;
+                        batch.put(account(i, balances[i]));
+                    }
+                    batch.commit();
+                }
+                int single = round % ACCOUNTS;
+                balances[single]++;
+                repo.update(account(single, balances[single]));
+            }
+            root = repo.stateRoot();
+            live = reachable(repo, root);
+        } finally {
+            repo.close();
+        }
+
+        // 节点库和计数库只剩当前根可达的节点
+        assertEquals(live.size(), entries("trie_nodes"));
+        assertEquals(live.size(), entries("trie_refs"));
+
+        // 与只写入最终状态的内存状态树的根相同
+        SortedMap<byte[], byte[]> nodes = new TreeMap<>(Arrays::compareUnsigned);
+        StateTrie expected = new StateTrie(new TrieNodeStore() {
+            @Override
+            public byte[] get(byte[] hash) {
+                return nodes.get(hash);
+            }
+
+            @Override
+            public void putAll(SortedMap<byte[], byte[]> batch) {
+                nodes.putAll(batch);
+            }
+        }, null, 1_000);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            expected.update(account(i, balances[i]));
+        }
+        assertArrayEquals(expected.rootHash(), root);
+
+        // 重新打开后从保存的根继续：读取账户、在旧树上继续更新
+        repo = open();
+        try {
+            assertArrayEquals(root, repo.stateRoot());
+            assertEquals(BigInteger.valueOf(balances[3]), repo.query(address(3)).getBalance());
+            assertEquals(live, reachable(repo, root));
+
+            balances[5] += 10;
+            repo.update(account(5, balances[5]));
+            expected.update(account(5, balances[5]));
+            assertArrayEquals(expected.rootHash(), repo.stateRoot());
+            assertNull(repo.get(root), "旧根在切换后应被删除");
+        } finally {
+            repo.close();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.tanggo.fund.eth.lib.outbound;
+
+import com.tanggo.fund.eth.lib.config.AccountCacheOptions;
+import com.tanggo.fund.eth.lib.domain.Account;
+import com.tanggo.fund.eth.lib.domain.AccountState;
+import com.tanggo.fund.eth.lib.domain.repo.IAccountRepo;
+import com.tanggo.fund.eth.lib.domain.repo.StateBatch;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 账户缓存测试：读穿透、命中统计、容量上限、差异层的回滚、重组和写回
+ */
+class CachedAccountRepoTest {
+
+    private final Map<String, Account> accounts = new HashMap<>();
+    private int queries;
+    private int updates;
+
+    private final IAccountRepo store = new IAccountRepo() {
+        @Override
+        public Account query(String address) {
+            queries++;
+            Account account = accounts.get(address);
+            return account == null ? null : account.copy();
+        }
+
+        @Override
+        public void update(Account account) {
+            updates++;
+            accounts.put(account.getAddressHex(), account.copy());
+        }
+    };
+
+    private static byte[] address(int id) {
+        byte[] address = new byte[20];
+        address[0] = (byte) (id >>> 8);
+        address[19] = (byte) id;
+        return address;
+    }
+
+    private static Account account(int id, long balance) {
+        return Account.builder().address(address(id)).nonce(BigInteger.ZERO).balance(BigInteger.valueOf(balance)).build();
+    }
+
+    private static AccountCacheOptions options(int maximumSize) {
+        AccountCacheOptions options = new AccountCacheOptions();
+        options.setMaximumSize(maximumSize);
+        return options;
+    }
+
+    @Test
+    void testReadThroughAndSizeBound() {
+        store.update(account(1, 100));
+        CachedAccountRepo repo = new CachedAccountRepo(store, options(100));
+
+        assertEquals(BigInteger.valueOf(100), repo.query(address(1)).getBalance());
+        assertNull(repo.query(address(2)));
+        assertEquals(2, queries);
+        // 再次读取（包括不存在的账户）命中缓存，不查询仓储
+        assertEquals(BigInteger.valueOf(100), repo.query(address(1)).getBalance());
+        assertNull(repo.query(address(2)));
+        assertEquals(2, queries);
+        assertEquals(2, repo.hitCount());
+        assertEquals(2, repo.missCount());
+
+        // 返回的是副本，修改不影响缓存
+        repo.query(address(1)).credit(BigInteger.ONE);
+        assertEquals(BigInteger.valueOf(100), repo.read(address(1), AccountState::getBalance));
+
+        // 写穿透
+        Account updated = account(1, 7);
+        repo.update(updated);
+        assertEquals(BigInteger.valueOf(7), accounts.get(updated.getAddressHex()).getBalance());
+        assertEquals(BigInteger.valueOf(7), repo.query(address(1)).getBalance());
+
+        // 热点账户在大量一次性读取后仍然常驻
+        for (int round = 0; round < 5; round++) {
+            repo.query(address(1));
+        }
+        for (int id = 10; id < 1_000; id++) {
+            repo.query(address(id));
+        }
+        int before = queries;
+        repo.query(address(1));
+        assertEquals(before, queries);
+        assertTrue((int) repo.stats().get("size") <= 100);
+        assertTrue((long) repo.stats().get("evictions") > 0);
+    }
+
+    @Test
+    void testBlockRevertAndFlush() {
+        store.update(account(1, 100));
+        CachedAccountRepo repo = new CachedAccountRepo(store, options(100));
+        int baseUpdates = updates;
+
+        for (int block = 1; block <= 3; block++) {
+            StateBatch batch = repo.beginBlock();
+            Account sender = batch.get(address(1));
+            sender.debit(BigInteger.TEN);
+            batch.put(sender);
+            Account recipient = batch.getOrCreate(address(1 + block));
+            recipient.credit(BigInteger.TEN);
+            batch.put(recipient);
+            batch.commit();
+        }
+        // 区块修改只在内存中
+        assertEquals(3, repo.unflushedBlocks());
+        assertEquals(baseUpdates, updates);
+        assertEquals(BigInteger.valueOf(70), repo.query(address(1)).getBalance());
+        assertEquals(BigInteger.TEN, repo.query(address(4)).getBalance());
+
+        // 回滚最近一个区块，不触碰仓储
+        assertTrue(repo.revertBlock());
+        assertEquals(BigInteger.valueOf(80), repo.query(address(1)).getBalance());
+        assertNull(repo.query(address(4)));
+        assertEquals(baseUpdates, updates);
+
+        // 写回最旧的区块，保留一个仍可回滚
+        repo.flush(1);
+        assertEquals(1, repo.unflushedBlocks());
+        assertEquals(BigInteger.valueOf(90), accounts.get(account(1, 0).getAddressHex()).getBalance());
+        assertEquals(BigInteger.TEN, accounts.get(account(2, 0).getAddressHex()).getBalance());
+        assertNull(accounts.get(account(3, 0).getAddressHex()));
+
+        assertTrue(repo.revertBlock());
+        assertFalse(repo.revertBlock());
+        assertEquals(BigInteger.valueOf(90), repo.query(address(1)).getBalance());
+        assertNull(repo.query(address(3)));
+
+        // 超过 maxUnflushedBlocks 时自动写回最旧的区块（同步写回）
+        AccountCacheOptions options = options(100);
+        options.setMaxUnflushedBlocks(2);
+        options.setBackgroundFlush(false);
+        CachedAccountRepo bounded = new CachedAccountRepo(store, options);
+        for (int block = 0; block < 3; block++) {
+            StateBatch batch = bounded.beginBlock();
+            Account sender = batch.get(address(1));
+            sender.incrementNonce();
+            batch.put(sender);
+            batch.commit();
+        }
+        assertEquals(2, bounded.unflushedBlocks());
+        assertEquals(BigInteger.ONE, accounts.get(account(1, 0).getAddressHex()).getNonce());
+        bounded.flush();
+        assertEquals(BigInteger.valueOf(3), accounts.get(account(1, 0).getAddressHex()).getNonce());
+        assertEquals(BigInteger.valueOf(3), bounded.query(address(1)).getNonce());
+    }
+
+    @Test
+    void testRevertToAncestorAndBackgroundMerge() {
+        AccountCacheOptions options = options(100);
+        options.setMaxUnflushedBlocks(2);
+        CachedAccountRepo repo = new CachedAccountRepo(store, options);
+        byte[][] hashes = new byte[5][];
+        for (int block = 1; block <= 4; block++) {
+            hashes[block] = address(0xb00 + block);
+            StateBatch batch = repo.beginBlock(hashes[block]);
+            Account sender = batch.getOrCreate(address(1));
+            sender.incrementNonce();
+            batch.put(sender);
+            batch.commit();
+        }
+        // 等待后台写回完成：最旧的两个区块已在仓储中，读取仍看到最新的层
+        repo.flush(2);
+        assertEquals(2, repo.unflushedBlocks());
+        assertEquals(BigInteger.TWO, accounts.get(account(1, 0).getAddressHex()).getNonce());
+        assertEquals(BigInteger.valueOf(4), repo.query(address(1)).getNonce());
+
+        // 重组到深度以内的祖先
+        assertTrue(repo.revertTo(hashes[3]));
+        assertEquals(BigInteger.valueOf(3), repo.query(address(1)).getNonce());
+        // 已写回的区块超出可回滚的深度
+        assertFalse(repo.revertTo(hashes[1]));
+        assertEquals(BigInteger.valueOf(3), repo.query(address(1)).getNonce());
+        // 回滚到已写回的状态时由缓存和仓储提供
+        assertTrue(repo.revertBlock());
+        assertEquals(BigInteger.TWO, repo.query(address(1)).getNonce());
+        assertEquals(0, repo.stats().get("unflushedAccounts"));
+
+        StateBatch batch = repo.beginBlock(address(0xbff));
+        Account sender = batch.get(address(1));
+        sender.incrementNonce();
+        batch.put(sender);
+        batch.commit();
+        repo.close();
+        assertEquals(0, repo.unflushedBlocks());
+        assertEquals(BigInteger.valueOf(3), accounts.get(account(1, 0).getAddressHex()).getNonce());
+    }
+
+    @Test
+    void testWriteThroughSupersedesDiffLayers() {
+        store.update(account(1, 100));
+        CachedAccountRepo repo = new CachedAccountRepo(store, options(100));
+
+        StateBatch block = repo.beginBlock();
+        Account sender = block.get(address(1));
+        sender.debit(BigInteger.TEN);
+        block.put(sender);
+        block.commit();
+        assertEquals(BigInteger.valueOf(90), repo.query(address(1)).getBalance());
+
+        // 写穿透的修改比未写回的层新，读取和之后的写回都不能退回层中的旧值
+        StateBatch batch = repo.beginBatch();
+        Account account = batch.get(address(1));
+        account.credit(BigInteger.ONE);
+        batch.put(account);
+        batch.commit();
+        assertEquals(BigInteger.valueOf(91), repo.query(address(1)).getBalance());
+        assertEquals(BigInteger.valueOf(91), accounts.get(account(1, 0).getAddressHex()).getBalance());
+
+        repo.update(account(1, 5));
+        repo.flush();
+        assertEquals(BigInteger.valueOf(5), repo.query(address(1)).getBalance());
+        assertEquals(BigInteger.valueOf(5), accounts.get(account(1, 0).getAddressHex()).getBalance());
+        // 写穿透之前的层已随之写回，不能再回滚
+        assertFalse(repo.revertBlock());
+        repo.close();
+    }
+}
@@ -0,0 +1,150 @@
+package com.tanggo.fund.eth.lib.outbound;
+
+import com.tanggo.fund.eth.lib.domain.transaction.Keccak;
+import com.tanggo.fund.eth.lib.domain.transaction.Rlp;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 默克尔帕特里夏树测试：以太坊测试向量、删除合并、提交后从存储重新加载、并行哈希、回收不可达节点
+ */
+class MerklePatriciaTrieTest {
+
+    private final SortedMap<byte[], byte[]> nodes = new TreeMap<>(Arrays::compareUnsigned);
+    private int batches;
+
+    private final TrieNodeStore store = new TrieNodeStore() {
+        @Override
+        public byte[] get(byte[] hash) {
+            return nodes.get(hash);
+        }
+
+        @Override
+        public void putAll(SortedMap<byte[], byte[]> batch) {
+            batches++;
+            nodes.putAll(batch);
+        }
+    };
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String hex(byte[] bytes) {
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    @Test
+    void testEthereumVectors() {
+        assertArrayEquals(Keccak.keccak256(Rlp.EMPTY_STRING), MerklePatriciaTrie.EMPTY_ROOT);
+        assertEquals("c5d2460186f7233c927e7db2dcc703c0e500b653ca82273b7bfad8045d85a470", hex(Keccak.keccak256(new byte[0])));
+        assertEquals("4e03657aea45a94fc7d47ba826c8d667c0d1e6e33a64a036ec44f58fa12d6c45", hex(Keccak.keccak256(bytes("abc"))));
+
+        MerklePatriciaTrie trie = new MerklePatriciaTrie(store, null, 1_000);
+        assertArrayEquals(MerklePatriciaTrie.EMPTY_ROOT, trie.rootHash());
+        trie.put(bytes("doe"), bytes("reindeer"));
+        trie.put(bytes("dog"), bytes("puppy"));
+        trie.put(bytes("dogglesworth"), bytes("cat"));
+        assertEquals("8aad789dff2f538bca5d8ea56e8abe10f4c7ba3a5dea95fea4cd6e7c3a1168d3", hex(trie.rootHash()));
+
+        // 插入后删除，结果与只插入剩余键相同
+        trie = new MerklePatriciaTrie(store, null, 1_000);
+        String[][] ops = {{"do", "verb"}, {"ether", "wookiedoo"}, {"horse", "stallion"}, {"shaman", "horse"},
+                {"doge", "coin"}, {"ether", ""}, {"dog", "puppy"}, {"shaman", ""}};
+        for (String[] op : ops) {
+            trie.put(bytes(op[0]), bytes(op[1]));
+        }
+        assertEquals("5991bb8c6514148a29db676a14ac506cd2cd5775ace63c30a4fe457715e9ac84", hex(trie.rootHash()));
+        assertArrayEquals(bytes("coin"), trie.get(bytes("doge")));
+        assertNull(trie.get(bytes("ether")));
+        assertNull(trie.get(bytes("dogg")));
+    }
+
+    @Test
+    void testCommitReloadAndParallelHashing() {
+        Random random = new Random(42);
+        byte[][] keys = new byte[2_000][];
+        MerklePatriciaTrie sequential = new MerklePatriciaTrie(store, null, 10_000, Integer.MAX_VALUE);
+        MerklePatriciaTrie parallel = new MerklePatriciaTrie(store, null, 10_000, 1);
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = Keccak.keccak256(new byte[]{(byte) i, (byte) (i >>> 8)});
+            byte[] value = new byte[1 + random.nextInt(40)];
+            random.nextBytes(value);
+            value[0] |= 1;
+            sequential.put(keys[i], value);
+            parallel.put(keys[i], value);
+        }
+        byte[] root = sequential.rootHash();
+        assertArrayEquals(root, parallel.commit());
+        assertEquals(1, batches);
+
+        // 从存储重新打开，修改一部分后与同样内容的新树根哈希一致
+        MerklePatriciaTrie reopened = new MerklePatriciaTrie(store, root, 100);
+        assertArrayEquals(root, reopened.rootHash());
+        assertArrayEquals(sequential.get(keys[7]), reopened.get(keys[7]));
+        for (int i = 0; i < keys.length; i += 2) {
+            reopened.delete(keys[i]);
+            sequential.delete(keys[i]);
+        }
+        reopened.put(keys[1], bytes("updated"));
+        sequential.put(keys[1], bytes("updated"));
+        byte[] updated = reopened.commit();
+        assertArrayEquals(sequential.rootHash(), updated);
+        assertNull(new MerklePatriciaTrie(store, updated, 100).get(keys[0]));
+        assertArrayEquals(bytes("updated"), new MerklePatriciaTrie(store, updated, 100).get(keys[1]));
+
+        // 回滚丢弃未提交的修改
+        reopened.put(keys[3], bytes("discarded"));
+        reopened.rollback();
+        assertArrayEquals(updated, reopened.rootHash());
+        // 旧根的节点仍在存储中
+        assertArrayEquals(root, new MerklePatriciaTrie(store, root, 100).rootHash());
+        assertNotNull(new MerklePatriciaTrie(store, root, 100).get(keys[0]));
+    }
+
+    @Test
+    void testChildHashesReachEveryLiveNode() {
+        MerklePatriciaTrie trie = new MerklePatriciaTrie(store, null, 10_000);
+        byte[][] keys = new byte[500][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = Keccak.keccak256(new byte[]{(byte) i, (byte) (i >>> 8)});
+            trie.put(keys[i], Keccak.keccak256(keys[i]));
+        }
+        trie.commit();
+        for (int i = 0; i < keys.length; i += 3) {
+            trie.put(keys[i], bytes("v" + i));
+        }
+        byte[] root = trie.commit();
+
+        // 只保留从新根经 childHashes 可达的节点，其余（旧根的路径）全部删除
+        SortedMap<byte[], byte[]> live = new TreeMap<>(Arrays::compareUnsigned);
+        ArrayDeque<byte[]> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            byte[] hash = pending.pop();
+            byte[] encoded = nodes.get(hash);
+            assertNotNull(encoded);
+            if (live.put(hash, encoded) == null) {
+                MerklePatriciaTrie.childHashes(encoded).forEach(pending::push);
+            }
+        }
+        assertTrue(live.size() < nodes.size());
+        nodes.clear();
+        nodes.putAll(live);
+
+        MerklePatriciaTrie reopened = new MerklePatriciaTrie(store, root, 10);
+        for (int i = 0; i < keys.length; i++) {
+            byte[] expected = i % 3 == 0 ? bytes("v" + i) : Keccak.keccak256(keys[i]);
+            assertArrayEquals(expected, reopened.get(keys[i]));
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package com.tanggo.fund.eth.lib.outbound;
+
+import com.tanggo.fund.eth.lib.config.TxPoolOptions;
+import com.tanggo.fund.eth.lib.domain.Account;
+import com.tanggo.fund.eth.lib.domain.BlockBody;
+import com.tanggo.fund.eth.lib.domain.BlockTemplate;
+import com.tanggo.fund.eth.lib.domain.repo.IAccountRepo;
+import com.tanggo.fund.eth.lib.domain.transaction.AccessListEntry;
+import com.tanggo.fund.eth.lib.domain.transaction.Eip1559Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 交易池测试：nonce 链、加价替换、按小费归并、区块模板、容量逐出、链头变化、并发入池和日志恢复
+ */
+class TransactionPoolTest {
+
+    private final AtomicInteger hashes = new AtomicInteger();
+    private final Map<String, Account> accounts = new HashMap<>();
+    private IAccountRepo repo;
+    private TransactionPool pool;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void setUp() {
+        repo = new IAccountRepo() {
+            @Override
+            public Account query(String address) {
+                return accounts.get(address);
+            }
+
+            @Override
+            public void update(Account account) {
+                accounts.put(account.getAddressHex(), account);
+            }
+        };
+        pool = new TransactionPool(repo);
+    }
+
+    private static byte[] address(int id) {
+        byte[] address = new byte[20];
+        address[19] = (byte) id;
+        address[18] = (byte) (id >>> 8);
+        return address;
+    }
+
+    private Eip1559Transaction tx(int sender, long nonce, long maxFee, long tip) {
+        byte[] hash = ByteBuffer.allocate(32).putInt(28, hashes.incrementAndGet()).array();
+        return Eip1559Transaction.builder()
+                .chainId(BigInteger.ONE)
+                .nonce(BigInteger.valueOf(nonce))
+                .maxFeePerGas(BigInteger.valueOf(maxFee))
+                .maxPriorityFeePerGas(BigInteger.valueOf(tip))
+                .gasLimit(BigInteger.valueOf(21_000))
+                .to(address(999))
+                .value(BigInteger.ZERO)
+                .data(new byte[0])
+                .v(BigInteger.ZERO)
+                .r(BigInteger.ONE)
+                .s(BigInteger.ONE)
+                .cachedSender(address(sender))
+                .cachedHash(hash)
+                .build();
+    }
+
+    private static String hashOf(Eip1559Transaction tx) {
+        return "0x" + HexFormat.of().formatHex(tx.getTransactionHash());
+    }
+
+    private static String label(Eip1559Transaction tx) {
+        return tx.recoverSender()[19] + ":" + tx.getNonce();
+    }
+
+    @Test
+    void testNonceGapIsQueuedUntilFilled() {
+        Account account = Account.builder().address(address(1)).nonce(BigInteger.valueOf(5)).build();
+        accounts.put(account.getAddressHex(), account);
+
+        assertFalse(pool.addTransaction(tx(1, 4, 100, 10)), "已执行的 nonce 应被拒绝");
+        assertTrue(pool.addTransaction(tx(1, 7, 100, 10)));
+        assertTrue(pool.addTransaction(tx(1, 5, 100, 10)));
+        assertEquals(1, pool.pendingCount());
+
+        assertTrue(pool.addTransaction(tx(1, 6, 100, 10)));
+        assertEquals(3, pool.pendingCount());
+        List<Eip1559Transaction> pending = pool.getPendingTransactions(10);
+        assertEquals(List.of(5L, 6L, 7L), pending.stream().map(t -> t.getNonce().longValue()).toList());
+    }
+
+    @Test
+    void testReplacementNeedsPriceBump() {
+        assertTrue(pool.addTransaction(tx(1, 0, 100, 10)));
+        assertFalse(pool.addTransaction(tx(1, 0, 105, 11)));
+
+        Eip1559Transaction bumped = tx(1, 0, 110, 11);
+        assertTrue(pool.addTransaction(bumped));
+        assertEquals(1, pool.size());
+        assertSame(bumped, pool.getPendingTransactions(10).get(0));
+    }
+
+    @Test
+    void testPendingOrderedByTipAndNonce() {
+        // 发送者 1 的第二笔小费最高，但必须排在自己的第一笔之后
+        pool.addTransaction(tx(1, 0, 100, 1));
+        pool.addTransaction(tx(1, 1, 100, 50));
+        pool.addTransaction(tx(2, 0, 100, 20));
+        pool.addTransaction(tx(3, 0, 200, 5));
+
+        List<String> order = pool.getPendingTransactions(10).stream().map(TransactionPoolTest::label).toList();
+        assertEquals(List.of("2:0", "3:0", "1:0", "1:1"), order);
+
+        // 基础费用上涨后，maxFee 较低的交易有效小费下降
+        pool.setBaseFee(BigInteger.valueOf(98));
+        assertEquals("3:0", label(pool.getPendingTransactions(10).get(0)));
+    }
+
+    @Test
+    void testRemoveDemotesLaterNonces() {
+        Eip1559Transaction first = tx(1, 0, 100, 10);
+        pool.addTransaction(first);
+        pool.addTransaction(tx(1, 1, 100, 10));
+        pool.addTransaction(tx(1, 2, 100, 10));
+
+        pool.removeTransaction(hashOf(first));
+        assertEquals(2, pool.size());
+        assertEquals(0, pool.pendingCount());
+        assertTrue(pool.getPendingTransactions(10).isEmpty());
+    }
+
+    @Test
+    void testConcurrentIngest() throws Exception {
+        int threads = 8;
+        int perThread = 2_000;
+        TxPoolOptions options = new TxPoolOptions();
+        options.setGlobalSlots(threads * perThread);
+        pool = new TransactionPool(repo, options);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Future<?>[] futures = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures[t] = executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        // 每个线程 50 个发送者，各自 nonce 连续
+                        int sender = thread * 50 + i % 50;
+                        assertTrue(pool.addTransaction(tx(sender, i / 50, 100 + i % 7, 1 + i % 13)));
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(threads * perThread, pool.size());
+        assertEquals(threads * perThread, pool.pendingCount());
+        // 默认区块 Gas 上限只装得下 30M / 21000 笔
+        assertEquals(30_000_000 / 21_000, pool.getPendingTransactions(Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void testTemplateRespectsGasAndBaseFee() {
+        pool.addTransaction(tx(1, 0, 100, 30));
+        pool.addTransaction(tx(2, 0, 100, 20));
+        pool.addTransaction(tx(3, 0, 50, 40)); // 付不起基础费用
+        pool.addTransaction(tx(4, 0, 100, 10));
+
+        BlockTemplate template = pool.getBlockTemplate(BigInteger.valueOf(60), 2 * 21_000);
+        assertEquals(List.of("1:0", "2:0"), template.getTransactions().stream().map(TransactionPoolTest::label).toList());
+        assertEquals(2 * 21_000, template.getGasUsed());
+    }
+
+    @Test
+    void testTemplateUpdatesIncrementally() {
+        BigInteger baseFee = BigInteger.TEN;
+        long gasLimit = 3 * 21_000;
+        pool.addTransaction(tx(1, 0, 100, 5));
+        pool.addTransaction(tx(2, 0, 100, 3));
+        assertEquals(2, pool.getBlockTemplate(baseFee, gasLimit).getTransactions().size());
+
+        // 补齐 nonce 空位后，已排队的后续交易一起进入模板；模板满时替换小费最低的发送者末尾交易
+        pool.addTransaction(tx(3, 1, 100, 9));
+        pool.addTransaction(tx(3, 0, 100, 8));
+        List<String> order = pool.getBlockTemplate(baseFee, gasLimit).getTransactions().stream().map(TransactionPoolTest::label).toList();
+        assertEquals(List.of("1:0", "3:0", "3:1"), order);
+
+        pool.addTransaction(tx(4, 0, 100, 50));
+        order = pool.getBlockTemplate(baseFee, gasLimit).getTransactions().stream().map(TransactionPoolTest::label).toList();
+        assertEquals(List.of("3:0", "3:1", "4:0"), order);
+
+        // 模板中的交易被删除时全量重建：3:1 失去前序 nonce，不能再入选
+        Eip1559Transaction removed = pool.getBlockTemplate(baseFee, gasLimit).getTransactions().get(0);
+        pool.removeTransaction(hashOf(removed));
+        order = pool.getBlockTemplate(baseFee, gasLimit).getTransactions().stream().map(TransactionPoolTest::label).toList();
+        assertEquals(List.of("4:0", "1:0", "2:0"), order);
+    }
+
+    @Test
+    void testSenderSlotsAndGlobalEviction() {
+        TxPoolOptions options = new TxPoolOptions();
+        options.setSenderSlots(2);
+        options.setGlobalSlots(4);
+        pool = new TransactionPool(repo, options);
+
+        assertTrue(pool.addTransaction(tx(1, 0, 100, 10)));
+        assertTrue(pool.addTransaction(tx(1, 1, 100, 10)));
+        assertFalse(pool.addTransaction(tx(1, 2, 100, 10)), "超过发送者交易数上限");
+
+        assertTrue(pool.addTransaction(tx(2, 0, 100, 2)));
+        assertTrue(pool.addTransaction(tx(2, 1, 100, 20)));
+        // 池满：出价不高于最便宜的交易被拒绝
+        assertFalse(pool.addTransaction(tx(3, 0, 100, 2)));
+
+        // 出价更高的交易入池，逐出最便宜的 2:0 以及失去前序的 2:1
+        assertTrue(pool.addTransaction(tx(3, 0, 100, 30)));
+        assertEquals(3, pool.size());
+        List<String> order = pool.getPendingTransactions(10).stream().map(TransactionPoolTest::label).toList();
+        assertEquals(List.of("3:0", "1:0", "1:1"), order);
+    }
+
+    @Test
+    void testByteBudget() {
+        TxPoolOptions options = new TxPoolOptions();
+        int size = PooledTransaction.measure(tx(1, 0, 100, 10));
+        options.setMaxPoolBytes(3L * size);
+        pool = new TransactionPool(repo, options);
+
+        for (int sender = 1; sender <= 5; sender++) {
+            pool.addTransaction(tx(sender, 0, 100, sender));
+        }
+        assertEquals(3, pool.size());
+        assertTrue(pool.bytes() <= options.getMaxPoolBytes());
+        assertEquals("5:0", label(pool.getPendingTransactions(10).get(0)));
+    }
+
+    @Test
+    void testQueuedTransactionsExpire() {
+        long[] now = {0};
+        TxPoolOptions options = new TxPoolOptions();
+        options.setQueuedLifetimeMillis(1_000);
+        options.setExpiryCheckIntervalMillis(100);
+        pool = new TransactionPool(repo, options, () -> now[0]);
+
+        pool.addTransaction(tx(1, 0, 100, 10));
+        pool.addTransaction(tx(1, 2, 100, 10)); // 缺少 nonce 1，等待中
+        now[0] = 500;
+        pool.addTransaction(tx(1, 3, 100, 10));
+
+        now[0] = 1_200;
+        assertEquals(1, pool.evictExpired());
+        assertEquals(2, pool.size());
+
+        // 入池时按间隔自动清理
+        now[0] = 1_600;
+        pool.addTransaction(tx(2, 0, 100, 10));
+        assertEquals(2, pool.size());
+        assertEquals(2, pool.pendingCount());
+    }
+
+    private void setNonce(int sender, long nonce) {
+        Account account = Account.builder().address(address(sender)).nonce(BigInteger.valueOf(nonce)).build();
+        accounts.put(account.getAddressHex(), account);
+    }
+
+    @Test
+    void testNewHeadDropsIncludedAndReinjectsReverted() {
+        Eip1559Transaction a0 = tx(1, 0, 100, 10);
+        Eip1559Transaction a1 = tx(1, 1, 100, 10);
+        pool.addTransaction(a0);
+        pool.addTransaction(a1);
+        pool.addTransaction(tx(1, 2, 100, 10));
+        pool.addTransaction(tx(2, 0, 100, 10));
+        assertEquals(4, pool.getPendingTransactions(10).size());
+
+        // 新区块打包了 1:0 和 1:1
+        BlockBody block = block(a0, a1);
+        setNonce(1, 2);
+        pool.onNewHead(List.of(), List.of(block));
+        assertEquals(2, pool.size());
+        assertNull(pool.getTransaction(hashOf(a0)));
+        assertEquals(List.of("1:2", "2:0"), pool.getPendingTransactions(10).stream().map(TransactionPoolTest::label).sorted().toList());
+
+        // 链重组回滚该区块：1:0 和 1:1 回注，1:2 重新可执行
+        setNonce(1, 0);
+        pool.onNewHead(List.of(block), List.of());
+        assertEquals(4, pool.size());
+        assertEquals(4, pool.pendingCount());
+        assertEquals(List.of("1:0", "1:1", "1:2", "2:0"), pool.getPendingTransactions(10).stream().map(TransactionPoolTest::label).sorted().toList());
+    }
+
+    // 区块执行后的区块体：发送者已恢复
+    private static BlockBody block(Eip1559Transaction... txs) {
+        BlockBody block = new BlockBody();
+        for (Eip1559Transaction tx : txs) {
+            block.addTransaction(tx, "0x" + HexFormat.of().formatHex(tx.recoverSender()));
+        }
+        return block;
+    }
+
+    @Test
+    void testNewHeadRequiresRecoveredSenders() {
+        Eip1559Transaction tx = tx(1, 0, 100, 10);
+        pool.addTransaction(tx);
+        BlockBody block = BlockBody.builder().transactions(List.of(tx)).build();
+        assertThrows(IllegalArgumentException.class, () -> pool.onNewHead(List.of(), List.of(block)));
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    void testNewHeadWithThousandTransactions() {
+        int senders = 1000;
+        Eip1559Transaction[] head = new Eip1559Transaction[senders];
+        for (int i = 0; i < senders; i++) {
+            head[i] = tx(i + 1, 0, 100, 10);
+            assertTrue(pool.addTransaction(head[i]));
+        }
+        // 每轮各发送者链头的交易被新区块打包，下一笔交易随之成为链头（耗时见 TransactionPoolHeadBenchmark）
+        for (int round = 0; round < 3; round++) {
+            Eip1559Transaction[] included = head.clone();
+            for (int i = 0; i < senders; i++) {
+                head[i] = tx(i + 1, round + 1, 100, 10);
+                assertTrue(pool.addTransaction(head[i]));
+                setNonce(i + 1, round + 1);
+            }
+            pool.onNewHead(List.of(), List.of(block(included)));
+
+            assertEquals(senders, pool.size());
+            assertEquals(senders, pool.pendingCount());
+            assertNull(pool.getTransaction(hashOf(included[0])));
+            assertNotNull(pool.getTransaction(hashOf(head[0])));
+        }
+    }
+
+    @Test
+    void testEncodeDecodeRoundTrip() {
+        Eip1559Transaction tx = tx(1, 300, 1_000_000_007L, 2);
+        tx.setData(new byte[100]);
+        tx.setAccessList(List.of(new AccessListEntry(address(7), List.of(new byte[32], new byte[32]))));
+        byte[] encoded = tx.encode();
+        assertEquals(0x02, encoded[0]);
+
+        Eip1559Transaction decoded = Eip1559Transaction.decode(encoded);
+        assertEquals(tx.getNonce(), decoded.getNonce());
+        assertEquals(tx.getMaxFeePerGas(), decoded.getMaxFeePerGas());
+        assertEquals(100, decoded.getData().length);
+        assertEquals(2, decoded.getAccessList().get(0).getStorageKeys().size());
+        assertArrayEquals(encoded, decoded.encode());
+    }
+
+    @Test
+    void testJournalRestoresPoolAfterRestart() throws Exception {
+        TxPoolOptions options = new TxPoolOptions();
+        options.setJournalPath(dir.resolve("txpool.journal").toString());
+        pool = new TransactionPool(repo, options);
+        Eip1559Transaction removed = tx(1, 0, 100, 10);
+        pool.addTransaction(removed);
+        pool.addTransaction(tx(1, 1, 100, 10));
+        pool.addTransaction(tx(2, 0, 100, 30));
+        pool.addTransaction(tx(3, 5, 100, 10)); // 等待中
+        pool.removeTransaction(hashOf(removed)); // 日志中仍有记录，重启后仍可执行（与账户 nonce 一致）
+        pool.close();
+
+        pool = new TransactionPool(repo, options);
+        assertEquals(4, pool.size());
+        assertNotNull(pool.getTransaction(hashOf(removed)));
+        assertEquals(List.of("2:0", "1:0", "1:1"), pool.getPendingTransactions(10).stream().map(TransactionPoolTest::label).toList());
+        pool.close();
+
+        // 账户 nonce 前进后重启，已打包的交易不再装回
+        setNonce(1, 2);
+        pool = new TransactionPool(repo, options);
+        assertEquals(2, pool.size());
+        assertEquals(List.of("2:0"), pool.getPendingTransactions(10).stream().map(TransactionPoolTest::label).toList());
+        pool.close();
+    }
+
+    @Test
+    void testJournalDropsTornTailAndCompacts() throws Exception {
+        Path file = dir.resolve("txpool.journal");
+        TxPoolOptions options = new TxPoolOptions();
+        options.setJournalPath(file.toString());
+        pool = new TransactionPool(repo, options);
+        for (int i = 0; i < 10; i++) {
+            pool.addTransaction(tx(i, 0, 100, 10));
+        }
+        pool.close();
+        long compacted = Files.size(file);
+
+        // 写了一半的记录
+        Files.write(file, new byte[]{0, 0, 1, 0, 1, 2, 3}, StandardOpenOption.APPEND);
+        pool = new TransactionPool(repo, options);
+        assertEquals(10, pool.size());
+        assertEquals(compacted, Files.size(file));
+        pool.close();
+    }
+
+    @Test
+    void testJournalRotationKeepsConcurrentAppendsAndSurvivesFailure() throws Exception {
+        Path file = dir.resolve("txpool.journal");
+        TxPoolOptions options = new TxPoolOptions();
+        options.setJournalPath(file.toString());
+        Eip1559Transaction first = tx(1, 0, 100, 10);
+        Eip1559Transaction second = tx(2, 0, 100, 10);
+        Eip1559Transaction third = tx(3, 0, 100, 10);
+        try (TxPoolJournal journal = new TxPoolJournal(file, options, System::currentTimeMillis)) {
+            journal.append(first, first.encode());
+            // 重写期间的追加写入旧文件，替换前补写到新文件
+            journal.rotate(() -> {
+                journal.append(second, second.encode());
+                return List.of(first).iterator();
+            });
+
+            // 临时文件的位置被目录占用，重写失败后仍继续写原文件
+            Path temp = dir.resolve("txpool.journal.tmp");
+            Files.createDirectory(temp);
+            assertThrows(RuntimeException.class, () -> journal.rotate(List.of(first, second)));
+            journal.append(third, third.encode());
+            Files.delete(temp);
+        }
+
+        try (TxPoolJournal journal = new TxPoolJournal(file, options, System::currentTimeMillis)) {
+            assertEquals(List.of(hashOf(first), hashOf(second), hashOf(third)),
+                    journal.replay().verified.stream().map(TransactionPoolTest::hashOf).toList());
+        }
+    }
+}
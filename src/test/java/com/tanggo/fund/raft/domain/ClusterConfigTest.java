@@ -0,0 +1,53 @@
+package com.tanggo.fund.raft.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 成员配置多数派测试
+ */
+class ClusterConfigTest {
+
+    @Test
+    void testLearnersDoNotCountTowardQuorum() {
+        ClusterConfig config = new ClusterConfig(List.of("n1", "n2", "n3"), List.of(), List.of("n4", "n5"));
+        assertFalse(config.isQuorum(Set.of("n1", "n4", "n5")));
+        assertTrue(config.isQuorum(Set.of("n1", "n2")));
+
+        Map<String, Integer> match = Map.of("n1", 10, "n2", 3, "n3", 2, "n4", 10, "n5", 10);
+        assertEquals(3, config.committedIndex(match::get));
+    }
+
+    @Test
+    void testJointConfigNeedsBothMajorities() {
+        ClusterConfig joint = new ClusterConfig(List.of("n3", "n4", "n5"), List.of("n1", "n2", "n3"), List.of());
+        assertTrue(joint.isJoint());
+        assertFalse(joint.isQuorum(Set.of("n1", "n2", "n3")));
+        assertFalse(joint.isQuorum(Set.of("n3", "n4", "n5")));
+        assertTrue(joint.isQuorum(Set.of("n2", "n3", "n4")));
+
+        Map<String, Integer> match = Map.of("n1", 9, "n2", 9, "n3", 5, "n4", 1, "n5", 1);
+        assertEquals(1, joint.committedIndex(match::get));
+        assertEquals(Set.of("n3", "n4", "n5"), joint.leaveJoint().getVoters());
+        assertFalse(joint.leaveJoint().isJoint());
+    }
+
+    @Test
+    void testCommandRoundTrip() {
+        ClusterConfig config = new ClusterConfig(List.of("n1", "n2"), List.of("n1"), List.of("n9"));
+        String command = config.toCommand();
+        assertTrue(ClusterConfig.isConfigCommand(command));
+        assertFalse(ClusterConfig.isConfigCommand("SET raft:config 1"));
+
+        ClusterConfig decoded = ClusterConfig.fromCommand(command);
+        assertEquals(config.getVoters(), decoded.getVoters());
+        assertEquals(config.getOldVoters(), decoded.getOldVoters());
+        assertEquals(config.getLearners(), decoded.getLearners());
+        assertThrows(IllegalArgumentException.class, () -> ClusterConfig.of(List.of("a,b")));
+    }
+}
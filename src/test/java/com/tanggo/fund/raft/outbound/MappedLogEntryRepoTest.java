@@ -0,0 +1,177 @@
+package com.tanggo.fund.raft.outbound;
+
+import com.tanggo.fund.raft.domain.HardState;
+import com.tanggo.fund.raft.domain.LogEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分段内存映射日志测试
+ */
+class MappedLogEntryRepoTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testAppendAndRecover() throws Exception {
+        // 段很小，强制跨多个段
+        try (MappedLogEntryRepo repo = new MappedLogEntryRepo(dir, 256)) {
+            for (int i = 0; i < 50; i++) {
+                repo.insert(new LogEntry(i / 10 + 1, i, "SET key" + i));
+            }
+            assertEquals(49, repo.lastIndex());
+            assertEquals(5, repo.lastTerm());
+            assertNull(repo.loadHardState());
+            repo.saveHardState(new HardState(6, "node2"));
+        }
+
+        try (MappedLogEntryRepo repo = new MappedLogEntryRepo(dir, 256)) {
+            assertEquals(49, repo.lastIndex());
+            assertEquals("SET key17", repo.get(17).getCommand());
+            assertEquals(2, repo.getTerm(17));
+            assertEquals(0, repo.getTerm(-1));
+            assertNull(repo.get(50));
+            assertEquals(10, repo.slice(40, 60).size());
+            assertEquals(6, repo.loadHardState().getCurrentTerm());
+            assertEquals("node2", repo.loadHardState().getVotedFor());
+        }
+    }
+
+    @Test
+    void testTruncateSuffix() throws Exception {
+        try (MappedLogEntryRepo repo = new MappedLogEntryRepo(dir, 256)) {
+            for (int i = 0; i < 50; i++) {
+                repo.insert(new LogEntry(1, i, "SET key" + i));
+            }
+            repo.truncateSuffix(30);
+            assertEquals(29, repo.lastIndex());
+
+            repo.insert(new LogEntry(2, 30, "DELETE key1"));
+            assertThrows(IllegalArgumentException.class, () -> repo.insert(new LogEntry(2, 40, "GAP")));
+        }
+
+        // 截断后残留的旧记录不能被恢复
+        try (MappedLogEntryRepo repo = new MappedLogEntryRepo(dir, 256)) {
+            assertEquals(30, repo.lastIndex());
+            assertEquals(2, repo.lastTerm());
+            assertEquals("DELETE key1", repo.get(30).getCommand());
+        }
+    }
+
+    @Test
+    void testByteSizeExcludesCompactedEntries() throws Exception {
+        long threshold = 2048;
+        try (MappedLogEntryRepo repo = new MappedLogEntryRepo(dir, 4096)) {
+            int index = 0;
+            while (repo.byteSize() < threshold) {
+                repo.insert(new LogEntry(1, index, String.format("SET key%04d", index)));
+                index++;
+            }
+            // 快照到倒数第二条，段文件仍保留在磁盘上
+            repo.truncatePrefix(index - 2, 1);
+            long remaining = repo.byteSize();
+            assertTrue(remaining < threshold);
+
+            // 下一次快照要等到再写入约一个阈值的日志
+            int added = 0;
+            while (repo.byteSize() < threshold) {
+                repo.insert(new LogEntry(1, index, String.format("SET key%04d", index)));
+                index++;
+                added++;
+            }
+            assertTrue((added + 1) * remaining >= threshold);
+        }
+        try (MappedLogEntryRepo repo = new MappedLogEntryRepo(dir, 4096)) {
+            assertTrue(repo.byteSize() >= threshold);
+        }
+    }
+
+    @Test
+    void testTruncatePrefix() throws Exception {
+        try (MappedLogEntryRepo repo = new MappedLogEntryRepo(dir, 256)) {
+            for (int i = 0; i < 50; i++) {
+                repo.insert(new LogEntry(1, i, "SET key" + i));
+            }
+            long sizeBefore = repo.byteSize();
+            repo.truncatePrefix(30, 1);
+            assertEquals(31, repo.firstIndex());
+            assertTrue(repo.byteSize() < sizeBefore);
+            assertNull(repo.get(20));
+            assertEquals(1, repo.getTerm(30));
+        }
+
+        // 压缩点持久化，重启后不再加载被压缩的段
+        try (MappedLogEntryRepo repo = new MappedLogEntryRepo(dir, 256)) {
+            assertEquals(31, repo.firstIndex());
+            assertEquals(49, repo.lastIndex());
+            assertEquals("SET key31", repo.get(31).getCommand());
+
+            repo.reset(100, 3);
+            assertEquals(100, repo.lastIndex());
+            assertEquals(3, repo.lastTerm());
+            repo.insert(new LogEntry(3, 101, "SET key101"));
+        }
+
+        try (MappedLogEntryRepo repo = new MappedLogEntryRepo(dir, 256)) {
+            assertEquals(101, repo.firstIndex());
+            assertEquals(101, repo.lastIndex());
+            assertEquals(3, repo.getTerm(100));
+        }
+    }
+
+    @Test
+    void testTermSearch() throws Exception {
+        // 任期 1: 0-9，任期 3: 10-29，任期 4: 30-39
+        try (MappedLogEntryRepo repo = new MappedLogEntryRepo(dir, 256)) {
+            for (int i = 0; i < 40; i++) {
+                repo.insert(new LogEntry(i < 10 ? 1 : i < 30 ? 3 : 4, i, "SET key" + i));
+            }
+            assertEquals(10, repo.firstIndexOfTerm(3, 39));
+            assertEquals(29, repo.lastIndexOfTerm(3, 39));
+            assertEquals(19, repo.lastIndexOfTerm(3, 19));
+            assertEquals(-1, repo.firstIndexOfTerm(2, 39));
+            assertEquals(-1, repo.lastIndexOfTerm(2, 39));
+            assertEquals(-1, repo.firstIndexOfTerm(4, 25));
+        }
+    }
+
+    @Test
+    void testTornRecordIsDiscarded() throws Exception {
+        try (MappedLogEntryRepo repo = new MappedLogEntryRepo(dir, 4096)) {
+            for (int i = 0; i < 10; i++) {
+                repo.insert(new LogEntry(1, i, "SET key" + i));
+            }
+        }
+
+        // 模拟最后一条记录写了一半：破坏其末尾字节
+        Path segment;
+        try (var files = Files.list(dir)) {
+            segment = files.filter(p -> p.getFileName().toString().endsWith(".seg")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int position = 0;
+            for (int i = 0; i < 9; i++) {
+                position += 4 + buffer.getInt(position);
+            }
+            int end = position + 4 + buffer.getInt(position);
+            buffer.put(end - 1, (byte) (buffer.get(end - 1) ^ 0x7F));
+            buffer.force();
+        }
+
+        try (MappedLogEntryRepo repo = new MappedLogEntryRepo(dir, 4096)) {
+            assertEquals(8, repo.lastIndex());
+            repo.insert(new LogEntry(2, 9, "SET key9"));
+            assertEquals("SET key9", repo.get(9).getCommand());
+        }
+    }
+}
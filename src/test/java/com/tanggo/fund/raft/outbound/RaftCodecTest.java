@@ -0,0 +1,123 @@
+package com.tanggo.fund.raft.outbound;
+
+import com.tanggo.fund.raft.domain.ClusterConfig;
+import com.tanggo.fund.raft.domain.LogEntry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 日志记录和帧编解码测试
+ */
+class RaftCodecTest {
+
+    @Test
+    void testRoundTripWithCompression() {
+        String large = "SET key " + "v".repeat(4096);
+        List<LogEntry> entries = List.of(
+                new LogEntry(3, 200, "SET a 1"),
+                new LogEntry(3, 201, large),
+                LogEntry.configuration(4, 202, ClusterConfig.of(Set.of("n1", "n2"))));
+
+        ByteBuffer encoded = RaftCodec.encodeEntries(entries);
+        // 大载荷压缩存储，记录远小于原始命令
+        assertTrue(encoded.remaining() < large.length() / 4);
+
+        for (LogEntry expected : entries) {
+            LogEntry actual = RaftCodec.readEntry(encoded);
+            assertEquals(expected.getType(), actual.getType());
+            assertEquals(expected.getTerm(), actual.getTerm());
+            assertEquals(expected.getIndex(), actual.getIndex());
+            assertEquals(expected.getCommand(), actual.getCommand());
+        }
+        assertFalse(encoded.hasRemaining());
+    }
+
+    @Test
+    void testCorruptedRecordIsDetected() {
+        ByteBuffer encoded = RaftCodec.encodeEntries(List.of(new LogEntry(1, 0, "SET a 1")));
+        assertTrue(RaftCodec.isValidRecord(encoded, 0));
+        assertEquals(1, RaftCodec.recordTerm(encoded, 0));
+        assertEquals(0, RaftCodec.recordIndex(encoded, 0));
+
+        encoded.put(encoded.limit() - 1, (byte) 'X');
+        assertFalse(RaftCodec.isValidRecord(encoded, 0));
+        assertThrows(IllegalStateException.class, () -> RaftCodec.readEntry(encoded));
+    }
+
+    @Test
+    void testCompressedLengthOutOfRangeIsRejected() {
+        for (int rawLength : new int[]{-1, RaftCodec.MAX_FRAME_SIZE + 1}) {
+            // 校验和正确、但压缩前长度越界的记录：[长度][校验和][类型|压缩标志 0x10][任期][索引][原始长度][数据]
+            ByteBuffer record = ByteBuffer.allocate(64);
+            record.position(8);
+            record.put((byte) 0x10);
+            RaftCodec.putVarInt(record, 1);
+            RaftCodec.putVarInt(record, 0);
+            RaftCodec.putVarInt(record, rawLength);
+            record.put(new byte[]{1, 2, 3, 4});
+            int end = record.position();
+            CRC32C crc = new CRC32C();
+            crc.update(record.slice(8, end - 8));
+            record.putInt(0, end - 4).putInt(4, (int) crc.getValue());
+            record.flip();
+
+            assertTrue(RaftCodec.isValidRecord(record, 0));
+            IllegalStateException error = assertThrows(IllegalStateException.class, () -> RaftCodec.readEntry(record));
+            assertTrue(error.getMessage().contains(String.valueOf(rawLength)));
+        }
+    }
+
+    @Test
+    void testFrameReaderReturnsCompleteFramesInBatches() throws Exception {
+        ByteBuffer stream = ByteBuffer.allocate(1024);
+        for (int i = 1; i <= 3; i++) {
+            stream.put(RaftCodec.encodeString(i, RaftCodec.CLIENT_COMMAND, "SET key" + i));
+        }
+        byte[] bytes = new byte[stream.flip().remaining()];
+        stream.get(bytes);
+        // 第一次读到两帧半，第二次读到剩下的半帧
+        int split = bytes.length - 10;
+        Deque<ByteBuffer> chunks = new ArrayDeque<>(List.of(ByteBuffer.wrap(bytes, 0, split), ByteBuffer.wrap(bytes, split, 10)));
+        ReadableByteChannel channel = new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) {
+                ByteBuffer chunk = chunks.poll();
+                if (chunk == null) {
+                    return -1;
+                }
+                int n = chunk.remaining();
+                dst.put(chunk);
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        RaftCodec.FrameReader reader = new RaftCodec.FrameReader();
+        List<ByteBuffer> first = reader.read(channel);
+        assertEquals(2, first.size());
+        assertEquals(1, first.get(0).getLong());
+        assertEquals(RaftCodec.CLIENT_COMMAND, first.get(0).get());
+        assertEquals("SET key1", RaftCodec.getString(first.get(0)));
+        List<ByteBuffer> second = reader.read(channel);
+        assertEquals(1, second.size());
+        assertEquals(3, second.get(0).getLong());
+        assertNull(reader.read(channel));
+    }
+}
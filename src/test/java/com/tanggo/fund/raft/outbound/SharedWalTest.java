@@ -0,0 +1,179 @@
+package com.tanggo.fund.raft.outbound;
+
+import com.tanggo.fund.raft.domain.HardState;
+import com.tanggo.fund.raft.domain.LogEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 多组共享 WAL 测试
+ */
+class SharedWalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testGroupsRecoverIndependently() throws Exception {
+        try (SharedWal wal = new SharedWal(dir)) {
+            WalLogEntryRepo a = wal.open("a");
+            WalLogEntryRepo b = wal.open("b");
+            for (int i = 0; i < 20; i++) {
+                a.insert(new LogEntry(1, i, "SET a" + i));
+                b.insert(new LogEntry(1, i, "SET b" + i));
+            }
+            b.truncateSuffix(10);
+            b.insert(new LogEntry(2, 10, "DELETE b1"));
+            a.truncatePrefix(4, 1);
+            a.flush();
+        }
+
+        try (SharedWal wal = new SharedWal(dir)) {
+            WalLogEntryRepo a = wal.open("a");
+            WalLogEntryRepo b = wal.open("b");
+            assertEquals(5, a.firstIndex());
+            assertEquals(19, a.lastIndex());
+            assertEquals(1, a.getTerm(4));
+            assertEquals("SET a7", a.get(7).getCommand());
+            assertEquals(10, b.lastIndex());
+            assertEquals(2, b.lastTerm());
+            assertEquals("DELETE b1", b.get(10).getCommand());
+        }
+    }
+
+    @Test
+    void testRotationDeletesCompactedSegments() throws Exception {
+        try (SharedWal wal = new SharedWal(dir, 512)) {
+            WalLogEntryRepo a = wal.open("a");
+            a.saveHardState(new HardState(1, "n2"));
+            for (int i = 0; i < 100; i++) {
+                a.insert(new LogEntry(1, i, "SET key" + i));
+                a.flush();
+            }
+            a.truncatePrefix(89, 1);
+            for (int i = 100; i < 120; i++) {
+                a.insert(new LogEntry(1, i, "SET key" + i));
+                a.flush();
+            }
+        }
+        assertTrue(segmentCount() < 10);
+
+        try (SharedWal wal = new SharedWal(dir, 512)) {
+            WalLogEntryRepo a = wal.open("a");
+            assertEquals(90, a.firstIndex());
+            assertEquals(119, a.lastIndex());
+            assertEquals("SET key95", a.get(95).getCommand());
+            // 写投票的段已被删除，任期和投票由新段开头的记录恢复
+            assertEquals(1, a.loadHardState().getCurrentTerm());
+            assertEquals("n2", a.loadHardState().getVotedFor());
+        }
+    }
+
+    @Test
+    void testRotationWritesCheckpointBeforePendingRecords() throws Exception {
+        try (SharedWal wal = new SharedWal(dir, 512)) {
+            WalLogEntryRepo a = wal.open("a");
+            for (int i = 0; i < 100; i++) {
+                a.insert(new LogEntry(1, i, "SET key" + i));
+                a.flush();
+            }
+            a.truncatePrefix(99, 1);
+            a.flush();
+            // 换段时待写缓冲中还有记录，旧段随后全部被删除
+            wal.deferFlush(() -> {
+                for (int i = 100; i < 105; i++) {
+                    a.insert(new LogEntry(1, i, "SET key" + i));
+                }
+            });
+            wal.rotate();
+        }
+        assertEquals(1, segmentCount());
+
+        try (SharedWal wal = new SharedWal(dir, 512)) {
+            WalLogEntryRepo a = wal.open("a");
+            assertEquals(100, a.firstIndex());
+            assertEquals(104, a.lastIndex());
+            assertEquals(1, a.getTerm(a.firstIndex() - 1));
+        }
+    }
+
+    @Test
+    void testIdleGroupDoesNotPinSegments() throws Exception {
+        try (SharedWal wal = new SharedWal(dir, 512, 3)) {
+            WalLogEntryRepo idle = wal.open("idle");
+            WalLogEntryRepo removed = wal.open("removed");
+            for (int i = 0; i < 3; i++) {
+                idle.insert(new LogEntry(1, i, "SET idle" + i));
+                removed.insert(new LogEntry(1, i, "SET removed" + i));
+            }
+            idle.flush();
+            wal.drop("removed");
+            WalLogEntryRepo a = wal.open("a");
+            for (int i = 0; i < 300; i++) {
+                a.insert(new LogEntry(1, i, "SET key" + i));
+                a.flush();
+                if (i % 20 == 19) {
+                    a.truncatePrefix(i - 5, 1);
+                }
+            }
+            // 空闲的组没有压缩，其日志被重写到新段，旧段照常删除
+            assertTrue(segmentCount() <= 4);
+        }
+
+        try (SharedWal wal = new SharedWal(dir, 512, 3)) {
+            WalLogEntryRepo idle = wal.open("idle");
+            assertEquals(0, idle.firstIndex());
+            assertEquals(List.of("SET idle0", "SET idle1", "SET idle2"),
+                    idle.slice(0, 3).stream().map(LogEntry::getCommand).toList());
+            assertEquals(295, wal.open("a").firstIndex());
+            assertEquals(299, wal.open("a").lastIndex());
+            assertEquals(-1, wal.open("removed").lastIndex());
+        }
+    }
+
+    @Test
+    void testTornTailIsTruncated() throws Exception {
+        try (SharedWal wal = new SharedWal(dir)) {
+            WalLogEntryRepo a = wal.open("a");
+            for (int i = 0; i < 10; i++) {
+                a.insert(new LogEntry(1, i, "SET key" + i));
+            }
+            a.flush();
+        }
+        // 模拟写了一半的记录
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.sorted().toList().get(0);
+        }
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ch.write(ByteBuffer.allocate(12).putInt(64).putInt(7).putInt(1).flip());
+        }
+
+        try (SharedWal wal = new SharedWal(dir)) {
+            WalLogEntryRepo a = wal.open("a");
+            assertEquals(9, a.lastIndex());
+            a.insert(new LogEntry(2, 10, "SET key10"));
+            a.flush();
+        }
+        try (SharedWal wal = new SharedWal(dir)) {
+            assertEquals(List.of("SET key9", "SET key10"),
+                    wal.open("a").slice(9, 11).stream().map(LogEntry::getCommand).toList());
+        }
+    }
+
+    private long segmentCount() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.tanggo.fund.raft.service.command.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tanggo.fund.raft.inbound.RaftRpcController;
+import com.tanggo.fund.raft.outbound.RaftRpcClient;
+import com.tanggo.fund.raft.service.ILogEntryService;
+import com.tanggo.fund.raft.service.command.AppendEntriesCommand;
+import com.tanggo.fund.raft.service.command.InstallSnapshotCommand;
+import com.tanggo.fund.raft.service.command.ReadMode;
+import com.tanggo.fund.raft.service.command.RequestVoteCommand;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JSON-RPC 代理测试：三个节点只经 ProxyLogEntryService 和 RaftRpcController 通信，完成选举、复制和线性一致读
+ */
+class ProxyLogEntryServiceTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<LogEntryService> services = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        services.forEach(LogEntryService::close);
+    }
+
+    // 请求和响应都经过一次 JSON 序列化，报文与 HTTP 传输时相同
+    @SuppressWarnings("unchecked")
+    private Object invoke(RaftRpcController controller, String method, Object... params) {
+        try {
+            Map<String, Object> request = new HashMap<>();
+            request.put("jsonrpc", "2.0");
+            request.put("id", 1);
+            request.put("method", method);
+            request.put("params", mapper.readValue(mapper.writeValueAsString(params), List.class));
+            Map<String, Object> response = mapper.readValue(mapper.writeValueAsString(controller.handleJsonRpc(request)), Map.class);
+            if (response.get("error") != null) {
+                throw new IllegalStateException(String.valueOf(response.get("error")));
+            }
+            return response.get("result");
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private RaftRpcClient client(RaftRpcController controller) {
+        return new RaftRpcClient() {
+            @Override
+            public boolean handleClientCommand(String command) {
+                return (Boolean) invoke(controller, "raft_handleClientCommand", command);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Map<String, Object> handleAppendEntries(AppendEntriesCommand request) {
+                return (Map<String, Object>) invoke(controller, "raft_handleAppendEntries", request);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Map<String, Object> handleRequestVote(RequestVoteCommand request) {
+                return (Map<String, Object>) invoke(controller, "raft_handleRequestVote", request);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Map<String, Object> handleInstallSnapshot(InstallSnapshotCommand request) {
+                return (Map<String, Object>) invoke(controller, "raft_handleInstallSnapshot", request);
+            }
+
+            @Override
+            public String read(String query, ReadMode mode) {
+                return (String) invoke(controller, "raft_read", query, mode);
+            }
+
+            @Override
+            public void printLog() {
+                invoke(controller, "raft_printLog");
+            }
+        };
+    }
+
+    @Test
+    void testElectsLeaderOverJsonRpc() throws Exception {
+        List<String> ids = List.of("node1", "node2", "node3");
+        List<Map<String, ILogEntryService>> views = new ArrayList<>();
+        Map<String, RaftRpcController> controllers = new HashMap<>();
+        for (String id : ids) {
+            Map<String, ILogEntryService> view = new ConcurrentHashMap<>();
+            LogEntryService service = new LogEntryService(id, view);
+            view.put(id, service);
+            views.add(view);
+            services.add(service);
+            controllers.put(id, new RaftRpcController(service));
+        }
+        // 每个节点看到的其它节点都是 JSON-RPC 代理
+        for (int i = 0; i < ids.size(); i++) {
+            for (String peer : ids) {
+                if (!peer.equals(ids.get(i))) {
+                    views.get(i).put(peer, new ProxyLogEntryService("json-rpc://" + peer, client(controllers.get(peer))));
+                }
+            }
+        }
+
+        LogEntryService leader = null;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (leader == null && System.nanoTime() < deadline) {
+            for (LogEntryService service : services) {
+                if (service.isLeader()) {
+                    leader = service;
+                }
+            }
+            Thread.sleep(20);
+        }
+        assertNotNull(leader, "no leader elected over JSON-RPC");
+        assertTrue(leader.getCurrentTerm() > 0);
+        assertEquals(1, services.stream().filter(LogEntryService::isLeader).count());
+
+        // 复制经 raft_handleAppendEntries，读取经 raft_read 到达领导者
+        assertTrue(leader.submitCommand("SET k v").get(5, TimeUnit.SECONDS));
+        String leaderId = ids.get(services.indexOf(leader));
+        ProxyLogEntryService client = new ProxyLogEntryService("json-rpc://" + leaderId, client(controllers.get(leaderId)));
+        assertEquals("v", client.read("k", ReadMode.READ_INDEX).get(5, TimeUnit.SECONDS));
+    }
+}
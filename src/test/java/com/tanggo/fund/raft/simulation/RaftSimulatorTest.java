@@ -0,0 +1,161 @@
+package com.tanggo.fund.raft.simulation;
+
+import com.tanggo.fund.raft.config.SimulationOptions;
+import com.tanggo.fund.raft.service.command.ReadMode;
+import com.tanggo.fund.raft.service.command.impl.LogEntryService;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 确定性模拟测试：同一种子可重放，注入故障后集群恢复且已提交日志一致
+ */
+class RaftSimulatorTest {
+
+    private SimulationReport runScenario(long seed) {
+        SimulationOptions options = new SimulationOptions();
+        options.setSeed(seed);
+        try (RaftSimulator simulator = new RaftSimulator(options)) {
+            assertTrue(simulator.runUntil(() -> simulator.leader() != null, 5_000));
+            simulator.startWorkload(2_000);
+            simulator.runFor(1_000);
+
+            // 隔离领导者，剩余多数派重新选举
+            String leader = simulator.leader();
+            simulator.isolate(leader);
+            simulator.runFor(2_000);
+            simulator.heal();
+            simulator.runFor(1_000);
+            simulator.stopWorkload();
+            simulator.runFor(500);
+            return simulator.report();
+        }
+    }
+
+    @Test
+    void testSameSeedIsReproducible() {
+        SimulationReport first = runScenario(42);
+        SimulationReport second = runScenario(42);
+        assertEquals(first, second);
+    }
+
+    @Test
+    void testRecoversFromLeaderPartition() {
+        SimulationReport report = runScenario(7);
+        assertTrue(report.isConsistent());
+        assertTrue(report.getLeaderChanges() >= 1);
+        assertTrue(report.getDowntimeMillis() > 0);
+        assertTrue(report.getCommitted() > 0);
+        assertTrue(report.getDroppedMessages() > 0);
+    }
+
+    @Test
+    void testLossyNetworkStaysConsistent() {
+        SimulationOptions options = new SimulationOptions();
+        options.setSeed(3);
+        options.setDropRate(0.05);
+        options.setReorderRate(0.1);
+        try (RaftSimulator simulator = new RaftSimulator(options)) {
+            assertTrue(simulator.runUntil(() -> simulator.leader() != null, 10_000));
+            simulator.startWorkload(1_000);
+            simulator.runFor(1_000);
+            simulator.stallDisk(simulator.leader(), 300);
+            simulator.runFor(2_000);
+            simulator.stopWorkload();
+            options.setDropRate(0);
+            simulator.runFor(2_000);
+
+            SimulationReport report = simulator.report();
+            assertTrue(report.isConsistent());
+            assertTrue(report.getCommitted() > 0);
+        }
+    }
+
+    @Test
+    void testUnreachableFollowerDoesNotStallLeader() {
+        SimulationOptions options = new SimulationOptions();
+        options.setSeed(11);
+        SimulationReport report = assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            try (RaftSimulator simulator = new RaftSimulator(options)) {
+                assertTrue(simulator.runUntil(() -> simulator.leader() != null, 5_000));
+                String leader = simulator.leader();
+                String down = simulator.nodeIds().stream().filter(id -> !id.equals(leader)).findFirst().orElseThrow();
+                // 发往该从节点的请求立即失败，领导者不能在同一次 pump 里反复重发
+                simulator.refuseConnections(down);
+                simulator.startWorkload(1_000);
+                simulator.runFor(1_000);
+                simulator.heal();
+                simulator.runFor(1_000);
+                simulator.stopWorkload();
+                simulator.runFor(500);
+                return simulator.report();
+            }
+        });
+        assertTrue(report.isConsistent());
+        assertTrue(report.getCommitted() > 0);
+        // 每次心跳最多重试一次，失败的消息数受时间而不是 CPU 限制
+        assertTrue(report.getDroppedMessages() < 10_000, "dropped: " + report.getDroppedMessages());
+    }
+
+    @Test
+    void testIsolatedLeaderServesNoStaleReads() {
+        SimulationOptions options = new SimulationOptions();
+        options.setSeed(5);
+        try (RaftSimulator simulator = new RaftSimulator(options)) {
+            assertTrue(simulator.runUntil(() -> simulator.leader() != null, 5_000));
+            String oldLeader = simulator.leader();
+            CompletableFuture<Boolean> first = simulator.service(oldLeader).submitCommand("SET x 1");
+            assertTrue(simulator.runUntil(first::isDone, 1_000));
+            assertTrue(first.join());
+            CompletableFuture<String> before = simulator.service(oldLeader).read("x", ReadMode.LEASE);
+            assertTrue(simulator.runUntil(before::isDone, 1_000));
+            assertEquals("1", before.join());
+
+            // 旧领导者被隔离，新领导者提交新值；旧领导者可能仍自认为是领导者
+            simulator.isolate(oldLeader);
+            assertTrue(simulator.runUntil(() -> !oldLeader.equals(simulator.leader()), 5_000));
+            CompletableFuture<Boolean> second = simulator.service(simulator.leader()).submitCommand("SET x 2");
+            assertTrue(simulator.runUntil(second::isDone, 2_000));
+            assertTrue(second.join());
+
+            // 两种读模式都不能返回旧值：心跳得不到多数派确认，租约在新领导者当选前已过期
+            List<CompletableFuture<String>> reads = List.of(
+                    simulator.service(oldLeader).read("x", ReadMode.READ_INDEX),
+                    simulator.service(oldLeader).read("x", ReadMode.LEASE));
+            simulator.runFor(1_000);
+            simulator.heal();
+            simulator.runFor(1_000);
+            for (CompletableFuture<String> read : reads) {
+                assertTrue(read.isCompletedExceptionally(), () -> "stale read served: " + read.getNow(null));
+            }
+        }
+    }
+
+    @Test
+    void testCloseCompletesPendingFutures() {
+        SimulationOptions options = new SimulationOptions();
+        options.setSeed(13);
+        try (RaftSimulator simulator = new RaftSimulator(options)) {
+            assertTrue(simulator.runUntil(() -> simulator.leader() != null, 5_000));
+            String leader = simulator.leader();
+            LogEntryService service = simulator.service(leader);
+
+            // 隔离后命令只能追加到领导者本地，既不会提交也不会应用
+            simulator.isolate(leader);
+            CompletableFuture<Boolean> submitted = service.submitCommand("SET x 1");
+            CompletableFuture<Void> applied = service.awaitApplied(Integer.MAX_VALUE);
+            simulator.runFor(50);
+            assertFalse(submitted.isDone());
+            assertFalse(applied.isDone());
+
+            service.close();
+            assertFalse(submitted.join());
+            assertTrue(applied.isCompletedExceptionally());
+            assertTrue(service.awaitApplied(Integer.MAX_VALUE).isCompletedExceptionally());
+        }
+    }
+}